@@ -0,0 +1,244 @@
+package com.convenience.store.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+/**
+ * 基准测试数据库 - 内嵌H2（MySQL兼容模式）内存库，按指定规模生成数据
+ * 通过 jdbc.* 系统属性让 MyBatisUtil 连接到该库，因此必须在第一次使用 MyBatisUtil 之前调用 start()。
+ * JMH 默认每组参数单独启动一个JVM（fork），每个JVM只生成一次数据
+ */
+public class BenchmarkDatabase {
+    public static final String URL = "jdbc:h2:mem:bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    // 库存分片库的地址模板，%d 为分片序号
+    static final String SHARD_URL = "jdbc:h2:mem:bench_shard_%d;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    // 商品名称词表和类别，搜索基准按其中的词查询
+    static final String[] PRODUCT_WORDS = {"矿泉水", "方便面", "牛奶", "饼干", "可乐", "薯片", "面包", "酸奶", "咖啡", "巧克力"};
+    static final String[] CATEGORIES = {"饮料", "食品", "零食", "乳制品", "日用品", "冷冻食品", "调味品", "烟酒"};
+    // 冷门类别：每 RARE_CATEGORY_STEP 个商品中有一个，用于测量选择性高的类别搜索
+    static final String RARE_CATEGORY = "进口食品";
+    static final int RARE_CATEGORY_STEP = 1000;
+    // 低于最小库存的库存行比例约为 MIN_STOCK / MAX_QUANTITY
+    static final int MAX_QUANTITY = 1000;
+    static final int MIN_STOCK = 50;
+    static final String PASSWORD = "bench123";
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static int seededRows = -1;
+    private static int warehouseCount;
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * 建表并生成数据：rows 个用户、rows 个商品、rows 条库存（每个商品一条，分布在各仓库）
+     * 同一JVM中重复调用不会重复生成
+     * @param rows 数据规模
+     * @param environment MyBatis环境（development 为自定义连接池，pooled 为MyBatis自带连接池），为null时使用默认环境
+     */
+    public static synchronized void start(int rows, String environment) throws SQLException, IOException {
+        if (seededRows >= 0) {
+            if (seededRows != rows) {
+                throw new IllegalStateException("同一JVM中只能使用一种数据规模，请不要使用 -f 0 运行多组参数");
+            }
+            return;
+        }
+        System.setProperty("jdbc.driver", "org.h2.Driver");
+        System.setProperty("jdbc.url", URL);
+        System.setProperty("jdbc.username", "sa");
+        System.setProperty("jdbc.password", "");
+        if (environment != null) {
+            System.setProperty("mybatis.environment", environment);
+        }
+        warehouseCount = Math.max(5, Math.min(100, rows / 1000));
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "")) {
+            createSchema(connection);
+            connection.setAutoCommit(false);
+            seed(connection, rows);
+            connection.commit();
+        }
+        seededRows = rows;
+    }
+
+    public static int getWarehouseCount() {
+        return warehouseCount;
+    }
+
+    /**
+     * 把已生成的库存按仓库分到多个分片：分片0为主库，其余分片各建一个H2内存库，
+     * 仓库 w 的库存行移到 w % shards 号分片（与 ShardRouter 的默认分布一致），并设置 shard.* 系统属性。
+     * 各库的库存ID自增步长设为分片数、起始值按分片序号错开，保证库存ID全局唯一。
+     * 必须在 start() 之后、第一次使用 MyBatisUtil 之前调用
+     * @param shards 分片数，小于2时不分片
+     */
+    public static synchronized void startShards(int shards) throws SQLException, IOException {
+        if (seededRows < 0) {
+            throw new IllegalStateException("必须先调用 start() 生成数据");
+        }
+        if (shards < 2) {
+            return;
+        }
+        try (Connection primary = DriverManager.getConnection(URL, "sa", "")) {
+            primary.setAutoCommit(false);
+            int maxId;
+            try (Statement statement = primary.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(inventory_id), 0) FROM inventory")) {
+                rs.next();
+                maxId = rs.getInt(1);
+            }
+            for (int shard = 1; shard < shards; shard++) {
+                String url = String.format(SHARD_URL, shard);
+                try (Connection target = DriverManager.getConnection(url, "sa", "")) {
+                    createSchema(target, "/h2-shard-schema.sql");
+                    target.setAutoCommit(false);
+                    moveInventory(primary, target, shard, shards);
+                    restartIdentity(target, maxId, shard, shards);
+                    target.commit();
+                }
+                System.setProperty("shard." + shard + ".url", url);
+                System.setProperty("shard." + shard + ".username", "sa");
+                System.setProperty("shard." + shard + ".password", "");
+            }
+            restartIdentity(primary, maxId, 0, shards);
+            primary.commit();
+        }
+        System.setProperty("shard.count", String.valueOf(shards));
+    }
+
+    // 把主库中位于指定分片的仓库的库存行复制到分片库（保留库存ID）后从主库删除
+    private static void moveInventory(Connection primary, Connection target, int shard, int shards) throws SQLException {
+        try (PreparedStatement select = primary.prepareStatement(
+                "SELECT inventory_id, product_id, warehouse_id, quantity, min_stock FROM inventory WHERE MOD(warehouse_id, ?) = ?");
+             PreparedStatement insert = target.prepareStatement(
+                     "INSERT INTO inventory (inventory_id, product_id, warehouse_id, quantity, min_stock) VALUES (?, ?, ?, ?, ?)")) {
+            select.setInt(1, shards);
+            select.setInt(2, shard);
+            try (ResultSet rs = select.executeQuery()) {
+                int i = 0;
+                while (rs.next()) {
+                    for (int column = 1; column <= 5; column++) {
+                        insert.setInt(column, rs.getInt(column));
+                    }
+                    addBatch(insert, ++i);
+                }
+            }
+            insert.executeBatch();
+        }
+        try (PreparedStatement delete = primary.prepareStatement("DELETE FROM inventory WHERE MOD(warehouse_id, ?) = ?")) {
+            delete.setInt(1, shards);
+            delete.setInt(2, shard);
+            delete.executeUpdate();
+        }
+    }
+
+    // 库存ID从大于 maxId 且除以分片数余 shard + 1 的最小值开始，每次增加分片数
+    private static void restartIdentity(Connection connection, int maxId, int shard, int shards) throws SQLException {
+        int start = maxId + 1;
+        while (Math.floorMod(start, shards) != (shard + 1) % shards) {
+            start++;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE inventory ALTER COLUMN inventory_id RESTART WITH " + start);
+            statement.execute("ALTER TABLE inventory ALTER COLUMN inventory_id SET INCREMENT BY " + shards);
+        }
+    }
+
+    private static void createSchema(Connection connection) throws SQLException, IOException {
+        createSchema(connection, "/h2-schema.sql");
+    }
+
+    private static void createSchema(Connection connection, String resource) throws SQLException, IOException {
+        String schema;
+        try (InputStream in = BenchmarkDatabase.class.getResourceAsStream(resource)) {
+            schema = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : schema.split(";")) {
+                String trimmed = stripComments(sql);
+                if (!trimmed.isEmpty()) {
+                    statement.execute(trimmed);
+                }
+            }
+        }
+    }
+
+    private static String stripComments(String sql) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : sql.split("\n")) {
+            if (!line.trim().startsWith("--")) {
+                sb.append(line).append('\n');
+            }
+        }
+        return sb.toString().trim();
+    }
+
+    private static void seed(Connection connection, int rows) throws SQLException {
+        Random random = new Random(42);
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO users (username, password, full_name, email, phone, role, status) VALUES (?, ?, ?, ?, ?, ?, 'active')")) {
+            for (int i = 1; i <= rows; i++) {
+                ps.setString(1, "user" + i);
+                ps.setString(2, PASSWORD);
+                ps.setString(3, "用户" + i);
+                ps.setString(4, "user" + i + "@store.com");
+                ps.setString(5, String.valueOf(13800000000L + i));
+                ps.setString(6, i <= 10 ? "admin" : "staff");
+                addBatch(ps, i);
+            }
+            ps.executeBatch();
+        }
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO warehouses (warehouse_name, location, capacity, manager_id) VALUES (?, ?, ?, ?)")) {
+            for (int i = 1; i <= warehouseCount; i++) {
+                ps.setString(1, "仓库" + i);
+                ps.setString(2, "城市" + (i % 10));
+                ps.setInt(3, 1_000_000);
+                ps.setInt(4, 1 + (i - 1) % rows);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO products (product_name, category, unit, price, description) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= rows; i++) {
+                ps.setString(1, PRODUCT_WORDS[i % PRODUCT_WORDS.length] + " " + i);
+                ps.setString(2, i % RARE_CATEGORY_STEP == 0 ? RARE_CATEGORY : CATEGORIES[i % CATEGORIES.length]);
+                ps.setString(3, "件");
+                ps.setDouble(4, 1 + random.nextInt(10000) / 100.0);
+                ps.setString(5, "基准测试商品" + i);
+                addBatch(ps, i);
+            }
+            ps.executeBatch();
+        }
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO inventory (product_id, warehouse_id, quantity, min_stock) VALUES (?, ?, ?, ?)")) {
+            for (int i = 1; i <= rows; i++) {
+                ps.setInt(1, i);
+                ps.setInt(2, 1 + i % warehouseCount);
+                ps.setInt(3, random.nextInt(MAX_QUANTITY));
+                ps.setInt(4, MIN_STOCK);
+                addBatch(ps, i);
+            }
+            ps.executeBatch();
+        }
+    }
+
+    // 每批提交一次：百万行放在一个事务里时，H2的撤销日志会占满堆
+    private static void addBatch(PreparedStatement ps, int i) throws SQLException {
+        ps.addBatch();
+        if (i % BATCH_SIZE == 0) {
+            ps.executeBatch();
+            ps.getConnection().commit();
+        }
+    }
+}
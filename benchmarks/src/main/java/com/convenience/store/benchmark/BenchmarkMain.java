@@ -0,0 +1,45 @@
+package com.convenience.store.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Properties;
+
+/**
+ * 基准测试入口 - 接受JMH的全部命令行参数，未指定结果文件时默认以JSON格式写入
+ * jmh-results/&lt;版本号&gt;-&lt;时间&gt;.json，便于跨版本对比回归。
+ * 示例：java -jar benchmarks.jar ServiceBenchmark -p rows=1000,100000,1000000
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResult().hasValue() && !commandLine.getResultFormat().hasValue()) {
+            Path dir = Paths.get("jmh-results");
+            Files.createDirectories(dir);
+            String file = version() + "-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json";
+            options.resultFormat(ResultFormatType.JSON).result(dir.resolve(file).toString());
+        }
+        new Runner(options.build()).run();
+    }
+
+    private static String version() throws Exception {
+        Properties properties = new Properties();
+        try (InputStream in = BenchmarkMain.class.getResourceAsStream("/bench.properties")) {
+            if (in != null) {
+                properties.load(in);
+            }
+        }
+        return properties.getProperty("version", "unknown");
+    }
+}
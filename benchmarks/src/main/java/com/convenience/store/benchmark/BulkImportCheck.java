@@ -0,0 +1,255 @@
+package com.convenience.store.benchmark;
+
+import com.convenience.store.service.BulkImportService;
+import com.convenience.store.service.BulkImportService.ImportResult;
+import com.convenience.store.service.BulkImportService.ImportType;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * 批量导入检查 - 在内嵌H2上验证 BulkImportService 的吞吐量、重放和写库失败后的续传：
+ * 1. 导入 --products 行商品CSV，写入第一批后中断，删除检查点文件（相当于在提交后、写检查点前崩溃），
+ *    再次导入应按 import_progress 从已提交的行之后继续，最终新增的商品数等于文件行数，不重复插入
+ * 2. 导入 --inventory 行库存CSV（每行是一个新的库存位置），输出耗时和每秒行数，超过 --max-seconds 秒时不通过
+ * 3. 导入一个更新已有库存的CSV，另一个连接锁住文件中间的一条库存记录，锁之后还有几行商品ID不存在：
+ *    导入应因锁等待超时失败，而不是逐行重试把后续行记为错误，检查点停在锁住的行之前；
+ *    释放锁后再次导入从检查点继续，最终每个正常行都已写入，错误只有商品ID不存在的那几行
+ * 任何一项不通过时以退出码2结束。
+ *
+ * 用法：java -cp benchmarks.jar com.convenience.store.benchmark.BulkImportCheck [--参数=值 ...]
+ * 参数（括号内为默认值）：
+ *   --rows (100000)         H2数据规模，决定已有商品和仓库的数量（仓库数为 rows/1000，最多100）
+ *   --products (100000)     第1项的商品行数
+ *   --inventory (1000000)   第2项的库存行数
+ *   --update-rows (20000)   第3项的库存行数
+ *   --max-seconds (60)      第2项允许的最长耗时
+ */
+public class BulkImportCheck {
+    // 第3项中商品ID不存在的行数
+    private static final int MISSING_PRODUCT_ROWS = 3;
+    // 第3项写入的数量，大于生成数据和第2项中的数量，用于确认行已写入
+    private static final int UPDATED_QUANTITY = 5000;
+
+    private final HarnessOptions options;
+    private final List<String> failures = new ArrayList<>();
+    private Path dir;
+
+    private BulkImportCheck(HarnessOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) {
+        HarnessOptions.run(args, options -> new BulkImportCheck(options).run());
+    }
+
+    private boolean run() throws Exception {
+        BenchmarkDatabase.start(options.getInt("rows", 100000), null);
+        dir = Files.createTempDirectory("bulk-import");
+        try {
+            checkProductReplay(options.getInt("products", 100000));
+            checkInventoryThroughput(options.getInt("inventory", 1000000), options.getInt("max-seconds", 60));
+            checkResumeAfterLockTimeout(options.getInt("update-rows", 20000));
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+
+        System.out.println();
+        if (failures.isEmpty()) {
+            System.out.println("检查通过：崩溃后续传不重复插入商品，写库失败后从检查点续传没有丢行");
+            return true;
+        }
+        System.out.println("检查失败：");
+        failures.forEach(failure -> System.out.println("  " + failure));
+        return false;
+    }
+
+    // 1. 商品导入在第一批提交后中断并丢失检查点文件，续传不重复插入
+    private void checkProductReplay(int rows) throws Exception {
+        Path file = dir.resolve("products.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(String.join(",", ImportType.PRODUCT.getColumns()));
+            writer.newLine();
+            for (int i = 1; i <= rows; i++) {
+                writer.write("导入商品 " + i + "," + BenchmarkDatabase.CATEGORIES[i % BenchmarkDatabase.CATEGORIES.length]
+                        + ",件," + (1 + i % 100) + ".50,批量导入检查");
+                writer.newLine();
+            }
+        }
+        long before = count("SELECT COUNT(*) FROM products");
+        BulkImportService service = new BulkImportService();
+        service.setCommitSize(1000);
+        service.setChunkSize(1000);
+        try {
+            service.importCsv(file, ImportType.PRODUCT, (processed, total) -> {
+                throw new IllegalStateException("模拟崩溃");
+            });
+            failures.add("商品导入没有在第一批后中断");
+        } catch (IllegalStateException e) {
+            System.out.println("商品导入在第一批后中断");
+        }
+        long committed = count("SELECT COUNT(*) FROM products") - before;
+        Files.deleteIfExists(checkpointFile(file));
+
+        ImportResult resumed = timedImport(file, ImportType.PRODUCT, "商品续传");
+        long afterResume = count("SELECT COUNT(*) FROM products");
+        if (committed <= 0) {
+            failures.add("中断前没有提交任何商品");
+        }
+        expect("续传的起始行", committed + 1, resumed.getResumedAfterLine());
+        expect("续传后新增商品数", rows, afterResume - before);
+        expect("续传的错误行数", 0, resumed.getErrors().size());
+        expect("导入完成后的进度记录数", 0, count("SELECT COUNT(*) FROM import_progress"));
+    }
+
+    // 2. 库存导入吞吐量：商品1起依次在各仓库建库存位置，跳过生成数据时已有的位置
+    private void checkInventoryThroughput(int rows, int maxSeconds) throws Exception {
+        int warehouses = BenchmarkDatabase.getWarehouseCount();
+        Path file = dir.resolve("inventory.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(String.join(",", ImportType.INVENTORY.getColumns()));
+            writer.newLine();
+            int written = 0;
+            for (int productId = 1; written < rows; productId++) {
+                for (int warehouseId = 1; warehouseId <= warehouses && written < rows; warehouseId++) {
+                    if (warehouseId == seededWarehouse(productId, warehouses)) {
+                        continue;
+                    }
+                    writer.write(productId + "," + warehouseId + "," + (productId + warehouseId) % BenchmarkDatabase.MAX_QUANTITY
+                            + "," + BenchmarkDatabase.MIN_STOCK);
+                    writer.newLine();
+                    written++;
+                }
+            }
+        }
+        long before = count("SELECT COUNT(*) FROM inventory");
+        long start = System.nanoTime();
+        ImportResult result = timedImport(file, ImportType.INVENTORY, "库存导入");
+        double seconds = (System.nanoTime() - start) / 1e9;
+        expect("库存导入后新增库存记录数", rows, count("SELECT COUNT(*) FROM inventory") - before);
+        expect("库存导入的错误行数", 0, result.getErrors().size());
+        if (seconds > maxSeconds) {
+            failures.add(String.format("库存导入 %d 行耗时 %.1f 秒，超过 %d 秒", rows, seconds, maxSeconds));
+        }
+    }
+
+    // 3. 锁等待超时使导入中断，释放锁后续传
+    private void checkResumeAfterLockTimeout(int rows) throws Exception {
+        int warehouses = BenchmarkDatabase.getWarehouseCount();
+        int lockedProduct = rows * 3 / 4;
+        // 表头占第1行，商品p在第p+1行
+        long lockedLine = lockedProduct + 1;
+        Path file = dir.resolve("update.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(String.join(",", ImportType.INVENTORY.getColumns()));
+            writer.newLine();
+            for (int productId = 1; productId <= rows; productId++) {
+                writer.write(productId + "," + seededWarehouse(productId, warehouses) + "," + UPDATED_QUANTITY + "," + BenchmarkDatabase.MIN_STOCK);
+                writer.newLine();
+            }
+            for (int i = 1; i <= MISSING_PRODUCT_ROWS; i++) {
+                writer.write((Integer.MAX_VALUE - i) + ",1," + UPDATED_QUANTITY + "," + BenchmarkDatabase.MIN_STOCK);
+                writer.newLine();
+            }
+        }
+        BulkImportService service = new BulkImportService();
+        service.setCommitSize(1000);
+
+        try (Connection lock = DriverManager.getConnection(BenchmarkDatabase.URL, "sa", "")) {
+            lock.setAutoCommit(false);
+            try (PreparedStatement ps = lock.prepareStatement(
+                    "UPDATE inventory SET min_stock = min_stock WHERE product_id = ? AND warehouse_id = ?")) {
+                ps.setInt(1, lockedProduct);
+                ps.setInt(2, seededWarehouse(lockedProduct, warehouses));
+                expect("锁住的库存记录数", 1, ps.executeUpdate());
+            }
+            try {
+                ImportResult result = service.importCsv(file, ImportType.INVENTORY, null);
+                failures.add("库存记录被锁住时导入没有失败，导入 " + result.getImportedRows() + " 行，错误 " + result.getErrors().size() + " 行");
+            } catch (IOException e) {
+                System.out.println("锁等待超时使导入中断: " + e.getMessage());
+            }
+            lock.rollback();
+        }
+
+        long checkpoint = readCheckpoint(file);
+        System.out.println("检查点停在第 " + checkpoint + " 行，锁住的是第 " + lockedLine + " 行");
+        if (checkpoint <= 1 || checkpoint >= lockedLine) {
+            failures.add("检查点应在第1行之后、锁住的第 " + lockedLine + " 行之前，实际为第 " + checkpoint + " 行");
+        }
+        expect("中断前已写入的行数", checkpoint - 1,
+                count("SELECT COUNT(*) FROM inventory WHERE quantity = " + UPDATED_QUANTITY + " AND product_id <= " + rows));
+
+        ImportResult resumed = service.importCsv(file, ImportType.INVENTORY, null);
+        expect("续传的起始行", checkpoint, resumed.getResumedAfterLine());
+        expect("续传的错误行数", MISSING_PRODUCT_ROWS, resumed.getErrors().size());
+        expect("续传后已写入的行数", rows,
+                count("SELECT COUNT(*) FROM inventory WHERE quantity = " + UPDATED_QUANTITY + " AND product_id <= " + rows));
+        if (Files.exists(checkpointFile(file))) {
+            failures.add("导入完成后检查点文件没有删除");
+        }
+    }
+
+    // 生成数据时商品p的库存所在的仓库（见 BenchmarkDatabase.seed）
+    private static int seededWarehouse(int productId, int warehouses) {
+        return 1 + productId % warehouses;
+    }
+
+    private static ImportResult timedImport(Path file, ImportType type, String name) throws IOException {
+        long start = System.nanoTime();
+        ImportResult result = new BulkImportService().importCsv(file, type, null);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s：%d 行，错误 %d 行，耗时 %.1f 秒，%.0f 行/秒%n",
+                name, result.getImportedRows(), result.getErrors().size(), seconds, result.getImportedRows() / seconds);
+        return result;
+    }
+
+    private static Path checkpointFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".checkpoint");
+    }
+
+    private static long readCheckpoint(Path file) throws IOException {
+        Path checkpointFile = checkpointFile(file);
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        Properties checkpoint = new Properties();
+        try (var reader = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+            checkpoint.load(reader);
+        }
+        return Long.parseLong(checkpoint.getProperty("lastLine", "0"));
+    }
+
+    private static long count(String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(BenchmarkDatabase.URL, "sa", "");
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private void expect(String name, long expected, long actual) {
+        System.out.println(name + ": " + actual + (expected == actual ? "" : "（应为 " + expected + "）"));
+        if (expected != actual) {
+            failures.add(name + " 应为 " + expected + "，实际为 " + actual);
+        }
+    }
+}
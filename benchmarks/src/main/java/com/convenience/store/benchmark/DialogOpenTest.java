@@ -0,0 +1,237 @@
+package com.convenience.store.benchmark;
+
+import com.convenience.store.controller.DialogFactory;
+import com.convenience.store.util.LatencyHistogram;
+import com.convenience.store.util.metrics.UiStallMonitor;
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 对话框打开耗时测量 - 在无显示的JavaFX环境（Monocle Headless）中，在界面线程上对比三个对话框（用户、商品、库存）的
+ * 新建和复用两种打开方式：
+ * 1. 每个FXML：FXMLLoader.load（-Ddialog.reuse=false 时每次打开都要做的解析、创建控件和注入控制器）
+ *    与已缓存实例的 reset()（复用时每次打开只做这一步）
+ * 2. 从调用到窗口显示：新建 = 加载FXML + 创建窗口 + 显示；复用 = reset() + 显示已创建的窗口
+ * 3. 经 DialogFactory.open 的完整打开路径（showAndWait，窗口显示后立即关闭），
+ *    耗时取自 UiStallMonitor 的 store_dialog_open_microseconds，按本进程的 dialog.reuse 设置新建或复用
+ *    （以 --reuse=false 运行即为 -Ddialog.reuse=false 的路径）
+ * 每一项先执行 --warmup 次不计入结果，再测量 --iterations 次。
+ *
+ * 用法：java -cp benchmarks.jar com.convenience.store.benchmark.DialogOpenTest [--参数=值 ...]
+ * 参数（括号内为默认值）：
+ *   --iterations (200)  每项测量次数
+ *   --warmup (50)       每项预热次数
+ *   --reuse (true)      第3项中 DialogFactory 是否复用对话框，即 -Ddialog.reuse
+ *   --headless (true)   为false时使用系统默认的图形平台（有显示器或 xvfb-run 时）
+ *   --show (true)       是否测量第2、3项；Linux上JavaFX的文字排版依赖系统的Pango库，没有安装时窗口无法显示，以false运行只测量第1项
+ */
+public class DialogOpenTest {
+    // FXML路径 -> 窗口大小，与 MainController 中打开时一致
+    private static final Map<String, double[]> DIALOGS = new LinkedHashMap<>();
+
+    static {
+        DIALOGS.put("/fxml/UserDialog.fxml", new double[]{400, 350});
+        DIALOGS.put("/fxml/ProductDialog.fxml", new double[]{400, 300});
+        DIALOGS.put("/fxml/InventoryDialog.fxml", new double[]{400, 250});
+    }
+
+    private final HarnessOptions options;
+    private int iterations;
+    private int warmup;
+    private boolean show;
+
+    private DialogOpenTest(HarnessOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) {
+        HarnessOptions.run(args, options -> {
+            new DialogOpenTest(options).run();
+            return true;
+        });
+    }
+
+    /**
+     * 一个对话框的测量结果
+     */
+    private static final class DialogResult {
+        final String fxml;
+        final LatencyHistogram load = new LatencyHistogram();
+        final LatencyHistogram reset = new LatencyHistogram();
+        final LatencyHistogram openNew = new LatencyHistogram();
+        final LatencyHistogram openReused = new LatencyHistogram();
+        // UiStallMonitor 的直方图是全局的，每个对话框测完时记下分位数
+        long[] factoryOpen;
+
+        DialogResult(String fxml) {
+            this.fxml = fxml;
+        }
+    }
+
+    private void run() throws Exception {
+        iterations = options.getInt("iterations", 200);
+        warmup = options.getInt("warmup", 50);
+        show = options.getBoolean("show", true);
+        // DialogFactory 在类加载时读取该属性，需在首次使用前设置
+        System.setProperty("dialog.reuse", options.get("reuse", "true"));
+        // 控制器持有服务对象，提供一个小规模的内嵌库
+        BenchmarkDatabase.start(1000, null);
+        HeadlessFx.start(options.getBoolean("headless", true));
+
+        List<DialogResult> results = new ArrayList<>();
+        for (Map.Entry<String, double[]> dialog : DIALOGS.entrySet()) {
+            DialogResult result = new DialogResult(dialog.getKey());
+            double width = dialog.getValue()[0];
+            double height = dialog.getValue()[1];
+            measureLoadAndReset(result);
+            if (show) {
+                measureOpen(result, width, height);
+                measureFactoryOpen(result, width, height);
+            }
+            results.add(result);
+        }
+        report(results);
+    }
+
+    // 1. FXMLLoader.load 与已缓存实例的 reset()
+    private void measureLoadAndReset(DialogResult result) throws Exception {
+        HeadlessFx.call(() -> {
+            for (int i = 0; i < warmup + iterations; i++) {
+                long start = System.nanoTime();
+                new FXMLLoader(DialogOpenTest.class.getResource(result.fxml)).load();
+                if (i >= warmup) {
+                    result.load.recordNanos(System.nanoTime() - start);
+                }
+            }
+            FXMLLoader cached = new FXMLLoader(DialogOpenTest.class.getResource(result.fxml));
+            cached.load();
+            DialogFactory.ReusableDialog controller = cached.getController();
+            for (int i = 0; i < warmup + iterations; i++) {
+                long start = System.nanoTime();
+                controller.reset();
+                if (i >= warmup) {
+                    result.reset.recordNanos(System.nanoTime() - start);
+                }
+            }
+            return null;
+        });
+    }
+
+    // 2. 从调用到窗口显示：新建与复用，窗口显示后立即隐藏（不计入耗时）
+    private void measureOpen(DialogResult result, double width, double height) throws Exception {
+        Stage cachedStage = HeadlessFx.call(() -> {
+            FXMLLoader loader = new FXMLLoader(DialogOpenTest.class.getResource(result.fxml));
+            loader.load();
+            return createStage(loader, width, height);
+        });
+        DialogFactory.ReusableDialog cachedController = (DialogFactory.ReusableDialog) cachedStage.getUserData();
+        for (int i = 0; i < warmup + iterations; i++) {
+            boolean measured = i >= warmup;
+            HeadlessFx.call(() -> {
+                long start = System.nanoTime();
+                FXMLLoader loader = new FXMLLoader(DialogOpenTest.class.getResource(result.fxml));
+                loader.load();
+                Stage stage = createStage(loader, width, height);
+                ((DialogFactory.ReusableDialog) stage.getUserData()).reset();
+                stage.show();
+                if (measured) {
+                    result.openNew.recordNanos(System.nanoTime() - start);
+                }
+                stage.close();
+                return null;
+            });
+            HeadlessFx.call(() -> {
+                long start = System.nanoTime();
+                cachedController.reset();
+                cachedStage.show();
+                if (measured) {
+                    result.openReused.recordNanos(System.nanoTime() - start);
+                }
+                cachedStage.hide();
+                return null;
+            });
+        }
+        HeadlessFx.call(() -> {
+            cachedStage.close();
+            return null;
+        });
+    }
+
+    // 与 DialogFactory.create 相同：模态窗口 + 绑定控制器；控制器放在 userData 中
+    private static Stage createStage(FXMLLoader loader, double width, double height) {
+        Parent root = loader.getRoot();
+        Stage stage = new Stage();
+        stage.setScene(new Scene(root, width, height));
+        stage.initModality(Modality.APPLICATION_MODAL);
+        DialogFactory.ReusableDialog controller = loader.getController();
+        controller.setDialogStage(stage);
+        stage.setUserData(controller);
+        return stage;
+    }
+
+    // 3. DialogFactory.open + showAndWait，窗口显示后由排在其后的任务关闭
+    private void measureFactoryOpen(DialogResult result, double width, double height) throws Exception {
+        LatencyHistogram recorded = UiStallMonitor.getDialogOpenLatency(Boolean.getBoolean("dialog.reuse"));
+        for (int i = 0; i < warmup + iterations; i++) {
+            if (i == warmup) {
+                recorded.reset();
+            }
+            HeadlessFx.call(() -> {
+                DialogFactory.Dialog<DialogFactory.ReusableDialog> dialog = DialogFactory.open(result.fxml, width, height);
+                Platform.runLater(DialogOpenTest::closeModalWindows);
+                dialog.showAndWait("对话框打开耗时测量");
+                return null;
+            });
+        }
+        // 复用时第一次打开为新建，在预热中计入另一组
+        result.factoryOpen = summarize(recorded);
+        recorded.reset();
+    }
+
+    private static void closeModalWindows() {
+        for (Window window : new ArrayList<>(Window.getWindows())) {
+            if (window instanceof Stage stage && stage.getModality() == Modality.APPLICATION_MODAL && stage.isShowing()) {
+                stage.hide();
+            }
+        }
+    }
+
+    // p50、p90、p99、最大值、平均值（微秒）
+    private static long[] summarize(LatencyHistogram latency) {
+        return new long[]{latency.getPercentileMicros(50), latency.getPercentileMicros(90), latency.getPercentileMicros(99),
+                latency.getMaxMicros(), Math.round(latency.getMeanMicros())};
+    }
+
+    private void report(List<DialogResult> results) {
+        System.out.println();
+        System.out.printf("每项预热 %d 次、测量 %d 次，界面线程上的耗时（ms）%n", warmup, iterations);
+        System.out.println();
+        System.out.printf("%-24s %-26s %8s %8s %8s %8s %8s%n", "对话框", "操作", "p50", "p90", "p99", "max", "平均");
+        for (DialogResult result : results) {
+            String name = result.fxml.substring(result.fxml.lastIndexOf('/') + 1);
+            printRow(name, "FXMLLoader.load", summarize(result.load));
+            printRow(name, "reset()", summarize(result.reset));
+            if (!show) {
+                continue;
+            }
+            printRow(name, "新建：加载+建窗口+显示", summarize(result.openNew));
+            printRow(name, "复用：reset()+显示", summarize(result.openReused));
+            printRow(name, "DialogFactory.open（reuse=" + System.getProperty("dialog.reuse") + "）", result.factoryOpen);
+        }
+    }
+
+    private static void printRow(String dialog, String operation, long[] summary) {
+        System.out.printf("%-24s %-26s %8.3f %8.3f %8.3f %8.3f %8.3f%n", dialog, operation,
+                summary[0] / 1000.0, summary[1] / 1000.0, summary[2] / 1000.0, summary[3] / 1000.0, summary[4] / 1000.0);
+    }
+}
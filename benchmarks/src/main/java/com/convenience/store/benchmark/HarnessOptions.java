@@ -0,0 +1,94 @@
+package com.convenience.store.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 负载模拟、压力测试和检查程序共用的命令行参数和退出码处理
+ * 参数形式为 --名称=值；{@link #run} 解析参数后运行程序并以退出码结束进程：
+ * 通过为0，检查不通过为2，抛出异常为1。JavaFX界面线程等非守护线程还在运行时进程也会退出。
+ */
+final class HarnessOptions {
+    private final Map<String, String> values;
+
+    private HarnessOptions(Map<String, String> values) {
+        this.values = values;
+    }
+
+    /**
+     * 一个可运行的程序
+     */
+    @FunctionalInterface
+    interface Harness {
+        /**
+         * @param options 命令行参数
+         * @return 检查是否通过；只输出测量结果的程序返回true
+         * @throws Exception 运行失败
+         */
+        boolean run(HarnessOptions options) throws Exception;
+    }
+
+    /**
+     * 解析命令行参数
+     * @param args main方法的参数
+     * @return 参数
+     * @throws IllegalArgumentException 参数不是 --名称=值 的形式
+     */
+    static HarnessOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("参数格式应为 --名称=值：" + arg);
+            }
+            values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return new HarnessOptions(values);
+    }
+
+    /**
+     * 解析参数并运行程序，结束后退出进程
+     * @param args main方法的参数
+     * @param harness 程序
+     */
+    static void run(String[] args, Harness harness) {
+        int status;
+        try {
+            status = harness.run(parse(args)) ? 0 : 2;
+        } catch (Exception e) {
+            e.printStackTrace();
+            status = 1;
+        }
+        System.exit(status);
+    }
+
+    boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+    /**
+     * @return 参数值，未指定时为null
+     */
+    String get(String name) {
+        return values.get(name);
+    }
+
+    String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    int getInt(String name, int defaultValue) {
+        return has(name) ? Integer.parseInt(get(name)) : defaultValue;
+    }
+
+    long getLong(String name, long defaultValue) {
+        return has(name) ? Long.parseLong(get(name)) : defaultValue;
+    }
+
+    double getDouble(String name, double defaultValue) {
+        return has(name) ? Double.parseDouble(get(name)) : defaultValue;
+    }
+
+    boolean getBoolean(String name, boolean defaultValue) {
+        return has(name) ? Boolean.parseBoolean(get(name)) : defaultValue;
+    }
+}
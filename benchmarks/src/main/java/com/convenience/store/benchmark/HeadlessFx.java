@@ -0,0 +1,63 @@
+package com.convenience.store.benchmark;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * 在没有显示器的机器上启动JavaFX工具包，供界面相关的测量程序使用
+ * 默认使用Monocle的Headless平台和软件渲染：界面线程、Platform.runLater、场景图布局和窗口显示都与桌面环境相同，只是不输出到屏幕；
+ * 在有显示器（或 xvfb-run）的环境中传入 headless=false 时使用系统默认的图形平台。
+ */
+final class HeadlessFx {
+    private static boolean started;
+
+    private HeadlessFx() {
+    }
+
+    /**
+     * 启动JavaFX工具包并等待界面线程就绪，重复调用不会重复启动
+     * @param headless 是否使用Monocle的Headless平台
+     * @throws InterruptedException 等待时被中断
+     */
+    static synchronized void start(boolean headless) throws InterruptedException {
+        if (started) {
+            return;
+        }
+        if (headless) {
+            System.setProperty("glass.platform", "Monocle");
+            System.setProperty("monocle.platform", "Headless");
+            System.setProperty("prism.order", "sw");
+            System.setProperty("prism.text", "t2k");
+        }
+        CountDownLatch ready = new CountDownLatch(1);
+        Platform.startup(ready::countDown);
+        ready.await();
+        // 测量过程中会反复关闭窗口，最后一个窗口关闭时不退出工具包
+        Platform.setImplicitExit(false);
+        started = true;
+    }
+
+    /**
+     * 在界面线程中执行一个任务并等待其完成
+     * @param task 任务
+     * @param <T> 结果类型
+     * @return 任务的结果
+     * @throws Exception 任务抛出的异常
+     */
+    static <T> T call(Callable<T> task) throws Exception {
+        FutureTask<T> future = new FutureTask<>(task);
+        Platform.runLater(future);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
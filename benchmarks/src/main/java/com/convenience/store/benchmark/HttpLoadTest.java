@@ -0,0 +1,187 @@
+package com.convenience.store.benchmark;
+
+import com.convenience.store.server.StoreHttpServer;
+import com.convenience.store.util.LatencyHistogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 终端HTTP接口负载测试 - 在内嵌H2上启动 {@link StoreHttpServer}，用本机HTTP客户端按逐级提高的目标请求速率施压，
+ * 输出每一级实际达到的请求数/秒和延迟分位数，以及p99不超过目标值时能支撑的最高速率。
+ * 请求按固定节拍发出（开环），延迟从计划发送时刻算起，服务端排队造成的延迟也计入分位数，
+ * 不会因为客户端被慢响应拖住而少发请求、低估尾延迟。
+ *
+ * 用法：java -cp benchmarks.jar com.convenience.store.benchmark.HttpLoadTest [--参数=值 ...]
+ * 参数（括号内为默认值）：
+ *   --rates (500,1000,2000,4000,8000)  逐级的目标请求数/秒
+ *   --duration (10)       每一级的运行秒数
+ *   --p99-target-ms (20)  p99延迟目标
+ *   --clients (64)        并发客户端线程数，速率在线程间平均分配
+ *   --rows (10000)        H2数据规模
+ *   --threads (32)        服务端没有虚拟线程时的请求处理线程数
+ *   --mix (product:6,inventory-page:2,adjust:2)
+ * 请求：product 按ID查询商品；inventory-page 查询某仓库的一页库存（50行）；adjust 对某库存位置入库或出库1件
+ */
+public class HttpLoadTest {
+
+    // 各级之间的间隔，让上一级积压的请求处理完
+    private static final long PAUSE_BETWEEN_STEPS_MILLIS = 2000;
+
+    private final HarnessOptions options;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private String baseUrl;
+    private int rows;
+    private int warehouses;
+    private String[] mix;
+
+    private HttpLoadTest(HarnessOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) {
+        HarnessOptions.run(args, options -> {
+            new HttpLoadTest(options).run();
+            return true;
+        });
+    }
+
+    private void run() throws Exception {
+        rows = options.getInt("rows", 10000);
+        int duration = options.getInt("duration", 10);
+        int clients = options.getInt("clients", 64);
+        double p99TargetMs = options.getDouble("p99-target-ms", 20);
+        mix = expandMix(options.get("mix", "product:6,inventory-page:2,adjust:2"));
+
+        BenchmarkDatabase.start(rows, null);
+        warehouses = BenchmarkDatabase.getWarehouseCount();
+        int port = StoreHttpServer.start("127.0.0.1", 0, options.getInt("threads", 32), null);
+        baseUrl = "http://127.0.0.1:" + port;
+
+        // 预热：建立连接、加载类、填充缓存
+        runStep(2, 500, clients);
+
+        System.out.printf("%10s %10s %10s %10s %10s %10s %10s%n",
+                "目标/秒", "实际/秒", "错误", "p50(ms)", "p95(ms)", "p99(ms)", "max(ms)");
+        int bestRate = 0;
+        for (String rateText : options.get("rates", "500,1000,2000,4000,8000").split(",")) {
+            Thread.sleep(PAUSE_BETWEEN_STEPS_MILLIS);
+            int rate = Integer.parseInt(rateText.trim());
+            StepResult result = runStep(duration, rate, clients);
+            LatencyHistogram latency = result.latency;
+            double p99 = latency.getPercentileMicros(99) / 1000.0;
+            System.out.printf("%10d %10.1f %10d %10.2f %10.2f %10.2f %10.2f%n",
+                    rate, latency.getCount() / result.seconds, result.errors.sum(),
+                    latency.getPercentileMicros(50) / 1000.0, latency.getPercentileMicros(95) / 1000.0,
+                    p99, latency.getMaxMicros() / 1000.0);
+            if (p99 <= p99TargetMs && result.errors.sum() == 0) {
+                bestRate = Math.max(bestRate, rate);
+            }
+        }
+        System.out.println();
+        System.out.println(bestRate > 0
+                ? "p99 ≤ " + p99TargetMs + "ms 时可支撑 " + bestRate + " 次/秒"
+                : "所有速率下p99都超过 " + p99TargetMs + "ms");
+        StoreHttpServer.stop();
+    }
+
+    /**
+     * 一级负载的结果
+     */
+    private static final class StepResult {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private double seconds;
+    }
+
+    private StepResult runStep(int seconds, int rate, int clients) throws InterruptedException {
+        StepResult result = new StepResult();
+        long intervalNanos = (long) (1e9 * clients / rate);
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Random random = new Random(i);
+            // 各线程的发送节拍错开，使请求均匀分布
+            long first = start + intervalNanos * i / clients;
+            Thread thread = new Thread(() -> clientLoop(random, first, intervalNanos, end, result), "http-client-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        result.seconds = (System.nanoTime() - start) / 1e9;
+        return result;
+    }
+
+    private void clientLoop(Random random, long first, long intervalNanos, long end, StepResult result) {
+        for (long intended = first; intended < end; intended += intervalNanos) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean ok;
+            try {
+                HttpResponse<String> response = client.send(nextRequest(random), HttpResponse.BodyHandlers.ofString());
+                // 409 是业务上的拒绝（如库存不足），不算错误
+                ok = response.statusCode() < 300 || response.statusCode() == 409;
+            } catch (Exception e) {
+                ok = false;
+            }
+            result.latency.recordNanos(System.nanoTime() - intended);
+            if (!ok) {
+                result.errors.increment();
+            }
+        }
+    }
+
+    private HttpRequest nextRequest(Random random) {
+        String request = mix[random.nextInt(mix.length)];
+        switch (request) {
+            case "product":
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/api/products/" + (1 + random.nextInt(rows)))).GET().build();
+            case "inventory-page":
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/api/inventory?limit=50&warehouseId="
+                        + (1 + random.nextInt(warehouses)))).GET().build();
+            case "adjust": {
+                // 与种子数据一致：商品i在仓库 1 + i % 仓库数
+                int productId = 1 + random.nextInt(rows);
+                int warehouseId = 1 + productId % warehouses;
+                String body = "{\"productId\":" + productId + ",\"warehouseId\":" + warehouseId
+                        + ",\"delta\":" + (random.nextBoolean() ? 1 : -1) + "}";
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/api/inventory/adjust"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+            }
+            default:
+                throw new IllegalArgumentException("未知的请求：" + request);
+        }
+    }
+
+    // 按权重展开为数组，随机取下标即按比例选择
+    private static String[] expandMix(String spec) {
+        List<String> expanded = new ArrayList<>();
+        for (String item : spec.split(",")) {
+            String[] parts = item.trim().split(":");
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            for (int i = 0; i < weight; i++) {
+                expanded.add(parts[0].trim());
+            }
+        }
+        return expanded.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,233 @@
+package com.convenience.store.benchmark;
+
+import com.convenience.store.service.InventoryExportService;
+import com.convenience.store.service.InventoryExportService.ExportFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 库存导出检查 - 在内嵌H2上验证 InventoryExportService 流式导出时堆内存不随行数增长，以及取消后不留下不完整的文件：
+ * 1. 把库存补足到 --export-rows 行后导出CSV，收到第一次进度时和之后每导出1/5时在导出线程中完整GC一次，
+ *    记录存活对象占用的堆，之后的最大值比第一次增长超过 --max-heap-growth-mb 时不通过；文件行数应等于库存行数加表头。
+ *    H2从仓库表开始联表，按库存ID排序时在返回第一行前缓冲全部结果行（内存库不会缓冲到临时文件），
+ *    内嵌时这部分在同一个堆中，MySQL的排序缓冲在服务器端，因此从第一次进度开始比较，导出前到第一次进度的增长只输出不检查
+ * 2. 目标文件已有内容时开始导出，导出到一半时中断导出线程（相当于界面上点击"取消导出"），
+ *    导出应抛出异常，目标文件保持原内容，临时文件已删除
+ * 任何一项不通过时以退出码2结束。
+ * 内嵌H2的数据也在同一个堆中，运行时需要足够的堆（500万行时约4.5GB）
+ *
+ * 用法：java -Xmx4500m -cp benchmarks.jar com.convenience.store.benchmark.InventoryExportCheck [--参数=值 ...]
+ * 参数（括号内为默认值）：
+ *   --rows (100000)               H2数据规模，决定商品和仓库的数量（仓库数为 rows/1000，最多100）
+ *   --export-rows (5000000)       导出的库存行数，不能超过 商品数 × 仓库数
+ *   --max-heap-growth-mb (64)     第1项第一次进度之后允许的存活对象占用堆的增长
+ */
+public class InventoryExportCheck {
+    // 补充库存时每批提交的行数
+    private static final int INSERT_BATCH_SIZE = 10000;
+    // 第1项第一次进度之后采样堆内存的次数
+    private static final int HEAP_SAMPLES = 5;
+    // 第2项中目标文件原有的内容
+    private static final String PREVIOUS_CONTENT = "上次导出的内容\n";
+
+    private final HarnessOptions options;
+    private final List<String> failures = new ArrayList<>();
+    private final InventoryExportService exportService = new InventoryExportService();
+    private Path dir;
+
+    private InventoryExportCheck(HarnessOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) {
+        HarnessOptions.run(args, options -> new InventoryExportCheck(options).run());
+    }
+
+    private boolean run() throws Exception {
+        int rows = options.getInt("rows", 100000);
+        BenchmarkDatabase.start(rows, null);
+        long inventoryRows = fillInventory(rows, options.getInt("export-rows", 5000000));
+        dir = Files.createTempDirectory("inventory-export");
+        try {
+            checkFlatHeap(inventoryRows, options.getInt("max-heap-growth-mb", 64));
+            checkCancel(inventoryRows);
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+
+        System.out.println();
+        if (failures.isEmpty()) {
+            System.out.println("检查通过：导出期间堆内存不随行数增长，取消导出不留下不完整的文件");
+            return true;
+        }
+        System.out.println("检查失败：");
+        failures.forEach(failure -> System.out.println("  " + failure));
+        return false;
+    }
+
+    // 按商品1起依次在各仓库补充库存位置，跳过生成数据时已有的位置，直到库存共有 target 行
+    private static long fillInventory(int rows, int target) throws SQLException {
+        int warehouses = BenchmarkDatabase.getWarehouseCount();
+        if ((long) rows * warehouses < target) {
+            throw new IllegalArgumentException("--export-rows 不能超过 商品数 × 仓库数 = " + (long) rows * warehouses);
+        }
+        long start = System.nanoTime();
+        long count = count("SELECT COUNT(*) FROM inventory");
+        Random random = new Random(42);
+        try (Connection connection = DriverManager.getConnection(BenchmarkDatabase.URL, "sa", "");
+             PreparedStatement ps = connection.prepareStatement(
+                     "INSERT INTO inventory (product_id, warehouse_id, quantity, min_stock) VALUES (?, ?, ?, ?)")) {
+            connection.setAutoCommit(false);
+            for (int productId = 1; count < target; productId++) {
+                for (int warehouseId = 1; warehouseId <= warehouses && count < target; warehouseId++) {
+                    // 生成数据时商品p的库存在仓库 1 + p % 仓库数（见 BenchmarkDatabase.seed）
+                    if (warehouseId == 1 + productId % warehouses) {
+                        continue;
+                    }
+                    ps.setInt(1, productId);
+                    ps.setInt(2, warehouseId);
+                    ps.setInt(3, random.nextInt(BenchmarkDatabase.MAX_QUANTITY));
+                    ps.setInt(4, BenchmarkDatabase.MIN_STOCK);
+                    ps.addBatch();
+                    if (++count % INSERT_BATCH_SIZE == 0) {
+                        ps.executeBatch();
+                        connection.commit();
+                    }
+                }
+            }
+            ps.executeBatch();
+            connection.commit();
+        }
+        System.out.printf("库存共 %d 行（补充耗时 %.1f 秒）%n", count, (System.nanoTime() - start) / 1e9);
+        return count;
+    }
+
+    // 1. 导出全部库存，第一次进度时和之后每导出 1/HEAP_SAMPLES 时在导出线程中完整GC一次，记录存活对象占用的堆
+    private void checkFlatHeap(long inventoryRows, int maxGrowthMb) throws Exception {
+        Path file = dir.resolve("inventory.csv");
+        long before = liveHeap();
+        long[] first = {-1};
+        List<Long> samples = new ArrayList<>();
+        long start = System.nanoTime();
+        long exported = exportService.exportInventory(file, ExportFormat.CSV, (done, total) -> {
+            if (first[0] < 0) {
+                first[0] = liveHeap();
+            } else if (done >= (samples.size() + 1) * (total / HEAP_SAMPLES)) {
+                samples.add(liveHeap());
+            }
+        });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long peak = first[0];
+        StringBuilder line = new StringBuilder();
+        for (long sample : samples) {
+            peak = Math.max(peak, sample);
+            line.append(String.format(" %.1f", sample / 1048576.0));
+        }
+        long growth = peak - first[0];
+        System.out.printf("导出 %d 行，文件 %.1f MB，耗时 %.1f 秒（含 %d 次完整GC），%.0f 行/秒%n",
+                exported, Files.size(file) / 1048576.0, seconds, samples.size() + 1, exported / seconds);
+        System.out.printf("存活对象占用堆：导出前 %.1f MB，第一次进度时 %.1f MB（H2的结果缓冲），之后依次为（MB）%s，最多增长 %.1f MB%n",
+                before / 1048576.0, first[0] / 1048576.0, line, growth / 1048576.0);
+        expect("导出的行数", inventoryRows, exported);
+        expect("文件行数（含表头）", inventoryRows + 1, countLines(file));
+        if (samples.size() < HEAP_SAMPLES) {
+            failures.add("导出过程中只采样了 " + (samples.size() + 1) + " 次堆内存，应为 " + (HEAP_SAMPLES + 1) + " 次");
+        }
+        if (growth > maxGrowthMb * 1048576L) {
+            failures.add(String.format("导出过程中存活对象占用的堆增长 %.1f MB，超过 %d MB", growth / 1048576.0, maxGrowthMb));
+        }
+        Files.delete(file);
+    }
+
+    // 2. 导出到一半时中断导出线程
+    private void checkCancel(long inventoryRows) throws Exception {
+        Path file = dir.resolve("cancelled.csv");
+        Files.writeString(file, PREVIOUS_CONTENT, StandardCharsets.UTF_8);
+        long[] progress = {0};
+        Throwable[] thrown = {null};
+        Thread exportThread = new Thread(() -> {
+            try {
+                exportService.exportInventory(file, ExportFormat.CSV, (exported, total) -> {
+                    progress[0] = exported;
+                    if (exported >= inventoryRows / 2) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            } catch (Throwable e) {
+                thrown[0] = e;
+            }
+        }, "inventory-export");
+        exportThread.start();
+        exportThread.join();
+        System.out.println("导出到第 " + progress[0] + " 行时中断：" + (thrown[0] == null ? "没有抛出异常" : thrown[0]));
+        if (thrown[0] == null) {
+            failures.add("中断导出线程后导出没有失败");
+        }
+        if (!PREVIOUS_CONTENT.equals(Files.readString(file, StandardCharsets.UTF_8))) {
+            failures.add("取消导出后目标文件的原内容被覆盖");
+        }
+        try (var files = Files.list(dir)) {
+            List<Path> left = files.filter(path -> !path.equals(file)).toList();
+            if (!left.isEmpty()) {
+                failures.add("取消导出后留下了临时文件：" + left);
+            }
+        }
+    }
+
+    // 完整GC后的已用堆，即存活对象占用的堆
+    private static long liveHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long countLines(Path file) throws IOException {
+        long lines = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static long count(String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(BenchmarkDatabase.URL, "sa", "");
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private void expect(String name, long expected, long actual) {
+        System.out.println(name + ": " + actual + (expected == actual ? "" : "（应为 " + expected + "）"));
+        if (expected != actual) {
+            failures.add(name + " 应为 " + expected + "，实际为 " + actual);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.convenience.store.benchmark;
+
+import com.convenience.store.entity.InventoryRow;
+import com.convenience.store.service.InventoryService;
+import com.convenience.store.service.ProductService;
+import com.convenience.store.util.cache.StoreCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 库存搜索基准：库存表一页（200行）在每种过滤条件下的耗时，每次调用前清空库存和商品的二级缓存，测量的是数据库查询
+ * 默认规模包含100万行库存；只跑小规模时用 -p rows=1000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx4g"})
+public class InventorySearchBenchmark {
+    private static final String PRODUCT_NAMESPACE = "com.convenience.store.dao.ProductDao";
+    private static final String INVENTORY_NAMESPACE = "com.convenience.store.dao.InventoryDao";
+    private static final int PAGE_SIZE = 200;
+
+    @Param({"1000", "1000000"})
+    public int rows;
+
+    private final InventoryService inventoryService = new InventoryService();
+    private final ProductService productService = new ProductService();
+    private int warehouses;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkDatabase.start(rows, null);
+        warehouses = BenchmarkDatabase.getWarehouseCount();
+        disableResultReuse();
+        // 名称条件经内存搜索索引转换为商品ID
+        productService.rebuildSearchIndex();
+    }
+
+    // H2对参数相同、表未修改的查询直接返回上次的结果，首页等固定条件测到的会是结果缓存而不是查询
+    private static void disableResultReuse() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(BenchmarkDatabase.URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("SET OPTIMIZE_REUSE_RESULTS 0");
+        }
+    }
+
+    private List<InventoryRow> search(Map<String, Object> params) {
+        StoreCache.invalidate(INVENTORY_NAMESPACE);
+        StoreCache.invalidate(PRODUCT_NAMESPACE);
+        return inventoryService.searchInventoryRows(null, PAGE_SIZE, params);
+    }
+
+    /**
+     * 不带条件的首页
+     */
+    @Benchmark
+    public List<InventoryRow> firstPage() {
+        return search(null);
+    }
+
+    /**
+     * 按仓库，走 idx_inventory_warehouse
+     */
+    @Benchmark
+    public List<InventoryRow> byWarehouse() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("warehouseId", 1 + ThreadLocalRandom.current().nextInt(warehouses));
+        return search(params);
+    }
+
+    /**
+     * 按完整商品名称，搜索索引解析出一个商品ID后走 uk_product_warehouse
+     */
+    @Benchmark
+    public List<InventoryRow> byProductName() {
+        int productId = 1 + ThreadLocalRandom.current().nextInt(rows);
+        Map<String, Object> params = new HashMap<>();
+        params.put("productName", BenchmarkDatabase.PRODUCT_WORDS[productId % BenchmarkDatabase.PRODUCT_WORDS.length] + " " + productId);
+        return search(params);
+    }
+
+    /**
+     * 按常见的名称关键词（约十分之一的商品匹配），匹配数超过上限，改用数据库模糊查询
+     */
+    @Benchmark
+    public List<InventoryRow> byCommonNameWord() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("productName", BenchmarkDatabase.PRODUCT_WORDS[ThreadLocalRandom.current().nextInt(BenchmarkDatabase.PRODUCT_WORDS.length)]);
+        return search(params);
+    }
+
+    /**
+     * 按常见类别（约八分之一的商品），商品ID超过转换上限，由数据库连接商品表按类别过滤
+     */
+    @Benchmark
+    public List<InventoryRow> byCategory() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("category", BenchmarkDatabase.CATEGORIES[ThreadLocalRandom.current().nextInt(BenchmarkDatabase.CATEGORIES.length)]);
+        return search(params);
+    }
+
+    /**
+     * 按冷门类别（千分之一的商品），经 idx_products_category 转换为商品ID后走 uk_product_warehouse，不连接商品表过滤
+     */
+    @Benchmark
+    public List<InventoryRow> byRareCategory() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("category", BenchmarkDatabase.RARE_CATEGORY);
+        return search(params);
+    }
+
+    /**
+     * 只看低库存，走 idx_inventory_low_stock
+     */
+    @Benchmark
+    public List<InventoryRow> lowStock() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("lowStock", true);
+        return search(params);
+    }
+
+    /**
+     * 低库存 + 仓库
+     */
+    @Benchmark
+    public List<InventoryRow> lowStockByWarehouse() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("lowStock", true);
+        params.put("warehouseId", 1 + ThreadLocalRandom.current().nextInt(warehouses));
+        return search(params);
+    }
+
+    /**
+     * 数量区间（约十分之一的库存），走 idx_inventory_quantity
+     */
+    @Benchmark
+    public List<InventoryRow> quantityRange() {
+        int min = ThreadLocalRandom.current().nextInt(BenchmarkDatabase.MAX_QUANTITY * 9 / 10);
+        Map<String, Object> params = new HashMap<>();
+        params.put("minQuantity", min);
+        params.put("maxQuantity", min + BenchmarkDatabase.MAX_QUANTITY / 10);
+        return search(params);
+    }
+}
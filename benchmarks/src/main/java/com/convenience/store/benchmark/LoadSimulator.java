@@ -0,0 +1,346 @@
+package com.convenience.store.benchmark;
+
+import com.convenience.store.entity.Inventory;
+import com.convenience.store.entity.InventoryRow;
+import com.convenience.store.service.InventoryService;
+import com.convenience.store.service.InventoryWriteBuffer;
+import com.convenience.store.service.ProductService;
+import com.convenience.store.service.StockLedgerService;
+import com.convenience.store.util.LatencyHistogram;
+import com.convenience.store.util.MyBatisUtil;
+import com.convenience.store.util.metrics.StatementMetrics;
+import com.convenience.store.util.pool.PoolMetrics;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多终端并发负载模拟器 - 不启动界面，直接以N个收银员和M个库管员线程调用服务层
+ * 每个模拟终端按配置的操作比例随机选择操作，操作之间按指数分布的思考时间等待，
+ * 运行结束后输出每种操作的吞吐量和延迟分位数、最慢的SQL语句和连接池指标，并做一致性校验：
+ * 工作集中每个库存位置的最终数量（快照 + 未合并流水）必须等于初始数量加上所有成功操作的变化量之和，
+ * 不相等说明发生了丢失更新或重复累加，此时进程以退出码2结束。
+ *
+ * 默认在内嵌H2上按 rows 生成数据；指定 -Djdbc.url（以及 jdbc.driver/jdbc.username/jdbc.password）时
+ * 改为连接该数据库，以其中已有的前 positions 条库存记录作为工作集（会真实修改库存数据，只能用于测试库）。
+ *
+ * 用法：java -cp benchmarks.jar com.convenience.store.benchmark.LoadSimulator [--参数=值 ...]
+ * 参数（括号内为默认值）：
+ *   --cashiers (20)           收银员终端数
+ *   --clerks (5)              库管员终端数
+ *   --duration (60)           运行秒数
+ *   --think-ms (100)          平均思考时间（毫秒），0表示不等待
+ *   --positions (200)         工作集库存位置数，越小争用越激烈
+ *   --rows (10000)            H2数据规模
+ *   --shards (1)              H2库存分片数，大于1时按仓库把库存分到多个H2库
+ *   --cashier-mix (lookup:2,sale:4,ledger-sale:2)  默认包含流水出库，与后台合并并发执行
+ *   --clerk-mix (receipt:2,ledger-receipt:2,edit:1,browse:3)
+ *   --max-sale (3) --max-receipt (50)  单次出库/入库的最大数量
+ *   --compact-interval (1)    库存流水后台合并间隔（秒），0表示不启动
+ *   --write-behind-ms (0)     大于0时启用库存写缓冲并以该间隔（毫秒）刷新，sale/receipt 只进入缓冲；
+ *                             日志写在临时目录，校验前停止写缓冲把缓冲中的调整全部写库
+ *   --seed (42)               随机种子
+ * 操作：lookup 按ID查询商品；sale/receipt 原子增减库存；ledger-sale/ledger-receipt 通过库存流水出入库；
+ *       edit 按对话框方式读取后按差额保存；browse 异步加载库存表的一页（即界面翻页时等待的查询）
+ */
+public class LoadSimulator {
+
+    /**
+     * 模拟的操作类型
+     */
+    enum Operation {
+        LOOKUP("lookup"), SALE("sale"), RECEIPT("receipt"), LEDGER_SALE("ledger-sale"),
+        LEDGER_RECEIPT("ledger-receipt"), EDIT("edit"), BROWSE("browse");
+
+        private final String name;
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        static Operation of(String name) {
+            for (Operation operation : values()) {
+                if (operation.name.equals(name)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("未知的操作：" + name);
+        }
+    }
+
+    /**
+     * 一种操作的统计
+     */
+    private static final class OperationStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+    }
+
+    /**
+     * 按权重随机选择操作
+     */
+    private static final class OperationMix {
+        private final Operation[] operations;
+        private final int[] cumulativeWeights;
+
+        private OperationMix(String spec) {
+            Map<Operation, Integer> weights = new LinkedHashMap<>();
+            for (String item : spec.split(",")) {
+                String[] parts = item.trim().split(":");
+                weights.put(Operation.of(parts[0].trim()), parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1);
+            }
+            operations = weights.keySet().toArray(new Operation[0]);
+            cumulativeWeights = new int[operations.length];
+            int total = 0;
+            for (int i = 0; i < operations.length; i++) {
+                total += weights.get(operations[i]);
+                cumulativeWeights[i] = total;
+            }
+        }
+
+        private Operation next(Random random) {
+            int r = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (r < cumulativeWeights[i]) {
+                    return operations[i];
+                }
+            }
+            return operations[operations.length - 1];
+        }
+    }
+
+    private final HarnessOptions options;
+    private final InventoryService inventoryService = new InventoryService();
+    private final ProductService productService = new ProductService();
+    private final StockLedgerService ledgerService = new StockLedgerService();
+    private final Map<Operation, OperationStats> stats = new HashMap<>();
+
+    // 工作集：库存位置及其在运行期间成功应用的变化量之和
+    private List<InventoryRow> positions;
+    private AtomicLongArray appliedDeltas;
+    private volatile boolean running = true;
+
+    private LoadSimulator(HarnessOptions options) {
+        this.options = options;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    public static void main(String[] args) {
+        HarnessOptions.run(args, options -> new LoadSimulator(options).run());
+    }
+
+    private boolean run() throws Exception {
+        int cashiers = options.getInt("cashiers", 20);
+        int clerks = options.getInt("clerks", 5);
+        int duration = options.getInt("duration", 60);
+        int compactInterval = options.getInt("compact-interval", 1);
+        long seed = options.getLong("seed", 42);
+        OperationMix cashierMix = new OperationMix(options.get("cashier-mix", "lookup:2,sale:4,ledger-sale:2"));
+        OperationMix clerkMix = new OperationMix(options.get("clerk-mix", "receipt:2,ledger-receipt:2,edit:1,browse:3"));
+
+        if (System.getProperty("jdbc.url") == null) {
+            BenchmarkDatabase.start(options.getInt("rows", 10000), null);
+            BenchmarkDatabase.startShards(options.getInt("shards", 1));
+        }
+        positions = inventoryService.searchInventoryRows(null, options.getInt("positions", 200), null);
+        if (positions.isEmpty()) {
+            throw new IllegalStateException("数据库中没有库存记录");
+        }
+        appliedDeltas = new AtomicLongArray(positions.size());
+        int[] initial = readQuantities();
+        if (compactInterval > 0) {
+            StockLedgerService.startCompactor(compactInterval);
+        }
+        int writeBehindMillis = options.getInt("write-behind-ms", 0);
+        if (writeBehindMillis > 0) {
+            InventoryWriteBuffer.start(Files.createTempDirectory("write-behind"), writeBehindMillis, 1000);
+        }
+        StatementMetrics.resetAll();
+
+        System.out.println("模拟 " + cashiers + " 个收银员、" + clerks + " 个库管员，工作集 " + positions.size()
+                + " 个库存位置，运行 " + duration + " 秒");
+        List<Thread> terminals = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < cashiers + clerks; i++) {
+            OperationMix mix = i < cashiers ? cashierMix : clerkMix;
+            Random random = new Random(seed + i);
+            Thread thread = new Thread(() -> terminalLoop(mix, random, start),
+                    (i < cashiers ? "cashier-" : "clerk-") + i);
+            thread.setDaemon(true);
+            thread.start();
+            terminals.add(thread);
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        Thread.sleep(duration * 1000L);
+        running = false;
+        for (Thread thread : terminals) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        InventoryWriteBuffer.stop();
+        StockLedgerService.stopCompactor();
+
+        report(seconds);
+        return checkConsistency(initial);
+    }
+
+    private void terminalLoop(OperationMix mix, Random random, CountDownLatch start) {
+        double thinkMs = options.getDouble("think-ms", 100);
+        int maxSale = options.getInt("max-sale", 3);
+        int maxReceipt = options.getInt("max-receipt", 50);
+        try {
+            start.await();
+        } catch (InterruptedException e) {
+            return;
+        }
+        while (running) {
+            Operation operation = mix.next(random);
+            int index = random.nextInt(positions.size());
+            long begin = System.nanoTime();
+            boolean ok = execute(operation, index, random, maxSale, maxReceipt);
+            OperationStats operationStats = stats.get(operation);
+            operationStats.latency.recordNanos(System.nanoTime() - begin);
+            (ok ? operationStats.succeeded : operationStats.rejected).increment();
+            if (thinkMs > 0) {
+                try {
+                    // 指数分布的思考时间，模拟终端操作的随机间隔
+                    Thread.sleep((long) (-Math.log(1 - random.nextDouble()) * thinkMs));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // 执行一次操作，成功修改库存时把变化量记入工作集
+    private boolean execute(Operation operation, int index, Random random, int maxSale, int maxReceipt) {
+        InventoryRow position = positions.get(index);
+        Integer productId = position.getProductId();
+        Integer warehouseId = position.getWarehouseId();
+        switch (operation) {
+            case LOOKUP:
+                return productService.getProductById(productId) != null;
+            case SALE: {
+                int quantity = 1 + random.nextInt(maxSale);
+                return applied(index, inventoryService.adjustQuantity(productId, warehouseId, -quantity), -quantity);
+            }
+            case RECEIPT: {
+                int quantity = 1 + random.nextInt(maxReceipt);
+                return applied(index, inventoryService.adjustQuantity(productId, warehouseId, quantity), quantity);
+            }
+            case LEDGER_SALE: {
+                int quantity = 1 + random.nextInt(maxSale);
+                return applied(index, ledgerService.recordSale(productId, warehouseId, quantity, null, "SIM"), -quantity);
+            }
+            case LEDGER_RECEIPT: {
+                int quantity = 1 + random.nextInt(maxReceipt);
+                return applied(index, ledgerService.recordReceipt(productId, warehouseId, quantity, null, "SIM"), quantity);
+            }
+            case EDIT: {
+                // 与库存对话框相同：读取记录，修改数量后按差额保存
+                Inventory inventory = inventoryService.getInventoryById(position.getInventoryId());
+                if (inventory == null) {
+                    return false;
+                }
+                int original = inventory.getQuantity();
+                int delta = random.nextInt(11) - 5;
+                inventory.setQuantity(Math.max(0, original + delta));
+                return applied(index, inventoryService.updateInventoryByDelta(inventory, original), inventory.getQuantity() - original);
+            }
+            case BROWSE: {
+                Map<String, Object> params = new HashMap<>();
+                params.put("warehouseId", warehouseId);
+                return inventoryService.searchInventoryRowsAsync(null, 200, params).join() != null;
+            }
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    private boolean applied(int index, boolean ok, int delta) {
+        if (ok) {
+            appliedDeltas.addAndGet(index, delta);
+        }
+        return ok;
+    }
+
+    // 读取工作集的当前数量（快照 + 未合并流水）
+    private int[] readQuantities() {
+        int[] quantities = new int[positions.size()];
+        for (int i = 0; i < positions.size(); i++) {
+            InventoryRow position = positions.get(i);
+            quantities[i] = ledgerService.getCurrentQuantity(position.getProductId(), position.getWarehouseId());
+        }
+        return quantities;
+    }
+
+    private void report(double seconds) {
+        System.out.println();
+        System.out.printf("%-16s %10s %10s %10s %10s %10s %10s %10s%n",
+                "操作", "成功", "拒绝", "次/秒", "p50(ms)", "p95(ms)", "p99(ms)", "max(ms)");
+        long total = 0;
+        for (Operation operation : Operation.values()) {
+            OperationStats operationStats = stats.get(operation);
+            LatencyHistogram latency = operationStats.latency;
+            if (latency.getCount() == 0) {
+                continue;
+            }
+            total += latency.getCount();
+            System.out.printf("%-16s %10d %10d %10.1f %10.2f %10.2f %10.2f %10.2f%n",
+                    operation.name, operationStats.succeeded.sum(), operationStats.rejected.sum(),
+                    latency.getCount() / seconds,
+                    latency.getPercentileMicros(50) / 1000.0, latency.getPercentileMicros(95) / 1000.0,
+                    latency.getPercentileMicros(99) / 1000.0, latency.getMaxMicros() / 1000.0);
+        }
+        System.out.printf("合计 %.1f 次/秒，运行 %.1f 秒%n", total / seconds, seconds);
+
+        System.out.println();
+        System.out.println("累计耗时最多的SQL语句：");
+        List<StatementMetrics.StatementStats> statements = StatementMetrics.getAll();
+        for (int i = 0; i < Math.min(10, statements.size()); i++) {
+            System.out.println("  " + statements.get(i));
+        }
+        PoolMetrics pool = MyBatisUtil.getPoolMetrics();
+        if (pool != null) {
+            System.out.println("连接池：" + pool);
+        }
+    }
+
+    // 一致性校验：最终数量 = 初始数量 + 成功操作的变化量之和
+    private boolean checkConsistency(int[] initial) {
+        int[] actual = readQuantities();
+        int mismatched = 0;
+        long drift = 0;
+        for (int i = 0; i < positions.size(); i++) {
+            long expected = initial[i] + appliedDeltas.get(i);
+            if (actual[i] != expected) {
+                if (mismatched < 10) {
+                    InventoryRow position = positions.get(i);
+                    System.out.println("  不一致：商品 " + position.getProductId() + " 仓库 " + position.getWarehouseId()
+                            + " 期望 " + expected + " 实际 " + actual[i]);
+                }
+                mismatched++;
+                drift += Math.abs(actual[i] - expected);
+            }
+        }
+        System.out.println();
+        if (mismatched == 0) {
+            System.out.println("一致性校验通过：" + positions.size() + " 个库存位置的最终数量与成功操作的变化量之和一致");
+            return true;
+        }
+        System.out.println("一致性校验失败：" + mismatched + " 个库存位置不一致，合计偏差 " + drift);
+        return false;
+    }
+}
@@ -0,0 +1,59 @@
+package com.convenience.store.benchmark;
+
+import com.convenience.store.service.LowStockMonitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 低库存监控基准：从数据库载入 rows 个库存位置后，测量单次增量更新和查询最紧缺商品的耗时
+ * 约 5% 的位置处于低库存，随机增减会让位置在低库存堆中进出
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx4g"})
+public class LowStockMonitorBenchmark {
+
+    @Param({"1000"})
+    public int rows;
+
+    private final LowStockMonitor monitor = LowStockMonitor.getInstance();
+    private int warehouses;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkDatabase.start(rows, null);
+        warehouses = BenchmarkDatabase.getWarehouseCount();
+        if (!monitor.reload()) {
+            throw new IllegalStateException("低库存监控载入失败");
+        }
+    }
+
+    @Benchmark
+    public void applyDelta() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int productId = 1 + random.nextInt(rows);
+        monitor.applyDelta(productId, 1 + productId % warehouses, random.nextInt(-20, 21));
+    }
+
+    @Benchmark
+    public List<LowStockMonitor.Alert> getMostCritical() {
+        return monitor.getMostCritical(10);
+    }
+}
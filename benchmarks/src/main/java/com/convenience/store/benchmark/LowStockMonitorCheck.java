@@ -0,0 +1,237 @@
+package com.convenience.store.benchmark;
+
+import com.convenience.store.entity.InventoryRow;
+import com.convenience.store.service.DeltaSyncService;
+import com.convenience.store.service.InventoryService;
+import com.convenience.store.service.InventoryWriteBuffer;
+import com.convenience.store.service.LowStockMonitor;
+import com.convenience.store.service.StockLedgerService;
+import com.convenience.store.util.shard.ShardRouter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 低库存监控一致性检查 - 验证监控中的数量在各种载入和同步路径下都等于当前库存（getCurrentQuantity）：
+ * 1. 记录一批尚未合并的入库流水（含一个还没有库存记录的位置）后重新载入，监控数量应包含未合并的入库
+ * 2. 后台合并把这些流水汇总进快照后，监控数量不应变化
+ * 3. 启用写缓冲（刷新间隔很长），缓冲一批调整并再记录一批入库流水后重新载入，监控数量应等于当前库存加上缓冲中的变化量
+ * 4. 一个线程不断经写缓冲调整库存、另一个线程不断记录入库流水，同时反复重新载入；
+ *    写入停止后监控数量应等于当前库存加上缓冲中的变化量，载入期间的修改既没有被扫描结果覆盖，也没有重复计入
+ * 5. 模拟其他终端修改最小库存（直接改库），由增量同步拉到后更新监控，数量仍应包含未合并的入库和缓冲中的变化量
+ * 6. 停止写缓冲（写库）后，监控数量应等于当前库存
+ * 任何一项不通过时以退出码2结束。
+ *
+ * 用法：java -cp benchmarks.jar com.convenience.store.benchmark.LowStockMonitorCheck [--参数=值 ...]
+ * 参数（括号内为默认值）：
+ *   --positions (50)        参与检查的库存位置数
+ *   --rows (1000)           H2数据规模
+ *   --shards (1)            把库存分到的H2库数
+ *   --seed (42)             随机种子
+ *   --reload-seconds (3)    第4项并发写入和反复载入的时长
+ */
+public class LowStockMonitorCheck {
+    // 增量同步的拉取间隔（秒）
+    private static final int SYNC_INTERVAL_SECONDS = 1;
+    // 第5项改成的最小库存，大于前几项入库后的数量，修改后的位置都处于低库存
+    private static final int RAISED_MIN_STOCK = 1_000_000;
+
+    private final HarnessOptions options;
+    private final InventoryService inventoryService = new InventoryService();
+    private final StockLedgerService ledgerService = new StockLedgerService();
+    private final LowStockMonitor monitor = LowStockMonitor.getInstance();
+    private final List<String> failures = new ArrayList<>();
+
+    private LowStockMonitorCheck(HarnessOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) {
+        HarnessOptions.run(args, options -> new LowStockMonitorCheck(options).run());
+    }
+
+    private boolean run() throws Exception {
+        BenchmarkDatabase.start(options.getInt("rows", 1000), null);
+        BenchmarkDatabase.startShards(options.getInt("shards", 1));
+        Random random = new Random(options.getInt("seed", 42));
+
+        List<InventoryRow> positions = inventoryService.searchInventoryRows(null, options.getInt("positions", 50), null);
+        // 期望值为 getCurrentQuantity 加上缓冲中的变化量，键为"商品ID,仓库ID"
+        Map<String, Integer> buffered = new LinkedHashMap<>();
+        for (InventoryRow position : positions) {
+            buffered.put(key(position.getProductId(), position.getWarehouseId()), 0);
+        }
+        // 商品1的库存在仓库2（见BenchmarkDatabase），仓库1还没有库存记录
+        buffered.put(key(1, 1), 0);
+
+        // 1. 未合并的入库流水
+        recordReceipts(positions, random);
+        if (!ledgerService.recordReceipt(1, 1, 7, null, "check-new-position")) {
+            throw new IllegalStateException("记录入库失败");
+        }
+        reload();
+        compare("载入未合并的入库后", buffered);
+
+        // 2. 合并进快照
+        ledgerService.compactOnce();
+        compare("合并流水后", buffered);
+
+        // 3. 写缓冲中的调整 + 新的未合并入库
+        Path journal = Files.createTempDirectory("low-stock-check");
+        InventoryWriteBuffer.start(journal, 3_600_000L, Integer.MAX_VALUE);
+        try {
+            for (InventoryRow position : positions) {
+                int delta = random.nextBoolean() ? 1 + random.nextInt(30) : -(1 + random.nextInt(5));
+                if (inventoryService.adjustQuantity(position.getProductId(), position.getWarehouseId(), delta)) {
+                    buffered.merge(key(position.getProductId(), position.getWarehouseId()), delta, Integer::sum);
+                }
+            }
+            recordReceipts(positions, random);
+            reload();
+            compare("启用写缓冲后重新载入", buffered);
+
+            // 4. 载入期间的并发写入
+            reloadWhileWriting(positions, buffered, options.getInt("reload-seconds", 3), random.nextLong());
+            compare("载入期间并发写入后", buffered);
+
+            // 5. 其他终端修改最小库存，增量同步拉到后更新监控
+            DeltaSyncService.start(SYNC_INTERVAL_SECONDS);
+            // 第一次拉取只记录水位线
+            Thread.sleep(SYNC_INTERVAL_SECONDS * 1500L);
+            List<InventoryRow> changed = positions.subList(0, Math.min(10, positions.size()));
+            recordReceipts(changed, random);
+            for (InventoryRow position : changed) {
+                updateMinStock(position, RAISED_MIN_STOCK);
+            }
+            Thread.sleep(SYNC_INTERVAL_SECONDS * 3000L);
+            DeltaSyncService.stop();
+            for (InventoryRow position : changed) {
+                if (monitor.getMostCritical(Integer.MAX_VALUE).stream().noneMatch(alert ->
+                        alert.getInventoryId() != null && alert.getInventoryId().equals(position.getInventoryId())
+                                && alert.getMinStock() == RAISED_MIN_STOCK)) {
+                    failures.add("增量同步后库存 " + position.getInventoryId() + " 的最小库存修改没有反映在监控中");
+                }
+            }
+            compare("增量同步后", buffered);
+        } finally {
+            // 6. 写库
+            InventoryWriteBuffer.stop();
+        }
+        buffered.replaceAll((key, delta) -> 0);
+        compare("写缓冲写库后", buffered);
+
+        System.out.println();
+        if (failures.isEmpty()) {
+            System.out.println("检查通过：监控数量在载入、合并、写缓冲、并发载入和增量同步后都等于当前库存");
+            return true;
+        }
+        System.out.println("检查失败：");
+        for (String failure : failures) {
+            System.out.println("  " + failure);
+        }
+        return false;
+    }
+
+    // 两个线程分别经写缓冲调整库存和记录入库流水，主线程反复重新载入，直到指定时长
+    private void reloadWhileWriting(List<InventoryRow> positions, Map<String, Integer> buffered, int seconds, long seed)
+            throws Exception {
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger adjustments = new AtomicInteger();
+        AtomicInteger receipts = new AtomicInteger();
+        // 只有调整线程修改 buffered，join 之后主线程才读取
+        Thread adjuster = new Thread(() -> {
+            Random random = new Random(seed);
+            while (!stop.get()) {
+                InventoryRow position = positions.get(random.nextInt(positions.size()));
+                int delta = random.nextBoolean() ? 1 + random.nextInt(30) : -(1 + random.nextInt(5));
+                if (inventoryService.adjustQuantity(position.getProductId(), position.getWarehouseId(), delta)) {
+                    buffered.merge(key(position.getProductId(), position.getWarehouseId()), delta, Integer::sum);
+                    adjustments.incrementAndGet();
+                }
+            }
+        }, "check-adjuster");
+        Thread receiver = new Thread(() -> {
+            Random random = new Random(seed + 1);
+            while (!stop.get()) {
+                InventoryRow position = positions.get(random.nextInt(positions.size()));
+                if (ledgerService.recordReceipt(position.getProductId(), position.getWarehouseId(), 1 + random.nextInt(100), null, "check")) {
+                    receipts.incrementAndGet();
+                }
+            }
+        }, "check-receiver");
+        adjuster.start();
+        receiver.start();
+        int reloads = 0;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        try {
+            while (System.nanoTime() < deadline) {
+                reload();
+                reloads++;
+            }
+        } finally {
+            stop.set(true);
+            adjuster.join();
+            receiver.join();
+        }
+        System.out.println("并发写入期间载入 " + reloads + " 次，经写缓冲调整 " + adjustments.get() + " 次，记录入库 " + receipts.get() + " 次");
+    }
+
+    private void recordReceipts(List<InventoryRow> positions, Random random) {
+        for (InventoryRow position : positions) {
+            if (!ledgerService.recordReceipt(position.getProductId(), position.getWarehouseId(),
+                    1 + random.nextInt(100), null, "check")) {
+                throw new IllegalStateException("记录入库失败");
+            }
+        }
+    }
+
+    private void reload() {
+        if (!monitor.reload()) {
+            throw new IllegalStateException("低库存监控载入失败");
+        }
+    }
+
+    // 监控中的数量应等于 getCurrentQuantity 加上缓冲中的变化量
+    private void compare(String stage, Map<String, Integer> buffered) {
+        int mismatched = 0;
+        for (Map.Entry<String, Integer> entry : buffered.entrySet()) {
+            String[] ids = entry.getKey().split(",");
+            int productId = Integer.parseInt(ids[0]);
+            int warehouseId = Integer.parseInt(ids[1]);
+            int expected = ledgerService.getCurrentQuantity(productId, warehouseId) + entry.getValue();
+            Integer actual = monitor.getQuantity(productId, warehouseId);
+            if (actual == null || actual != expected) {
+                failures.add(stage + "：库存位置 " + entry.getKey() + " 期望 " + expected + " 监控中为 " + actual);
+                mismatched++;
+            }
+        }
+        System.out.println(stage + "：检查 " + buffered.size() + " 个库存位置，不一致 " + mismatched + " 个");
+    }
+
+    // 绕过服务层直接改库，模拟其他终端的修改
+    private static void updateMinStock(InventoryRow position, int minStock) throws Exception {
+        int shard = ShardRouter.shardOf(position.getWarehouseId());
+        String url = shard == 0 ? BenchmarkDatabase.URL : String.format(BenchmarkDatabase.SHARD_URL, shard);
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             PreparedStatement ps = connection.prepareStatement("UPDATE inventory SET min_stock = ? WHERE inventory_id = ?")) {
+            ps.setInt(1, minStock);
+            ps.setInt(2, position.getInventoryId());
+            ps.executeUpdate();
+        }
+    }
+
+    private static String key(int productId, int warehouseId) {
+        return productId + "," + warehouseId;
+    }
+}
@@ -0,0 +1,69 @@
+package com.convenience.store.benchmark;
+
+import com.convenience.store.dao.SyncDao;
+import com.convenience.store.entity.Inventory;
+import com.convenience.store.service.InventoryService;
+import com.convenience.store.util.MyBatisUtil;
+import org.apache.ibatis.session.SqlSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接池对比基准：50个线程并发调用服务层，
+ * 比较自定义连接池（development 环境）和MyBatis自带连接池（pooled 环境）的调用耗时分布，两者的最大连接数都是10
+ * 用采样耗时而不是吞吐量模式：自带连接池排队不公平，部分线程长时间拿不到连接，
+ * JMH按线程累加的吞吐量会被少数一直拿到连接的线程放大，看不出其他线程的等待
+ * getAllInventory 模拟50个收银终端同时查询全量库存，包含查询和结果映射；
+ * 二级缓存在启动后关闭，否则一个线程回填的结果会被其他线程命中，测量的就不再是连接池；
+ * shortQuery 执行一条不走二级缓存的短查询，测量的主要是借还连接和排队的开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(50)
+public class PoolBenchmark {
+    @Param({"development", "pooled"})
+    public String environment;
+
+    @Param({"1000"})
+    public int rows;
+
+    private final InventoryService inventoryService = new InventoryService();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkDatabase.start(rows, environment);
+        // 只影响之后打开的会话：执行器不再包装二级缓存
+        MyBatisUtil.initializeAsync().join().getConfiguration().setCacheEnabled(false);
+    }
+
+    @Benchmark
+    public List<Inventory> getAllInventory() {
+        return inventoryService.getAllInventory();
+    }
+
+    @Benchmark
+    public LocalDateTime shortQuery() {
+        try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
+            return sqlSession.getMapper(SyncDao.class).getDatabaseTime();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.convenience.store.benchmark;
+
+import com.convenience.store.entity.Product;
+import com.convenience.store.service.ProductService;
+import com.convenience.store.util.cache.StoreCache;
+import com.convenience.store.util.replica.ReplicaRouter;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 只读副本路由检查 - 用两个互相独立的数据库实例（主库和"副本"）验证读写分离的路由规则，
+ * 由本工具模拟复制：按指定的复制延迟把主库的心跳时间抄到副本上，数据本身不复制。
+ * 副本上第一个商品的名称被改为标记值，读到标记值即说明查询走了副本。依次检查：
+ * 1. 副本跟上主库时，只读查询走副本
+ * 2. 写入提交后立即读走主库（读己之写），副本追上这次写入后恢复读副本
+ * 3. 停止复制，延迟超过 replica.maxLagMillis 后读回退主库；恢复复制后重新读副本
+ * 任何一项不通过时以退出码2结束。
+ *
+ * 默认使用两个内嵌H2内存库；指定 -Djdbc.url 和 -Dreplica.url（以及各自的用户名密码）时使用这两个库，
+ * 两个库都必须已建表且数据相同、副本可写，工具会修改副本上的心跳和第一个商品名称，结束后恢复名称。
+ * 用法：java -cp benchmarks.jar com.convenience.store.benchmark.ReplicaRoutingCheck [--参数=值 ...]
+ * 参数（括号内为默认值）：
+ *   --delay (300)      模拟的复制延迟（毫秒）
+ *   --max-lag (1000)   允许的最大复制延迟（毫秒），即 replica.maxLagMillis
+ *   --heartbeat (100)  副本心跳间隔（毫秒）
+ *   --rows (1000)      H2数据规模
+ */
+public class ReplicaRoutingCheck {
+    private static final String REPLICA_URL = "jdbc:h2:mem:bench_replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    private static final String MARKER = "副本标记";
+    private static final String PRODUCT_NAMESPACE = "com.convenience.store.dao.ProductDao";
+
+    private final HarnessOptions options;
+    private final ProductService productService = new ProductService();
+    private final List<String> failures = new ArrayList<>();
+
+    private volatile boolean replicating = true;
+    private volatile boolean running = true;
+
+    private ReplicaRoutingCheck(HarnessOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) {
+        HarnessOptions.run(args, options -> new ReplicaRoutingCheck(options).run());
+    }
+
+    private boolean run() throws Exception {
+        int delay = options.getInt("delay", 300);
+        int maxLag = options.getInt("max-lag", 1000);
+        int heartbeat = options.getInt("heartbeat", 100);
+
+        if (System.getProperty("jdbc.url") == null) {
+            BenchmarkDatabase.start(options.getInt("rows", 1000), null);
+            copyDatabase(BenchmarkDatabase.URL, REPLICA_URL);
+            System.setProperty("replica.url", REPLICA_URL);
+        }
+        if (System.getProperty("replica.url") == null) {
+            throw new IllegalStateException("指定 -Djdbc.url 时必须同时指定 -Dreplica.url");
+        }
+        System.setProperty("replica.maxLagMillis", String.valueOf(maxLag));
+        System.setProperty("replica.heartbeatInterval", String.valueOf(heartbeat));
+
+        Product first = productService.getProductPage(null, 1, null).get(0);
+        String originalName = first.getProductName();
+        try (Connection primary = connect("jdbc"); Connection replica = connect("replica")) {
+            setProductName(replica, first.getProductId(), MARKER);
+            Thread replicator = new Thread(() -> replicate(primary, replica, delay), "replicator");
+            replicator.setDaemon(true);
+            replicator.start();
+            try {
+                check(first, delay, maxLag, heartbeat);
+            } finally {
+                running = false;
+                replicator.join();
+                setProductName(replica, first.getProductId(), originalName);
+            }
+        }
+
+        System.out.println();
+        System.out.printf("只读会话：副本 %d 次，主库 %d 次%n", ReplicaRouter.getReplicaReads(), ReplicaRouter.getPrimaryReads());
+        if (failures.isEmpty()) {
+            System.out.println("检查通过");
+            return true;
+        }
+        System.out.println("检查失败：");
+        for (String failure : failures) {
+            System.out.println("  " + failure);
+        }
+        return false;
+    }
+
+    private void check(Product first, int delay, int maxLag, int heartbeat) throws InterruptedException {
+        long settle = delay + 4L * heartbeat + 1000;
+
+        // 1. 副本跟上时读副本
+        long waited = waitFor(true, settle);
+        report("同步时读副本", waited >= 0, waited);
+
+        // 2. 写入后立即读主库，副本追上后恢复读副本
+        Product other = productService.getProductPage(first.getProductId(), 1, null).get(0);
+        if (!productService.updateProduct(other)) {
+            failures.add("写入商品失败");
+            return;
+        }
+        boolean primaryAfterWrite = !readsReplica();
+        report("写入后立即读主库", primaryAfterWrite, 0);
+        waited = waitFor(true, settle);
+        report("副本追上写入后恢复读副本（模拟延迟 " + delay + "ms）", waited >= 0, waited);
+
+        // 3. 停止复制，延迟超过阈值后回退主库
+        replicating = false;
+        waited = waitFor(false, maxLag + 4L * heartbeat + 1000);
+        // 停止时副本已落后约 delay 毫秒，再过 maxLag - delay 毫秒延迟超过阈值
+        report("复制停止、延迟超过 " + maxLag + "ms 后读主库", waited >= maxLag - delay - heartbeat, waited);
+        System.out.println("  当前测得延迟 " + ReplicaRouter.getLagMillis() + "ms");
+        replicating = true;
+        waited = waitFor(true, settle);
+        report("恢复复制后重新读副本", waited >= 0, waited);
+    }
+
+    // 等待只读查询的路由变为期望的目标，返回等待的毫秒数，超时返回-1
+    private long waitFor(boolean replica, long timeoutMillis) throws InterruptedException {
+        long start = System.nanoTime();
+        while (true) {
+            long waited = (System.nanoTime() - start) / 1_000_000;
+            if (readsReplica() == replica) {
+                return waited;
+            }
+            if (waited > timeoutMillis) {
+                return -1;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    // 执行一次只读查询，按读到的商品名称判断走了副本还是主库；先清空二级缓存，确保查询到达数据库
+    private boolean readsReplica() {
+        StoreCache.invalidate(PRODUCT_NAMESPACE);
+        return MARKER.equals(productService.getProductPage(null, 1, null).get(0).getProductName());
+    }
+
+    private void report(String name, boolean passed, long waitedMillis) {
+        System.out.printf("%s %s%s%n", passed ? "PASS" : "FAIL", name, waitedMillis > 0 ? "（" + waitedMillis + "ms）" : "");
+        if (!passed) {
+            failures.add(name);
+        }
+    }
+
+    // 模拟复制：定期读取主库心跳，延迟 delay 毫秒后写到副本
+    private void replicate(Connection primary, Connection replica, int delay) {
+        Deque<Object[]> backlog = new ArrayDeque<>();
+        try (PreparedStatement read = primary.prepareStatement("SELECT beat_at FROM replica_heartbeat WHERE heartbeat_id = 1");
+             PreparedStatement write = replica.prepareStatement("UPDATE replica_heartbeat SET beat_at = ? WHERE heartbeat_id = 1")) {
+            while (running) {
+                long now = System.nanoTime();
+                if (replicating) {
+                    try (ResultSet rs = read.executeQuery()) {
+                        if (rs.next()) {
+                            backlog.addLast(new Object[]{now, rs.getTimestamp(1)});
+                        }
+                    }
+                    Timestamp latest = null;
+                    while (!backlog.isEmpty() && now - (long) backlog.peekFirst()[0] >= delay * 1_000_000L) {
+                        latest = (Timestamp) backlog.removeFirst()[1];
+                    }
+                    if (latest != null) {
+                        write.setTimestamp(1, latest);
+                        write.executeUpdate();
+                    }
+                } else {
+                    backlog.clear();
+                }
+                Thread.sleep(10);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 用 jdbc.* 或 replica.* 系统属性连接主库或副本，副本的用户名密码未指定时与主库相同
+    private static Connection connect(String prefix) throws SQLException {
+        String username = System.getProperty(prefix + ".username", System.getProperty("jdbc.username"));
+        String password = System.getProperty(prefix + ".password", System.getProperty("jdbc.password"));
+        Connection connection = DriverManager.getConnection(System.getProperty(prefix + ".url"), username, password);
+        connection.setAutoCommit(true);
+        return connection;
+    }
+
+    private static void setProductName(Connection connection, int productId, String name) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("UPDATE products SET product_name = ? WHERE product_id = ?")) {
+            statement.setString(1, name);
+            statement.setInt(2, productId);
+            statement.executeUpdate();
+        }
+    }
+
+    // 把H2库导出为SQL脚本后在另一个内存库中执行，得到数据相同的独立副本
+    private static void copyDatabase(String sourceUrl, String targetUrl) throws SQLException {
+        List<String> script = new ArrayList<>();
+        try (Connection source = DriverManager.getConnection(sourceUrl, "sa", "");
+             Statement statement = source.createStatement();
+             ResultSet rs = statement.executeQuery("SCRIPT")) {
+            while (rs.next()) {
+                script.add(rs.getString(1));
+            }
+        }
+        try (Connection target = DriverManager.getConnection(targetUrl, "sa", "");
+             Statement statement = target.createStatement()) {
+            for (String sql : script) {
+                statement.execute(sql);
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.convenience.store.benchmark;
+
+import com.convenience.store.dao.InventoryDao;
+import com.convenience.store.entity.Inventory;
+import com.convenience.store.entity.InventoryRow;
+import com.convenience.store.entity.Product;
+import com.convenience.store.service.InventoryService;
+import com.convenience.store.service.ProductService;
+import com.convenience.store.service.UserService;
+import com.convenience.store.util.MyBatisUtil;
+import com.convenience.store.util.cache.StoreCache;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务层热点路径基准：全量库存查询、商品搜索、登录、插入和更新（库存分页和过滤搜索见 InventorySearchBenchmark），
+ * 以及全部库存按完整对象图映射和按扁平列表行映射的对比（启动时输出两者每行的结果集大小，加 -prof gc 可看每次调用的内存分配）
+ * rows 为数据规模（用户、商品、库存各 rows 行），可用 -p rows=1000,100000,1000000 指定；
+ * cache=cold 时每次调用前清空相关命名空间的二级缓存，测量的是数据库查询和结果映射，
+ * cache=warm 时保留缓存，测量的是缓存命中（反序列化复制）的开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx4g"})
+public class ServiceBenchmark {
+    private static final String USER_NAMESPACE = "com.convenience.store.dao.UserDao";
+    private static final String PRODUCT_NAMESPACE = "com.convenience.store.dao.ProductDao";
+    private static final String INVENTORY_NAMESPACE = "com.convenience.store.dao.InventoryDao";
+
+    @Param({"1000"})
+    public int rows;
+
+    @Param({"cold"})
+    public String cache;
+
+    private final InventoryService inventoryService = new InventoryService();
+    private final ProductService productService = new ProductService();
+    private final UserService userService = new UserService();
+    private boolean cold;
+    private int warehouses;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkDatabase.start(rows, null);
+        cold = "cold".equals(cache);
+        warehouses = BenchmarkDatabase.getWarehouseCount();
+        // 内存搜索索引只需构建一次
+        productService.rebuildSearchIndex();
+        System.out.println("全部库存每行结果集大小（按MySQL文本协议估算）：完整对象图 "
+                + payloadBytesPerRow("getAllInventory") + " 字节，扁平列表行 "
+                + payloadBytesPerRow("streamAllInventoryRows") + " 字节");
+    }
+
+    // 执行映射语句的SQL，按文本协议（每个值一个长度字节加上UTF-8文本）估算每行传输的字节数
+    private static long payloadBytesPerRow(String statement) throws SQLException {
+        try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
+            String sql = sqlSession.getConfiguration().getMappedStatement(INVENTORY_NAMESPACE + "." + statement)
+                    .getBoundSql(null).getSql();
+            long bytes = 0;
+            long count = 0;
+            try (PreparedStatement ps = sqlSession.getConnection().prepareStatement(sql);
+                 ResultSet rs = ps.executeQuery()) {
+                int columns = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    for (int i = 1; i <= columns; i++) {
+                        String value = rs.getString(i);
+                        bytes += 1 + (value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length);
+                    }
+                    count++;
+                }
+            }
+            return count == 0 ? 0 : bytes / count;
+        }
+    }
+
+    private void invalidate(String namespace) {
+        if (cold) {
+            StoreCache.invalidate(namespace);
+        }
+    }
+
+    @Benchmark
+    public List<Inventory> getAllInventory() {
+        invalidate(INVENTORY_NAMESPACE);
+        return inventoryService.getAllInventory();
+    }
+
+    /**
+     * 全部库存按完整对象图映射（库存 + 商品 + 仓库 + 仓库负责人，嵌套结果映射），不走二级缓存
+     */
+    @Benchmark
+    public List<Inventory> allInventoryEntityGraph() {
+        StoreCache.invalidate(INVENTORY_NAMESPACE);
+        try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
+            return sqlSession.getMapper(InventoryDao.class).getAllInventory();
+        }
+    }
+
+    /**
+     * 全部库存按扁平列表行映射（只取表格和导出需要的列），与上面读取同样的行
+     */
+    @Benchmark
+    public List<InventoryRow> allInventoryFlatRows() throws IOException {
+        List<InventoryRow> rows = new ArrayList<>();
+        try (SqlSession sqlSession = MyBatisUtil.getSqlSession();
+             Cursor<InventoryRow> cursor = sqlSession.getMapper(InventoryDao.class).streamAllInventoryRows()) {
+            cursor.forEach(rows::add);
+        }
+        return rows;
+    }
+
+    /**
+     * 按商品名称模糊搜索，走数据库 LIKE '%关键词%'
+     */
+    @Benchmark
+    public List<Product> searchProducts() {
+        invalidate(PRODUCT_NAMESPACE);
+        Map<String, Object> params = new HashMap<>();
+        params.put("productName", randomWord());
+        return productService.searchProducts(params);
+    }
+
+    /**
+     * 按商品名称搜索，走内存n-gram索引并按相关度排序
+     */
+    @Benchmark
+    public List<Product> searchProductsRanked() {
+        return productService.searchProductsRanked(randomWord(), 200);
+    }
+
+    @Benchmark
+    public boolean login() {
+        invalidate(USER_NAMESPACE);
+        return userService.login("user" + (1 + ThreadLocalRandom.current().nextInt(rows)), BenchmarkDatabase.PASSWORD);
+    }
+
+    @Benchmark
+    public boolean addProduct() {
+        Product product = new Product();
+        product.setProductName(randomWord() + " 新品");
+        product.setCategory(BenchmarkDatabase.CATEGORIES[0]);
+        product.setUnit("件");
+        product.setPrice(9.9);
+        return productService.addProduct(product);
+    }
+
+    /**
+     * 对话框保存：按ID以绝对值更新一条库存
+     */
+    @Benchmark
+    public boolean updateInventory() {
+        int id = 1 + ThreadLocalRandom.current().nextInt(rows);
+        Inventory inventory = new Inventory();
+        inventory.setInventoryId(id);
+        inventory.setProductId(id);
+        inventory.setWarehouseId(1 + id % warehouses);
+        inventory.setQuantity(ThreadLocalRandom.current().nextInt(BenchmarkDatabase.MAX_QUANTITY));
+        inventory.setMinStock(BenchmarkDatabase.MIN_STOCK);
+        return inventoryService.updateInventory(inventory);
+    }
+
+    /**
+     * 原子增量调整库存（带非负校验）
+     */
+    @Benchmark
+    public boolean adjustQuantity() {
+        int id = 1 + ThreadLocalRandom.current().nextInt(rows);
+        return inventoryService.adjustQuantity(id, 1 + id % warehouses, ThreadLocalRandom.current().nextBoolean() ? 1 : -1);
+    }
+
+    private static String randomWord() {
+        return BenchmarkDatabase.PRODUCT_WORDS[ThreadLocalRandom.current().nextInt(BenchmarkDatabase.PRODUCT_WORDS.length)];
+    }
+}
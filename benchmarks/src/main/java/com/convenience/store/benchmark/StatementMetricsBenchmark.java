@@ -0,0 +1,41 @@
+package com.convenience.store.benchmark;
+
+import com.convenience.store.util.metrics.StatementMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 语句指标记录开销基准：语句指标插件每次执行SQL时的记录路径（查找统计对象并记录耗时和行数），
+ * 分别测量单线程和8线程并发记录同一条语句；可加 -prof gc 确认不产生对象分配
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementMetricsBenchmark {
+    private static final String STATEMENT_ID = "com.convenience.store.dao.InventoryDao.searchInventoryRows";
+
+    @Benchmark
+    public void record() {
+        StatementMetrics.forStatement(STATEMENT_ID).record(ThreadLocalRandom.current().nextInt(1_000_000), 200);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void recordContended() {
+        StatementMetrics.forStatement(STATEMENT_ID).record(ThreadLocalRandom.current().nextInt(1_000_000), 200);
+    }
+}
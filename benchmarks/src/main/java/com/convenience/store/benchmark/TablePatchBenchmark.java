@@ -0,0 +1,94 @@
+package com.convenience.store.benchmark;
+
+import com.convenience.store.controller.KeyedListPatcher;
+import com.convenience.store.entity.InventoryRow;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+
+/**
+ * 表格刷新基准：按主键修补已加载的表格数据（只替换变化的行）与整体替换（setAll）的对比
+ * 两组数据之间有 changed 行内容不同，每次调用在两组数据之间来回切换，
+ * 只测量列表操作，不含界面重绘（重绘的差距随变化的行数而非表格行数增长）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TablePatchBenchmark {
+
+    @Param({"10000", "100000"})
+    public int size;
+
+    @Param({"20"})
+    public int changed;
+
+    private final BiPredicate<InventoryRow, InventoryRow> sameContent = KeyedListPatcher.sameValues(
+            InventoryRow::getProductName, InventoryRow::getWarehouseName, InventoryRow::getQuantity,
+            InventoryRow::getMinStock, InventoryRow::getLastUpdated);
+
+    private List<InventoryRow> versionA;
+    private List<InventoryRow> versionB;
+    private ObservableList<InventoryRow> table;
+    private boolean towardsB;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        versionA = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            versionA.add(row(i, i % BenchmarkDatabase.MAX_QUANTITY));
+        }
+        versionB = new ArrayList<>(versionA);
+        int step = Math.max(1, size / changed);
+        for (int i = 0; i < size && i / step < changed; i += step) {
+            versionB.set(i, row(i + 1, versionA.get(i).getQuantity() + 1));
+        }
+        table = FXCollections.observableArrayList(versionA);
+        towardsB = true;
+    }
+
+    @Benchmark
+    public KeyedListPatcher.PatchResult patch() {
+        List<InventoryRow> fresh = towardsB ? versionB : versionA;
+        towardsB = !towardsB;
+        return KeyedListPatcher.patch(table, fresh, InventoryRow::getInventoryId, sameContent);
+    }
+
+    @Benchmark
+    public int setAll() {
+        List<InventoryRow> fresh = towardsB ? versionB : versionA;
+        towardsB = !towardsB;
+        table.setAll(fresh);
+        return table.size();
+    }
+
+    private static InventoryRow row(int id, int quantity) {
+        InventoryRow row = new InventoryRow();
+        row.setInventoryId(id);
+        row.setProductId(id);
+        row.setProductName("商品" + id);
+        row.setWarehouseId(1);
+        row.setWarehouseName("仓库1");
+        row.setQuantity(quantity);
+        row.setMinStock(BenchmarkDatabase.MIN_STOCK);
+        return row;
+    }
+}
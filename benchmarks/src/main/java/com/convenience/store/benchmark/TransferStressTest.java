@@ -0,0 +1,202 @@
+package com.convenience.store.benchmark;
+
+import com.convenience.store.entity.Product;
+import com.convenience.store.entity.StockTransfer;
+import com.convenience.store.entity.Warehouse;
+import com.convenience.store.service.InventoryService;
+import com.convenience.store.service.ProductService;
+import com.convenience.store.service.StockLedgerService;
+import com.convenience.store.service.WarehouseService;
+import com.convenience.store.util.LatencyHistogram;
+import com.convenience.store.util.metrics.StatementMetrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 库存调拨并发压力测试 - 多个线程对少量热点商品在少量仓库之间反复调拨，
+ * 一半线程总是从编号小的仓库调往编号大的仓库，另一半方向相反，批量调拨中各笔调拨的顺序随机打乱，
+ * 不按统一顺序加锁时这种交叉调拨很容易互相等待形成死锁。
+ * 结束后校验：每个商品在所有仓库的库存合计不变（调拨不产生也不丢失库存），且没有负库存；
+ * 校验失败时以退出码2结束。锁冲突重试记录在日志中，最终失败的调拨计入"失败"。
+ *
+ * 默认在内嵌H2上运行；指定 -Djdbc.url 时连接该数据库（会真实修改库存数据，只能用于测试库）。
+ * 用法：java -cp benchmarks.jar com.convenience.store.benchmark.TransferStressTest [--参数=值 ...]
+ * 参数（括号内为默认值）：
+ *   --threads (16)      调拨线程数
+ *   --duration (20)     运行秒数
+ *   --products (4)      热点商品数
+ *   --warehouses (4)    参与调拨的仓库数
+ *   --batch (4)         每次最多批量调拨的笔数
+ *   --max-quantity (20) 单笔调拨的最大数量
+ *   --initial (200)     每个热点商品在每个仓库的初始入库数量
+ *   --rows (2000)       H2数据规模
+ *   --shards (1)        H2库存分片数，大于1时按仓库把库存分到多个H2库，跨分片的调拨逐个分片提交
+ *   --seed (42)         随机种子
+ */
+public class TransferStressTest {
+
+    private final HarnessOptions options;
+    private final InventoryService inventoryService = new InventoryService();
+    private final StockLedgerService ledgerService = new StockLedgerService();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private List<Integer> productIds;
+    private List<Integer> warehouseIds;
+    private volatile boolean running = true;
+
+    private TransferStressTest(HarnessOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) {
+        HarnessOptions.run(args, options -> new TransferStressTest(options).run());
+    }
+
+    private boolean run() throws Exception {
+        int threads = options.getInt("threads", 16);
+        int duration = options.getInt("duration", 20);
+        long seed = options.getInt("seed", 42);
+
+        if (System.getProperty("jdbc.url") == null) {
+            BenchmarkDatabase.start(options.getInt("rows", 2000), null);
+            BenchmarkDatabase.startShards(options.getInt("shards", 1));
+        }
+        productIds = new ArrayList<>();
+        for (Product product : new ProductService().getProductPage(null, options.getInt("products", 4), null)) {
+            productIds.add(product.getProductId());
+        }
+        warehouseIds = new ArrayList<>();
+        for (Warehouse warehouse : new WarehouseService().getAllWarehouses()) {
+            if (warehouseIds.size() < options.getInt("warehouses", 4)) {
+                warehouseIds.add(warehouse.getWarehouseId());
+            }
+        }
+        if (productIds.isEmpty() || warehouseIds.size() < 2) {
+            throw new IllegalStateException("至少需要1个商品和2个仓库");
+        }
+        // 每个热点商品在每个参与的仓库都有库存
+        int initial = options.getInt("initial", 200);
+        for (Integer productId : productIds) {
+            for (Integer warehouseId : warehouseIds) {
+                if (!inventoryService.adjustQuantity(productId, warehouseId, initial)) {
+                    throw new IllegalStateException("初始化库存失败");
+                }
+            }
+        }
+        Map<Integer, Integer> totalsBefore = totalsByProduct();
+        StatementMetrics.resetAll();
+
+        System.out.println(threads + " 个线程在 " + warehouseIds.size() + " 个仓库之间交叉调拨 "
+                + productIds.size() + " 个商品，运行 " + duration + " 秒");
+        List<Thread> workers = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < threads; i++) {
+            boolean ascending = i % 2 == 0;
+            Random random = new Random(seed + i);
+            Thread thread = new Thread(() -> transferLoop(ascending, random, start), "transfer-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            workers.add(thread);
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        Thread.sleep(duration * 1000L);
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+        System.out.println();
+        System.out.printf("成功 %d 次，失败 %d 次（库存不足或重试后仍冲突），%.1f 次/秒%n",
+                succeeded.sum(), failed.sum(), latency.getCount() / seconds);
+        System.out.printf("延迟 p50 %.2fms，p99 %.2fms，max %.2fms%n", latency.getPercentileMicros(50) / 1000.0,
+                latency.getPercentileMicros(99) / 1000.0, latency.getMaxMicros() / 1000.0);
+        for (StatementMetrics.StatementStats stats : StatementMetrics.getAll()) {
+            if (stats.getStatement().startsWith("InventoryDao.")) {
+                System.out.println("  " + stats);
+            }
+        }
+        return check(totalsBefore);
+    }
+
+    private void transferLoop(boolean ascending, Random random, CountDownLatch start) {
+        int batch = options.getInt("batch", 4);
+        int maxQuantity = options.getInt("max-quantity", 20);
+        try {
+            start.await();
+        } catch (InterruptedException e) {
+            return;
+        }
+        while (running) {
+            int count = 1 + random.nextInt(batch);
+            List<StockTransfer> transfers = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int a = random.nextInt(warehouseIds.size());
+                int b = random.nextInt(warehouseIds.size() - 1);
+                if (b >= a) {
+                    b++;
+                }
+                // 按线程固定方向，保证总有方向相反的调拨同时进行
+                int from = ascending == (a < b) ? a : b;
+                int to = from == a ? b : a;
+                transfers.add(new StockTransfer(productIds.get(random.nextInt(productIds.size())),
+                        warehouseIds.get(from), warehouseIds.get(to), 1 + random.nextInt(maxQuantity)));
+            }
+            long begin = System.nanoTime();
+            boolean ok = count == 1
+                    ? inventoryService.transferStock(transfers.get(0).getProductId(), transfers.get(0).getFromWarehouseId(),
+                            transfers.get(0).getToWarehouseId(), transfers.get(0).getQuantity())
+                    : inventoryService.transferStocks(transfers);
+            latency.recordNanos(System.nanoTime() - begin);
+            (ok ? succeeded : failed).increment();
+        }
+    }
+
+    // 每个热点商品在参与调拨的仓库中的库存合计
+    private Map<Integer, Integer> totalsByProduct() {
+        Map<Integer, Integer> totals = new HashMap<>();
+        for (Integer productId : productIds) {
+            int total = 0;
+            for (Integer warehouseId : warehouseIds) {
+                total += ledgerService.getCurrentQuantity(productId, warehouseId);
+            }
+            totals.put(productId, total);
+        }
+        return totals;
+    }
+
+    private boolean check(Map<Integer, Integer> totalsBefore) {
+        boolean consistent = true;
+        for (Integer productId : productIds) {
+            for (Integer warehouseId : warehouseIds) {
+                int quantity = ledgerService.getCurrentQuantity(productId, warehouseId);
+                if (quantity < 0) {
+                    System.out.println("  负库存：商品 " + productId + " 仓库 " + warehouseId + " 数量 " + quantity);
+                    consistent = false;
+                }
+            }
+        }
+        Map<Integer, Integer> totalsAfter = totalsByProduct();
+        for (Integer productId : productIds) {
+            if (!totalsBefore.get(productId).equals(totalsAfter.get(productId))) {
+                System.out.println("  库存合计变化：商品 " + productId + " 调拨前 " + totalsBefore.get(productId)
+                        + " 调拨后 " + totalsAfter.get(productId));
+                consistent = false;
+            }
+        }
+        System.out.println();
+        System.out.println(consistent
+                ? "校验通过：各商品库存合计不变，没有负库存"
+                : "校验失败");
+        return consistent;
+    }
+}
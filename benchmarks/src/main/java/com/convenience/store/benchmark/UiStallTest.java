@@ -0,0 +1,295 @@
+package com.convenience.store.benchmark;
+
+import com.convenience.store.controller.KeyedListPatcher;
+import com.convenience.store.controller.PagedTableLoader;
+import com.convenience.store.entity.InventoryRow;
+import com.convenience.store.service.InventoryService;
+import com.convenience.store.service.ProductService;
+import com.convenience.store.util.LatencyHistogram;
+import com.convenience.store.util.cache.StoreCache;
+import com.convenience.store.util.metrics.UiStallMonitor;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.Scene;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.stage.Stage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 界面线程卡顿测量 - 在无显示的JavaFX环境（Monocle Headless）中用真实的TableView和 {@link PagedTableLoader} 反复搜索库存，
+ * 对比两种取数方式下界面线程的响应延迟分布：
+ *   sync   查询在界面线程中同步执行（异步加载之前的做法）
+ *   async  查询在后台线程中执行，结果经 Platform.runLater 写入表格（当前做法）
+ * 每次加载按界面上的一种过滤条件（不限、仓库、名称关键词、类别、低库存、数量区间）重新搜索，再向下滚动加载一页，
+ * 加载前清空库存和商品的二级缓存，查询都会访问数据库。
+ * 加载期间探测线程每隔 --probe-ms 向界面线程投递一个空任务，记录从投递到执行的延迟（同一时刻只有一个在途），
+ * 即用户在这段时间里点击、滚动要等多久才有响应；同时输出 {@link UiStallMonitor}（每100ms探测一次，/metrics 中的指标）的分布。
+ *
+ * 用法：java -cp benchmarks.jar com.convenience.store.benchmark.UiStallTest [--参数=值 ...]
+ * 参数（括号内为默认值）：
+ *   --rows (100000)     H2数据规模
+ *   --loads (200)       每种方式测量的加载次数
+ *   --warmup (20)       每种方式测量前不计入结果的加载次数
+ *   --think-ms (50)     两次加载之间的平均间隔
+ *   --probe-ms (5)      探测间隔
+ *   --modes (sync,async)
+ *   --headless (true)   为false时使用系统默认的图形平台（有显示器或 xvfb-run 时）
+ *   --show (true)       是否显示表格窗口；Linux上JavaFX的文字排版依赖系统的Pango库，没有安装时以false运行，
+ *                       表格不显示、不做布局和渲染（两种方式相同的部分），只测量取数和写入表格数据对界面线程的占用
+ *   --seed (42)         随机种子
+ */
+public class UiStallTest {
+    private static final String PRODUCT_NAMESPACE = "com.convenience.store.dao.ProductDao";
+    private static final String INVENTORY_NAMESPACE = "com.convenience.store.dao.InventoryDao";
+    // 超过一帧（60Hz）即可察觉的卡顿
+    private static final long FRAME_MICROS = 16_667;
+    private static final long VISIBLE_STALL_MICROS = 100_000;
+
+    private final HarnessOptions options;
+    private final InventoryService inventoryService = new InventoryService();
+    private final ProductService productService = new ProductService();
+    private Random random;
+    private int warehouses;
+
+    private UiStallTest(HarnessOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) {
+        HarnessOptions.run(args, options -> {
+            new UiStallTest(options).run();
+            return true;
+        });
+    }
+
+    /**
+     * 一种取数方式的测量结果
+     */
+    private static final class ModeResult {
+        final String mode;
+        final LatencyHistogram probeDelays = new LatencyHistogram();
+        // UiStallMonitor 的直方图是全局的，每种方式结束时记下分位数
+        long monitorCount;
+        long[] monitorPercentiles;
+        long monitorMax;
+        final LatencyHistogram loadLatency = new LatencyHistogram();
+        long framesMissed;
+        long visibleStalls;
+
+        ModeResult(String mode) {
+            this.mode = mode;
+        }
+    }
+
+    private void run() throws Exception {
+        int rows = options.getInt("rows", 100000);
+        random = new Random(options.getInt("seed", 42));
+        BenchmarkDatabase.start(rows, null);
+        warehouses = BenchmarkDatabase.getWarehouseCount();
+        // 名称条件经内存搜索索引转换为商品ID
+        productService.rebuildSearchIndex();
+        HeadlessFx.start(options.getBoolean("headless", true));
+        UiStallMonitor.start();
+
+        List<ModeResult> results = new ArrayList<>();
+        for (String mode : options.get("modes", "sync,async").split(",")) {
+            results.add(measure(mode.trim()));
+        }
+        UiStallMonitor.stop();
+        report(rows, results);
+    }
+
+    private ModeResult measure(String mode) throws Exception {
+        PagedTableLoader.PageFetcher<InventoryRow> fetcher = switch (mode) {
+            // 在调用线程（界面线程）中执行查询，返回已完成的Future
+            case "sync" -> (afterId, limit, params) ->
+                    CompletableFuture.completedFuture(inventoryService.searchInventoryRows(afterId, limit, params));
+            case "async" -> inventoryService::searchInventoryRowsAsync;
+            default -> throw new IllegalArgumentException("未知的取数方式：" + mode);
+        };
+        ObservableList<InventoryRow> data = FXCollections.observableArrayList();
+        boolean show = options.getBoolean("show", true);
+        Stage stage = HeadlessFx.call(() -> {
+            Stage window = new Stage();
+            window.setScene(new Scene(inventoryTable(), 900, 600));
+            if (show) {
+                window.show();
+            }
+            return window;
+        });
+        @SuppressWarnings("unchecked")
+        TableView<InventoryRow> table = (TableView<InventoryRow>) stage.getScene().getRoot();
+        PagedTableLoader<InventoryRow> loader = HeadlessFx.call(() -> new PagedTableLoader<>(table, data,
+                InventoryRow::getInventoryId, fetcher, PagedTableLoader.DEFAULT_PAGE_SIZE,
+                KeyedListPatcher.sameValues(InventoryRow::getProductName, InventoryRow::getWarehouseName,
+                        InventoryRow::getQuantity, InventoryRow::getMinStock, InventoryRow::getLastUpdated)));
+
+        ModeResult result = new ModeResult(mode);
+        int thinkMillis = options.getInt("think-ms", 50);
+        for (int i = 0; i < options.getInt("warmup", 20); i++) {
+            load(loader);
+        }
+        UiStallMonitor.getDelays().reset();
+        Prober prober = new Prober(result.probeDelays, options.getInt("probe-ms", 5));
+        prober.start();
+        for (int i = 0; i < options.getInt("loads", 200); i++) {
+            result.loadLatency.recordNanos(load(loader));
+            Thread.sleep(thinkMillis / 2 + random.nextInt(thinkMillis + 1));
+        }
+        prober.finish();
+        result.framesMissed = prober.framesMissed;
+        result.visibleStalls = prober.visibleStalls;
+        LatencyHistogram monitorDelays = UiStallMonitor.getDelays();
+        result.monitorCount = monitorDelays.getCount();
+        result.monitorPercentiles = new long[]{monitorDelays.getPercentileMicros(50),
+                monitorDelays.getPercentileMicros(90), monitorDelays.getPercentileMicros(99)};
+        result.monitorMax = monitorDelays.getMaxMicros();
+        HeadlessFx.call(() -> {
+            stage.close();
+            return null;
+        });
+        return result;
+    }
+
+    // 按一种过滤条件从第一页重新搜索，写入表格后再加载下一页，返回从发起搜索到第二页写入表格的耗时（纳秒）
+    private long load(PagedTableLoader<InventoryRow> loader) throws Exception {
+        Map<String, Object> params = nextFilter();
+        StoreCache.invalidate(INVENTORY_NAMESPACE);
+        StoreCache.invalidate(PRODUCT_NAMESPACE);
+        long start = System.nanoTime();
+        HeadlessFx.call(() -> loader.reload(params)).get();
+        HeadlessFx.call(loader::loadNextPage).get();
+        return System.nanoTime() - start;
+    }
+
+    private Map<String, Object> nextFilter() {
+        Map<String, Object> params = new HashMap<>();
+        switch (random.nextInt(6)) {
+            case 0 -> {
+                // 不限条件
+            }
+            case 1 -> params.put("warehouseId", 1 + random.nextInt(warehouses));
+            case 2 -> params.put("productName", BenchmarkDatabase.PRODUCT_WORDS[random.nextInt(BenchmarkDatabase.PRODUCT_WORDS.length)]);
+            case 3 -> params.put("category", BenchmarkDatabase.CATEGORIES[random.nextInt(BenchmarkDatabase.CATEGORIES.length)]);
+            case 4 -> params.put("lowStock", true);
+            default -> {
+                int min = random.nextInt(BenchmarkDatabase.MAX_QUANTITY * 9 / 10);
+                params.put("minQuantity", min);
+                params.put("maxQuantity", min + BenchmarkDatabase.MAX_QUANTITY / 10);
+            }
+        }
+        return params;
+    }
+
+    private static TableView<InventoryRow> inventoryTable() {
+        TableView<InventoryRow> table = new TableView<>();
+        Map<String, String> columns = new LinkedHashMap<>();
+        columns.put("库存ID", "inventoryId");
+        columns.put("商品名称", "productName");
+        columns.put("仓库", "warehouseName");
+        columns.put("数量", "quantity");
+        columns.put("最小库存", "minStock");
+        columns.put("更新时间", "lastUpdated");
+        for (Map.Entry<String, String> column : columns.entrySet()) {
+            TableColumn<InventoryRow, Object> tableColumn = new TableColumn<>(column.getKey());
+            tableColumn.setCellValueFactory(new PropertyValueFactory<>(column.getValue()));
+            table.getColumns().add(tableColumn);
+        }
+        return table;
+    }
+
+    /**
+     * 探测线程：同一时刻只有一个探测任务在途，执行后间隔 probeMillis 再投递下一个
+     */
+    private static final class Prober extends Thread {
+        private final LatencyHistogram delays;
+        private final long probeMillis;
+        private volatile boolean running = true;
+        long framesMissed;
+        long visibleStalls;
+
+        Prober(LatencyHistogram delays, long probeMillis) {
+            super("ui-stall-prober");
+            setDaemon(true);
+            this.delays = delays;
+            this.probeMillis = probeMillis;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    long posted = System.nanoTime();
+                    CountDownLatch executed = new CountDownLatch(1);
+                    Platform.runLater(executed::countDown);
+                    executed.await();
+                    long delayNanos = System.nanoTime() - posted;
+                    delays.recordNanos(delayNanos);
+                    long delayMicros = TimeUnit.NANOSECONDS.toMicros(delayNanos);
+                    if (delayMicros > FRAME_MICROS) {
+                        framesMissed++;
+                    }
+                    if (delayMicros > VISIBLE_STALL_MICROS) {
+                        visibleStalls++;
+                    }
+                    Thread.sleep(probeMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void finish() throws InterruptedException {
+            running = false;
+            join();
+        }
+    }
+
+    private void report(int rows, List<ModeResult> results) {
+        System.out.println();
+        System.out.printf("数据规模 %d 行，每种方式 %s 次加载（搜索第一页 + 滚动加载第二页），表格%s%n",
+                rows, options.get("loads", "200"), options.getBoolean("show", true) ? "显示" : "不显示");
+        System.out.println();
+        System.out.println("界面线程响应延迟（探测间隔 " + options.get("probe-ms", "5") + "ms）：");
+        System.out.printf("%-8s %10s %10s %10s %10s %10s %10s %12s %12s%n",
+                "方式", "样本", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)", ">16.7ms", ">100ms");
+        for (ModeResult result : results) {
+            LatencyHistogram delays = result.probeDelays;
+            System.out.printf("%-8s %10d %10.2f %10.2f %10.2f %10.2f %10.2f %12d %12d%n",
+                    result.mode, delays.getCount(),
+                    delays.getPercentileMicros(50) / 1000.0, delays.getPercentileMicros(90) / 1000.0,
+                    delays.getPercentileMicros(99) / 1000.0, delays.getPercentileMicros(99.9) / 1000.0,
+                    delays.getMaxMicros() / 1000.0, result.framesMissed, result.visibleStalls);
+        }
+        System.out.println();
+        System.out.println("UiStallMonitor（探测间隔100ms，即 /metrics 的 store_ui_event_delay_microseconds）：");
+        System.out.printf("%-8s %10s %10s %10s %10s %10s%n", "方式", "样本", "p50(ms)", "p90(ms)", "p99(ms)", "max(ms)");
+        for (ModeResult result : results) {
+            System.out.printf("%-8s %10d %10.2f %10.2f %10.2f %10.2f%n",
+                    result.mode, result.monitorCount,
+                    result.monitorPercentiles[0] / 1000.0, result.monitorPercentiles[1] / 1000.0,
+                    result.monitorPercentiles[2] / 1000.0, result.monitorMax / 1000.0);
+        }
+        System.out.println();
+        System.out.println("加载耗时（发起搜索到第二页写入表格）：");
+        System.out.printf("%-8s %10s %10s %10s %10s%n", "方式", "p50(ms)", "p90(ms)", "p99(ms)", "max(ms)");
+        for (ModeResult result : results) {
+            LatencyHistogram latency = result.loadLatency;
+            System.out.printf("%-8s %10.2f %10.2f %10.2f %10.2f%n", result.mode,
+                    latency.getPercentileMicros(50) / 1000.0, latency.getPercentileMicros(90) / 1000.0,
+                    latency.getPercentileMicros(99) / 1000.0, latency.getMaxMicros() / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.convenience.store.benchmark;
+
+import com.convenience.store.entity.InventoryRow;
+import com.convenience.store.service.InventoryService;
+import com.convenience.store.service.InventoryWriteBuffer;
+import com.convenience.store.service.StockLedgerService;
+import org.h2.tools.Server;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 库存写缓冲崩溃恢复检查 - 验证进程崩溃后缓冲中的库存调整既不丢失也不重复累加：
+ * 1. 子进程通过TCP连接本进程的H2库，启用写缓冲（刷新间隔很长，期间不写库）后执行一批随机出入库，
+ *    输出每个库存位置成功调整的合计后直接 halt 退出，不做任何清理，模拟进程崩溃
+ * 2. 检查数据库库存没有变化（调整只在日志中），备份日志后在本进程启用写缓冲重放日志，
+ *    检查每个库存位置的数量等于初始数量加上子进程报告的合计
+ * 3. 把备份的日志放回日志目录再重放一次（模拟写库后、删除日志前崩溃），检查数量不再变化
+ * 任何一项不通过时以退出码2结束。
+ *
+ * 用法：java -cp benchmarks.jar com.convenience.store.benchmark.WriteBehindRecoveryCheck [--参数=值 ...]
+ * 参数（括号内为默认值）：
+ *   --positions (20)     参与调整的库存位置数
+ *   --operations (2000)  子进程执行的出入库次数
+ *   --rows (1000)        H2数据规模
+ *   --seed (42)          随机种子
+ */
+public class WriteBehindRecoveryCheck {
+    // 子进程输出调整合计的行前缀，其余输出（日志）原样转发
+    private static final String NET_PREFIX = "NET ";
+
+    private final HarnessOptions options;
+    private final InventoryService inventoryService = new InventoryService();
+    private final StockLedgerService ledgerService = new StockLedgerService();
+    private final List<String> failures = new ArrayList<>();
+
+    private WriteBehindRecoveryCheck(HarnessOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) {
+        HarnessOptions.run(args, options -> {
+            WriteBehindRecoveryCheck check = new WriteBehindRecoveryCheck(options);
+            if (options.has("journal")) {
+                // 子进程：写入调整后直接 halt，不会返回
+                check.writeAndCrash(Paths.get(options.get("journal")));
+                return true;
+            }
+            return check.run();
+        });
+    }
+
+    private boolean run() throws Exception {
+        BenchmarkDatabase.start(options.getInt("rows", 1000), null);
+        Server server = Server.createTcpServer("-tcpPort", "0").start();
+        Path journal = Files.createTempDirectory("write-behind");
+        Path backup = Files.createTempDirectory("write-behind-backup");
+        try {
+            // 1. 子进程缓冲调整后崩溃，子进程按同样的查询选取库存位置
+            Map<String, Integer> initial = new LinkedHashMap<>();
+            for (InventoryRow position : inventoryService.searchInventoryRows(null, options.getInt("positions", 20), null)) {
+                String key = position.getProductId() + "," + position.getWarehouseId();
+                initial.put(key, ledgerService.getCurrentQuantity(position.getProductId(), position.getWarehouseId()));
+            }
+            Map<String, Integer> nets = runWriter(server.getPort(), journal);
+            if (!nets.keySet().equals(initial.keySet())) {
+                throw new IllegalStateException("子进程报告的库存位置与本进程选取的不一致");
+            }
+            int segments = 0;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(journal)) {
+                for (Path file : stream) {
+                    Files.copy(file, backup.resolve(file.getFileName()));
+                    segments++;
+                }
+            }
+            System.out.println("子进程调整了 " + nets.size() + " 个库存位置后崩溃，留下 " + segments + " 个日志段");
+            if (!readQuantities(nets).equals(initial)) {
+                failures.add("崩溃前缓冲中的调整已写库，检查前提不成立");
+            }
+
+            // 2. 重放日志
+            replay(journal);
+            Map<String, Integer> recovered = readQuantities(nets);
+            for (Map.Entry<String, Integer> entry : nets.entrySet()) {
+                int expected = initial.get(entry.getKey()) + entry.getValue();
+                if (recovered.get(entry.getKey()) != expected) {
+                    failures.add("重放后库存位置 " + entry.getKey() + " 期望 " + expected + " 实际 " + recovered.get(entry.getKey()));
+                }
+            }
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(journal)) {
+                if (stream.iterator().hasNext()) {
+                    failures.add("重放后日志目录中仍有日志段");
+                }
+            }
+
+            // 3. 已写库的日志段再重放一次
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(backup)) {
+                for (Path file : stream) {
+                    Files.move(file, journal.resolve(file.getFileName()));
+                }
+            }
+            replay(journal);
+            Map<String, Integer> replayed = readQuantities(nets);
+            for (String key : nets.keySet()) {
+                if (!replayed.get(key).equals(recovered.get(key))) {
+                    failures.add("重复重放后库存位置 " + key + " 从 " + recovered.get(key) + " 变为 " + replayed.get(key));
+                }
+            }
+        } finally {
+            server.stop();
+        }
+
+        System.out.println();
+        if (failures.isEmpty()) {
+            System.out.println("检查通过：崩溃后重放日志，调整既未丢失也未重复累加");
+            return true;
+        }
+        System.out.println("检查失败：");
+        for (String failure : failures) {
+            System.out.println("  " + failure);
+        }
+        return false;
+    }
+
+    // 启动子进程并读取它报告的每个库存位置（"商品ID,仓库ID"）的调整合计
+    private Map<String, Integer> runWriter(int port, Path journal) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Dsun.stdout.encoding=UTF-8");
+        command.add("-Djdbc.driver=org.h2.Driver");
+        command.add("-Djdbc.url=jdbc:h2:tcp://localhost:" + port + "/mem:bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+        command.add("-Djdbc.username=sa");
+        command.add("-Djdbc.password=");
+        command.add(WriteBehindRecoveryCheck.class.getName());
+        command.add("--journal=" + journal);
+        for (String name : new String[]{"positions", "operations", "seed"}) {
+            if (options.has(name)) {
+                command.add("--" + name + "=" + options.get(name));
+            }
+        }
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        Map<String, Integer> nets = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(NET_PREFIX)) {
+                    String[] fields = line.substring(NET_PREFIX.length()).split(" ");
+                    nets.put(fields[0], Integer.parseInt(fields[1]));
+                } else {
+                    System.out.println("[子进程] " + line);
+                }
+            }
+        }
+        process.waitFor();
+        return nets;
+    }
+
+    // 子进程：在缓冲中执行随机出入库，输出成功调整的合计后不经清理直接退出
+    private void writeAndCrash(Path journal) throws Exception {
+        List<InventoryRow> positions = inventoryService.searchInventoryRows(null, options.getInt("positions", 20), null);
+        InventoryWriteBuffer.start(journal, 3_600_000L, Integer.MAX_VALUE);
+        Random random = new Random(options.getInt("seed", 42));
+        Map<String, Integer> nets = new LinkedHashMap<>();
+        for (InventoryRow position : positions) {
+            nets.put(position.getProductId() + "," + position.getWarehouseId(), 0);
+        }
+        int operations = options.getInt("operations", 2000);
+        for (int i = 0; i < operations; i++) {
+            InventoryRow position = positions.get(random.nextInt(positions.size()));
+            int delta = random.nextInt(4) == 0 ? 1 + random.nextInt(50) : -(1 + random.nextInt(3));
+            if (inventoryService.adjustQuantity(position.getProductId(), position.getWarehouseId(), delta)) {
+                nets.merge(position.getProductId() + "," + position.getWarehouseId(), delta, Integer::sum);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : nets.entrySet()) {
+            System.out.println(NET_PREFIX + entry.getKey() + " " + entry.getValue());
+        }
+        System.out.flush();
+        Runtime.getRuntime().halt(0);
+    }
+
+    // 启用写缓冲重放日志目录中的日志段，停止时等待重放完成
+    private void replay(Path journal) throws Exception {
+        InventoryWriteBuffer.start(journal, 3_600_000L, Integer.MAX_VALUE);
+        InventoryWriteBuffer.stop();
+    }
+
+    private Map<String, Integer> readQuantities(Map<String, Integer> keys) {
+        Map<String, Integer> quantities = new HashMap<>();
+        for (String key : keys.keySet()) {
+            String[] ids = key.split(",");
+            quantities.put(key, ledgerService.getCurrentQuantity(Integer.parseInt(ids[0]), Integer.parseInt(ids[1])));
+        }
+        return quantities;
+    }
+}
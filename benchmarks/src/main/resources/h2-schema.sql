@@ -0,0 +1,139 @@
+-- 与 src/main/resources/database.sql 等价的H2表结构（MySQL兼容模式）
+-- 保留相同的列、约束和索引；ENUM改为VARCHAR + CHECK，触发器和存储过程不参与基准测试，省略
+
+CREATE TABLE users (
+    user_id INT PRIMARY KEY AUTO_INCREMENT,
+    username VARCHAR(50) NOT NULL UNIQUE,
+    password VARCHAR(100) NOT NULL,
+    full_name VARCHAR(100) NOT NULL,
+    email VARCHAR(100) NOT NULL UNIQUE,
+    phone VARCHAR(20),
+    role VARCHAR(10) NOT NULL DEFAULT 'staff',
+    status VARCHAR(10) NOT NULL DEFAULT 'active',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    CONSTRAINT chk_role CHECK (role IN ('admin', 'staff')),
+    CONSTRAINT chk_status CHECK (status IN ('active', 'inactive'))
+);
+CREATE INDEX idx_users_updated_at ON users (updated_at);
+
+CREATE TABLE products (
+    product_id INT PRIMARY KEY AUTO_INCREMENT,
+    product_name VARCHAR(100) NOT NULL,
+    category VARCHAR(50) NOT NULL,
+    unit VARCHAR(20) NOT NULL,
+    price DECIMAL(10, 2) NOT NULL,
+    description TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    CONSTRAINT chk_price CHECK (price > 0)
+);
+CREATE INDEX idx_products_category ON products (category);
+CREATE INDEX idx_products_name ON products (product_name);
+CREATE INDEX idx_products_updated_at ON products (updated_at);
+
+CREATE TABLE suppliers (
+    supplier_id INT PRIMARY KEY AUTO_INCREMENT,
+    supplier_name VARCHAR(100) NOT NULL,
+    contact_person VARCHAR(50) NOT NULL,
+    phone VARCHAR(20) NOT NULL,
+    email VARCHAR(100),
+    address TEXT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+CREATE TABLE warehouses (
+    warehouse_id INT PRIMARY KEY AUTO_INCREMENT,
+    warehouse_name VARCHAR(100) NOT NULL,
+    location VARCHAR(100) NOT NULL,
+    capacity INT NOT NULL,
+    manager_id INT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    CONSTRAINT fk_manager FOREIGN KEY (manager_id) REFERENCES users(user_id) ON DELETE SET NULL,
+    CONSTRAINT chk_capacity CHECK (capacity > 0)
+);
+CREATE INDEX idx_warehouses_updated_at ON warehouses (updated_at);
+
+CREATE TABLE inventory (
+    inventory_id INT PRIMARY KEY AUTO_INCREMENT,
+    product_id INT NOT NULL,
+    warehouse_id INT NOT NULL,
+    quantity INT NOT NULL,
+    min_stock INT NOT NULL DEFAULT 10,
+    last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    is_low_stock TINYINT GENERATED ALWAYS AS (CASE WHEN quantity < min_stock THEN 1 ELSE 0 END),
+    CONSTRAINT fk_inventory_product FOREIGN KEY (product_id) REFERENCES products(product_id) ON DELETE CASCADE,
+    CONSTRAINT fk_inventory_warehouse FOREIGN KEY (warehouse_id) REFERENCES warehouses(warehouse_id) ON DELETE CASCADE,
+    CONSTRAINT chk_quantity CHECK (quantity >= 0),
+    CONSTRAINT chk_min_stock CHECK (min_stock >= 0),
+    CONSTRAINT uk_product_warehouse UNIQUE (product_id, warehouse_id)
+);
+CREATE INDEX idx_inventory_warehouse ON inventory (warehouse_id);
+CREATE INDEX idx_inventory_low_stock ON inventory (is_low_stock, warehouse_id);
+CREATE INDEX idx_inventory_quantity ON inventory (quantity);
+CREATE INDEX idx_inventory_last_updated ON inventory (last_updated);
+
+CREATE TABLE product_supplier (
+    product_id INT NOT NULL,
+    supplier_id INT NOT NULL,
+    supply_price DECIMAL(10, 2) NOT NULL,
+    last_supply_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (product_id, supplier_id),
+    CONSTRAINT fk_ps_product FOREIGN KEY (product_id) REFERENCES products(product_id) ON DELETE CASCADE,
+    CONSTRAINT fk_ps_supplier FOREIGN KEY (supplier_id) REFERENCES suppliers(supplier_id) ON DELETE CASCADE,
+    CONSTRAINT chk_supply_price CHECK (supply_price > 0)
+);
+
+CREATE TABLE stock_alerts (
+    alert_id INT PRIMARY KEY AUTO_INCREMENT,
+    product_id INT NOT NULL,
+    warehouse_id INT NOT NULL,
+    current_quantity INT NOT NULL,
+    min_stock INT NOT NULL,
+    alert_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uk_alert_product_warehouse UNIQUE (product_id, warehouse_id)
+);
+
+CREATE TABLE stock_movements (
+    movement_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    product_id INT NOT NULL,
+    warehouse_id INT NOT NULL,
+    movement_type VARCHAR(20) NOT NULL,
+    delta INT NOT NULL,
+    reference VARCHAR(64),
+    operator_id INT,
+    applied TINYINT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_movement_product FOREIGN KEY (product_id) REFERENCES products(product_id) ON DELETE CASCADE,
+    CONSTRAINT fk_movement_warehouse FOREIGN KEY (warehouse_id) REFERENCES warehouses(warehouse_id) ON DELETE CASCADE
+);
+CREATE INDEX idx_movement_pending ON stock_movements (applied, movement_id);
+CREATE INDEX idx_movement_key ON stock_movements (product_id, warehouse_id, applied);
+CREATE INDEX idx_movement_created ON stock_movements (created_at);
+
+CREATE TABLE write_behind_segments (
+    reference VARCHAR(64) PRIMARY KEY,
+    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE import_progress (
+    import_key VARCHAR(255) PRIMARY KEY,
+    last_line BIGINT NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE deleted_rows (
+    tombstone_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    table_name VARCHAR(32) NOT NULL,
+    row_id INT NOT NULL,
+    deleted_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX idx_deleted_rows_time ON deleted_rows (deleted_at);
+
+CREATE TABLE replica_heartbeat (
+    heartbeat_id TINYINT PRIMARY KEY,
+    beat_at TIMESTAMP(3) NOT NULL
+);
+INSERT INTO replica_heartbeat (heartbeat_id, beat_at) VALUES (1, CURRENT_TIMESTAMP(3));
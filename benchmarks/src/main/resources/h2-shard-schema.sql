@@ -0,0 +1,56 @@
+-- 与 src/main/resources/shard-schema.sql 等价的H2库存分片表结构（MySQL兼容模式），触发器省略
+
+CREATE TABLE inventory (
+    inventory_id INT PRIMARY KEY AUTO_INCREMENT,
+    product_id INT NOT NULL,
+    warehouse_id INT NOT NULL,
+    quantity INT NOT NULL,
+    min_stock INT NOT NULL DEFAULT 10,
+    last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    is_low_stock TINYINT GENERATED ALWAYS AS (CASE WHEN quantity < min_stock THEN 1 ELSE 0 END),
+    CONSTRAINT chk_quantity CHECK (quantity >= 0),
+    CONSTRAINT chk_min_stock CHECK (min_stock >= 0),
+    CONSTRAINT uk_product_warehouse UNIQUE (product_id, warehouse_id)
+);
+CREATE INDEX idx_inventory_warehouse ON inventory (warehouse_id);
+CREATE INDEX idx_inventory_low_stock ON inventory (is_low_stock, warehouse_id);
+CREATE INDEX idx_inventory_quantity ON inventory (quantity);
+CREATE INDEX idx_inventory_last_updated ON inventory (last_updated);
+
+CREATE TABLE stock_alerts (
+    alert_id INT PRIMARY KEY AUTO_INCREMENT,
+    product_id INT NOT NULL,
+    warehouse_id INT NOT NULL,
+    current_quantity INT NOT NULL,
+    min_stock INT NOT NULL,
+    alert_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uk_alert_product_warehouse UNIQUE (product_id, warehouse_id)
+);
+
+CREATE TABLE stock_movements (
+    movement_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    product_id INT NOT NULL,
+    warehouse_id INT NOT NULL,
+    movement_type VARCHAR(20) NOT NULL,
+    delta INT NOT NULL,
+    reference VARCHAR(64),
+    operator_id INT,
+    applied TINYINT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX idx_movement_pending ON stock_movements (applied, movement_id);
+CREATE INDEX idx_movement_key ON stock_movements (product_id, warehouse_id, applied);
+CREATE INDEX idx_movement_created ON stock_movements (created_at);
+
+CREATE TABLE write_behind_segments (
+    reference VARCHAR(64) PRIMARY KEY,
+    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE deleted_rows (
+    tombstone_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    table_name VARCHAR(32) NOT NULL,
+    row_id INT NOT NULL,
+    deleted_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX idx_deleted_rows_time ON deleted_rows (deleted_at);
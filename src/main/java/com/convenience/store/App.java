@@ -1,5 +1,19 @@
 package com.convenience.store;
 
+import com.convenience.store.controller.DialogFactory;
+import com.convenience.store.controller.MainController;
+import com.convenience.store.controller.ViewPreloader;
+import com.convenience.store.server.StoreHttpServer;
+import com.convenience.store.service.DeltaSyncService;
+import com.convenience.store.service.InventoryWriteBuffer;
+import com.convenience.store.service.LowStockMonitor;
+import com.convenience.store.service.ProductService;
+import com.convenience.store.service.StockLedgerService;
+import com.convenience.store.util.MyBatisUtil;
+import com.convenience.store.util.StartupTimeline;
+import com.convenience.store.util.metrics.MetricsHttpServer;
+import com.convenience.store.util.metrics.UiStallMonitor;
+import com.convenience.store.util.replica.ReplicaRouter;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -7,12 +21,38 @@ import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 应用程序入口类 - 继承自Application类
  * 负责启动JavaFX应用程序，加载并显示登录界面
+ * 启动按阶段流水线进行：
+ * 1. main() 中开始在后台构建MyBatis配置（解析映射文件），与JavaFX工具包启动并行，连接池在构建过程中后台预热
+ * 2. 登录界面显示后，在后台预加载主界面（主界面控制器并行查询三张表的首页数据），
+ *    同时预加载对话框、构建商品搜索索引、载入低库存监控
+ * 3. 以上阶段全部完成后输出启动时间线
+ * 以 --server 参数启动时不显示界面，作为门店服务器以HTTP接口向收银终端提供服务（见 {@link StoreHttpServer}）
  */
 public class App extends Application {
+    // 库存流水合并间隔（秒）
+    private static final long LEDGER_COMPACT_INTERVAL_SECONDS = 5;
+    // 默认增量同步间隔（秒），可通过系统属性 sync.intervalSeconds 配置
+    private static final long DEFAULT_SYNC_INTERVAL_SECONDS = 10;
+    // 默认本地指标端点端口，可通过系统属性 metrics.port 配置，0表示不启动
+    private static final int DEFAULT_METRICS_PORT = 9464;
+    // 服务模式默认HTTP端口，可通过系统属性 server.port 配置
+    private static final int DEFAULT_SERVER_PORT = 8080;
+    // 服务模式没有虚拟线程时的默认请求处理线程数，可通过系统属性 server.threads 配置
+    private static final int DEFAULT_SERVER_THREADS = 32;
+    // 库存写缓冲默认刷新间隔（毫秒）和提前刷新的调整条数，可通过系统属性 writeBehind.flushMillis、writeBehind.maxPendingDeltas 配置
+    private static final long DEFAULT_WRITE_BEHIND_FLUSH_MILLIS = 200;
+    private static final int DEFAULT_WRITE_BEHIND_MAX_PENDING = 1000;
+
+    // JavaFX工具包启动阶段，在main()中开始，start()中结束
+    private static StartupTimeline.Phase toolkitPhase;
+
     /**
      * JavaFX应用程序的启动方法
      * 当应用程序启动时，JavaFX运行时会调用此方法
@@ -21,7 +61,12 @@ public class App extends Application {
      */
     @Override
     public void start(Stage primaryStage) {
+        if (toolkitPhase != null) {
+            toolkitPhase.end();
+        }
         try {
+            StartupTimeline.Phase loginPhase = StartupTimeline.begin("登录界面显示");
+            
             // 创建FXMLLoader对象，用于加载登录界面的FXML文件
             Parent root = FXMLLoader.load(getClass().getResource("/fxml/Login.fxml"));
             
@@ -39,12 +84,56 @@ public class App extends Application {
             
             // 显示主舞台
             primaryStage.show();
+            loginPhase.end();
+            
+            // 用户输入用户名密码期间，后台并行完成以下工作
+            CompletableFuture<Void> mainView = StartupTimeline.track("主界面预加载", ViewPreloader.preload("/fxml/Main.fxml"))
+                    .thenCompose(loader -> ((MainController) loader.getController()).getInitialLoad());
+            
+            // 预加载对话框FXML，首次打开对话框时只需创建窗口
+            DialogFactory.preload("/fxml/UserDialog.fxml", "/fxml/ProductDialog.fxml", "/fxml/InventoryDialog.fxml");
+            
+            // 后台构建商品搜索索引，构建完成前商品搜索回退到数据库查询
+            CompletableFuture<Boolean> searchIndex = StartupTimeline.track("商品搜索索引", ProductService.rebuildSearchIndexAsync());
+            
+            // 后台扫描库存载入低库存监控
+            CompletableFuture<Boolean> lowStock = StartupTimeline.track("低库存监控载入", LowStockMonitor.getInstance().reloadAsync());
+            
+            // 启动库存流水后台合并任务
+            StockLedgerService.startCompactor(LEDGER_COMPACT_INTERVAL_SECONDS);
+            
+            // 配置了日志目录时启用库存写缓冲
+            startWriteBehind();
+            
+            // 启动增量同步，定期合并其他终端的修改
+            DeltaSyncService.start(Long.getLong("sync.intervalSeconds", DEFAULT_SYNC_INTERVAL_SECONDS));
+            
+            // 监测界面线程卡顿，延迟分布在指标端点输出
+            UiStallMonitor.start();
+            
+            // 启动本地指标端点 http://127.0.0.1:端口/metrics
+            MetricsHttpServer.start(Integer.getInteger("metrics.port", DEFAULT_METRICS_PORT));
+            
+            StartupTimeline.reportWhenComplete(MyBatisUtil.initializeAsync(), mainView, searchIndex, lowStock);
         } catch (IOException e) {
             // 捕获并打印加载FXML文件时可能发生的异常
             e.printStackTrace();
         }
     }
 
+    /**
+     * JavaFX应用程序退出时调用，停止后台任务
+     */
+    @Override
+    public void stop() {
+        UiStallMonitor.stop();
+        InventoryWriteBuffer.stop();
+        StockLedgerService.stopCompactor();
+        DeltaSyncService.stop();
+        MetricsHttpServer.stop();
+        ReplicaRouter.stop();
+    }
+
     /**
      * 应用程序的主方法
      * 是Java应用程序的入口点
@@ -52,14 +141,76 @@ public class App extends Application {
      * @param args 命令行参数
      */
     public static void main(String[] args) {
-        // 测试数据库连接
-        System.out.println("[DEBUG] Testing database connection before launching application...");
-        com.convenience.store.service.UserService userService = new com.convenience.store.service.UserService();
-        boolean isConnected = userService.testDatabaseConnection();
-        System.out.println("[DEBUG] Database connection test result: " + isConnected);
+        boolean serverMode = Arrays.asList(args).contains("--server");
+        if (serverMode) {
+            // 通过 mvn javafx:run 启动时只能传程序参数，--名称=值 形式的参数作为系统属性（包括数据库连接的 jdbc.*）
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                if (arg.startsWith("--") && eq > 2) {
+                    System.setProperty(arg.substring(2, eq), arg.substring(eq + 1));
+                }
+            }
+        }
+        
+        // 在后台开始构建MyBatis配置，与JavaFX工具包启动并行；数据库不可用时在首次查询时报错
+        MyBatisUtil.initializeAsync();
+        
+        if (serverMode) {
+            startServer();
+            return;
+        }
         
         // 启动JavaFX应用程序
         // 这会调用start方法
+        toolkitPhase = StartupTimeline.begin("JavaFX启动");
         launch(args);
     }
-}
\ No newline at end of file
+
+    /**
+     * 无界面服务模式：启动后台任务和终端HTTP接口，进程退出时停止
+     * 系统属性（也可用 --名称=值 参数指定）：server.host（默认127.0.0.1，绑定其他地址时必须设置令牌）、server.port、server.threads、server.token（终端访问令牌）
+     */
+    private static void startServer() {
+        ProductService.rebuildSearchIndexAsync();
+        LowStockMonitor.getInstance().reloadAsync();
+        StockLedgerService.startCompactor(LEDGER_COMPACT_INTERVAL_SECONDS);
+        startWriteBehind();
+        DeltaSyncService.start(Long.getLong("sync.intervalSeconds", DEFAULT_SYNC_INTERVAL_SECONDS));
+        MetricsHttpServer.start(Integer.getInteger("metrics.port", DEFAULT_METRICS_PORT));
+        try {
+            StoreHttpServer.start(System.getProperty("server.host"),
+                    Integer.getInteger("server.port", DEFAULT_SERVER_PORT),
+                    Integer.getInteger("server.threads", DEFAULT_SERVER_THREADS),
+                    System.getProperty("server.token"));
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            StoreHttpServer.stop();
+            InventoryWriteBuffer.stop();
+            StockLedgerService.stopCompactor();
+            DeltaSyncService.stop();
+            MetricsHttpServer.stop();
+            ReplicaRouter.stop();
+        }, "server-shutdown"));
+    }
+
+    /**
+     * 设置了系统属性 writeBehind.journalDir（日志目录）时启用库存写缓冲，未设置时库存调整逐次写库
+     */
+    private static void startWriteBehind() {
+        String journalDir = System.getProperty("writeBehind.journalDir");
+        if (journalDir == null || journalDir.isBlank()) {
+            return;
+        }
+        try {
+            InventoryWriteBuffer.start(Paths.get(journalDir),
+                    Long.getLong("writeBehind.flushMillis", DEFAULT_WRITE_BEHIND_FLUSH_MILLIS),
+                    Integer.getInteger("writeBehind.maxPendingDeltas", DEFAULT_WRITE_BEHIND_MAX_PENDING));
+        } catch (IOException e) {
+            // 日志目录不可用时不启用，库存调整逐次写库
+            e.printStackTrace();
+        }
+    }
+}
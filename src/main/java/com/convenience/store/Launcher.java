@@ -0,0 +1,13 @@
+package com.convenience.store;
+
+/**
+ * 启动入口 - 不继承Application，转交 {@link App#main(String[])}
+ * java启动器遇到继承Application的主类时会在调用main()之前先启动JavaFX工具包，
+ * 没有图形环境的门店服务器上无法以 --server 参数运行；从这里启动时只有界面模式才启动工具包
+ */
+public class Launcher {
+
+    public static void main(String[] args) {
+        App.main(args);
+    }
+}
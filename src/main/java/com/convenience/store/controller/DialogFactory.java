@@ -0,0 +1,140 @@
+package com.convenience.store.controller;
+
+import com.convenience.store.util.metrics.UiStallMonitor;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 对话框工厂 - 缓存并复用对话框的场景图和控制器
+ * 每个FXML对话框只解析、创建控件和反射注入控制器一次，之后每次打开只需重置控制器状态，
+ * 首次打开前还可以通过 preload() 在后台线程中预加载。
+ * 对话框都是模态的，同一对话框不会同时打开两次；万一正在显示，则临时新建一个实例。
+ * 每次打开从点击到窗口显示的耗时按新建/复用记入 {@link UiStallMonitor}，在 /metrics 输出；
+ * 以 -Ddialog.reuse=false 启动时每次打开都重新解析FXML并新建窗口（不缓存也不预加载），用于在同一台终端上对比前后耗时。
+ * 本类的 open() 必须在界面线程中调用
+ */
+public class DialogFactory {
+    private static final Logger logger = Logger.getLogger(DialogFactory.class);
+
+    // FXML路径 -> 已创建的对话框
+    private static final Map<String, Dialog<?>> dialogs = new HashMap<>();
+    // 是否缓存复用对话框
+    private static final boolean REUSE = !"false".equals(System.getProperty("dialog.reuse"));
+
+    private DialogFactory() {
+    }
+
+    /**
+     * 可复用的对话框控制器
+     */
+    public interface ReusableDialog {
+        /**
+         * 绑定对话框窗口，只在对话框创建时调用一次
+         * @param dialogStage 对话框窗口
+         */
+        void setDialogStage(Stage dialogStage);
+
+        /**
+         * 清空输入框和编辑状态，每次打开对话框前调用
+         */
+        void reset();
+    }
+
+    /**
+     * 一个对话框实例：窗口和控制器
+     *
+     * @param <C> 控制器类型
+     */
+    public static final class Dialog<C extends ReusableDialog> {
+        private final String fxml;
+        private final Stage stage;
+        private final C controller;
+        // 本次打开的开始时间和是否复用，用于记录从点击到窗口显示的耗时
+        private long openStartNanos;
+        private boolean reused;
+
+        private Dialog(String fxml, Stage stage, C controller) {
+            this.fxml = fxml;
+            this.stage = stage;
+            this.controller = controller;
+            stage.setOnShown(event -> {
+                long elapsed = System.nanoTime() - openStartNanos;
+                UiStallMonitor.recordDialogOpen(reused, elapsed);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("打开对话框 " + this.fxml + (reused ? "（复用）" : "（新建）") + " 耗时 "
+                            + elapsed / 1_000_000.0 + "ms");
+                }
+            });
+        }
+
+        public C getController() {
+            return controller;
+        }
+
+        /**
+         * 以指定标题显示对话框，关闭后返回
+         * @param title 窗口标题
+         */
+        public void showAndWait(String title) {
+            stage.setTitle(title);
+            stage.showAndWait();
+        }
+    }
+
+    /**
+     * 在后台线程中预加载对话框的FXML，首次打开时只需创建窗口
+     * @param fxmlPaths FXML资源路径
+     */
+    public static void preload(String... fxmlPaths) {
+        if (!REUSE) {
+            return;
+        }
+        for (String fxml : fxmlPaths) {
+            ViewPreloader.preload(fxml);
+        }
+    }
+
+    /**
+     * 获取一个已重置的对话框，首次获取时加载FXML并创建窗口
+     * @param fxml FXML资源路径
+     * @param width 窗口宽度
+     * @param height 窗口高度
+     * @param <C> 控制器类型
+     * @return 对话框
+     * @throws IOException 加载FXML失败
+     */
+    @SuppressWarnings("unchecked")
+    public static <C extends ReusableDialog> Dialog<C> open(String fxml, double width, double height) throws IOException {
+        long start = System.nanoTime();
+        Dialog<C> dialog = (Dialog<C>) dialogs.get(fxml);
+        boolean reused = REUSE && dialog != null && !dialog.stage.isShowing();
+        if (!reused) {
+            dialog = create(fxml, ViewPreloader.take(fxml), width, height);
+            if (REUSE && !dialogs.containsKey(fxml)) {
+                dialogs.put(fxml, dialog);
+            }
+        }
+        dialog.openStartNanos = start;
+        dialog.reused = reused;
+        dialog.controller.reset();
+        return dialog;
+    }
+
+    private static <C extends ReusableDialog> Dialog<C> create(String fxml, FXMLLoader loader, double width, double height) {
+        Parent root = loader.getRoot();
+        Stage stage = new Stage();
+        stage.setScene(new Scene(root, width, height));
+        stage.initModality(Modality.APPLICATION_MODAL);
+        C controller = loader.getController();
+        controller.setDialogStage(stage);
+        return new Dialog<>(fxml, stage, controller);
+    }
+}
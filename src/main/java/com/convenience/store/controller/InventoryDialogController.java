@@ -8,7 +8,7 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 
-public class InventoryDialogController {
+public class InventoryDialogController implements DialogFactory.ReusableDialog {
     @FXML
     private TextField productIdField;
     @FXML
@@ -21,16 +21,32 @@ public class InventoryDialogController {
     private InventoryService inventoryService = new InventoryService();
     private Inventory inventory;
     private boolean isEditMode = false;
+    // 编辑模式下打开对话框时读取到的库存数量，用于计算增量
+    private int originalQuantity;
     private Stage dialogStage;
 
+    @Override
     public void setDialogStage(Stage dialogStage) {
         this.dialogStage = dialogStage;
     }
 
+    // 对话框被复用，打开前清空上一次的输入
+    @Override
+    public void reset() {
+        inventory = null;
+        isEditMode = false;
+        originalQuantity = 0;
+        productIdField.clear();
+        warehouseIdField.clear();
+        quantityField.clear();
+        minStockField.clear();
+    }
+
     public void setInventory(Inventory inventory) {
         this.inventory = inventory;
         if (inventory != null) {
             isEditMode = true;
+            originalQuantity = inventory.getQuantity();
             // 填充现有数据
             productIdField.setText(String.valueOf(inventory.getProductId()));
             warehouseIdField.setText(String.valueOf(inventory.getWarehouseId()));
@@ -48,6 +64,11 @@ public class InventoryDialogController {
             return;
         }
 
+        // 商品和仓库未改动时按数量差额更新，不覆盖其他终端的并发修改
+        boolean sameLocation = isEditMode
+                && inventory.getProductId().equals(Integer.parseInt(productIdField.getText()))
+                && inventory.getWarehouseId().equals(Integer.parseInt(warehouseIdField.getText()));
+
         // 设置库存属性
         inventory.setProductId(Integer.parseInt(productIdField.getText()));
         inventory.setWarehouseId(Integer.parseInt(warehouseIdField.getText()));
@@ -55,7 +76,9 @@ public class InventoryDialogController {
         inventory.setMinStock(Integer.parseInt(minStockField.getText()));
 
         boolean success;
-        if (isEditMode) {
+        if (sameLocation) {
+            success = inventoryService.updateInventoryByDelta(inventory, originalQuantity);
+        } else if (isEditMode) {
             success = inventoryService.updateInventory(inventory);
         } else {
             success = inventoryService.addInventory(inventory);
@@ -0,0 +1,155 @@
+package com.convenience.store.controller;
+
+import javafx.collections.ObservableList;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * 按主键比较新旧数据，只把差异（新增、修改、删除）应用到 ObservableList
+ * 与 clear() + addAll() 相比，未变化的行不触发任何列表事件，表格只重绘变化的行，滚动位置保持不变。
+ * 要求新旧列表按相同的顺序排列（如都按主键升序），顺序不一致时退化为整体替换。
+ * 复杂度 O(n)，连续的新增和删除合并为一次区间操作
+ */
+public class KeyedListPatcher {
+
+    private KeyedListPatcher() {
+    }
+
+    /**
+     * 一次修补的统计结果
+     */
+    public static final class PatchResult {
+        private final int inserted;
+        private final int updated;
+        private final int removed;
+        private final boolean replacedAll;
+
+        private PatchResult(int inserted, int updated, int removed, boolean replacedAll) {
+            this.inserted = inserted;
+            this.updated = updated;
+            this.removed = removed;
+            this.replacedAll = replacedAll;
+        }
+
+        public int getInserted() {
+            return inserted;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return 顺序不一致而整体替换时返回true
+         */
+        public boolean isReplacedAll() {
+            return replacedAll;
+        }
+    }
+
+    /**
+     * 由若干列的取值构造"内容相同"判断：所有列都相等时视为未修改，不替换该行
+     * 通常传入表格显示的各列，未显示的字段变化不需要重绘
+     * @param columns 列取值函数
+     * @param <T> 行类型
+     * @return 内容相同判断
+     */
+    @SafeVarargs
+    public static <T> BiPredicate<T, T> sameValues(Function<T, ?>... columns) {
+        return (a, b) -> {
+            for (Function<T, ?> column : columns) {
+                if (!Objects.equals(column.apply(a), column.apply(b))) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    /**
+     * 把 target 修补为与 fresh 相同的内容
+     * @param target 要修补的列表（通常是表格的数据集合）
+     * @param fresh 最新数据
+     * @param keyOf 主键取值函数
+     * @param sameContent 内容相同判断，相同时保留旧对象
+     * @param <T> 行类型
+     * @param <K> 主键类型
+     * @return 修补统计
+     */
+    public static <T, K> PatchResult patch(ObservableList<T> target, List<T> fresh,
+                                           Function<T, K> keyOf, BiPredicate<T, T> sameContent) {
+        Map<K, Integer> freshIndex = new HashMap<>(fresh.size() * 2);
+        for (int i = 0; i < fresh.size(); i++) {
+            freshIndex.put(keyOf.apply(fresh.get(i)), i);
+        }
+
+        // 检查保留下来的旧行在新数据中的相对顺序不变，否则无法按顺序合并
+        int previous = -1;
+        int kept = 0;
+        for (T row : target) {
+            Integer index = freshIndex.get(keyOf.apply(row));
+            if (index != null) {
+                if (index <= previous) {
+                    int oldSize = target.size();
+                    target.setAll(fresh);
+                    return new PatchResult(fresh.size(), 0, oldSize, true);
+                }
+                previous = index;
+                kept++;
+            }
+        }
+
+        // 1. 从后往前删除新数据中已不存在的行，连续的行一次删除
+        int removed = target.size() - kept;
+        int end = target.size();
+        while (end > 0) {
+            if (freshIndex.containsKey(keyOf.apply(target.get(end - 1)))) {
+                end--;
+                continue;
+            }
+            int start = end - 1;
+            while (start > 0 && !freshIndex.containsKey(keyOf.apply(target.get(start - 1)))) {
+                start--;
+            }
+            target.remove(start, end);
+            end = start;
+        }
+
+        // 2. 此时 target 是 fresh 的有序子序列，顺序合并：相同主键比较内容，缺失的行按区间插入
+        int inserted = 0;
+        int updated = 0;
+        int j = 0;
+        int i = 0;
+        while (i < fresh.size()) {
+            T row = fresh.get(i);
+            if (j < target.size() && Objects.equals(keyOf.apply(target.get(j)), keyOf.apply(row))) {
+                if (!sameContent.test(target.get(j), row)) {
+                    target.set(j, row);
+                    updated++;
+                }
+                i++;
+                j++;
+                continue;
+            }
+            // 收集连续的新行，直到遇到 target 中下一行的主键
+            K nextKey = j < target.size() ? keyOf.apply(target.get(j)) : null;
+            int from = i;
+            while (i < fresh.size() && (nextKey == null || !Objects.equals(keyOf.apply(fresh.get(i)), nextKey))) {
+                i++;
+            }
+            target.addAll(j, fresh.subList(from, i));
+            inserted += i - from;
+            j += i - from;
+        }
+        return new PatchResult(inserted, updated, removed, false);
+    }
+}
@@ -3,7 +3,6 @@ package com.convenience.store.controller;
 import com.convenience.store.service.UserService;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
@@ -65,8 +64,8 @@ public class LoginController {
             
             // 跳转到主界面
             try {
-                // 加载主界面FXML文件
-                Parent root = FXMLLoader.load(getClass().getResource("/fxml/Main.fxml"));
+                // 取用主界面：登录界面显示期间已在后台预加载，未预加载时同步加载
+                Parent root = ViewPreloader.take("/fxml/Main.fxml").getRoot();
                 // 获取当前舞台(窗口)
                 Stage stage = (Stage) loginButton.getScene().getWindow();
                 // 创建主界面场景，设置宽度800px，高度600px
@@ -3,25 +3,44 @@ package com.convenience.store.controller;
 import com.convenience.store.entity.User;
 import com.convenience.store.entity.Product;
 import com.convenience.store.entity.Inventory;
+import com.convenience.store.entity.InventoryRow;
+import com.convenience.store.entity.Tombstone;
+import com.convenience.store.entity.Warehouse;
 import com.convenience.store.service.UserService;
 import com.convenience.store.service.ProductService;
 import com.convenience.store.service.InventoryService;
+import com.convenience.store.service.InventoryExportService;
+import com.convenience.store.service.WarehouseService;
+import com.convenience.store.service.BulkImportService;
+import com.convenience.store.service.LowStockMonitor;
+import com.convenience.store.service.DeltaSyncService;
+import com.convenience.store.service.BulkImportService.ImportError;
+import com.convenience.store.service.BulkImportService.ImportResult;
+import com.convenience.store.service.BulkImportService.ImportType;
+import com.convenience.store.service.InventoryExportService.ExportFormat;
+import com.convenience.store.util.StartupTimeline;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.text.Text;
-import javafx.stage.Modality;
-import javafx.stage.Stage;
+import javafx.stage.FileChooser;
+import javafx.util.StringConverter;
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 系统主控制器 - 管理系统主界面的所有功能
@@ -29,6 +48,9 @@ import java.util.HashMap;
  * 是整个系统的核心控制器，协调各个功能模块
  */
 public class MainController {
+    // 低库存摘要中列出的最紧缺商品数
+    private static final int LOW_STOCK_SUMMARY_SIZE = 10;
+
     @FXML
     private Text welcomeText;
     
@@ -88,22 +110,24 @@ public class MainController {
     private TextField searchProductField;
     @FXML
     private Button searchProductButton;
+    @FXML
+    private Button importProductButton;
 
     // 库存管理相关控件
     @FXML
-    private TableView<Inventory> inventoryTable;
+    private TableView<InventoryRow> inventoryTable;
     @FXML
-    private TableColumn<Inventory, Integer> inventoryInventoryIdCol;
+    private TableColumn<InventoryRow, Integer> inventoryInventoryIdCol;
     @FXML
-    private TableColumn<Inventory, String> inventoryProductNameCol;
+    private TableColumn<InventoryRow, String> inventoryProductNameCol;
     @FXML
-    private TableColumn<Inventory, String> inventoryWarehouseNameCol;
+    private TableColumn<InventoryRow, String> inventoryWarehouseNameCol;
     @FXML
-    private TableColumn<Inventory, Integer> inventoryQuantityCol;
+    private TableColumn<InventoryRow, Integer> inventoryQuantityCol;
     @FXML
-    private TableColumn<Inventory, Integer> inventoryMinStockCol; // 最小库存列
+    private TableColumn<InventoryRow, Integer> inventoryMinStockCol; // 最小库存列
     @FXML
-    private TableColumn<Inventory, String> inventoryLastUpdatedCol; // 最后更新时间列
+    private TableColumn<InventoryRow, String> inventoryLastUpdatedCol; // 最后更新时间列
     
     // 库存管理按钮
     @FXML
@@ -118,6 +142,28 @@ public class MainController {
     private TextField searchInventoryField;      // 库存搜索输入框
     @FXML
     private Button searchInventoryButton;        // 库存搜索按钮
+    @FXML
+    private TextField searchCategoryField;       // 类别过滤
+    @FXML
+    private ComboBox<Warehouse> searchWarehouseBox; // 仓库过滤
+    @FXML
+    private TextField minQuantityField;          // 数量下限
+    @FXML
+    private TextField maxQuantityField;          // 数量上限
+    @FXML
+    private CheckBox lowStockCheckBox;           // 只显示低于最小库存的记录
+    @FXML
+    private Label lowStockSummaryLabel;          // 低库存监控摘要
+    
+    // 库存导出控件
+    @FXML
+    private Button exportInventoryButton;        // 库存导出按钮
+    @FXML
+    private ProgressBar exportProgressBar;       // 导出进度条
+    @FXML
+    private Button cancelExportButton;           // 取消导出按钮
+    @FXML
+    private Button importInventoryButton;        // 库存批量导入按钮
 
     // ===============================
     // 服务层实例
@@ -125,35 +171,85 @@ public class MainController {
     private UserService userService = new UserService();          // 用户服务 - 处理用户相关业务逻辑
     private ProductService productService = new ProductService(); // 商品服务 - 处理商品相关业务逻辑
     private InventoryService inventoryService = new InventoryService(); // 库存服务 - 处理库存相关业务逻辑
+    private WarehouseService warehouseService = new WarehouseService(); // 仓库服务 - 提供库存搜索的仓库选项
+    private InventoryExportService inventoryExportService = new InventoryExportService(); // 库存导出服务
+    private BulkImportService bulkImportService = new BulkImportService(); // 批量导入服务
 
     // ===============================
     // 数据集合 - 用于JavaFX表格显示
     // ===============================
     private ObservableList<User> userData = FXCollections.observableArrayList();          // 用户数据集合
     private ObservableList<Product> productData = FXCollections.observableArrayList();     // 商品数据集合
-    private ObservableList<Inventory> inventoryData = FXCollections.observableArrayList(); // 库存数据集合
+    private ObservableList<InventoryRow> inventoryData = FXCollections.observableArrayList(); // 库存数据集合
+
+    // ===============================
+    // 分页加载器 - 滚动到表格底部时按需加载下一页
+    // ===============================
+    private PagedTableLoader<User> userLoader;
+    private PagedTableLoader<Product> productLoader;
+    private PagedTableLoader<InventoryRow> inventoryLoader;
+
+    // 三张表的首页数据都写入表格后完成
+    private CompletableFuture<Void> initialLoad;
+
+    // 正在进行的库存导出，没有导出时为null
+    private Task<Long> exportTask;
 
     /**
      * 初始化方法 - 界面加载完成后自动调用
      * 负责初始化所有表格和加载初始数据
+     * 主界面可能在后台线程中预加载（见 ViewPreloader），三张表的首页数据并行查询
      */
     @FXML
     public void initialize() {
-        // 初始化用户表并加载数据
+        // 初始化用户表、商品表、库存表
         initUserTable();
-        loadUserData();
-        
-        // 初始化商品表并加载数据
         initProductTable();
-        loadProductData();
-        
-        // 初始化库存表并加载数据
         initInventoryTable();
-        loadInventoryData();
+        
+        // 并行加载三张表的首页数据
+        initialLoad = StartupTimeline.track("首屏数据加载",
+                CompletableFuture.allOf(loadUserData(), loadProductData(), loadInventoryData()));
+        
+        // 其他终端的修改由增量同步在后台线程回调，切回界面线程合并到表格
+        DeltaSyncService.addListener(changes -> Platform.runLater(() -> applyRemoteChanges(changes)));
         
         // 设置欢迎文本
         welcomeText.setText("欢迎使用便利店仓库管理系统");
     }
+
+    // 合并增量同步拉取到的修改和删除，无法逐行合并时刷新三张表
+    private void applyRemoteChanges(DeltaSyncService.ChangeSet changes) {
+        if (changes.isFullReloadRequired()) {
+            refreshUserData();
+            refreshProductData();
+            refreshInventoryData();
+            return;
+        }
+        userLoader.applyChanges(changes.getUsers(), changes.getDeletedIds(Tombstone.TABLE_USERS));
+        productLoader.applyChanges(changes.getProducts(), changes.getDeletedIds(Tombstone.TABLE_PRODUCTS));
+        
+        // 外键级联删除的库存行没有删除记录，按表格中已加载行的商品和仓库推算
+        Set<Integer> deletedInventory = new HashSet<>(changes.getDeletedIds(Tombstone.TABLE_INVENTORY));
+        Set<Integer> deletedProducts = new HashSet<>(changes.getDeletedIds(Tombstone.TABLE_PRODUCTS));
+        Set<Integer> deletedWarehouses = new HashSet<>(changes.getDeletedIds(Tombstone.TABLE_WAREHOUSES));
+        if (!deletedProducts.isEmpty() || !deletedWarehouses.isEmpty()) {
+            for (InventoryRow row : inventoryData) {
+                if (deletedProducts.contains(row.getProductId()) || deletedWarehouses.contains(row.getWarehouseId())) {
+                    deletedInventory.add(row.getInventoryId());
+                }
+            }
+        }
+        inventoryLoader.applyChanges(changes.getInventoryRows(), deletedInventory);
+    }
+
+    /**
+     * 获取首屏数据加载任务
+     * @return 三张表的首页数据都写入表格后完成的Future
+     */
+    public CompletableFuture<Void> getInitialLoad() {
+        return initialLoad;
+    }
 //------------------------用户页---------------------//
     // 初始化用户表列
     private void initUserTable() {
@@ -164,44 +260,35 @@ public class MainController {
         phoneCol.setCellValueFactory(new PropertyValueFactory<>("phone"));
         roleCol.setCellValueFactory(new PropertyValueFactory<>("role"));
         statusCol.setCellValueFactory(new PropertyValueFactory<>("status"));
+        
+        // 用户表按用户ID分页加载
+        userLoader = new PagedTableLoader<>(userTable, userData, User::getUserId,
+                userService::getUserPageAsync, PagedTableLoader.DEFAULT_PAGE_SIZE,
+                KeyedListPatcher.sameValues(User::getUsername, User::getFullName, User::getEmail,
+                        User::getPhone, User::getRole, User::getStatus));
     }
 
     /**
      * 加载用户数据到用户表格
-     * 从用户服务层获取所有用户信息，并更新表格显示
+     * 按当前搜索条件从第一页重新加载，后续页在滚动时按需加载
      */
-    private void loadUserData() {
-        // 调用UserService的getAllUsers方法获取所有用户信息
-        List<User> users = userService.getAllUsers();
-        
-        // 清空现有用户数据集合
-        userData.clear();
-        
-        // 将获取到的用户列表添加到数据集合中
-        userData.addAll(users);
-        
-        // 设置用户表格的数据源
-        userTable.setItems(userData);
+    private CompletableFuture<Void> loadUserData() {
+        return userLoader.reload();
+    }
+
+    // 增删改后刷新用户表：只把变化的行应用到表格，保留滚动位置和选中行
+    private void refreshUserData() {
+        userLoader.refresh();
     }
 
     // 显示添加用户对话框
     @FXML
     void showAddUserDialog(ActionEvent event) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/UserDialog.fxml"));
-            Parent root = loader.load();
-            
-            Stage dialogStage = new Stage();
-            dialogStage.setTitle("添加用户");
-            dialogStage.setScene(new Scene(root, 400, 350));
-            dialogStage.initModality(Modality.APPLICATION_MODAL);
-            
-            UserDialogController controller = loader.getController();
-            controller.setDialogStage(dialogStage);
-            controller.setUser(null);
-            
-            dialogStage.showAndWait();
-            loadUserData(); // 刷新用户列表
+            DialogFactory.Dialog<UserDialogController> dialog = DialogFactory.open("/fxml/UserDialog.fxml", 400, 350);
+            dialog.getController().setUser(null);
+            dialog.showAndWait("添加用户");
+            refreshUserData(); // 刷新用户列表
         } catch (IOException e) {
             e.printStackTrace();
             showAlert(Alert.AlertType.ERROR, "系统错误", "无法加载添加用户对话框");
@@ -218,20 +305,10 @@ public class MainController {
         }
 
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/UserDialog.fxml"));
-            Parent root = loader.load();
-            
-            Stage dialogStage = new Stage();
-            dialogStage.setTitle("修改用户");
-            dialogStage.setScene(new Scene(root, 400, 350));
-            dialogStage.initModality(Modality.APPLICATION_MODAL);
-            
-            UserDialogController controller = loader.getController();
-            controller.setDialogStage(dialogStage);
-            controller.setUser(selectedUser);
-            
-            dialogStage.showAndWait();
-            loadUserData(); // 刷新用户列表
+            DialogFactory.Dialog<UserDialogController> dialog = DialogFactory.open("/fxml/UserDialog.fxml", 400, 350);
+            dialog.getController().setUser(selectedUser);
+            dialog.showAndWait("修改用户");
+            refreshUserData(); // 刷新用户列表
         } catch (IOException e) {
             e.printStackTrace();
             showAlert(Alert.AlertType.ERROR, "系统错误", "无法加载修改用户对话框");
@@ -254,13 +331,18 @@ public class MainController {
 
         alert.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
-                boolean success = userService.deleteUser(selectedUser.getUserId());
-                if (success) {
-                    showAlert(Alert.AlertType.INFORMATION, "删除成功", "用户已成功删除");
-                    loadUserData();
-                } else {
-                    showAlert(Alert.AlertType.ERROR, "删除失败", "删除用户时发生错误");
-                }
+                // 删除在后台线程中执行，完成后回到界面线程提示并刷新
+                deleteUserButton.setDisable(true);
+                userService.deleteUserAsync(selectedUser.getUserId())
+                        .whenComplete((success, error) -> Platform.runLater(() -> {
+                            deleteUserButton.setDisable(false);
+                            if (error == null && success) {
+                                showAlert(Alert.AlertType.INFORMATION, "删除成功", "用户已成功删除");
+                                refreshUserData();
+                            } else {
+                                showAlert(Alert.AlertType.ERROR, "删除失败", "删除用户时发生错误");
+                            }
+                        }));
             }
         });
     }
@@ -282,13 +364,17 @@ public class MainController {
         alert.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
                 List<Integer> userIds = selectedUsers.stream().map(User::getUserId).toList();
-                boolean success = userService.batchDeleteUsers(userIds);
-                if (success) {
-                    showAlert(Alert.AlertType.INFORMATION, "删除成功", "选中的用户已成功删除");
-                    loadUserData();
-                } else {
-                    showAlert(Alert.AlertType.ERROR, "删除失败", "批量删除用户时发生错误");
-                }
+                batchDeleteUserButton.setDisable(true);
+                userService.batchDeleteUsersAsync(userIds)
+                        .whenComplete((success, error) -> Platform.runLater(() -> {
+                            batchDeleteUserButton.setDisable(false);
+                            if (error == null && success) {
+                                showAlert(Alert.AlertType.INFORMATION, "删除成功", "选中的用户已成功删除");
+                                refreshUserData();
+                            } else {
+                                showAlert(Alert.AlertType.ERROR, "删除失败", "批量删除用户时发生错误");
+                            }
+                        }));
             }
         });
     }
@@ -300,10 +386,8 @@ public class MainController {
         Map<String, Object> params = new HashMap<>();
         params.put("username", username);
         
-        List<User> users = userService.searchUsers(params);
-        userData.clear();
-        userData.addAll(users);
-        userTable.setItems(userData);
+        // 按搜索条件分页加载
+        userLoader.reload(params);
     }
 //---------------------------------商品页------------------------------//
     // 初始化商品表列
@@ -314,35 +398,33 @@ public class MainController {
         unitCol.setCellValueFactory(new PropertyValueFactory<>("unit"));
         priceCol.setCellValueFactory(new PropertyValueFactory<>("price"));
         descriptionCol.setCellValueFactory(new PropertyValueFactory<>("description"));
+        
+        // 商品表按商品ID分页加载
+        productLoader = new PagedTableLoader<>(productTable, productData, Product::getProductId,
+                productService::getProductPageAsync, PagedTableLoader.DEFAULT_PAGE_SIZE,
+                KeyedListPatcher.sameValues(Product::getProductName, Product::getCategory, Product::getUnit,
+                        Product::getPrice, Product::getDescription));
+    }
+
+    // 加载商品数据（按当前搜索条件从第一页重新加载）
+    private CompletableFuture<Void> loadProductData() {
+        return productLoader.reload();
     }
 
-    // 加载商品数据
-    private void loadProductData() {
-        List<Product> products = productService.getAllProducts();
-        productData.clear();
-        productData.addAll(products);
-        productTable.setItems(productData);
+    // 增删改后刷新商品表：只把变化的行应用到表格，保留滚动位置和选中行
+    private void refreshProductData() {
+        productLoader.refresh();
     }
 
     // 显示添加商品对话框
     @FXML
     void showAddProductDialog(ActionEvent event) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/ProductDialog.fxml"));
-            Parent root = loader.load();
-            
-            Stage dialogStage = new Stage();
-            dialogStage.setTitle("添加商品");
-            dialogStage.setScene(new Scene(root, 400, 300));
-            dialogStage.initModality(Modality.APPLICATION_MODAL);
-            
-            ProductDialogController controller = loader.getController();
-            controller.setDialogStage(dialogStage);
-            controller.setProduct(null);
-            
-            dialogStage.showAndWait();
-            loadProductData(); // 刷新商品列表
-            loadInventoryData(); // 刷新库存列表
+            DialogFactory.Dialog<ProductDialogController> dialog = DialogFactory.open("/fxml/ProductDialog.fxml", 400, 300);
+            dialog.getController().setProduct(null);
+            dialog.showAndWait("添加商品");
+            refreshProductData(); // 刷新商品列表
+            refreshInventoryData(); // 刷新库存列表
         } catch (IOException e) {
             e.printStackTrace();
             showAlert(Alert.AlertType.ERROR, "系统错误", "无法加载添加商品对话框");
@@ -359,21 +441,11 @@ public class MainController {
         }
 
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/ProductDialog.fxml"));
-            Parent root = loader.load();
-            
-            Stage dialogStage = new Stage();
-            dialogStage.setTitle("修改商品");
-            dialogStage.setScene(new Scene(root, 400, 300));
-            dialogStage.initModality(Modality.APPLICATION_MODAL);
-            
-            ProductDialogController controller = loader.getController();
-            controller.setDialogStage(dialogStage);
-            controller.setProduct(selectedProduct);
-            
-            dialogStage.showAndWait();
-            loadProductData(); // 刷新商品列表
-            loadInventoryData(); // 刷新库存列表
+            DialogFactory.Dialog<ProductDialogController> dialog = DialogFactory.open("/fxml/ProductDialog.fxml", 400, 300);
+            dialog.getController().setProduct(selectedProduct);
+            dialog.showAndWait("修改商品");
+            refreshProductData(); // 刷新商品列表
+            refreshInventoryData(); // 刷新库存列表
         } catch (IOException e) {
             e.printStackTrace();
             showAlert(Alert.AlertType.ERROR, "系统错误", "无法加载修改商品对话框");
@@ -396,14 +468,18 @@ public class MainController {
 
         alert.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
-                boolean success = productService.deleteProduct(selectedProduct.getProductId());
-                if (success) {
-                    showAlert(Alert.AlertType.INFORMATION, "删除成功", "商品已成功删除");
-                    loadProductData();
-                    loadInventoryData(); // 同时更新库存数据
-                } else {
-                    showAlert(Alert.AlertType.ERROR, "删除失败", "删除商品时发生错误");
-                }
+                deleteProductButton.setDisable(true);
+                productService.deleteProductAsync(selectedProduct.getProductId())
+                        .whenComplete((success, error) -> Platform.runLater(() -> {
+                            deleteProductButton.setDisable(false);
+                            if (error == null && success) {
+                                showAlert(Alert.AlertType.INFORMATION, "删除成功", "商品已成功删除");
+                                refreshProductData();
+                                refreshInventoryData(); // 同时更新库存数据
+                            } else {
+                                showAlert(Alert.AlertType.ERROR, "删除失败", "删除商品时发生错误");
+                            }
+                        }));
             }
         });
     }
@@ -411,14 +487,18 @@ public class MainController {
     // 搜索商品
     @FXML
     void searchProducts(ActionEvent event) {
-        String productName = searchProductField.getText();
-        Map<String, Object> params = new HashMap<>();
-        params.put("productName", productName);
-        
-        List<Product> products = productService.searchProducts(params);
-        productData.clear();
-        productData.addAll(products);
-        productTable.setItems(productData);
+        String productName = searchProductField.getText().trim();
+        if (productName.isEmpty() || !productService.isSearchIndexReady()) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("productName", productName);
+            
+            // 按搜索条件分页加载
+            productLoader.reload(params);
+            return;
+        }
+        // 搜索索引就绪时在内存中按名称和类别匹配，结果按相关度排序
+        // 保存对话框后 refresh() 重新执行同一搜索，表格与搜索框保持一致
+        productLoader.showAll(() -> productService.searchProductsRankedAsync(productName, PagedTableLoader.DEFAULT_PAGE_SIZE));
     }
 
     //------------------------------库存页----------------------------//
@@ -426,37 +506,63 @@ public class MainController {
     private void initInventoryTable() {
         inventoryInventoryIdCol.setCellValueFactory(new PropertyValueFactory<>("inventoryId"));
         
-        // 使用自定义CellValueFactory处理商品名称
-        inventoryProductNameCol.setCellValueFactory(cellData -> {
-            Inventory inventory = cellData.getValue();
-            if (inventory != null && inventory.getProduct() != null) {
-                return new javafx.beans.property.SimpleStringProperty(inventory.getProduct().getProductName());
-            } else {
-                return new javafx.beans.property.SimpleStringProperty("");
-            }
-        });
-        
-        // 使用自定义CellValueFactory处理仓库名称
-        inventoryWarehouseNameCol.setCellValueFactory(cellData -> {
-            Inventory inventory = cellData.getValue();
-            if (inventory != null && inventory.getWarehouse() != null) {
-                return new javafx.beans.property.SimpleStringProperty(inventory.getWarehouse().getWarehouseName());
-            } else {
-                return new javafx.beans.property.SimpleStringProperty("");
-            }
-        });
+        // 列表行已包含商品名称和仓库名称，无需再访问关联对象
+        inventoryProductNameCol.setCellValueFactory(new PropertyValueFactory<>("productName"));
+        inventoryWarehouseNameCol.setCellValueFactory(new PropertyValueFactory<>("warehouseName"));
         
         inventoryQuantityCol.setCellValueFactory(new PropertyValueFactory<>("quantity"));
         inventoryMinStockCol.setCellValueFactory(new PropertyValueFactory<>("minStock"));
         inventoryLastUpdatedCol.setCellValueFactory(new PropertyValueFactory<>("lastUpdated"));
+        
+        // 库存表按库存ID分页加载
+        inventoryLoader = new PagedTableLoader<>(inventoryTable, inventoryData, InventoryRow::getInventoryId,
+                inventoryService::searchInventoryRowsAsync, PagedTableLoader.DEFAULT_PAGE_SIZE,
+                KeyedListPatcher.sameValues(InventoryRow::getProductName, InventoryRow::getWarehouseName,
+                        InventoryRow::getQuantity, InventoryRow::getMinStock, InventoryRow::getLastUpdated));
+        
+        // 仓库过滤下拉框：第一项为null表示不限仓库
+        searchWarehouseBox.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(Warehouse warehouse) {
+                return warehouse == null ? "全部仓库" : warehouse.getWarehouseName();
+            }
+
+            @Override
+            public Warehouse fromString(String text) {
+                return null;
+            }
+        });
+        searchWarehouseBox.getItems().add(null);
+        warehouseService.getAllWarehousesAsync()
+                .thenAccept(warehouses -> Platform.runLater(() -> searchWarehouseBox.getItems().addAll(warehouses)));
+        
+        // 低库存预警在后台线程回调，切回界面线程刷新摘要
+        LowStockMonitor.getInstance().addListener(alerts -> Platform.runLater(this::updateLowStockSummary));
+    }
+
+    // 刷新低库存摘要：标签显示低库存位置数，提示框列出最紧缺的商品
+    private void updateLowStockSummary() {
+        LowStockMonitor monitor = LowStockMonitor.getInstance();
+        lowStockSummaryLabel.setText("低库存：" + monitor.getLowStockCount() + " 项");
+        StringBuilder sb = new StringBuilder("最紧缺的商品：");
+        for (LowStockMonitor.Alert alert : monitor.getMostCritical(LOW_STOCK_SUMMARY_SIZE)) {
+            sb.append('\n')
+              .append(alert.getProductName() != null ? alert.getProductName() : "商品#" + alert.getProductId())
+              .append(" @ ")
+              .append(alert.getWarehouseName() != null ? alert.getWarehouseName() : "仓库#" + alert.getWarehouseId())
+              .append("  ").append(alert.getQuantity()).append('/').append(alert.getMinStock());
+        }
+        lowStockSummaryLabel.setTooltip(new Tooltip(sb.toString()));
     }
 
-    // 加载库存数据
-    private void loadInventoryData() {
-        List<Inventory> inventory = inventoryService.getAllInventory();
-        inventoryData.clear();
-        inventoryData.addAll(inventory);
-        inventoryTable.setItems(inventoryData);
+    // 加载库存数据（从第一页重新加载，后续页在滚动时按需加载）
+    private CompletableFuture<Void> loadInventoryData() {
+        return inventoryLoader.reload();
+    }
+
+    // 增删改后刷新库存表：只把变化的行应用到表格，保留滚动位置和选中行
+    private void refreshInventoryData() {
+        inventoryLoader.refresh();
     }
 
     /**
@@ -470,20 +576,10 @@ public class MainController {
     @FXML
     void showAddInventoryDialog(ActionEvent event) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/InventoryDialog.fxml"));
-            Parent root = loader.load();
-            
-            Stage dialogStage = new Stage();
-            dialogStage.setTitle("添加库存");
-            dialogStage.setScene(new Scene(root, 400, 250));
-            dialogStage.initModality(Modality.APPLICATION_MODAL);
-            
-            InventoryDialogController controller = loader.getController();
-            controller.setDialogStage(dialogStage);
-            controller.setInventory(null);
-            
-            dialogStage.showAndWait();
-            loadInventoryData(); // 刷新库存列表
+            DialogFactory.Dialog<InventoryDialogController> dialog = DialogFactory.open("/fxml/InventoryDialog.fxml", 400, 250);
+            dialog.getController().setInventory(null);
+            dialog.showAndWait("添加库存");
+            refreshInventoryData(); // 刷新库存列表
         } catch (IOException e) {
             e.printStackTrace();
             showAlert(Alert.AlertType.ERROR, "系统错误", "无法加载添加库存对话框");
@@ -493,35 +589,44 @@ public class MainController {
     /**
      * 显示修改库存对话框
      * 1. 检查是否选择了要修改的库存记录
-     * 2. 加载库存对话框的FXML界面
-     * 3. 设置对话框的属性（标题、大小、模态性）
-     * 4. 初始化控制器并传递选中的库存记录
-     * 5. 显示对话框并等待用户操作
-     * 6. 操作完成后刷新库存列表
+     * 2. 在后台线程中按ID读取完整的库存记录，读取期间禁用修改按钮
+     * 3. 加载库存对话框的FXML界面
+     * 4. 设置对话框的属性（标题、大小、模态性）
+     * 5. 初始化控制器并传递选中的库存记录
+     * 6. 显示对话框并等待用户操作
+     * 7. 操作完成后刷新库存列表
      */
     @FXML
     void showUpdateInventoryDialog(ActionEvent event) {
-        Inventory selectedInventory = inventoryTable.getSelectionModel().getSelectedItem();
-        if (selectedInventory == null) {
+        InventoryRow selectedRow = inventoryTable.getSelectionModel().getSelectedItem();
+        if (selectedRow == null) {
             showAlert(Alert.AlertType.WARNING, "提示", "请选择要修改的库存记录");
             return;
         }
+        // 表格只有列表行，编辑时按ID读取完整的库存记录，查询不占用界面线程
+        updateInventoryButton.setDisable(true);
+        inventoryService.getInventoryByIdAsync(selectedRow.getInventoryId())
+                .whenComplete((inventory, error) -> Platform.runLater(() -> {
+                    updateInventoryButton.setDisable(false);
+                    if (error != null) {
+                        error.printStackTrace();
+                        showAlert(Alert.AlertType.ERROR, "系统错误", "读取库存记录时发生错误");
+                    } else if (inventory == null) {
+                        showAlert(Alert.AlertType.WARNING, "提示", "该库存记录已被删除");
+                        refreshInventoryData();
+                    } else {
+                        openUpdateInventoryDialog(inventory);
+                    }
+                }));
+    }
 
+    // 显示修改库存对话框，关闭后刷新库存列表
+    private void openUpdateInventoryDialog(Inventory selectedInventory) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/InventoryDialog.fxml"));
-            Parent root = loader.load();
-            
-            Stage dialogStage = new Stage();
-            dialogStage.setTitle("修改库存");
-            dialogStage.setScene(new Scene(root, 400, 250));
-            dialogStage.initModality(Modality.APPLICATION_MODAL);
-            
-            InventoryDialogController controller = loader.getController();
-            controller.setDialogStage(dialogStage);
-            controller.setInventory(selectedInventory);
-            
-            dialogStage.showAndWait();
-            loadInventoryData(); // 刷新库存列表
+            DialogFactory.Dialog<InventoryDialogController> dialog = DialogFactory.open("/fxml/InventoryDialog.fxml", 400, 250);
+            dialog.getController().setInventory(selectedInventory);
+            dialog.showAndWait("修改库存");
+            refreshInventoryData(); // 刷新库存列表
         } catch (IOException e) {
             e.printStackTrace();
             showAlert(Alert.AlertType.ERROR, "系统错误", "无法加载修改库存对话框");
@@ -532,13 +637,13 @@ public class MainController {
      * 删除库存记录
      * 1. 检查是否选择了要删除的库存记录
      * 2. 显示确认删除对话框
-     * 3. 如果用户确认删除，则调用服务层删除库存记录
+     * 3. 如果用户确认删除，则在后台线程中调用服务层删除库存记录，删除期间禁用删除按钮
      * 4. 根据删除结果显示相应提示
      * 5. 刷新库存列表
      */
     @FXML
     void deleteInventory(ActionEvent event) {
-        Inventory selectedInventory = inventoryTable.getSelectionModel().getSelectedItem();
+        InventoryRow selectedInventory = inventoryTable.getSelectionModel().getSelectedItem();
         if (selectedInventory == null) {
             showAlert(Alert.AlertType.WARNING, "提示", "请选择要删除的库存记录");
             return;
@@ -551,48 +656,214 @@ public class MainController {
 
         alert.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
-                boolean success = inventoryService.deleteInventory(selectedInventory.getInventoryId());
-                if (success) {
-                    showAlert(Alert.AlertType.INFORMATION, "删除成功", "库存记录已成功删除");
-                    loadInventoryData();
-                } else {
-                    showAlert(Alert.AlertType.ERROR, "删除失败", "删除库存记录时发生错误");
-                }
+                deleteInventoryButton.setDisable(true);
+                inventoryService.deleteInventoryAsync(selectedInventory.getInventoryId())
+                        .whenComplete((success, error) -> Platform.runLater(() -> {
+                            deleteInventoryButton.setDisable(false);
+                            if (error != null) {
+                                error.printStackTrace();
+                            }
+                            if (error == null && success) {
+                                showAlert(Alert.AlertType.INFORMATION, "删除成功", "库存记录已成功删除");
+                                refreshInventoryData();
+                            } else {
+                                showAlert(Alert.AlertType.ERROR, "删除失败", "删除库存记录时发生错误");
+                            }
+                        }));
             }
         });
     }
 
     /**
      * 搜索库存
-     * 1. 获取搜索关键词
-     * 2. 根据关键词搜索库存记录
-     * 3. 目前简化实现，直接刷新显示所有库存
-     * 4. 显示功能提示信息
+     * 1. 获取商品名称关键词和类别、仓库、数量范围、低库存等过滤条件
+     * 2. 条件全部为空时加载所有库存，否则在数据库端按条件过滤
+     * 3. 结果同样按页加载，滚动时加载后续页
      */
     @FXML
     void searchInventory(ActionEvent event) {
-        // 获取搜索关键词
+        // 获取搜索关键词和过滤条件
         String keyword = searchInventoryField.getText().trim();
+        String category = searchCategoryField.getText().trim();
+        Warehouse warehouse = searchWarehouseBox.getValue();
+        Integer minQuantity;
+        Integer maxQuantity;
         try {
-            List<Inventory> inventories;
-            // 如果关键词为空，则加载所有库存数据
-            if (keyword.isEmpty()) {
-                inventories = inventoryService.getAllInventory();
-            } else {
-                // 根据关键词搜索库存（目前简化实现，直接返回所有库存）
-                // 后续可扩展为根据产品名称搜索
-                inventories = inventoryService.getAllInventory();
+            minQuantity = parseOptionalInt(minQuantityField.getText());
+            maxQuantity = parseOptionalInt(maxQuantityField.getText());
+        } catch (NumberFormatException e) {
+            showAlert(Alert.AlertType.WARNING, "提示", "数量范围必须是整数");
+            return;
+        }
+        try {
+            // 条件全部为空时params为空表，即加载所有库存
+            Map<String, Object> params = new HashMap<>();
+            if (!keyword.isEmpty()) {
+                params.put("productName", keyword);
+            }
+            if (!category.isEmpty()) {
+                params.put("category", category);
+            }
+            if (warehouse != null) {
+                params.put("warehouseId", warehouse.getWarehouseId());
+            }
+            if (lowStockCheckBox.isSelected()) {
+                params.put("lowStock", true);
             }
-            // 更新表格显示
-            inventoryData.clear();
-            inventoryData.addAll(inventories);
-            inventoryTable.setItems(inventoryData);
+            if (minQuantity != null) {
+                params.put("minQuantity", minQuantity);
+            }
+            if (maxQuantity != null) {
+                params.put("maxQuantity", maxQuantity);
+            }
+            inventoryLoader.reload(params);
         } catch (Exception e) {
             e.printStackTrace();
             showAlert(Alert.AlertType.ERROR, "搜索错误", "搜索库存时发生错误");
         }
     }
 
+    // 解析可选的整数输入，空白返回null
+    private static Integer parseOptionalInt(String text) {
+        String value = text == null ? "" : text.trim();
+        return value.isEmpty() ? null : Integer.valueOf(value);
+    }
+
+    /**
+     * 导出库存
+     * 1. 选择导出文件，根据扩展名决定CSV或TSV格式
+     * 2. 在后台线程中流式导出，避免阻塞界面，可点击"取消导出"中止
+     * 3. 通过进度条显示导出进度，完成后提示导出行数；失败或取消时不会留下不完整的文件
+     */
+    @FXML
+    void exportInventory(ActionEvent event) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("导出库存");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV文件", "*.csv"),
+                new FileChooser.ExtensionFilter("TSV文件", "*.tsv"));
+        fileChooser.setInitialFileName("inventory.csv");
+        File file = fileChooser.showSaveDialog(inventoryTable.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        ExportFormat format = file.getName().toLowerCase().endsWith(".tsv") ? ExportFormat.TSV : ExportFormat.CSV;
+
+        // 导出任务在后台线程执行，通过updateProgress把进度同步到界面线程
+        exportTask = new Task<>() {
+            @Override
+            protected Long call() throws Exception {
+                return inventoryExportService.exportInventory(file.toPath(), format, this::updateProgress);
+            }
+        };
+        exportProgressBar.progressProperty().bind(exportTask.progressProperty());
+        exportProgressBar.setVisible(true);
+        exportInventoryButton.setDisable(true);
+        cancelExportButton.setVisible(true);
+
+        Task<Long> task = exportTask;
+        task.setOnSucceeded(e -> {
+            finishExport();
+            showAlert(Alert.AlertType.INFORMATION, "导出成功", "已导出 " + task.getValue() + " 条库存记录");
+        });
+        task.setOnFailed(e -> {
+            task.getException().printStackTrace();
+            finishExport();
+            showAlert(Alert.AlertType.ERROR, "导出失败", "导出库存时发生错误");
+        });
+        // 取消时中断导出线程，导出服务删除已写的临时文件
+        task.setOnCancelled(e -> finishExport());
+
+        Thread exportThread = new Thread(task, "inventory-export");
+        exportThread.setDaemon(true);
+        exportThread.start();
+    }
+
+    // 取消正在进行的库存导出
+    @FXML
+    void cancelExport(ActionEvent event) {
+        if (exportTask != null) {
+            exportTask.cancel();
+        }
+    }
+
+    // 导出结束后恢复界面状态
+    private void finishExport() {
+        exportTask = null;
+        exportProgressBar.progressProperty().unbind();
+        exportProgressBar.setVisible(false);
+        exportInventoryButton.setDisable(false);
+        cancelExportButton.setVisible(false);
+    }
+
+    // 批量导入商品
+    @FXML
+    void importProducts(ActionEvent event) {
+        runImport(ImportType.PRODUCT, importProductButton);
+    }
+
+    // 批量导入库存
+    @FXML
+    void importInventory(ActionEvent event) {
+        runImport(ImportType.INVENTORY, importInventoryButton);
+    }
+
+    /**
+     * 执行CSV批量导入
+     * 1. 选择CSV文件
+     * 2. 在后台线程中导入，导入期间禁用导入按钮
+     * 3. 完成后刷新商品和库存列表，有错误行时把错误明细写到CSV同目录下的 .errors.txt 文件
+     */
+    private void runImport(ImportType type, Button importButton) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("选择要导入的CSV文件（表头: " + String.join(",", type.getColumns()) + "）");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV文件", "*.csv"));
+        File file = fileChooser.showOpenDialog(importButton.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+
+        Task<ImportResult> importTask = new Task<>() {
+            @Override
+            protected ImportResult call() throws Exception {
+                return bulkImportService.importCsv(file.toPath(), type, this::updateProgress);
+            }
+        };
+        importButton.setDisable(true);
+
+        importTask.setOnSucceeded(e -> {
+            importButton.setDisable(false);
+            ImportResult result = importTask.getValue();
+            refreshProductData();
+            refreshInventoryData();
+            String message = "成功导入 " + result.getImportedRows() + " 行";
+            if (result.getResumedAfterLine() > 0) {
+                message += "（从第 " + (result.getResumedAfterLine() + 1) + " 行继续导入）";
+            }
+            if (!result.getErrors().isEmpty()) {
+                Path errorFile = file.toPath().resolveSibling(file.getName() + ".errors.txt");
+                try {
+                    Files.write(errorFile, result.getErrors().stream().map(ImportError::toString).toList(), StandardCharsets.UTF_8);
+                    message += "，" + result.getErrors().size() + " 行失败，明细见 " + errorFile;
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                    message += "，" + result.getErrors().size() + " 行失败，首个错误: " + result.getErrors().get(0);
+                }
+            }
+            showAlert(Alert.AlertType.INFORMATION, "导入完成", message);
+        });
+        importTask.setOnFailed(e -> {
+            importButton.setDisable(false);
+            importTask.getException().printStackTrace();
+            showAlert(Alert.AlertType.ERROR, "导入失败", "导入中断: " + importTask.getException().getMessage()
+                    + "\n再次导入同一文件将从中断处继续");
+        });
+
+        Thread importThread = new Thread(importTask, "csv-import");
+        importThread.setDaemon(true);
+        importThread.start();
+    }
+
     // 显示提示信息
     private void showAlert(Alert.AlertType alertType, String title, String content) {
         Alert alert = new Alert(alertType);
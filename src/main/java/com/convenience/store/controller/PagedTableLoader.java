@@ -0,0 +1,352 @@
+package com.convenience.store.controller;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.TableView;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 表格分页加载器 - 为TableView提供基于键集分页的按需加载
+ * 首次只加载第一页，用户滚动到接近表格底部时再加载下一页，
+ * 避免一次性把整张表读入内存。
+ * 查询在后台线程中异步执行，结果通过 Platform.runLater 回到界面线程写入表格，界面线程不会被慢查询阻塞；
+ * 新的加载请求（重新搜索、显示搜索结果）会取代尚未完成的旧请求，旧请求的结果被丢弃。
+ * 本类的方法都应在界面线程中调用
+ *
+ * @param <T> 表格行的实体类型
+ */
+public class PagedTableLoader<T> {
+    // 默认每页加载的行数
+    public static final int DEFAULT_PAGE_SIZE = 200;
+    // 滚动条超过该比例时触发加载下一页
+    private static final double LOAD_THRESHOLD = 0.9;
+
+    /**
+     * 异步分页查询函数，通常对应服务层的 getXxxPageAsync 方法
+     *
+     * @param <T> 实体类型
+     */
+    @FunctionalInterface
+    public interface PageFetcher<T> {
+        CompletableFuture<List<T>> fetch(Integer afterId, int limit, Map<String, Object> params);
+    }
+
+    private final TableView<T> table;
+    private final ObservableList<T> data;
+    private final Function<T, Integer> idExtractor;
+    private final PageFetcher<T> fetcher;
+    private final int pageSize;
+    // 刷新时判断同一主键的行内容是否变化
+    private final BiPredicate<T, T> sameContent;
+
+    // 当前过滤条件
+    private Map<String, Object> params;
+    // 已加载的最后一行的主键，作为下一页的起点
+    private Integer lastId;
+    // 是否已加载到最后一页
+    private boolean exhausted;
+    // 是否正在显示 showAll 给出的结果（非分页浏览）
+    private boolean showingAll;
+    // showAll 结果的查询，refresh() 时重新执行；直接给出结果时为null
+    private Supplier<CompletableFuture<List<T>>> showAllQuery;
+    // 正在执行的查询，没有时为null
+    private CompletableFuture<List<T>> pending;
+    // 加载代数：每次重新加载加一，回调时代数不符说明请求已被取代
+    private long generation;
+
+    /**
+     * @param table 表格
+     * @param data 表格的数据集合
+     * @param idExtractor 主键取值函数，分页和刷新都按主键进行
+     * @param fetcher 异步分页查询函数
+     * @param pageSize 每页行数
+     * @param sameContent 刷新时判断同一主键的行内容是否变化，通常用 KeyedListPatcher.sameValues 按显示的列比较
+     */
+    public PagedTableLoader(TableView<T> table, ObservableList<T> data, Function<T, Integer> idExtractor,
+                            PageFetcher<T> fetcher, int pageSize, BiPredicate<T, T> sameContent) {
+        this.table = table;
+        this.data = data;
+        this.idExtractor = idExtractor;
+        this.fetcher = fetcher;
+        this.pageSize = pageSize;
+        this.sameContent = sameContent;
+        table.setItems(data);
+        // 滚动条由表格皮肤创建，需等皮肤就绪后再挂接监听
+        if (table.getSkin() != null) {
+            attachScrollListener();
+        } else {
+            table.skinProperty().addListener((obs, oldSkin, newSkin) -> attachScrollListener());
+        }
+    }
+
+    /**
+     * 设置过滤条件并从第一页重新加载
+     *
+     * @param params 过滤条件，为null表示不过滤
+     * @return 第一页写入表格后完成的Future
+     */
+    public CompletableFuture<Void> reload(Map<String, Object> params) {
+        this.params = params;
+        return reload();
+    }
+
+    /**
+     * 按当前过滤条件从第一页重新加载
+     *
+     * @return 第一页写入表格后完成的Future
+     */
+    public CompletableFuture<Void> reload() {
+        supersede();
+        lastId = null;
+        exhausted = false;
+        showingAll = false;
+        showAllQuery = null;
+        data.clear();
+        return loadNextPage();
+    }
+
+    /**
+     * 按当前过滤条件刷新已加载的行（如对话框保存后），只把变化的行应用到表格
+     * 用一次查询重新读取与已加载行数相同的行，再按主键与当前数据比较，
+     * 未变化的行不触发重绘，滚动位置和选中行保持不变。
+     * 正在显示 showAll 查询的结果时重新执行该查询，同样只应用变化的行；
+     * 显示的是直接给出的结果或尚未加载任何数据时等同于 reload()
+     *
+     * @return 刷新结果写入表格后完成的Future
+     */
+    public CompletableFuture<Void> refresh() {
+        if (showingAll && showAllQuery != null) {
+            return refreshShowAll();
+        }
+        if (showingAll || data.isEmpty()) {
+            return reload();
+        }
+        supersede();
+        int limit = Math.max(pageSize, data.size());
+        long requestGeneration = generation;
+        CompletableFuture<Void> applied = new CompletableFuture<>();
+        CompletableFuture<List<T>> request = fetcher.fetch(null, limit, params);
+        pending = request;
+        request.whenComplete((rows, error) -> Platform.runLater(() -> {
+            applied.complete(null);
+            if (requestGeneration != generation) {
+                return;
+            }
+            pending = null;
+            if (error != null) {
+                error.printStackTrace();
+                return;
+            }
+            patchPreservingSelection(rows);
+            lastId = rows.isEmpty() ? null : idExtractor.apply(rows.get(rows.size() - 1));
+            exhausted = rows.size() < limit;
+        }));
+        return applied;
+    }
+
+    // 重新执行 showAll 的查询，按主键修补表格（结果顺序可能变化，如搜索结果的相关度）
+    private CompletableFuture<Void> refreshShowAll() {
+        supersede();
+        long requestGeneration = generation;
+        CompletableFuture<Void> applied = new CompletableFuture<>();
+        CompletableFuture<List<T>> request = showAllQuery.get();
+        pending = request;
+        request.whenComplete((rows, error) -> Platform.runLater(() -> {
+            applied.complete(null);
+            if (requestGeneration != generation) {
+                return;
+            }
+            pending = null;
+            if (error != null) {
+                error.printStackTrace();
+                return;
+            }
+            patchPreservingSelection(rows);
+        }));
+        return applied;
+    }
+
+    /**
+     * 合并增量同步得到的修改和删除，不重新查询
+     * 分页浏览时，修改的行在已加载范围内（主键不大于已加载的最后一行）才合并，新行按主键插入到对应位置，
+     * 范围之外的行随后续翻页加载；有过滤条件时无法判断修改后的行是否仍满足条件，改为 refresh()；
+     * 正在显示 showAll 结果时只更新或删除表格中已有的行
+     *
+     * @param changed 修改或新增的行
+     * @param deletedIds 被删除的行的主键
+     */
+    public void applyChanges(List<T> changed, Collection<Integer> deletedIds) {
+        if (changed.isEmpty() && deletedIds.isEmpty()) {
+            return;
+        }
+        if (!showingAll && params != null && !params.isEmpty()) {
+            refresh();
+            return;
+        }
+        Map<Integer, T> rowsById = new LinkedHashMap<>(data.size() * 2);
+        for (T row : data) {
+            rowsById.put(idExtractor.apply(row), row);
+        }
+        for (T row : changed) {
+            Integer id = idExtractor.apply(row);
+            if (showingAll ? rowsById.containsKey(id) : exhausted || (lastId != null && id <= lastId)) {
+                rowsById.put(id, row);
+            }
+        }
+        for (Integer id : deletedIds) {
+            rowsById.remove(id);
+        }
+        List<T> rows = new ArrayList<>(rowsById.values());
+        if (!showingAll) {
+            // 分页浏览按主键升序，新行需要放到对应位置
+            rows.sort(Comparator.comparing(idExtractor));
+        }
+        patchPreservingSelection(rows);
+    }
+
+    // 修补数据，并按主键恢复修补前选中的行（被替换的行会丢失选中状态）
+    private void patchPreservingSelection(List<T> rows) {
+        TableView.TableViewSelectionModel<T> selection = table.getSelectionModel();
+        List<Integer> selectedIds = new ArrayList<>();
+        for (T row : selection.getSelectedItems()) {
+            if (row != null) {
+                selectedIds.add(idExtractor.apply(row));
+            }
+        }
+        T focused = table.getFocusModel().getFocusedItem();
+        Integer focusedId = focused != null ? idExtractor.apply(focused) : null;
+
+        KeyedListPatcher.patch(data, rows, idExtractor, sameContent);
+
+        if (selectedIds.isEmpty() && focusedId == null) {
+            return;
+        }
+        Map<Integer, Integer> indexById = new HashMap<>(data.size() * 2);
+        for (int i = 0; i < data.size(); i++) {
+            indexById.put(idExtractor.apply(data.get(i)), i);
+        }
+        selection.clearSelection();
+        for (Integer id : selectedIds) {
+            Integer index = indexById.get(id);
+            if (index != null) {
+                selection.select(index);
+            }
+        }
+        Integer focusedIndex = focusedId != null ? indexById.get(focusedId) : null;
+        if (focusedIndex != null) {
+            table.getFocusModel().focus(focusedIndex);
+        }
+    }
+
+    /**
+     * 直接显示一组已查询好的结果（如按相关度排序的搜索结果），不再分页加载
+     * 之后调用 reload() 恢复分页浏览；没有查询可以重新执行，refresh() 时等同于 reload()
+     *
+     * @param rows 要显示的行
+     */
+    public void showAll(List<T> rows) {
+        supersede();
+        exhausted = true;
+        showingAll = true;
+        showAllQuery = null;
+        data.setAll(rows);
+    }
+
+    /**
+     * 执行查询并在完成后显示结果，取代尚未完成的其他加载请求
+     * 查询会被保留，refresh() 时重新执行并只应用变化的行，选中行和滚动位置不变
+     *
+     * @param query 异步查询，如按相关度排序的搜索
+     */
+    public void showAll(Supplier<CompletableFuture<List<T>>> query) {
+        supersede();
+        exhausted = true;
+        showingAll = true;
+        showAllQuery = query;
+        long requestGeneration = generation;
+        CompletableFuture<List<T>> rows = query.get();
+        pending = rows;
+        rows.whenComplete((result, error) -> Platform.runLater(() -> {
+            if (requestGeneration != generation) {
+                return;
+            }
+            pending = null;
+            if (error != null) {
+                error.printStackTrace();
+                return;
+            }
+            data.setAll(result);
+        }));
+    }
+
+    /**
+     * 加载下一页，已经到达最后一页或上一页仍在加载时不做任何操作
+     *
+     * @return 本页写入表格（或请求被取代、失败）后完成的Future；不做任何操作时返回已完成的Future
+     */
+    public CompletableFuture<Void> loadNextPage() {
+        CompletableFuture<Void> applied = new CompletableFuture<>();
+        if (exhausted || pending != null) {
+            applied.complete(null);
+            return applied;
+        }
+        long requestGeneration = generation;
+        CompletableFuture<List<T>> request = fetcher.fetch(lastId, pageSize, params);
+        pending = request;
+        request.whenComplete((page, error) -> Platform.runLater(() -> {
+            applied.complete(null);
+            if (requestGeneration != generation) {
+                return;
+            }
+            pending = null;
+            if (error != null) {
+                // 查询失败时停在当前页，滚动时会再次尝试
+                error.printStackTrace();
+                return;
+            }
+            if (!page.isEmpty()) {
+                lastId = idExtractor.apply(page.get(page.size() - 1));
+                data.addAll(page);
+            }
+            exhausted = page.size() < pageSize;
+        }));
+        return applied;
+    }
+
+    // 取消尚未完成的请求：Future被取消，已发出的SQL会执行完，但结果不会写入表格
+    private void supersede() {
+        generation++;
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    // 查找表格的垂直滚动条，滚动到接近底部时加载下一页
+    private void attachScrollListener() {
+        for (Node node : table.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar scrollBar && scrollBar.getOrientation() == Orientation.VERTICAL) {
+                scrollBar.valueProperty().addListener((obs, oldValue, newValue) -> {
+                    if (newValue.doubleValue() >= scrollBar.getMax() * LOAD_THRESHOLD) {
+                        loadNextPage();
+                    }
+                });
+                return;
+            }
+        }
+    }
+}
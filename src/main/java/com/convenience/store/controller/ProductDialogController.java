@@ -8,7 +8,7 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 
-public class ProductDialogController {
+public class ProductDialogController implements DialogFactory.ReusableDialog {
     @FXML
     private TextField productNameField;
     @FXML
@@ -25,12 +25,26 @@ public class ProductDialogController {
     private boolean isEditMode = false;
     private Stage dialogStage;
 
+    @Override
     public void setDialogStage(Stage dialogStage) {
         this.dialogStage = dialogStage;
     }
 
+    // 对话框被复用，打开前清空上一次的输入
+    @Override
+    public void reset() {
+        product = null;
+        isEditMode = false;
+        productNameField.clear();
+        categoryField.clear();
+        unitField.clear();
+        priceField.clear();
+        descriptionField.clear();
+    }
+
     public void setProduct(Product product) {
-        this.product = product;
+        // 编辑副本：表格中的行对象保持不变，保存后由表格刷新替换，保存失败也不会留下改动
+        this.product = product != null ? copyOf(product) : null;
         if (product != null) {
             isEditMode = true;
             // 填充现有数据
@@ -97,6 +111,19 @@ public class ProductDialogController {
         return true;
     }
 
+    private static Product copyOf(Product product) {
+        Product copy = new Product();
+        copy.setProductId(product.getProductId());
+        copy.setProductName(product.getProductName());
+        copy.setCategory(product.getCategory());
+        copy.setUnit(product.getUnit());
+        copy.setPrice(product.getPrice());
+        copy.setDescription(product.getDescription());
+        copy.setCreatedAt(product.getCreatedAt());
+        copy.setUpdatedAt(product.getUpdatedAt());
+        return copy;
+    }
+
     private void showAlert(Alert.AlertType alertType, String title, String content) {
         Alert alert = new Alert(alertType);
         alert.setTitle(title);
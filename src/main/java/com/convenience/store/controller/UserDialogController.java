@@ -12,7 +12,7 @@ import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 
-public class UserDialogController {
+public class UserDialogController implements DialogFactory.ReusableDialog {
     @FXML
     private TextField usernameField;
     @FXML
@@ -44,12 +44,28 @@ public class UserDialogController {
         statusComboBox.setItems(statuses);
     }
 
+    @Override
     public void setDialogStage(Stage dialogStage) {
         this.dialogStage = dialogStage;
     }
 
+    // 对话框被复用，打开前清空上一次的输入
+    @Override
+    public void reset() {
+        user = null;
+        isEditMode = false;
+        usernameField.clear();
+        passwordField.clear();
+        fullNameField.clear();
+        emailField.clear();
+        phoneField.clear();
+        roleComboBox.setValue(null);
+        statusComboBox.setValue(null);
+    }
+
     public void setUser(User user) {
-        this.user = user;
+        // 编辑副本：表格中的行对象保持不变，保存后由表格刷新替换，保存失败也不会留下改动
+        this.user = user != null ? copyOf(user) : null;
         if (user != null) {
             isEditMode = true;
             // 填充现有数据
@@ -125,6 +141,21 @@ public class UserDialogController {
         return true;
     }
 
+    private static User copyOf(User user) {
+        User copy = new User();
+        copy.setUserId(user.getUserId());
+        copy.setUsername(user.getUsername());
+        copy.setPassword(user.getPassword());
+        copy.setFullName(user.getFullName());
+        copy.setEmail(user.getEmail());
+        copy.setPhone(user.getPhone());
+        copy.setRole(user.getRole());
+        copy.setStatus(user.getStatus());
+        copy.setCreatedAt(user.getCreatedAt());
+        copy.setUpdatedAt(user.getUpdatedAt());
+        return copy;
+    }
+
     private void showAlert(Alert.AlertType alertType, String title, String content) {
         Alert alert = new Alert(alertType);
         alert.setTitle(title);
@@ -0,0 +1,68 @@
+package com.convenience.store.controller;
+
+import com.convenience.store.util.AsyncExecutor;
+import javafx.fxml.FXMLLoader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 界面预加载器 - 在后台线程中提前加载FXML界面，用户需要时直接取用
+ * JavaFX允许在任意线程创建和修改尚未加入显示中场景的节点，
+ * 因此FXML解析、控件创建和控制器的initialize都可以在登录界面显示期间完成。
+ * 预加载的界面只能使用一次（一个节点只能属于一个场景），取用后再次取用会重新同步加载。
+ */
+public class ViewPreloader {
+    // FXML路径 -> 预加载任务
+    private static final Map<String, CompletableFuture<FXMLLoader>> preloaded = new HashMap<>();
+
+    private ViewPreloader() {
+    }
+
+    /**
+     * 在后台线程中预加载一个FXML界面，同一路径未取用前重复调用返回同一任务
+     * @param fxml FXML资源路径，如 "/fxml/Main.fxml"
+     * @return 预加载任务，完成后可从FXMLLoader获取根节点和控制器
+     */
+    public static synchronized CompletableFuture<FXMLLoader> preload(String fxml) {
+        return preloaded.computeIfAbsent(fxml, path -> AsyncExecutor.supply(() -> load(path)));
+    }
+
+    /**
+     * 取用一个FXML界面：已预加载的等待预加载完成后返回，未预加载或预加载失败时同步加载
+     * @param fxml FXML资源路径
+     * @return 已加载的FXMLLoader
+     * @throws IOException 加载失败
+     */
+    public static FXMLLoader take(String fxml) throws IOException {
+        CompletableFuture<FXMLLoader> future;
+        synchronized (ViewPreloader.class) {
+            future = preloaded.remove(fxml);
+        }
+        if (future != null) {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                // 预加载失败，在当前线程重新加载，由调用方处理加载异常
+                e.printStackTrace();
+            }
+        }
+        FXMLLoader loader = new FXMLLoader(ViewPreloader.class.getResource(fxml));
+        loader.load();
+        return loader;
+    }
+
+    private static FXMLLoader load(String fxml) {
+        try {
+            FXMLLoader loader = new FXMLLoader(ViewPreloader.class.getResource(fxml));
+            loader.load();
+            return loader;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
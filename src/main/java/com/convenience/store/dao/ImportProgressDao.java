@@ -0,0 +1,31 @@
+package com.convenience.store.dao;
+
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 批量导入进度数据访问接口 - import_progress 表
+ * 每个导入文件一行，与该文件的一批数据在同一事务中更新，提交后、写检查点文件前崩溃时据此跳过已写入的行
+ */
+public interface ImportProgressDao {
+    /**
+     * 获取导入文件已提交到的行号
+     * @param importKey 导入标识（导入类型、文件签名和文件名）
+     * @return 已提交的最后行号，没有记录时返回null
+     */
+    Long getLastLine(@Param("importKey") String importKey);
+
+    /**
+     * 记录导入文件已提交到的行号，已有记录时覆盖
+     * @param importKey 导入标识
+     * @param lastLine 本批最后一行的行号
+     * @return 影响的记录数
+     */
+    int saveLastLine(@Param("importKey") String importKey, @Param("lastLine") long lastLine);
+
+    /**
+     * 删除导入文件的进度记录，导入全部完成后调用
+     * @param importKey 导入标识
+     * @return 删除的记录数
+     */
+    int deleteProgress(@Param("importKey") String importKey);
+}
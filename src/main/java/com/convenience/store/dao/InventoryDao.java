@@ -1,8 +1,13 @@
 package com.convenience.store.dao;
 
 import com.convenience.store.entity.Inventory;
+import com.convenience.store.entity.InventoryRow;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 库存数据访问接口
@@ -22,6 +27,64 @@ public interface InventoryDao {
      */
     List<Inventory> getAllInventory();
     
+    /**
+     * 搜索库存，按库存ID键集分页返回库存列表行（扁平投影，只含表格展示需要的列）
+     * 使用 "inventory_id > 上一页最后一条ID" 定位下一页，避免OFFSET分页越往后越慢
+     * @param afterId 上一页最后一条记录的库存ID，为null时从第一页开始
+     * @param limit 每页记录数
+     * @param params 可选过滤条件，均可为空：
+     *               productId（商品ID）、productIds（商品ID列表，优先于productName）、
+     *               productName（商品名称，模糊匹配）、category（商品类别）、warehouseId（仓库ID）、
+     *               lowStock（为true时只返回低于最小库存的记录）、minQuantity / maxQuantity（数量范围，含边界）
+     * @return 按库存ID升序排列的库存列表行
+     */
+    List<InventoryRow> searchInventoryRows(@Param("afterId") Integer afterId, @Param("limit") int limit,
+                                           @Param("params") Map<String, Object> params);
+    
+    /**
+     * 以游标方式流式读取所有库存列表行（按库存ID升序）
+     * 结果逐行从数据库读取，不会一次性加载到内存，必须在SqlSession关闭前遍历完毕
+     * @return 库存列表行游标
+     */
+    Cursor<InventoryRow> streamAllInventoryRows();
+    
+    /**
+     * 以游标方式流式读取低库存监控需要的库存位置，数量为当前库存（快照 + 未合并的流水尾部）
+     * 只有未合并流水、尚无库存记录的位置也包含在内，其库存ID为null
+     * @return 库存列表行游标
+     */
+    Cursor<InventoryRow> streamMonitorRows();
+
+    /**
+     * 按库存ID读取当前库存（快照 + 未合并的流水尾部），主库和分片库通用
+     * @param inventoryIds 库存ID列表，不能为空
+     * @return 只含库存ID、商品ID、仓库ID、数量和最小库存的库存列表行
+     */
+    List<InventoryRow> getMonitorQuantities(@Param("inventoryIds") List<Integer> inventoryIds);
+
+    /**
+     * 按库存位置（商品ID + 仓库ID）读取当前库存（快照 + 未合并的流水尾部），主库和分片库通用
+     * 只有未合并流水、尚无库存记录的位置也包含在内，其库存ID为null；两者都没有的位置不返回
+     * @param positions 库存位置，只用到商品ID和仓库ID，不能为空
+     * @return 只含库存ID、商品ID、仓库ID、数量和最小库存的库存列表行
+     */
+    List<InventoryRow> getMonitorQuantitiesByPositions(@Param("positions") List<InventoryRow> positions);
+    
+    /**
+     * 获取指定时间之后发生变化的库存列表行，用于增量同步
+     * 库存记录本身被修改，或其商品、仓库被修改（名称变化会反映在列表行中）都算作变化
+     * @param since 起始时间（含）
+     * @param limit 最多返回的条数
+     * @return 按库存ID升序排列的库存列表行
+     */
+    List<InventoryRow> getInventoryRowsChangedSince(@Param("since") LocalDateTime since, @Param("limit") int limit);
+    
+    /**
+     * 统计库存记录总数
+     * @return 库存记录数
+     */
+    long countInventory();
+    
     /**
      * 插入库存记录
      * @param inventory 库存实体对象
@@ -29,6 +92,13 @@ public interface InventoryDao {
      */
     int insertInventory(Inventory inventory);
     
+    /**
+     * 批量插入库存记录（多行VALUES），商品和仓库组合已存在时覆盖数量和最小库存
+     * @param inventories 库存实体对象列表
+     * @return 影响的记录数
+     */
+    int insertInventoryBatch(@Param("list") List<Inventory> inventories);
+    
     /**
      * 更新库存记录
      * @param inventory 库存实体对象（包含更新后的信息）
@@ -36,6 +106,45 @@ public interface InventoryDao {
      */
     int updateInventory(Inventory inventory);
     
+    /**
+     * 按增量更新库存记录：数量在数据库端原子地加上变化量，同时更新最小库存
+     * 调整后数量小于0时不更新
+     * @param inventoryId 库存ID
+     * @param delta 数量变化量
+     * @param minStock 最小库存
+     * @return 更新成功的记录数，库存不足或记录不存在时为0
+     */
+    int updateInventoryByDelta(@Param("inventoryId") Integer inventoryId, @Param("delta") int delta,
+                               @Param("minStock") Integer minStock);
+    
+    /**
+     * 按增量调整库存数量（quantity = quantity + delta），调整后数量小于0时不更新
+     * @param productId 商品ID
+     * @param warehouseId 仓库ID
+     * @param delta 数量变化量
+     * @return 更新成功的记录数，库存不足或记录不存在时为0
+     */
+    int adjustQuantity(@Param("productId") Integer productId, @Param("warehouseId") Integer warehouseId,
+                       @Param("delta") int delta);
+    
+    /**
+     * 在当前事务中锁定库存行并查询快照数量，事务结束前其他事务不能修改该行
+     * @param productId 商品ID
+     * @param warehouseId 仓库ID
+     * @return 库存数量，记录不存在时为null
+     */
+    Integer lockSnapshotQuantity(@Param("productId") Integer productId, @Param("warehouseId") Integer warehouseId);
+    
+    /**
+     * 增加库存数量，库存记录不存在时新建（与存储过程UpdateInventoryBatch语义一致）
+     * @param productId 商品ID
+     * @param warehouseId 仓库ID
+     * @param delta 数量增加量，必须不小于0
+     * @return 影响的记录数
+     */
+    int upsertQuantity(@Param("productId") Integer productId, @Param("warehouseId") Integer warehouseId,
+                       @Param("delta") int delta);
+    
     /**
      * 删除库存记录
      * @param inventoryId 库存ID
@@ -49,4 +158,73 @@ public interface InventoryDao {
      * @return 库存实体对象列表
      */
     List<Inventory> getInventoryByProductId(Integer productId);
-}
\ No newline at end of file
+
+    // ===============================
+    // 分片库上的查询：分片库只有库存相关的表，不联查商品、仓库，
+    // 结果中的商品、仓库信息由服务层从主库补全；不使用二级缓存
+    // ===============================
+
+    /**
+     * 在当前分片上根据库存ID获取库存记录（不含商品、仓库对象）
+     * @param inventoryId 库存ID
+     * @return 库存实体对象，不在本分片时返回null
+     */
+    Inventory getShardInventoryById(Integer inventoryId);
+
+    /**
+     * 获取当前分片的所有库存记录（不含商品、仓库对象）
+     * @return 库存实体对象列表
+     */
+    List<Inventory> getAllShardInventory();
+
+    /**
+     * 根据产品ID获取当前分片的库存记录（不含商品、仓库对象）
+     * @param productId 产品ID
+     * @return 库存实体对象列表
+     */
+    List<Inventory> getShardInventoryByProductId(Integer productId);
+
+    /**
+     * 在当前分片上搜索库存，按库存ID键集分页（列表行不含商品名称、类别和仓库名称）
+     * 商品名称、类别条件需事先转换为 productIds
+     * @param afterId 上一页最后一条记录的库存ID，为null时从第一页开始
+     * @param limit 每页记录数
+     * @param params 可选过滤条件：productId、productIds、warehouseId、lowStock、minQuantity / maxQuantity
+     * @return 按库存ID升序排列的库存列表行
+     */
+    List<InventoryRow> searchShardInventoryRows(@Param("afterId") Integer afterId, @Param("limit") int limit,
+                                                @Param("params") Map<String, Object> params);
+
+    /**
+     * 以游标方式流式读取当前分片的所有库存列表行（按库存ID升序，不含名称）
+     * @return 库存列表行游标
+     */
+    Cursor<InventoryRow> streamShardInventoryRows();
+
+    /**
+     * 以游标方式流式读取当前分片上低库存监控需要的库存位置（不含名称），数量为当前库存
+     * @return 库存列表行游标
+     */
+    Cursor<InventoryRow> streamShardMonitorRows();
+
+    /**
+     * 获取当前分片上指定时间之后修改过的库存列表行（不含名称），用于增量同步
+     * @param since 起始时间（含）
+     * @param limit 最多返回的条数
+     * @return 按库存ID升序排列的库存列表行
+     */
+    List<InventoryRow> getShardInventoryRowsChangedSince(@Param("since") LocalDateTime since, @Param("limit") int limit);
+
+    /**
+     * 统计当前分片的库存记录数
+     * @return 库存记录数
+     */
+    long countShardInventory();
+
+    /**
+     * 删除当前分片上某商品的全部库存记录，主库删除商品后调用（分片库没有外键级联）
+     * @param productId 商品ID
+     * @return 删除的记录数
+     */
+    int deleteShardInventoryByProduct(Integer productId);
+}
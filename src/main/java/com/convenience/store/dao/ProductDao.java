@@ -1,7 +1,9 @@
 package com.convenience.store.dao;
 
 import com.convenience.store.entity.Product;
+import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -23,6 +25,31 @@ public interface ProductDao {
      */
     List<Product> getAllProducts();
     
+    /**
+     * 根据一组产品ID获取产品信息，用于补全分片库存中的商品信息
+     * @param ids 产品ID列表，不能为空
+     * @return 产品实体对象列表，不存在的ID没有对应项
+     */
+    List<Product> getProductsByIds(@Param("ids") List<Integer> ids);
+    
+    /**
+     * 按商品ID键集分页获取产品信息
+     * @param afterId 上一页最后一条记录的商品ID，为null时从第一页开始
+     * @param limit 每页记录数
+     * @param params 可选过滤条件：productName（产品名称）、category（类别）
+     * @return 按商品ID升序排列的产品实体对象列表
+     */
+    List<Product> getProductPage(@Param("afterId") Integer afterId, @Param("limit") int limit,
+                                 @Param("params") Map<String, Object> params);
+    
+    /**
+     * 获取指定时间之后新增或修改过的产品，用于增量同步
+     * @param since 起始时间（含）
+     * @param limit 最多返回的条数
+     * @return 按商品ID升序排列的产品实体对象列表
+     */
+    List<Product> getProductsUpdatedSince(@Param("since") LocalDateTime since, @Param("limit") int limit);
+    
     /**
      * 插入产品信息
      * @param product 产品实体对象
@@ -30,6 +57,13 @@ public interface ProductDao {
      */
     int insertProduct(Product product);
     
+    /**
+     * 批量插入产品信息（多行VALUES）
+     * @param products 产品实体对象列表
+     * @return 插入成功的记录数
+     */
+    int insertProductBatch(@Param("list") List<Product> products);
+    
     /**
      * 更新产品信息
      * @param product 产品实体对象（包含更新后的信息）
@@ -50,4 +84,20 @@ public interface ProductDao {
      * @return 符合条件的产品实体对象列表
      */
     List<Product> searchProducts(Map<String, Object> params);
-}
\ No newline at end of file
+    
+    /**
+     * 按关键词搜索产品名称和类别（忽略大小写和空格的子串匹配），按相关度排序，用于搜索索引尚未构建时
+     * @param keyword 规范化后的关键词（小写、无空白）
+     * @param limit 最多返回的条数
+     * @return 按相关度排序的产品实体对象列表
+     */
+    List<Product> searchProductsByKeyword(@Param("keyword") String keyword, @Param("limit") int limit);
+    
+    /**
+     * 按类别查询产品ID，按ID升序，走idx_products_category
+     * @param category 产品类别
+     * @param limit 最多返回的ID数
+     * @return 产品ID列表
+     */
+    List<Integer> findProductIdsByCategory(@Param("category") String category, @Param("limit") int limit);
+}
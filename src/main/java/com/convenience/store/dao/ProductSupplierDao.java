@@ -1,6 +1,7 @@
 package com.convenience.store.dao;
 
 import com.convenience.store.entity.ProductSupplier;
+import org.apache.ibatis.annotations.Param;
 
 import java.util.List;
 import java.util.Map;
@@ -10,5 +11,6 @@ public interface ProductSupplierDao {
     List<ProductSupplier> getSuppliersByProductId(Integer productId);
     List<ProductSupplier> getProductsBySupplierId(Integer supplierId);
     int insertProductSupplier(ProductSupplier productSupplier);
+    int insertProductSupplierBatch(@Param("list") List<ProductSupplier> productSuppliers);
     int deleteProductSupplier(Map<String, Object> params);
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package com.convenience.store.dao;
+
+import com.convenience.store.entity.StockMovement;
+import org.apache.ibatis.annotations.Param;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * 库存流水数据访问接口
+ * 流水表只追加；后台合并任务定期把未合并的流水汇总进inventory快照
+ */
+public interface StockMovementDao {
+    /**
+     * 批量追加库存流水（多行VALUES）
+     * @param movements 流水列表
+     * @return 插入成功的记录数
+     */
+    int insertMovementBatch(@Param("list") List<StockMovement> movements);
+
+    /**
+     * 锁定最早的一批未合并流水，防止多个合并任务重复合并
+     * @param limit 本次最多合并的流水条数
+     * @return 被锁定的流水（只含ID、商品ID、仓库ID和变化量），按ID升序排列
+     */
+    List<StockMovement> lockPendingMovements(@Param("limit") int limit);
+
+    /**
+     * 锁定某商品在某仓库的全部未合并流水，出库扣减快照前调用，快照不够时把锁定的尾部合并进快照
+     * @param productId 商品ID
+     * @param warehouseId 仓库ID
+     * @return 被锁定的流水（只含ID、商品ID、仓库ID和变化量）
+     */
+    List<StockMovement> lockPendingMovementsByKey(@Param("productId") Integer productId,
+                                                  @Param("warehouseId") Integer warehouseId);
+
+    /**
+     * 将指定的未合并流水标记为已合并
+     * @param ids 流水ID列表
+     * @return 更新的记录数
+     */
+    int markApplied(@Param("ids") List<Long> ids);
+
+    /**
+     * 查询当前库存数量：inventory快照加上尚未合并的流水
+     * @param productId 商品ID
+     * @param warehouseId 仓库ID
+     * @return 当前库存数量，没有任何记录时为0
+     */
+    int getCurrentQuantity(@Param("productId") Integer productId, @Param("warehouseId") Integer warehouseId);
+
+    /**
+     * 按时间倒序查询某商品在某仓库的流水
+     * @param productId 商品ID
+     * @param warehouseId 仓库ID
+     * @param limit 最多返回的条数
+     * @return 流水列表
+     */
+    List<StockMovement> getMovements(@Param("productId") Integer productId, @Param("warehouseId") Integer warehouseId,
+                                     @Param("limit") int limit);
+
+    /**
+     * 删除当前分片上某商品的全部流水，主库删除商品后调用（分片库没有外键级联）
+     * @param productId 商品ID
+     * @return 删除的记录数
+     */
+    int deleteShardMovementsByProduct(Integer productId);
+
+    /**
+     * 记录库存写缓冲的一个日志段已写库，与该段的库存调整在同一事务中执行
+     * @param reference 日志段名
+     * @return 插入的记录数；该段已写入过时抛出主键冲突异常
+     */
+    int insertAppliedSegment(@Param("reference") String reference);
+
+    /**
+     * 删除早于指定时间的日志段写库记录
+     * @param before 截止时间
+     * @return 删除的记录数
+     */
+    int purgeAppliedSegments(@Param("before") Timestamp before);
+}
@@ -0,0 +1,58 @@
+package com.convenience.store.dao;
+
+import com.convenience.store.entity.Tombstone;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 增量同步数据访问接口 - 数据库时间、删除记录（deleted_rows）和副本心跳（replica_heartbeat）
+ * 各表变更行的查询在各自的DAO中
+ */
+public interface SyncDao {
+    /**
+     * 获取数据库当前时间，作为同步水位线，避免各终端时钟不一致
+     *
+     * @return LocalDateTime - 数据库当前时间
+     */
+    LocalDateTime getDatabaseTime();
+
+    /**
+     * 获取仍未提交、且已修改过数据的最早事务的开始时间（读取 information_schema.innodb_trx，需要PROCESS权限）
+     *
+     * @return LocalDateTime - 开始时间，没有这样的事务时返回null
+     */
+    LocalDateTime getOldestWriteTransactionStart();
+
+    /**
+     * 获取指定时间之后的删除记录
+     *
+     * @param since 起始时间（含）
+     * @param limit 最多返回的条数
+     * @return List<Tombstone> - 按删除记录ID升序排列
+     */
+    List<Tombstone> getTombstonesSince(@Param("since") LocalDateTime since, @Param("limit") int limit);
+
+    /**
+     * 清理指定时间之前的删除记录
+     *
+     * @param before 截止时间（不含）
+     * @return int - 删除的条数
+     */
+    int purgeTombstones(@Param("before") LocalDateTime before);
+
+    /**
+     * 在主库更新副本心跳时间
+     *
+     * @return int - 更新的行数
+     */
+    int updateReplicaHeartbeat();
+
+    /**
+     * 获取副本心跳时间，在主库执行得到最近写入的时间，在只读副本执行得到已复制到副本的时间
+     *
+     * @return LocalDateTime - 心跳时间，心跳行不存在时返回null
+     */
+    LocalDateTime getReplicaHeartbeat();
+}
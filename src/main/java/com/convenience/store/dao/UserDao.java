@@ -3,6 +3,7 @@ package com.convenience.store.dao;
 import com.convenience.store.entity.User;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -34,6 +35,26 @@ public interface UserDao {
      */
     List<User> getAllUsers();
 
+    /**
+     * 按用户ID键集分页获取用户信息
+     * 
+     * @param afterId 上一页最后一条记录的用户ID，为null时从第一页开始
+     * @param limit 每页记录数
+     * @param params 可选过滤条件：username（用户名）、role（角色）、status（状态）
+     * @return List<User> - 按用户ID升序排列的用户列表
+     */
+    List<User> getUserPage(@Param("afterId") Integer afterId, @Param("limit") int limit,
+                           @Param("params") Map<String, Object> params);
+
+    /**
+     * 获取指定时间之后新增或修改过的用户，用于增量同步
+     * 
+     * @param since 起始时间（含）
+     * @param limit 最多返回的条数
+     * @return List<User> - 按用户ID升序排列的用户列表
+     */
+    List<User> getUsersUpdatedSince(@Param("since") LocalDateTime since, @Param("limit") int limit);
+
     /**
      * 添加新用户
      * 
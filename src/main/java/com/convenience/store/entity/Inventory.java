@@ -1,12 +1,15 @@
 package com.convenience.store.entity;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 
 /**
  * 库存实体类 - 表示商品在仓库中的库存信息
  * 对应数据库中的inventory表
  */
-public class Inventory {
+public class Inventory implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     // 库存记录ID - 主键
     private Integer inventoryId;
     
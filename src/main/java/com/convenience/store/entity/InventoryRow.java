@@ -0,0 +1,185 @@
+package com.convenience.store.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 库存列表行 - 库存表格和导出使用的扁平只读模型
+ * 只包含列表需要展示的列，由库存、商品、仓库三表联查得到；
+ * 需要完整的商品、仓库及负责人信息时使用 {@link Inventory}
+ */
+public class InventoryRow implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // 库存记录ID - 主键
+    private Integer inventoryId;
+
+    // 商品ID
+    private Integer productId;
+
+    // 商品名称 - 来自products表
+    private String productName;
+
+    // 商品类别 - 来自products表
+    private String category;
+
+    // 仓库ID
+    private Integer warehouseId;
+
+    // 仓库名称 - 来自warehouses表
+    private String warehouseName;
+
+    // 库存数量
+    private Integer quantity;
+
+    // 最小库存阈值，用于库存预警
+    private Integer minStock;
+
+    // 最后更新时间
+    private LocalDateTime lastUpdated;
+
+    // Getters and Setters方法
+    /**
+     * 获取库存记录ID
+     * @return 库存记录ID
+     */
+    public Integer getInventoryId() {
+        return inventoryId;
+    }
+
+    /**
+     * 设置库存记录ID
+     * @param inventoryId 库存记录ID
+     */
+    public void setInventoryId(Integer inventoryId) {
+        this.inventoryId = inventoryId;
+    }
+
+    /**
+     * 获取商品ID
+     * @return 商品ID
+     */
+    public Integer getProductId() {
+        return productId;
+    }
+
+    /**
+     * 设置商品ID
+     * @param productId 商品ID
+     */
+    public void setProductId(Integer productId) {
+        this.productId = productId;
+    }
+
+    /**
+     * 获取商品名称
+     * @return 商品名称
+     */
+    public String getProductName() {
+        return productName;
+    }
+
+    /**
+     * 设置商品名称
+     * @param productName 商品名称
+     */
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    /**
+     * 获取商品类别
+     * @return 商品类别
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * 设置商品类别
+     * @param category 商品类别
+     */
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    /**
+     * 获取仓库ID
+     * @return 仓库ID
+     */
+    public Integer getWarehouseId() {
+        return warehouseId;
+    }
+
+    /**
+     * 设置仓库ID
+     * @param warehouseId 仓库ID
+     */
+    public void setWarehouseId(Integer warehouseId) {
+        this.warehouseId = warehouseId;
+    }
+
+    /**
+     * 获取仓库名称
+     * @return 仓库名称
+     */
+    public String getWarehouseName() {
+        return warehouseName;
+    }
+
+    /**
+     * 设置仓库名称
+     * @param warehouseName 仓库名称
+     */
+    public void setWarehouseName(String warehouseName) {
+        this.warehouseName = warehouseName;
+    }
+
+    /**
+     * 获取库存数量
+     * @return 库存数量
+     */
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * 设置库存数量
+     * @param quantity 库存数量
+     */
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    /**
+     * 获取最小库存阈值
+     * @return 最小库存阈值
+     */
+    public Integer getMinStock() {
+        return minStock;
+    }
+
+    /**
+     * 设置最小库存阈值
+     * @param minStock 最小库存阈值
+     */
+    public void setMinStock(Integer minStock) {
+        this.minStock = minStock;
+    }
+
+    /**
+     * 获取最后更新时间
+     * @return 最后更新时间
+     */
+    public LocalDateTime getLastUpdated() {
+        return lastUpdated;
+    }
+
+    /**
+     * 设置最后更新时间
+     * @param lastUpdated 最后更新时间
+     */
+    public void setLastUpdated(LocalDateTime lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+}
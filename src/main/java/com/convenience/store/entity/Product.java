@@ -1,8 +1,11 @@
 package com.convenience.store.entity;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 
-public class Product {
+public class Product implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private Integer productId;
     private String productName;
     private String category;
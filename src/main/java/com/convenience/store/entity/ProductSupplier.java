@@ -1,8 +1,11 @@
 package com.convenience.store.entity;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 
-public class ProductSupplier {
+public class ProductSupplier implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private Integer productId;
     private Integer supplierId;
     private Double supplyPrice;
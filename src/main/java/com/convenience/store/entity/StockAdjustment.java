@@ -0,0 +1,51 @@
+package com.convenience.store.entity;
+
+import java.io.Serializable;
+
+/**
+ * 库存调整实体类 - 表示对某商品在某仓库的库存数量的一次增减
+ * 正数表示入库，负数表示出库
+ */
+public class StockAdjustment implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // 商品ID
+    private Integer productId;
+    // 仓库ID
+    private Integer warehouseId;
+    // 数量变化量
+    private int delta;
+
+    public StockAdjustment() {
+    }
+
+    public StockAdjustment(Integer productId, Integer warehouseId, int delta) {
+        this.productId = productId;
+        this.warehouseId = warehouseId;
+        this.delta = delta;
+    }
+
+    public Integer getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Integer productId) {
+        this.productId = productId;
+    }
+
+    public Integer getWarehouseId() {
+        return warehouseId;
+    }
+
+    public void setWarehouseId(Integer warehouseId) {
+        this.warehouseId = warehouseId;
+    }
+
+    public int getDelta() {
+        return delta;
+    }
+
+    public void setDelta(int delta) {
+        this.delta = delta;
+    }
+}
@@ -0,0 +1,126 @@
+package com.convenience.store.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 库存流水实体类 - 对应数据库中的stock_movements表
+ * 每一次入库、销售、调拨或盘点调整都追加一条流水，流水只增不改，可用于审计和重放
+ */
+public class StockMovement implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // 流水类型：采购入库
+    public static final String TYPE_RECEIPT = "receipt";
+    // 流水类型：销售出库
+    public static final String TYPE_SALE = "sale";
+    // 流水类型：调拨出库
+    public static final String TYPE_TRANSFER_OUT = "transfer_out";
+    // 流水类型：调拨入库
+    public static final String TYPE_TRANSFER_IN = "transfer_in";
+    // 流水类型：盘点调整
+    public static final String TYPE_ADJUSTMENT = "adjustment";
+    // 流水类型：缺货 - 库存写缓冲已确认的出库在写库时库存不足、未能扣减的数量，只作记录，以已合并状态记账，不计入库存
+    public static final String TYPE_SHORTFALL = "shortfall";
+
+    // 流水ID - 主键，自增
+    private Long movementId;
+    // 商品ID - 外键，关联products表
+    private Integer productId;
+    // 仓库ID - 外键，关联warehouses表
+    private Integer warehouseId;
+    // 流水类型 - 见TYPE_*常量
+    private String movementType;
+    // 数量变化量 - 正数入库，负数出库
+    private int delta;
+    // 业务单号 - 如销售单号、调拨单号，可为空
+    private String reference;
+    // 操作人ID - 外键，关联users表，可为空
+    private Integer operatorId;
+    // 是否已合并到inventory快照
+    private boolean applied;
+    // 创建时间
+    private LocalDateTime createdAt;
+
+    public StockMovement() {
+    }
+
+    public StockMovement(Integer productId, Integer warehouseId, String movementType, int delta) {
+        this.productId = productId;
+        this.warehouseId = warehouseId;
+        this.movementType = movementType;
+        this.delta = delta;
+    }
+
+    public Long getMovementId() {
+        return movementId;
+    }
+
+    public void setMovementId(Long movementId) {
+        this.movementId = movementId;
+    }
+
+    public Integer getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Integer productId) {
+        this.productId = productId;
+    }
+
+    public Integer getWarehouseId() {
+        return warehouseId;
+    }
+
+    public void setWarehouseId(Integer warehouseId) {
+        this.warehouseId = warehouseId;
+    }
+
+    public String getMovementType() {
+        return movementType;
+    }
+
+    public void setMovementType(String movementType) {
+        this.movementType = movementType;
+    }
+
+    public int getDelta() {
+        return delta;
+    }
+
+    public void setDelta(int delta) {
+        this.delta = delta;
+    }
+
+    public String getReference() {
+        return reference;
+    }
+
+    public void setReference(String reference) {
+        this.reference = reference;
+    }
+
+    public Integer getOperatorId() {
+        return operatorId;
+    }
+
+    public void setOperatorId(Integer operatorId) {
+        this.operatorId = operatorId;
+    }
+
+    public boolean isApplied() {
+        return applied;
+    }
+
+    public void setApplied(boolean applied) {
+        this.applied = applied;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
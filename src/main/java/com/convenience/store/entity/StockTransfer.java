@@ -0,0 +1,61 @@
+package com.convenience.store.entity;
+
+import java.io.Serializable;
+
+/**
+ * 库存调拨实体类 - 表示把某商品的一定数量从一个仓库移到另一个仓库
+ */
+public class StockTransfer implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // 商品ID
+    private Integer productId;
+    // 调出仓库ID
+    private Integer fromWarehouseId;
+    // 调入仓库ID
+    private Integer toWarehouseId;
+    // 调拨数量，必须为正数
+    private int quantity;
+
+    public StockTransfer() {
+    }
+
+    public StockTransfer(Integer productId, Integer fromWarehouseId, Integer toWarehouseId, int quantity) {
+        this.productId = productId;
+        this.fromWarehouseId = fromWarehouseId;
+        this.toWarehouseId = toWarehouseId;
+        this.quantity = quantity;
+    }
+
+    public Integer getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Integer productId) {
+        this.productId = productId;
+    }
+
+    public Integer getFromWarehouseId() {
+        return fromWarehouseId;
+    }
+
+    public void setFromWarehouseId(Integer fromWarehouseId) {
+        this.fromWarehouseId = fromWarehouseId;
+    }
+
+    public Integer getToWarehouseId() {
+        return toWarehouseId;
+    }
+
+    public void setToWarehouseId(Integer toWarehouseId) {
+        this.toWarehouseId = toWarehouseId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+}
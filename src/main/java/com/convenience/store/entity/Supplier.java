@@ -1,8 +1,11 @@
 package com.convenience.store.entity;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 
-public class Supplier {
+public class Supplier implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private Integer supplierId;
     private String supplierName;
     private String contactPerson;
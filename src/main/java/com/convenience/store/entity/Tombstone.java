@@ -0,0 +1,58 @@
+package com.convenience.store.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 删除记录实体类 - 对应deleted_rows表
+ * 由各表的AFTER DELETE触发器写入，增量同步据此得知其他终端删除了哪些行
+ */
+public class Tombstone implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String TABLE_USERS = "users";
+    public static final String TABLE_PRODUCTS = "products";
+    public static final String TABLE_WAREHOUSES = "warehouses";
+    public static final String TABLE_INVENTORY = "inventory";
+
+    // 删除记录ID
+    private Long tombstoneId;
+    // 被删除行所在的表名
+    private String tableName;
+    // 被删除行的主键
+    private Integer rowId;
+    // 删除时间
+    private LocalDateTime deletedAt;
+
+    public Long getTombstoneId() {
+        return tombstoneId;
+    }
+
+    public void setTombstoneId(Long tombstoneId) {
+        this.tombstoneId = tombstoneId;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public Integer getRowId() {
+        return rowId;
+    }
+
+    public void setRowId(Integer rowId) {
+        this.rowId = rowId;
+    }
+
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+}
@@ -1,12 +1,15 @@
 package com.convenience.store.entity;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 
 /**
  * 用户实体类 - 对应数据库中的user表
  * 用于封装用户信息，包括登录凭证、个人信息和账号状态
  */
-public class User {
+public class User implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     // 用户ID - 主键，自增
     private Integer userId;
     // 用户名 - 登录账号，唯一
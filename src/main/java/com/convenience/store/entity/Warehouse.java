@@ -1,8 +1,11 @@
 package com.convenience.store.entity;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 
-public class Warehouse {
+public class Warehouse implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private Integer warehouseId;
     private String warehouseName;
     private String location;
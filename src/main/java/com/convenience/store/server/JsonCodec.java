@@ -0,0 +1,199 @@
+package com.convenience.store.server;
+
+import com.convenience.store.entity.Inventory;
+import com.convenience.store.entity.InventoryRow;
+import com.convenience.store.entity.Product;
+import com.convenience.store.entity.StockAdjustment;
+import com.convenience.store.entity.StockTransfer;
+import com.convenience.store.entity.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 实体与JSON之间的转换 - 每个实体的字段逐个写出，不经过反射
+ * 用户的密码字段从不写出
+ */
+final class JsonCodec {
+
+    private JsonCodec() {
+    }
+
+    static void writeProduct(StringBuilder sb, Product product) {
+        Json.field(sb.append('{'), "productId", true).append(product.getProductId());
+        Json.string(Json.field(sb, "productName", false), product.getProductName());
+        Json.string(Json.field(sb, "category", false), product.getCategory());
+        Json.string(Json.field(sb, "unit", false), product.getUnit());
+        Json.field(sb, "price", false).append(product.getPrice());
+        Json.string(Json.field(sb, "description", false), product.getDescription());
+        Json.value(Json.field(sb, "createdAt", false), product.getCreatedAt());
+        Json.value(Json.field(sb, "updatedAt", false), product.getUpdatedAt());
+        sb.append('}');
+    }
+
+    static void writeInventoryRow(StringBuilder sb, InventoryRow row) {
+        Json.field(sb.append('{'), "inventoryId", true).append(row.getInventoryId());
+        Json.field(sb, "productId", false).append(row.getProductId());
+        Json.string(Json.field(sb, "productName", false), row.getProductName());
+        Json.string(Json.field(sb, "category", false), row.getCategory());
+        Json.field(sb, "warehouseId", false).append(row.getWarehouseId());
+        Json.string(Json.field(sb, "warehouseName", false), row.getWarehouseName());
+        Json.field(sb, "quantity", false).append(row.getQuantity());
+        Json.field(sb, "minStock", false).append(row.getMinStock());
+        Json.value(Json.field(sb, "lastUpdated", false), row.getLastUpdated());
+        sb.append('}');
+    }
+
+    static void writeInventory(StringBuilder sb, Inventory inventory) {
+        Json.field(sb.append('{'), "inventoryId", true).append(inventory.getInventoryId());
+        Json.field(sb, "productId", false).append(inventory.getProductId());
+        Json.field(sb, "warehouseId", false).append(inventory.getWarehouseId());
+        Json.field(sb, "quantity", false).append(inventory.getQuantity());
+        Json.field(sb, "minStock", false).append(inventory.getMinStock());
+        Json.value(Json.field(sb, "lastUpdated", false), inventory.getLastUpdated());
+        sb.append('}');
+    }
+
+    static void writeUser(StringBuilder sb, User user) {
+        Json.field(sb.append('{'), "userId", true).append(user.getUserId());
+        Json.string(Json.field(sb, "username", false), user.getUsername());
+        Json.string(Json.field(sb, "fullName", false), user.getFullName());
+        Json.string(Json.field(sb, "email", false), user.getEmail());
+        Json.string(Json.field(sb, "phone", false), user.getPhone());
+        Json.string(Json.field(sb, "role", false), user.getRole());
+        Json.string(Json.field(sb, "status", false), user.getStatus());
+        Json.value(Json.field(sb, "createdAt", false), user.getCreatedAt());
+        Json.value(Json.field(sb, "updatedAt", false), user.getUpdatedAt());
+        sb.append('}');
+    }
+
+    /**
+     * 写出对象数组
+     */
+    static <T> void writeArray(StringBuilder sb, List<T> items, Writer<T> writer) {
+        sb.append('[');
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            writer.write(sb, items.get(i));
+        }
+        sb.append(']');
+    }
+
+    /**
+     * 单个实体的写出方法
+     */
+    interface Writer<T> {
+        void write(StringBuilder sb, T item);
+    }
+
+    /**
+     * 从请求体读取商品，未提供的字段保持为null
+     */
+    static Product readProduct(Map<String, Object> body) {
+        Product product = new Product();
+        product.setProductName(getString(body, "productName"));
+        product.setCategory(getString(body, "category"));
+        product.setUnit(getString(body, "unit"));
+        Object price = body.get("price");
+        if (price != null) {
+            product.setPrice(requireNumber("price", price).doubleValue());
+        }
+        product.setDescription(getString(body, "description"));
+        return product;
+    }
+
+    /**
+     * 从请求体读取库存调整：单条 {productId, warehouseId, delta}，或 {adjustments: [...]} 多条
+     */
+    static List<StockAdjustment> readAdjustments(Map<String, Object> body) {
+        List<StockAdjustment> adjustments = new ArrayList<>();
+        Object list = body.get("adjustments");
+        if (list == null) {
+            adjustments.add(readAdjustment(body));
+            return adjustments;
+        }
+        if (!(list instanceof List)) {
+            throw new IllegalArgumentException("adjustments 应为数组");
+        }
+        for (Object item : (List<?>) list) {
+            adjustments.add(readAdjustment(asObject(item)));
+        }
+        return adjustments;
+    }
+
+    /**
+     * 从请求体读取库存调拨：单条 {productId, fromWarehouseId, toWarehouseId, quantity}，或 {transfers: [...]} 多条
+     */
+    static List<StockTransfer> readTransfers(Map<String, Object> body) {
+        List<StockTransfer> transfers = new ArrayList<>();
+        Object list = body.get("transfers");
+        if (list == null) {
+            transfers.add(readTransfer(body));
+            return transfers;
+        }
+        if (!(list instanceof List)) {
+            throw new IllegalArgumentException("transfers 应为数组");
+        }
+        for (Object item : (List<?>) list) {
+            transfers.add(readTransfer(asObject(item)));
+        }
+        return transfers;
+    }
+
+    private static StockTransfer readTransfer(Map<String, Object> body) {
+        return new StockTransfer(requireInt(body, "productId"), requireInt(body, "fromWarehouseId"),
+                requireInt(body, "toWarehouseId"), requireInt(body, "quantity"));
+    }
+
+    private static StockAdjustment readAdjustment(Map<String, Object> body) {
+        return new StockAdjustment(requireInt(body, "productId"), requireInt(body, "warehouseId"), requireInt(body, "delta"));
+    }
+
+    /**
+     * 把解析结果转换为JSON对象
+     * @throws IllegalArgumentException 不是对象时抛出
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> asObject(Object value) {
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("请求体应为JSON对象");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    static String getString(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        return value == null ? null : value.toString();
+    }
+
+    // 整数字段：小数（如1.5）不截断，按格式错误拒绝；1.0这样的整数值可以接受
+    static Integer getInt(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (value == null) {
+            return null;
+        }
+        Number number = requireNumber(name, value);
+        if (number instanceof Double decimal && decimal != Math.rint(decimal)) {
+            throw new IllegalArgumentException("字段 " + name + " 应为整数");
+        }
+        return Math.toIntExact(number.longValue());
+    }
+
+    static int requireInt(Map<String, Object> body, String name) {
+        Integer value = getInt(body, name);
+        if (value == null) {
+            throw new IllegalArgumentException("缺少字段 " + name);
+        }
+        return value;
+    }
+
+    private static Number requireNumber(String name, Object value) {
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException("字段 " + name + " 应为数字");
+        }
+        return (Number) value;
+    }
+}
@@ -0,0 +1,440 @@
+package com.convenience.store.server;
+
+import com.convenience.store.entity.Inventory;
+import com.convenience.store.entity.InventoryRow;
+import com.convenience.store.entity.Product;
+import com.convenience.store.entity.StockAdjustment;
+import com.convenience.store.entity.StockTransfer;
+import com.convenience.store.entity.User;
+import com.convenience.store.service.InventoryService;
+import com.convenience.store.service.ProductService;
+import com.convenience.store.service.UserService;
+import com.convenience.store.util.AsyncExecutor;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 门店终端HTTP接口 - 无界面服务模式下，把商品、库存、用户服务以JSON接口提供给收银终端，
+ * 所有终端共用本进程的一个数据库连接池，终端本身不需要连接MySQL。
+ * 每个请求在一个虚拟线程中处理（JDK 21 以下回退到固定大小的线程池），阻塞在连接池上的请求不占用平台线程。
+ * 配置了 server.token 时，每个请求必须带请求头 X-Store-Token；默认只绑定本机地址，绑定其他地址时必须配置令牌。
+ *
+ * 接口：
+ *   GET    /api/products?afterId=&limit=&productName=&category=   键集分页查询商品
+ *   GET    /api/products?q=关键字&limit=                          按相关度搜索商品
+ *   GET    /api/products/{id}
+ *   POST   /api/products                 新增商品，返回带ID的商品
+ *   PUT    /api/products/{id}            整体更新商品（未提供的字段置空）
+ *   DELETE /api/products/{id}
+ *   GET    /api/inventory?afterId=&limit=&productId=&warehouseId=&productName=&category=&lowStock=
+ *   GET    /api/inventory/{id}
+ *   PUT    /api/inventory/{id}           {quantity, originalQuantity, minStock} 按差额更新
+ *   POST   /api/inventory/adjust         {productId, warehouseId, delta} 或 {adjustments: [...]}，全部成功才提交
+ *   POST   /api/inventory/transfer       {productId, fromWarehouseId, toWarehouseId, quantity} 或 {transfers: [...]}
+ *   GET    /api/users?afterId=&limit=&username=&role=&status=
+ *   GET    /api/users/{id}
+ *   POST   /api/login                    {username, password}
+ * 写操作失败（库存不足、记录不存在、数据库错误）返回409和 {"success":false}
+ * 请求体超过 1MB 时返回413；参数或请求体格式错误（包括整数字段为小数）返回400
+ */
+public class StoreHttpServer {
+    private static final Logger logger = Logger.getLogger(StoreHttpServer.class);
+
+    // 默认每页记录数和上限
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    // 等待接受的连接队列长度
+    private static final int BACKLOG = 256;
+    // 请求体的最大字节数，最大的请求是批量调整和调拨，1MB可容纳上万条
+    private static final int MAX_BODY_BYTES = 1024 * 1024;
+    private static final String TOKEN_HEADER = "X-Store-Token";
+    // 未指定绑定地址时只接受本机连接
+    private static final String DEFAULT_HOST = "127.0.0.1";
+
+    private static HttpServer server;
+    private static ExecutorService executor;
+
+    private final ProductService productService = new ProductService();
+    private final InventoryService inventoryService = new InventoryService();
+    private final UserService userService = new UserService();
+    private final byte[] token;
+
+    private StoreHttpServer(String token) {
+        this.token = token == null || token.isEmpty() ? null : token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 启动HTTP接口，重复调用不会启动多个
+     * @param host 绑定地址，null表示只绑定本机 127.0.0.1
+     * @param port 监听端口，0表示由系统分配
+     * @param threads 没有虚拟线程时的请求处理线程数
+     * @param token 访问令牌，null或空表示不校验，此时只能绑定本机地址
+     * @return 实际监听的端口
+     * @throws IOException 端口被占用等原因无法启动时抛出
+     * @throws IllegalArgumentException 没有令牌却绑定非本机地址时抛出
+     */
+    public static synchronized int start(String host, int port, int threads, String token) throws IOException {
+        if (server != null) {
+            return server.getAddress().getPort();
+        }
+        // 关闭Nagle算法：JDK的HttpServer分两次写出响应头和响应体，否则第二次写要等客户端的延迟确认（约40ms）
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        InetSocketAddress address = new InetSocketAddress(host == null ? DEFAULT_HOST : host, port);
+        if ((token == null || token.isEmpty()) && (address.isUnresolved() || !address.getAddress().isLoopbackAddress())) {
+            // 接口可以修改商品和库存、列出用户，不能不带令牌暴露到网络上
+            throw new IllegalArgumentException("绑定非本机地址 " + host + " 时必须设置访问令牌 server.token");
+        }
+        HttpServer httpServer = HttpServer.create(address, BACKLOG);
+        StoreHttpServer handlers = new StoreHttpServer(token);
+        httpServer.createContext("/api/products", handlers.wrap(handlers::handleProducts));
+        httpServer.createContext("/api/inventory", handlers.wrap(handlers::handleInventory));
+        httpServer.createContext("/api/users", handlers.wrap(handlers::handleUsers));
+        httpServer.createContext("/api/login", handlers.wrap(handlers::handleLogin));
+        executor = AsyncExecutor.newPerTaskExecutor("store-http", threads);
+        httpServer.setExecutor(executor);
+        httpServer.start();
+        server = httpServer;
+        int boundPort = httpServer.getAddress().getPort();
+        logger.info("终端HTTP接口已启动，端口 " + boundPort + (handlers.token == null ? "，未设置访问令牌" : ""));
+        return boundPort;
+    }
+
+    /**
+     * 停止HTTP接口，等待进行中的请求最多1秒
+     */
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdown();
+            server = null;
+            executor = null;
+        }
+    }
+
+    /**
+     * 一个接口的处理逻辑，返回HTTP状态码并把响应JSON写入sb
+     */
+    private interface Route {
+        int handle(HttpExchange exchange, String path, StringBuilder sb) throws IOException;
+    }
+
+    // 统一处理令牌校验、参数错误和响应写出
+    private HttpHandler wrap(Route route) {
+        return exchange -> {
+            try {
+                StringBuilder sb = new StringBuilder(512);
+                int status;
+                if (token != null && !authorized(exchange)) {
+                    status = error(sb, 401, "令牌无效");
+                } else {
+                    String path = exchange.getRequestURI().getPath().substring(exchange.getHttpContext().getPath().length());
+                    try {
+                        status = route.handle(exchange, path, sb);
+                    } catch (IllegalArgumentException | ArithmeticException e) {
+                        sb.setLength(0);
+                        status = error(sb, 400, e.getMessage());
+                    } catch (BodyTooLargeException e) {
+                        sb.setLength(0);
+                        status = error(sb, 413, e.getMessage());
+                    } catch (RuntimeException e) {
+                        logger.error("处理请求出错：" + exchange.getRequestMethod() + " " + exchange.getRequestURI(), e);
+                        sb.setLength(0);
+                        status = error(sb, 500, "服务器内部错误");
+                    }
+                }
+                byte[] body = sb.toString().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    private boolean authorized(HttpExchange exchange) {
+        String provided = exchange.getRequestHeaders().getFirst(TOKEN_HEADER);
+        // 定长比较，避免通过响应时间逐字节猜测令牌
+        return provided != null && MessageDigest.isEqual(token, provided.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int handleProducts(HttpExchange exchange, String path, StringBuilder sb) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (path.isEmpty() || "/".equals(path)) {
+            if ("GET".equals(method)) {
+                Map<String, String> query = query(exchange);
+                int limit = pageSize(query);
+                List<Product> products;
+                if (query.get("q") != null) {
+                    products = productService.searchProductsRanked(query.get("q"), limit);
+                } else {
+                    Map<String, Object> params = new HashMap<>();
+                    putIfPresent(params, query, "productName");
+                    putIfPresent(params, query, "category");
+                    products = productService.getProductPage(intParam(query, "afterId"), limit, params);
+                }
+                JsonCodec.writeArray(sb, products, JsonCodec::writeProduct);
+                return 200;
+            }
+            if ("POST".equals(method)) {
+                Product product = JsonCodec.readProduct(body(exchange));
+                if (product.getProductName() == null) {
+                    throw new IllegalArgumentException("缺少字段 productName");
+                }
+                if (!productService.addProduct(product)) {
+                    return failure(sb);
+                }
+                JsonCodec.writeProduct(sb, product);
+                return 201;
+            }
+            return error(sb, 405, "不支持的请求方法");
+        }
+        int productId = pathId(path);
+        switch (method) {
+            case "GET": {
+                Product product = productService.getProductById(productId);
+                if (product == null) {
+                    return error(sb, 404, "商品不存在");
+                }
+                JsonCodec.writeProduct(sb, product);
+                return 200;
+            }
+            case "PUT": {
+                Product product = JsonCodec.readProduct(body(exchange));
+                product.setProductId(productId);
+                return result(sb, productService.updateProduct(product));
+            }
+            case "DELETE":
+                return result(sb, productService.deleteProduct(productId));
+            default:
+                return error(sb, 405, "不支持的请求方法");
+        }
+    }
+
+    private int handleInventory(HttpExchange exchange, String path, StringBuilder sb) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (path.isEmpty() || "/".equals(path)) {
+            if (!"GET".equals(method)) {
+                return error(sb, 405, "不支持的请求方法");
+            }
+            Map<String, String> query = query(exchange);
+            Map<String, Object> params = new HashMap<>();
+            putIntIfPresent(params, query, "productId");
+            putIntIfPresent(params, query, "warehouseId");
+            putIfPresent(params, query, "productName");
+            putIfPresent(params, query, "category");
+            if ("true".equals(query.get("lowStock"))) {
+                params.put("lowStock", Boolean.TRUE);
+            }
+            List<InventoryRow> rows = inventoryService.searchInventoryRows(intParam(query, "afterId"), pageSize(query), params);
+            JsonCodec.writeArray(sb, rows, JsonCodec::writeInventoryRow);
+            return 200;
+        }
+        if ("/adjust".equals(path)) {
+            if (!"POST".equals(method)) {
+                return error(sb, 405, "不支持的请求方法");
+            }
+            List<StockAdjustment> adjustments = JsonCodec.readAdjustments(body(exchange));
+            return result(sb, inventoryService.adjustQuantities(adjustments));
+        }
+        if ("/transfer".equals(path)) {
+            if (!"POST".equals(method)) {
+                return error(sb, 405, "不支持的请求方法");
+            }
+            List<StockTransfer> transfers = JsonCodec.readTransfers(body(exchange));
+            return result(sb, inventoryService.transferStocks(transfers));
+        }
+        int inventoryId = pathId(path);
+        switch (method) {
+            case "GET": {
+                Inventory inventory = inventoryService.getInventoryById(inventoryId);
+                if (inventory == null) {
+                    return error(sb, 404, "库存记录不存在");
+                }
+                JsonCodec.writeInventory(sb, inventory);
+                return 200;
+            }
+            case "PUT": {
+                Map<String, Object> body = body(exchange);
+                int quantity = JsonCodec.requireInt(body, "quantity");
+                int originalQuantity = JsonCodec.requireInt(body, "originalQuantity");
+                Inventory inventory = inventoryService.getInventoryById(inventoryId);
+                if (inventory == null) {
+                    return error(sb, 404, "库存记录不存在");
+                }
+                inventory.setQuantity(quantity);
+                Integer minStock = JsonCodec.getInt(body, "minStock");
+                if (minStock != null) {
+                    inventory.setMinStock(minStock);
+                }
+                return result(sb, inventoryService.updateInventoryByDelta(inventory, originalQuantity));
+            }
+            default:
+                return error(sb, 405, "不支持的请求方法");
+        }
+    }
+
+    private int handleUsers(HttpExchange exchange, String path, StringBuilder sb) {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            return error(sb, 405, "不支持的请求方法");
+        }
+        if (path.isEmpty() || "/".equals(path)) {
+            Map<String, String> query = query(exchange);
+            Map<String, Object> params = new HashMap<>();
+            putIfPresent(params, query, "username");
+            putIfPresent(params, query, "role");
+            putIfPresent(params, query, "status");
+            List<User> users = userService.getUserPage(intParam(query, "afterId"), pageSize(query), params);
+            JsonCodec.writeArray(sb, users, JsonCodec::writeUser);
+            return 200;
+        }
+        User user = userService.getUserById(pathId(path));
+        if (user == null) {
+            return error(sb, 404, "用户不存在");
+        }
+        JsonCodec.writeUser(sb, user);
+        return 200;
+    }
+
+    private int handleLogin(HttpExchange exchange, String path, StringBuilder sb) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            return error(sb, 405, "不支持的请求方法");
+        }
+        Map<String, Object> body = body(exchange);
+        String username = JsonCodec.getString(body, "username");
+        String password = JsonCodec.getString(body, "password");
+        if (username == null || password == null || !userService.login(username, password)) {
+            Json.field(sb.append('{'), "success", true).append(false).append('}');
+            return 401;
+        }
+        Json.field(sb.append('{'), "success", true).append(true);
+        JsonCodec.writeUser(Json.field(sb, "user", false), userService.getUserByUsername(username));
+        sb.append('}');
+        return 200;
+    }
+
+    private static int result(StringBuilder sb, boolean success) {
+        return success ? success(sb) : failure(sb);
+    }
+
+    private static int success(StringBuilder sb) {
+        Json.field(sb.append('{'), "success", true).append(true).append('}');
+        return 200;
+    }
+
+    private static int failure(StringBuilder sb) {
+        Json.field(sb.append('{'), "success", true).append(false).append('}');
+        return 409;
+    }
+
+    private static int error(StringBuilder sb, int status, String message) {
+        Json.string(Json.field(sb.append('{'), "error", true), message).append('}');
+        return status;
+    }
+
+    // 读取请求体，超过 MAX_BODY_BYTES 时不再读取：声明的长度超限时直接拒绝，分块传输时读到上限为止
+    private static Map<String, Object> body(HttpExchange exchange) throws IOException {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength != null) {
+            try {
+                if (Long.parseLong(contentLength.trim()) > MAX_BODY_BYTES) {
+                    throw new BodyTooLargeException();
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("无效的 Content-Length：" + contentLength);
+            }
+        }
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                throw new BodyTooLargeException();
+            }
+            return JsonCodec.asObject(Json.parse(new String(bytes, StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * 请求体超过 MAX_BODY_BYTES，返回413
+     */
+    private static final class BodyTooLargeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BodyTooLargeException() {
+            super("请求体不能超过 " + MAX_BODY_BYTES / 1024 + "KB");
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null || raw.isEmpty()) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static int pageSize(Map<String, String> query) {
+        Integer limit = intParam(query, "limit");
+        return limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    private static Integer intParam(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("参数 " + name + " 应为整数");
+        }
+    }
+
+    private static void putIfPresent(Map<String, Object> params, Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value != null && !value.isEmpty()) {
+            params.put(name, value);
+        }
+    }
+
+    private static void putIntIfPresent(Map<String, Object> params, Map<String, String> query, String name) {
+        Integer value = intParam(query, name);
+        if (value != null) {
+            params.put(name, value);
+        }
+    }
+
+    // 解析 "/{id}" 形式的路径
+    private static int pathId(String path) {
+        try {
+            return Integer.parseInt(path.substring(1));
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("无效的路径：" + path);
+        }
+    }
+}
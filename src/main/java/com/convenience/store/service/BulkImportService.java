@@ -0,0 +1,645 @@
+package com.convenience.store.service;
+
+import com.convenience.store.dao.ImportProgressDao;
+import com.convenience.store.dao.InventoryDao;
+import com.convenience.store.dao.ProductDao;
+import com.convenience.store.dao.ProductSupplierDao;
+import com.convenience.store.entity.Inventory;
+import com.convenience.store.entity.Product;
+import com.convenience.store.entity.ProductSupplier;
+import com.convenience.store.util.MyBatisUtil;
+import com.convenience.store.util.shard.ShardRouter;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 批量导入服务类 - 从CSV文件批量导入商品、库存和商品供应商关系
+ * 处理流程：
+ * 1. 按块读取CSV文件，各块在线程池中并行解析和校验
+ * 2. 按文件顺序收集解析结果，使用 ExecutorType.BATCH 会话以多行INSERT语句写入，
+ *    每 commitSize 行提交一次
+ * 3. 每次提交后写入检查点文件，导入中断后再次导入同一文件会从检查点之后继续
+ * 4. 校验失败或写库时违反约束的行记录行号和原因，不影响其他行导入
+ * 5. 连接断开、锁等待超时等与数据无关的写库错误使导入失败，检查点停在上一次提交，再次导入从该处继续
+ * 6. 写主库的每一批在同一事务中把本批最后一行的行号记入 import_progress，续传时取它与检查点文件中较大的一个，
+ *    提交后、写检查点文件前崩溃时不会重放已写入的商品；库存（商品+仓库）和供应关系（商品+供应商）按唯一键写入，
+ *    已存在时更新，写分片库的库存重放时同样不会重复
+ * 启用仓库分片时，库存行按仓库所在分片分组，各分片分别写入提交
+ * CSV第一行为表头，字段内不支持换行
+ */
+public class BulkImportService {
+    // 每条多行INSERT语句包含的最大行数
+    private static final int ROWS_PER_STATEMENT = 500;
+    // 检查点文件的后缀
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    // import_progress 表中导入标识的最大长度
+    private static final int MAX_IMPORT_KEY_LENGTH = 255;
+
+    /**
+     * 导入类型及其CSV表头
+     */
+    public enum ImportType {
+        PRODUCT("product_name", "category", "unit", "price", "description"),
+        INVENTORY("product_id", "warehouse_id", "quantity", "min_stock"),
+        PRODUCT_SUPPLIER("product_id", "supplier_id", "supply_price");
+
+        private final String[] columns;
+
+        ImportType(String... columns) {
+            this.columns = columns;
+        }
+
+        public String[] getColumns() {
+            return columns.clone();
+        }
+    }
+
+    /**
+     * 导入进度回调
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * @param processedLines 已处理的行号
+         * @param totalLines 文件总行数
+         */
+        void onProgress(long processedLines, long totalLines);
+    }
+
+    /**
+     * 单行导入错误
+     */
+    public static class ImportError {
+        // CSV文件中的行号（从1开始，第1行为表头）
+        private final long lineNumber;
+        // 错误原因
+        private final String message;
+
+        public ImportError(long lineNumber, String message) {
+            this.lineNumber = lineNumber;
+            this.message = message;
+        }
+
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "第" + lineNumber + "行: " + message;
+        }
+    }
+
+    /**
+     * 导入结果
+     */
+    public static class ImportResult {
+        // 从检查点恢复时跳过的最后行号，0表示从头导入
+        private final long resumedAfterLine;
+        // 成功写入的行数
+        private long importedRows;
+        // 失败行的错误列表
+        private final List<ImportError> errors = new ArrayList<>();
+
+        ImportResult(long resumedAfterLine) {
+            this.resumedAfterLine = resumedAfterLine;
+        }
+
+        public long getResumedAfterLine() {
+            return resumedAfterLine;
+        }
+
+        public long getImportedRows() {
+            return importedRows;
+        }
+
+        public List<ImportError> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+    }
+
+    // 每次提交的行数
+    private int commitSize = 5000;
+    // 每个解析块的行数
+    private int chunkSize = 10000;
+    // 并行解析的线程数
+    private int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    /**
+     * 从CSV文件导入数据
+     * 调用线程被中断时在当前块处理完后停止，并抛出 InterruptedIOException，检查点保留以便续传
+     *
+     * @param file CSV文件
+     * @param type 导入类型
+     * @param listener 进度回调，可为null
+     * @return 导入结果
+     * @throws IOException 读取文件失败、表头不匹配或写库发生与数据无关的错误时抛出
+     */
+    public ImportResult importCsv(Path file, ImportType type, ProgressListener listener) throws IOException {
+        Path checkpointFile = file.resolveSibling(file.getFileName() + CHECKPOINT_SUFFIX);
+        String importKey = importKey(file, type);
+        long resumeAfterLine = Math.max(readCheckpoint(checkpointFile, file), readProgress(importKey));
+        long totalLines = countLines(file);
+        ImportResult result = new ImportResult(resumeAfterLine);
+
+        ExecutorService parsers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "csv-import-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return result;
+            }
+            checkHeader(type, header);
+
+            // 已提交但尚未写库的行，按文件顺序排列
+            PendingRows pending = new PendingRows();
+            // 正在并行解析的块，数量有上限，保证内存占用有界
+            Deque<Future<ParsedChunk>> parsing = new ArrayDeque<>();
+            List<String> lines = new ArrayList<>(chunkSize);
+            long lineNumber = 1;
+            long chunkStartLine = 2;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber <= resumeAfterLine) {
+                    continue;
+                }
+                if (lines.isEmpty()) {
+                    chunkStartLine = lineNumber;
+                }
+                lines.add(line);
+                if (lines.size() == chunkSize) {
+                    parsing.addLast(submitChunk(parsers, type, chunkStartLine, lines));
+                    lines = new ArrayList<>(chunkSize);
+                    if (parsing.size() >= parallelism * 2) {
+                        consumeChunk(awaitChunk(parsing.pollFirst()), type, pending, result, checkpointFile, file, importKey, listener, totalLines);
+                    }
+                }
+            }
+            if (!lines.isEmpty()) {
+                parsing.addLast(submitChunk(parsers, type, chunkStartLine, lines));
+            }
+            while (!parsing.isEmpty()) {
+                consumeChunk(awaitChunk(parsing.pollFirst()), type, pending, result, checkpointFile, file, importKey, listener, totalLines);
+            }
+            if (!pending.rows.isEmpty()) {
+                writeRows(pending, type, result, checkpointFile, file, importKey);
+            }
+            if (listener != null) {
+                listener.onProgress(totalLines, totalLines);
+            }
+        } finally {
+            parsers.shutdownNow();
+            // 批量插入绕过了ProductService，已写入的商品需要重建搜索索引才能被搜到
+            if (type == ImportType.PRODUCT && result.getImportedRows() > 0) {
+                ProductService.rebuildSearchIndexAsync();
+            }
+            // 库存同理，低库存监控重新扫描
+            if (type == ImportType.INVENTORY && result.getImportedRows() > 0) {
+                LowStockMonitor.getInstance().reloadAsync();
+            }
+        }
+        // 全部导入完成，删除进度和检查点；先删进度，删除失败时检查点还在，再次导入跳过全部行后重新删除
+        deleteProgress(importKey);
+        Files.deleteIfExists(checkpointFile);
+        return result;
+    }
+
+    private Future<ParsedChunk> submitChunk(ExecutorService parsers, ImportType type, long startLine, List<String> lines) {
+        return parsers.submit(() -> parseChunk(type, startLine, lines));
+    }
+
+    private ParsedChunk awaitChunk(Future<ParsedChunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("批量导入已取消");
+        } catch (ExecutionException e) {
+            throw new IOException("解析CSV失败", e.getCause());
+        }
+    }
+
+    // 收集一个已解析的块：记录错误，累积待写入的行，满 commitSize 行即写库提交
+    private void consumeChunk(ParsedChunk chunk, ImportType type, PendingRows pending, ImportResult result,
+                              Path checkpointFile, Path file, String importKey, ProgressListener listener, long totalLines) throws IOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("批量导入已取消");
+        }
+        result.errors.addAll(chunk.errors);
+        for (int i = 0; i < chunk.rows.size(); i++) {
+            pending.rows.add(chunk.rows.get(i));
+            pending.lineNumbers.add(chunk.lineNumbers.get(i));
+            if (pending.rows.size() >= commitSize) {
+                writeRows(pending, type, result, checkpointFile, file, importKey);
+            }
+        }
+        if (listener != null) {
+            listener.onProgress(chunk.lastLine, totalLines);
+        }
+    }
+
+    // 写入待写入行并提交，全部写完后更新检查点
+    private void writeRows(PendingRows pending, ImportType type, ImportResult result,
+                           Path checkpointFile, Path file, String importKey) throws IOException {
+        long lastLine = pending.lineNumbers.get(pending.lineNumbers.size() - 1);
+        if (type == ImportType.INVENTORY && ShardRouter.isEnabled()) {
+            Map<Integer, PendingRows> byShard = new TreeMap<>();
+            for (int i = 0; i < pending.rows.size(); i++) {
+                Inventory inventory = (Inventory) pending.rows.get(i);
+                PendingRows shardRows = byShard.computeIfAbsent(ShardRouter.shardOf(inventory.getWarehouseId()), k -> new PendingRows());
+                shardRows.rows.add(inventory);
+                shardRows.lineNumbers.add(pending.lineNumbers.get(i));
+            }
+            for (Map.Entry<Integer, PendingRows> entry : byShard.entrySet()) {
+                writeBatch(entry.getValue(), type, result, entry.getKey(), null, lastLine);
+            }
+        } else {
+            writeBatch(pending, type, result, null, importKey, lastLine);
+        }
+        pending.rows.clear();
+        pending.lineNumbers.clear();
+        writeCheckpoint(checkpointFile, file, lastLine);
+    }
+
+    // 以批处理会话写入一批行并提交，违反约束时逐行重试以定位出错的行；shard 为null时写主库，
+    // importKey 不为null时在同一事务中记录导入进度
+    private void writeBatch(PendingRows pending, ImportType type, ImportResult result, Integer shard,
+                            String importKey, long lastLine) throws IOException {
+        try (SqlSession sqlSession = shard == null ? MyBatisUtil.getSqlSession(ExecutorType.BATCH)
+                : MyBatisUtil.getShardSession(shard, ExecutorType.BATCH)) {
+            for (int from = 0; from < pending.rows.size(); from += ROWS_PER_STATEMENT) {
+                int to = Math.min(from + ROWS_PER_STATEMENT, pending.rows.size());
+                insertRows(sqlSession, type, pending.rows.subList(from, to));
+            }
+            saveProgress(sqlSession, importKey, lastLine);
+            sqlSession.commit();
+            result.importedRows += pending.rows.size();
+            return;
+        } catch (Exception batchFailure) {
+            if (!isDataError(batchFailure)) {
+                throw writeFailure(batchFailure);
+            }
+        }
+        // 批量写入违反约束（例如外键不存在），改为逐行写入，只跳过出错的行；提交后才计入结果
+        long imported = 0;
+        List<ImportError> errors = new ArrayList<>();
+        try (SqlSession sqlSession = shard == null ? MyBatisUtil.getSqlSession() : MyBatisUtil.getShardSession(shard)) {
+            for (int i = 0; i < pending.rows.size(); i++) {
+                try {
+                    insertRows(sqlSession, type, List.of(pending.rows.get(i)));
+                    imported++;
+                } catch (Exception e) {
+                    if (!isDataError(e)) {
+                        throw writeFailure(e);
+                    }
+                    errors.add(new ImportError(pending.lineNumbers.get(i), rootMessage(e)));
+                }
+            }
+            saveProgress(sqlSession, importKey, lastLine);
+            sqlSession.commit();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw writeFailure(e);
+        }
+        result.importedRows += imported;
+        result.errors.addAll(errors);
+    }
+
+    /**
+     * 是否为数据本身的错误：违反唯一键、外键、检查约束（SQLSTATE 23xxx），或数据超长、格式不对（SQLSTATE 22xxx）
+     * 这类错误只影响出错的行；其他错误（连接断开、锁等待超时、死锁等）与数据无关，逐行重试会把正常的行也记为失败
+     */
+    static boolean isDataError(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLIntegrityConstraintViolationException || cause instanceof SQLDataException) {
+                return true;
+            }
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null
+                    && (sqlException.getSQLState().startsWith("23") || sqlException.getSQLState().startsWith("22"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static IOException writeFailure(Exception e) {
+        // 只取第一行：H2等驱动的错误信息后面附带完整的SQL语句
+        String message = String.valueOf(rootMessage(e)).lines().findFirst().orElse("");
+        return new IOException("写入数据库失败，导入在上一次提交处中断: " + message, e);
+    }
+
+    // ===============================
+    // 导入进度：记录在主库，与数据在同一事务中提交
+    // ===============================
+    private static String importKey(Path file, ImportType type) throws IOException {
+        String key = type.name() + ":" + fileSignature(file) + ":" + file.getFileName();
+        return key.length() > MAX_IMPORT_KEY_LENGTH ? key.substring(0, MAX_IMPORT_KEY_LENGTH) : key;
+    }
+
+    private static long readProgress(String importKey) throws IOException {
+        try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
+            Long lastLine = sqlSession.getMapper(ImportProgressDao.class).getLastLine(importKey);
+            return lastLine == null ? 0 : lastLine;
+        } catch (Exception e) {
+            throw new IOException("读取导入进度失败: " + String.valueOf(rootMessage(e)).lines().findFirst().orElse(""), e);
+        }
+    }
+
+    private static void saveProgress(SqlSession sqlSession, String importKey, long lastLine) {
+        if (importKey != null) {
+            sqlSession.getMapper(ImportProgressDao.class).saveLastLine(importKey, lastLine);
+        }
+    }
+
+    private static void deleteProgress(String importKey) throws IOException {
+        try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
+            sqlSession.getMapper(ImportProgressDao.class).deleteProgress(importKey);
+            sqlSession.commit();
+        } catch (Exception e) {
+            throw writeFailure(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void insertRows(SqlSession sqlSession, ImportType type, List<?> rows) {
+        switch (type) {
+            case PRODUCT -> sqlSession.getMapper(ProductDao.class).insertProductBatch((List<Product>) rows);
+            case INVENTORY -> sqlSession.getMapper(InventoryDao.class).insertInventoryBatch((List<Inventory>) rows);
+            case PRODUCT_SUPPLIER -> sqlSession.getMapper(ProductSupplierDao.class).insertProductSupplierBatch((List<ProductSupplier>) rows);
+        }
+    }
+
+    // ===============================
+    // 解析与校验（在解析线程中执行）
+    // ===============================
+    private static ParsedChunk parseChunk(ImportType type, long startLine, List<String> lines) {
+        ParsedChunk chunk = new ParsedChunk(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            long lineNumber = startLine + i;
+            String line = lines.get(i);
+            chunk.lastLine = lineNumber;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                List<String> fields = splitCsvLine(line);
+                if (fields.size() < type.columns.length) {
+                    // 末尾的可选列允许省略
+                    while (fields.size() < type.columns.length) {
+                        fields.add("");
+                    }
+                } else if (fields.size() > type.columns.length) {
+                    throw new IllegalArgumentException("列数应为 " + type.columns.length + "，实际为 " + fields.size());
+                }
+                chunk.rows.add(toEntity(type, fields));
+                chunk.lineNumbers.add(lineNumber);
+            } catch (IllegalArgumentException e) {
+                chunk.errors.add(new ImportError(lineNumber, e.getMessage()));
+            }
+        }
+        return chunk;
+    }
+
+    private static Object toEntity(ImportType type, List<String> fields) {
+        switch (type) {
+            case PRODUCT: {
+                Product product = new Product();
+                product.setProductName(requireText(fields.get(0), "product_name", 100));
+                product.setCategory(requireText(fields.get(1), "category", 50));
+                product.setUnit(requireText(fields.get(2), "unit", 20));
+                product.setPrice(parsePositiveDecimal(fields.get(3), "price"));
+                product.setDescription(fields.get(4).isEmpty() ? null : fields.get(4));
+                return product;
+            }
+            case INVENTORY: {
+                Inventory inventory = new Inventory();
+                inventory.setProductId(parseInt(fields.get(0), "product_id", 1));
+                inventory.setWarehouseId(parseInt(fields.get(1), "warehouse_id", 1));
+                inventory.setQuantity(parseInt(fields.get(2), "quantity", 0));
+                // 最小库存为空时使用与表结构一致的默认值10
+                inventory.setMinStock(fields.get(3).isEmpty() ? 10 : parseInt(fields.get(3), "min_stock", 0));
+                return inventory;
+            }
+            default: {
+                ProductSupplier productSupplier = new ProductSupplier();
+                productSupplier.setProductId(parseInt(fields.get(0), "product_id", 1));
+                productSupplier.setSupplierId(parseInt(fields.get(1), "supplier_id", 1));
+                productSupplier.setSupplyPrice(parsePositiveDecimal(fields.get(2), "supply_price"));
+                return productSupplier;
+            }
+        }
+    }
+
+    private static String requireText(String value, String column, int maxLength) {
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException(column + " 不能为空");
+        }
+        if (value.length() > maxLength) {
+            throw new IllegalArgumentException(column + " 长度不能超过 " + maxLength);
+        }
+        return value;
+    }
+
+    private static int parseInt(String value, String column, int min) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number < min) {
+                throw new IllegalArgumentException(column + " 不能小于 " + min + ": " + value);
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " 必须是整数: " + value);
+        }
+    }
+
+    private static double parsePositiveDecimal(String value, String column) {
+        try {
+            double number = Double.parseDouble(value);
+            if (!(number > 0)) {
+                throw new IllegalArgumentException(column + " 必须大于0: " + value);
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " 必须是数字: " + value);
+        }
+    }
+
+    // 拆分一行CSV，支持双引号包裹的字段和 "" 转义，字段两端的空白会被去除
+    static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("引号未闭合");
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    private static void checkHeader(ImportType type, String header) throws IOException {
+        // 去除Excel等工具写入的UTF-8 BOM
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        List<String> columns = splitCsvLine(header);
+        for (int i = 0; i < type.columns.length && i < columns.size(); i++) {
+            if (!type.columns[i].equalsIgnoreCase(columns.get(i))) {
+                throw new IOException("CSV表头不匹配，应为: " + String.join(",", type.columns));
+            }
+        }
+        if (columns.size() < type.columns.length - 1 || columns.size() > type.columns.length) {
+            throw new IOException("CSV表头不匹配，应为: " + String.join(",", type.columns));
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null) {
+            root = root.getCause();
+        }
+        return root.getMessage();
+    }
+
+    // ===============================
+    // 检查点：记录已处理到的行号，并用文件大小和修改时间确认是同一个文件
+    // ===============================
+    private static long readCheckpoint(Path checkpointFile, Path file) throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        Properties checkpoint = new Properties();
+        try (BufferedReader reader = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+            checkpoint.load(reader);
+        }
+        String expected = fileSignature(file);
+        if (!expected.equals(checkpoint.getProperty("file"))) {
+            // 文件已变化，检查点失效，从头导入
+            return 0;
+        }
+        return Long.parseLong(checkpoint.getProperty("lastLine", "0"));
+    }
+
+    private static void writeCheckpoint(Path checkpointFile, Path file, long lastLine) throws IOException {
+        Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        String content = "file=" + fileSignature(file) + "\nlastLine=" + lastLine + "\n";
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        // 先写临时文件再替换，避免进程中断时留下半个检查点
+        Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String fileSignature(Path file) throws IOException {
+        return Files.size(file) + "-" + Files.getLastModifiedTime(file).toMillis();
+    }
+
+    // 快速统计文件行数，用于计算导入进度
+    private static long countLines(Path file) throws IOException {
+        long lines = 0;
+        boolean endsWithNewline = true;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (b == '\n') {
+                        lines++;
+                    }
+                    endsWithNewline = b == '\n';
+                }
+                buffer.clear();
+            }
+        }
+        return endsWithNewline ? lines : lines + 1;
+    }
+
+    // 一个块的解析结果
+    private static final class ParsedChunk {
+        private final List<Object> rows;
+        private final List<Long> lineNumbers;
+        private final List<ImportError> errors = new ArrayList<>();
+        private long lastLine;
+
+        private ParsedChunk(int capacity) {
+            rows = new ArrayList<>(capacity);
+            lineNumbers = new ArrayList<>(capacity);
+        }
+    }
+
+    // 等待写库的行及其行号
+    private static final class PendingRows {
+        private final List<Object> rows = new ArrayList<>();
+        private final List<Long> lineNumbers = new ArrayList<>();
+    }
+
+    // ===============================
+    // 导入参数设置
+    // ===============================
+    public void setCommitSize(int commitSize) {
+        this.commitSize = commitSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+}
@@ -0,0 +1,353 @@
+package com.convenience.store.service;
+
+import com.convenience.store.dao.InventoryDao;
+import com.convenience.store.dao.ProductDao;
+import com.convenience.store.dao.SyncDao;
+import com.convenience.store.dao.UserDao;
+import com.convenience.store.entity.InventoryRow;
+import com.convenience.store.entity.Product;
+import com.convenience.store.entity.Tombstone;
+import com.convenience.store.entity.User;
+import com.convenience.store.util.MyBatisUtil;
+import com.convenience.store.util.cache.StoreCache;
+import com.convenience.store.util.shard.ShardRouter;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.log4j.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 增量同步服务 - 定期从数据库拉取其他终端的修改，合并到本地缓存和界面表格
+ * 以数据库时间为水位线：每次拉取前先读取数据库当前时间作为新水位线，
+ * 再查询 updated_at / last_updated 不早于"上次水位线 - 重叠窗口"的行和之后的删除记录（deleted_rows）。
+ * 库存行还包括之后记录过库存流水的位置：入库流水只追加，不修改库存行的 last_updated。
+ * 行的修改时间是语句执行的时间而不是事务提交的时间，拉取时尚未提交的事务提交后，它修改的行可能早于新水位线；
+ * 因此新水位线取数据库当前时间与仍在写入的最早事务的开始时间（information_schema.innodb_trx）中较早者，
+ * 这样的事务无论多久后提交，之后的拉取仍能拉到。重叠窗口只覆盖TIMESTAMP的秒级精度和各库的时钟偏差，
+ * 可用系统属性 sync.overlapSeconds 调整。重复拉到的行按主键合并，不影响结果。
+ * 局限：数据库账号没有PROCESS权限时读不到未提交的事务，水位线退回数据库当前时间，
+ * 修改后超过重叠窗口才提交的事务（大批量导入、锁重试较多的写缓冲段、高负载时的流水合并）不会被拉到，
+ * 要到下次全量刷新才可见，此时应授予PROCESS权限或调大 sync.overlapSeconds；
+ * 未提交的事务最多推迟水位线 sync.maxTransactionSeconds 秒，忘记提交的事务不会让水位线一直停住，
+ * 超过该时长才提交的修改同样要到下次全量刷新才可见。
+ * 变更过多或离线时间超过删除记录保留期时不再逐行合并，改为通知全量刷新。
+ * 启用仓库分片时库存变更和库存删除记录从各分片拉取，水位线仍取主库时间，各库的时钟偏差应小于重叠窗口
+ */
+public class DeltaSyncService {
+    private static final Logger logger = Logger.getLogger(DeltaSyncService.class);
+
+    // 水位线向前重叠的秒数
+    private static final long OVERLAP_SECONDS = Long.getLong("sync.overlapSeconds", 2);
+    // 未提交的事务最多把水位线推迟的秒数
+    private static final long MAX_TRANSACTION_SECONDS = Long.getLong("sync.maxTransactionSeconds", 600);
+    // 单次拉取每张表最多合并的行数，超过时改为全量刷新
+    private static final int MAX_DELTA_ROWS = 5000;
+    // 删除记录保留时长（小时），离线超过该时长的终端无法得知期间的删除，需要全量刷新
+    private static final long TOMBSTONE_RETENTION_HOURS = 24;
+    // 清理过期删除记录的间隔（分钟）
+    private static final long PURGE_INTERVAL_MINUTES = 60;
+
+    private static final String USER_NAMESPACE = UserDao.class.getName();
+    private static final String PRODUCT_NAMESPACE = ProductDao.class.getName();
+    private static final String WAREHOUSE_NAMESPACE = "com.convenience.store.dao.WarehouseDao";
+    private static final String INVENTORY_NAMESPACE = InventoryDao.class.getName();
+
+    private static final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    // 后台同步任务的调度器，整个应用只有一个
+    private static ScheduledExecutorService poller;
+    // 上次成功拉取时的数据库时间，只在调度线程中读写
+    private static LocalDateTime watermark;
+    private static LocalDateTime lastPurge;
+    // 读取未提交事务失败（没有PROCESS权限或不是InnoDB）后不再尝试，只在调度线程中读写
+    private static boolean openTransactionsUnavailable;
+
+    private DeltaSyncService() {
+    }
+
+    /**
+     * 一次拉取得到的变更
+     */
+    public static final class ChangeSet {
+        private final List<User> users;
+        private final List<Product> products;
+        private final List<InventoryRow> inventoryRows;
+        private final List<Tombstone> tombstones;
+        private final boolean fullReloadRequired;
+
+        private ChangeSet(List<User> users, List<Product> products, List<InventoryRow> inventoryRows,
+                          List<Tombstone> tombstones, boolean fullReloadRequired) {
+            this.users = users;
+            this.products = products;
+            this.inventoryRows = inventoryRows;
+            this.tombstones = tombstones;
+            this.fullReloadRequired = fullReloadRequired;
+        }
+
+        private static ChangeSet fullReload() {
+            return new ChangeSet(Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                    Collections.emptyList(), true);
+        }
+
+        public List<User> getUsers() {
+            return users;
+        }
+
+        public List<Product> getProducts() {
+            return products;
+        }
+
+        /**
+         * @return 库存行本身、所属商品或所属仓库有修改的库存行
+         */
+        public List<InventoryRow> getInventoryRows() {
+            return inventoryRows;
+        }
+
+        public List<Tombstone> getTombstones() {
+            return tombstones;
+        }
+
+        /**
+         * 获取指定表被删除的行的主键
+         * @param tableName 表名，见 Tombstone.TABLE_* 常量
+         * @return 主键列表
+         */
+        public List<Integer> getDeletedIds(String tableName) {
+            List<Integer> ids = new ArrayList<>();
+            for (Tombstone tombstone : tombstones) {
+                if (tableName.equals(tombstone.getTableName())) {
+                    ids.add(tombstone.getRowId());
+                }
+            }
+            return ids;
+        }
+
+        /**
+         * @return 变更过多或离线过久、无法逐行合并时返回true，此时应全量刷新
+         */
+        public boolean isFullReloadRequired() {
+            return fullReloadRequired;
+        }
+
+        public boolean isEmpty() {
+            return !fullReloadRequired && users.isEmpty() && products.isEmpty()
+                    && inventoryRows.isEmpty() && tombstones.isEmpty();
+        }
+    }
+
+    /**
+     * 变更监听器，在同步线程中调用，更新界面需自行切换到界面线程
+     */
+    public interface ChangeListener {
+        void onChanges(ChangeSet changes);
+    }
+
+    public static void addListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 启动后台同步任务，重复调用不会启动多个
+     * 启动时立即记录数据库时间作为初始水位线，之后按间隔拉取变更
+     * @param intervalSeconds 同步间隔（秒）
+     */
+    public static synchronized void start(long intervalSeconds) {
+        if (poller != null) {
+            return;
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "delta-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                ChangeSet changes = poll();
+                if (changes != null && !changes.isEmpty()) {
+                    for (ChangeListener listener : listeners) {
+                        listener.onChanges(changes);
+                    }
+                }
+                purgeIfDue();
+            } catch (Exception e) {
+                // 异常不能抛出调度器，否则后续周期不再执行；水位线不前移，恢复后从断点继续
+                logger.error("增量同步出错", e);
+            }
+        }, 0, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 停止后台同步任务
+     */
+    public static synchronized void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+            watermark = null;
+        }
+    }
+
+    /**
+     * 拉取一次变更并应用到本地缓存、商品搜索索引和低库存监控
+     * @return 变更；首次调用只记录水位线，返回null
+     */
+    static ChangeSet poll() {
+        try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
+            LocalDateTime now = sqlSession.getMapper(SyncDao.class).getDatabaseTime();
+            LocalDateTime next = boundByOpenTransactions(sqlSession, now);
+            if (watermark == null) {
+                watermark = next;
+                return null;
+            }
+            ChangeSet changes;
+            if (Duration.between(watermark, now).toHours() >= TOMBSTONE_RETENTION_HOURS) {
+                logger.warn("距上次同步超过删除记录保留期，改为全量刷新");
+                changes = ChangeSet.fullReload();
+            } else {
+                changes = fetch(sqlSession, watermark.minusSeconds(OVERLAP_SECONDS));
+            }
+            apply(changes);
+            watermark = next;
+            return changes;
+        }
+    }
+
+    // 新水位线不晚于主库和各分片上仍在写入的最早事务的开始时间，最多比数据库当前时间早 MAX_TRANSACTION_SECONDS
+    private static LocalDateTime boundByOpenTransactions(SqlSession sqlSession, LocalDateTime now) {
+        LocalDateTime next = earlier(now, oldestWriteTransaction(sqlSession));
+        if (ShardRouter.isEnabled()) {
+            for (int shard = 0; shard < ShardRouter.getShardCount(); shard++) {
+                if (ShardRouter.isPrimary(shard)) {
+                    continue;
+                }
+                try (SqlSession shardSession = MyBatisUtil.getShardSession(shard)) {
+                    next = earlier(next, oldestWriteTransaction(shardSession));
+                }
+            }
+        }
+        LocalDateTime limit = now.minusSeconds(MAX_TRANSACTION_SECONDS);
+        if (next.isBefore(limit)) {
+            logger.warn("有事务超过 " + MAX_TRANSACTION_SECONDS + " 秒仍未提交，它的修改要到下次全量刷新才会同步");
+            return limit;
+        }
+        return next;
+    }
+
+    private static LocalDateTime oldestWriteTransaction(SqlSession sqlSession) {
+        if (openTransactionsUnavailable) {
+            return null;
+        }
+        try {
+            return sqlSession.getMapper(SyncDao.class).getOldestWriteTransactionStart();
+        } catch (PersistenceException e) {
+            openTransactionsUnavailable = true;
+            logger.warn("无法读取未提交的事务，增量同步只按 " + OVERLAP_SECONDS
+                    + " 秒的重叠窗口覆盖提交较晚的事务: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static LocalDateTime earlier(LocalDateTime a, LocalDateTime b) {
+        return b != null && b.isBefore(a) ? b : a;
+    }
+
+    private static ChangeSet fetch(SqlSession sqlSession, LocalDateTime since) {
+        // 多查一行用于判断是否超过上限
+        List<Tombstone> tombstones = sqlSession.getMapper(SyncDao.class).getTombstonesSince(since, MAX_DELTA_ROWS + 1);
+        List<User> users = sqlSession.getMapper(UserDao.class).getUsersUpdatedSince(since, MAX_DELTA_ROWS + 1);
+        List<Product> products = sqlSession.getMapper(ProductDao.class).getProductsUpdatedSince(since, MAX_DELTA_ROWS + 1);
+        List<InventoryRow> inventoryRows;
+        if (ShardRouter.isEnabled()) {
+            inventoryRows = InventoryShards.getInventoryRowsChangedSince(since, MAX_DELTA_ROWS + 1);
+            tombstones.addAll(InventoryShards.getInventoryTombstonesSince(since, MAX_DELTA_ROWS + 1));
+        } else {
+            inventoryRows = sqlSession.getMapper(InventoryDao.class).getInventoryRowsChangedSince(since, MAX_DELTA_ROWS + 1);
+        }
+        if (tombstones.size() > MAX_DELTA_ROWS || users.size() > MAX_DELTA_ROWS
+                || products.size() > MAX_DELTA_ROWS || inventoryRows.size() > MAX_DELTA_ROWS) {
+            logger.info("本次同步变更超过 " + MAX_DELTA_ROWS + " 行，改为全量刷新");
+            return ChangeSet.fullReload();
+        }
+        return new ChangeSet(users, products, inventoryRows, tombstones, false);
+    }
+
+    // 失效受影响命名空间的二级缓存（含级联），再同步商品搜索索引和低库存监控
+    private static void apply(ChangeSet changes) {
+        if (changes.isFullReloadRequired()) {
+            StoreCache.invalidate(USER_NAMESPACE);
+            StoreCache.invalidate(PRODUCT_NAMESPACE);
+            StoreCache.invalidate(WAREHOUSE_NAMESPACE);
+            StoreCache.invalidate(INVENTORY_NAMESPACE);
+            ProductService.rebuildSearchIndexAsync();
+            LowStockMonitor.getInstance().reloadAsync();
+            return;
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<Integer> deletedUsers = changes.getDeletedIds(Tombstone.TABLE_USERS);
+        List<Integer> deletedProducts = changes.getDeletedIds(Tombstone.TABLE_PRODUCTS);
+        List<Integer> deletedWarehouses = changes.getDeletedIds(Tombstone.TABLE_WAREHOUSES);
+        List<Integer> deletedInventory = changes.getDeletedIds(Tombstone.TABLE_INVENTORY);
+
+        if (!changes.getUsers().isEmpty() || !deletedUsers.isEmpty()) {
+            StoreCache.invalidate(USER_NAMESPACE);
+        }
+        if (!changes.getProducts().isEmpty() || !deletedProducts.isEmpty()) {
+            StoreCache.invalidate(PRODUCT_NAMESPACE);
+            ProductService.applyRemoteChanges(changes.getProducts(), deletedProducts);
+        }
+        // 仓库修改只能从受影响的库存行得知，仓库数量很少，一并失效
+        if (!changes.getInventoryRows().isEmpty() || !deletedWarehouses.isEmpty()) {
+            StoreCache.invalidate(WAREHOUSE_NAMESPACE);
+        }
+        if (!changes.getInventoryRows().isEmpty() || !deletedInventory.isEmpty()) {
+            StoreCache.invalidate(INVENTORY_NAMESPACE);
+        }
+
+        LowStockMonitor monitor = LowStockMonitor.getInstance();
+        if (!deletedProducts.isEmpty() || !deletedWarehouses.isEmpty()) {
+            // 级联删除的库存行没有删除记录，重新扫描
+            monitor.reloadAsync();
+        } else {
+            // 拉到的是库存快照，监控跟踪的是当前库存，按库存ID重新读取
+            monitor.refresh(changes.getInventoryRows());
+            for (Integer inventoryId : deletedInventory) {
+                monitor.remove(inventoryId);
+            }
+        }
+    }
+
+    // 定期清理过期的删除记录
+    private static void purgeIfDue() {
+        LocalDateTime now = watermark;
+        if (now == null || (lastPurge != null && Duration.between(lastPurge, now).toMinutes() < PURGE_INTERVAL_MINUTES)) {
+            return;
+        }
+        lastPurge = now;
+        try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
+            int purged = sqlSession.getMapper(SyncDao.class).purgeTombstones(now.minusHours(TOMBSTONE_RETENTION_HOURS));
+            sqlSession.commit();
+            if (ShardRouter.isEnabled()) {
+                purged += InventoryShards.purgeTombstones(now.minusHours(TOMBSTONE_RETENTION_HOURS));
+            }
+            if (purged > 0) {
+                logger.info("清理过期删除记录 " + purged + " 条");
+            }
+        }
+    }
+}
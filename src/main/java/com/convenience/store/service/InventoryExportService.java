@@ -0,0 +1,247 @@
+package com.convenience.store.service;
+
+import com.convenience.store.dao.InventoryDao;
+import com.convenience.store.entity.InventoryRow;
+import com.convenience.store.util.MyBatisUtil;
+import com.convenience.store.util.shard.ShardRouter;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 库存导出服务类
+ * 通过MyBatis游标逐行读取库存联表数据，经固定大小的缓冲区写入文件通道，
+ * 导出过程中内存占用与数据量无关；启用仓库分片时依次读取每个分片。
+ * 先写到目标文件旁的临时文件，全部写完后再替换目标文件，失败或取消时不会留下不完整的导出文件
+ */
+public class InventoryExportService {
+    // 字符缓冲区达到该长度时编码并写入文件
+    private static final int FLUSH_THRESHOLD = 32 * 1024;
+    // 每导出多少行回调一次进度
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    /**
+     * 导出格式
+     */
+    public enum ExportFormat {
+        // 逗号分隔，带UTF-8 BOM以便Excel正确识别中文
+        CSV(','),
+        // 制表符分隔
+        TSV('\t');
+
+        private final char delimiter;
+
+        ExportFormat(char delimiter) {
+            this.delimiter = delimiter;
+        }
+    }
+
+    /**
+     * 导出进度回调
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * @param exported 已导出的行数
+         * @param total 预计总行数
+         */
+        void onProgress(long exported, long total);
+    }
+
+    /**
+     * 导出全部库存到文件
+     * 调用线程被中断时停止导出并抛出 InterruptedIOException（或写文件时的 ClosedByInterruptException）；
+     * 导出失败或取消时删除临时文件，已存在的目标文件保持不变
+     *
+     * @param target 目标文件，已存在时覆盖
+     * @param format 导出格式
+     * @param listener 进度回调，可为null
+     * @return 导出的行数
+     * @throws IOException 写文件失败时抛出
+     */
+    public long exportInventory(Path target, ExportFormat format, ProgressListener listener) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".part");
+        try {
+            long exported = writeInventory(temp, format, listener);
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return exported;
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException deleteFailure) {
+                e.addSuppressed(deleteFailure);
+            }
+            throw e;
+        }
+    }
+
+    private long writeInventory(Path file, ExportFormat format, ProgressListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ChannelTextWriter writer = new ChannelTextWriter(channel);
+            StringBuilder line = writer.buffer();
+            if (format == ExportFormat.CSV) {
+                line.append('\uFEFF');
+            }
+            appendRow(line, format, "库存ID", "商品ID", "商品名称", "类别", "仓库ID", "仓库名称", "数量", "最小库存", "最后更新时间");
+
+            long total = ShardRouter.isEnabled() ? InventoryShards.countInventory() : countInventory();
+            long[] exported = {0};
+            InventoryShards.RowHandler handler = row -> {
+                appendRow(line, format,
+                        row.getInventoryId(),
+                        row.getProductId(),
+                        row.getProductName(),
+                        row.getCategory(),
+                        row.getWarehouseId(),
+                        row.getWarehouseName(),
+                        row.getQuantity(),
+                        row.getMinStock(),
+                        row.getLastUpdated());
+                writer.flushIfFull();
+                exported[0]++;
+                if (exported[0] % PROGRESS_INTERVAL == 0) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("库存导出已取消");
+                    }
+                    if (listener != null) {
+                        listener.onProgress(exported[0], total);
+                    }
+                }
+            };
+            if (ShardRouter.isEnabled()) {
+                // 各分片依次导出，同一分片内按库存ID排序
+                InventoryShards.forEachInventoryRow(handler);
+            } else {
+                try (SqlSession sqlSession = MyBatisUtil.getReadSqlSession()) {
+                    try (Cursor<InventoryRow> cursor = sqlSession.getMapper(InventoryDao.class).streamAllInventoryRows()) {
+                        for (InventoryRow row : cursor) {
+                            handler.handle(row);
+                        }
+                    }
+                }
+            }
+            writer.flush();
+            if (listener != null) {
+                listener.onProgress(exported[0], Math.max(total, exported[0]));
+            }
+            return exported[0];
+        }
+    }
+
+    private static long countInventory() {
+        try (SqlSession sqlSession = MyBatisUtil.getReadSqlSession()) {
+            return sqlSession.getMapper(InventoryDao.class).countInventory();
+        }
+    }
+
+    // 追加一行记录，按格式要求转义字段
+    private static void appendRow(StringBuilder line, ExportFormat format, Object... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(format.delimiter);
+            }
+            if (values[i] != null) {
+                appendField(line, format, values[i].toString());
+            }
+        }
+        line.append('\n');
+    }
+
+    private static void appendField(StringBuilder line, ExportFormat format, String value) {
+        if (format == ExportFormat.TSV) {
+            // TSV没有转义规则，字段内的制表符和换行替换为空格
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                line.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+            }
+            return;
+        }
+        boolean needsQuote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!needsQuote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    /**
+     * 文本写入器：复用一个字符缓冲区和一个直接字节缓冲区，
+     * 将字符按UTF-8编码后写入文件通道
+     */
+    private static final class ChannelTextWriter {
+        private final FileChannel channel;
+        private final StringBuilder chars = new StringBuilder(FLUSH_THRESHOLD + 1024);
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(64 * 1024);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+        private ChannelTextWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private StringBuilder buffer() {
+            return chars;
+        }
+
+        private void flushIfFull() throws IOException {
+            if (chars.length() >= FLUSH_THRESHOLD) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            CharBuffer input = CharBuffer.wrap(chars);
+            encoder.reset();
+            while (true) {
+                CoderResult result = encoder.encode(input, bytes, true);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                if (result.isOverflow()) {
+                    drain();
+                    continue;
+                }
+                break;
+            }
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            drain();
+            chars.setLength(0);
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        }
+    }
+}
@@ -1,24 +1,66 @@
 package com.convenience.store.service;
 
 import com.convenience.store.dao.InventoryDao;
+import com.convenience.store.dao.StockMovementDao;
 import com.convenience.store.entity.Inventory;
+import com.convenience.store.entity.InventoryRow;
+import com.convenience.store.entity.StockAdjustment;
+import com.convenience.store.entity.StockMovement;
+import com.convenience.store.entity.StockTransfer;
+import com.convenience.store.util.AsyncExecutor;
 import com.convenience.store.util.MyBatisUtil;
+import com.convenience.store.util.shard.ShardRouter;
 import org.apache.ibatis.session.SqlSession;
+import org.apache.log4j.Logger;
 
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 库存服务类
  * 处理库存相关的业务逻辑，连接DAO层和控制器层
  * 负责库存的增删改查操作，并处理事务管理
+ * 启用仓库分片时，单个仓库的修改路由到该仓库所在的分片，跨仓库的查询由 InventoryShards 在各分片上并行执行后合并
  */
 public class InventoryService {
+    private static final Logger logger = Logger.getLogger(InventoryService.class);
+
+    // 遇到锁冲突时最多执行的次数（含第一次）和退避的基准时间
+    private static final int MAX_LOCK_ATTEMPTS = 5;
+    private static final long LOCK_RETRY_BASE_MILLIS = 20;
+    // MySQL的锁等待超时和死锁错误码
+    private static final int MYSQL_LOCK_WAIT_TIMEOUT = 1205;
+    private static final int MYSQL_DEADLOCK = 1213;
+
+    // 商品名称条件最多转换为多少个商品ID，超过时改用数据库模糊查询
+    private static final int MAX_NAME_MATCH_IDS = 1000;
+    // 类别条件最多转换为多少个商品ID，超过时由数据库连接商品表按类别过滤
+    private static final int MAX_CATEGORY_MATCH_IDS = 5000;
+
+    private final ProductService productService = new ProductService();
+
     /**
      * 根据库存ID获取库存信息
      * @param inventoryId 库存ID
      * @return 库存实体对象，如果没有找到则返回null
      */
     public Inventory getInventoryById(Integer inventoryId) {
+        if (ShardRouter.isEnabled()) {
+            return InventoryShards.getInventoryById(inventoryId);
+        }
         // 使用try-with-resources自动管理SqlSession生命周期
         try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
             // 获取DAO接口的实现
@@ -28,29 +70,104 @@ public class InventoryService {
         }
     }
 
+    /**
+     * 在后台线程中根据库存ID获取完整的库存记录，供界面线程调用
+     * @param inventoryId 库存ID
+     * @return 完成时得到库存实体对象，不存在时为null
+     */
+    public CompletableFuture<Inventory> getInventoryByIdAsync(Integer inventoryId) {
+        return AsyncExecutor.supply(() -> getInventoryById(inventoryId));
+    }
+
     /**
      * 获取所有库存信息
+     * 数量为inventory快照，不含尚未合并的入库流水，实时数量见 {@link StockLedgerService#getCurrentQuantity}
      * @return 库存实体对象列表
      */
     public List<Inventory> getAllInventory() {
-        try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
+        if (ShardRouter.isEnabled()) {
+            return InventoryShards.getAllInventory();
+        }
+        try (SqlSession sqlSession = MyBatisUtil.getReadSqlSession()) {
             InventoryDao inventoryDao = sqlSession.getMapper(InventoryDao.class);
             return inventoryDao.getAllInventory();
         }
     }
 
+    /**
+     * 搜索库存，按库存ID键集分页返回库存列表行
+     * 商品名称条件优先通过内存搜索索引转换为商品ID列表，
+     * 避免 LIKE '%关键词%' 扫描商品表，让数据库直接经uk_product_warehouse定位库存；
+     * 没有名称条件时类别同样先经idx_products_category转换为商品ID（与分片查询的做法一致），库存查询不需要连接商品表
+     * 数量为inventory快照，不含尚未合并的入库流水
+     * @param afterId 上一页最后一条记录的库存ID，为null时获取第一页
+     * @param limit 每页记录数
+     * @param params 可选过滤条件，可为null；支持的条件见 {@link InventoryDao#searchInventoryRows}
+     * @return 库存列表行
+     */
+    public List<InventoryRow> searchInventoryRows(Integer afterId, int limit, Map<String, Object> params) {
+        Map<String, Object> criteria = params;
+        Object productName = params != null ? params.get("productName") : null;
+        if (productName instanceof String name && !name.isBlank()) {
+            List<Integer> productIds = productService.findProductIdsByName(name, MAX_NAME_MATCH_IDS);
+            if (productIds != null) {
+                if (productIds.isEmpty()) {
+                    return new ArrayList<>();
+                }
+                criteria = new HashMap<>(params);
+                criteria.put("productIds", productIds);
+            }
+        }
+        if (ShardRouter.isEnabled()) {
+            return InventoryShards.searchInventoryRows(afterId, limit, criteria);
+        }
+        // 名称条件未能转换时不转换类别，否则商品ID条件会取代名称的模糊查询
+        Object category = params != null ? params.get("category") : null;
+        if (category instanceof String value && !value.isEmpty()
+                && criteria.get("productIds") == null && !(productName instanceof String name && !name.isBlank())) {
+            List<Integer> productIds = productService.findProductIdsByCategory(value, MAX_CATEGORY_MATCH_IDS + 1);
+            if (productIds.isEmpty()) {
+                return new ArrayList<>();
+            }
+            if (productIds.size() <= MAX_CATEGORY_MATCH_IDS) {
+                criteria = new HashMap<>(criteria);
+                criteria.put("productIds", productIds);
+                criteria.remove("category");
+            }
+        }
+        try (SqlSession sqlSession = MyBatisUtil.getReadSqlSession()) {
+            InventoryDao inventoryDao = sqlSession.getMapper(InventoryDao.class);
+            return inventoryDao.searchInventoryRows(afterId, limit, criteria);
+        }
+    }
+
+    /**
+     * 异步搜索库存，在后台线程中查询，不阻塞界面线程
+     * @param afterId 上一页最后一条记录的库存ID，为null时获取第一页
+     * @param limit 每页记录数
+     * @param params 可选过滤条件，可为null
+     * @return 库存列表行的Future
+     */
+    public CompletableFuture<List<InventoryRow>> searchInventoryRowsAsync(Integer afterId, int limit, Map<String, Object> params) {
+        return AsyncExecutor.supply(() -> searchInventoryRows(afterId, limit, params));
+    }
+
     /**
      * 添加库存记录
      * @param inventory 库存实体对象
      * @return 添加成功返回true，失败返回false
      */
     public boolean addInventory(Inventory inventory) {
-        try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
+        try (SqlSession sqlSession = MyBatisUtil.getShardSession(ShardRouter.shardOf(inventory.getWarehouseId()))) {
             InventoryDao inventoryDao = sqlSession.getMapper(InventoryDao.class);
             // 调用DAO方法插入库存记录
             int result = inventoryDao.insertInventory(inventory);
-            // 提交事务
-            sqlSession.commit();
+            // 提交事务并同步到低库存监控
+            LowStockMonitor.getInstance().commit(sqlSession::commit, () -> {
+                if (result > 0) {
+                    monitorPut(inventory);
+                }
+            });
             // 根据插入结果判断是否成功
             return result > 0;
         } catch (Exception e) {
@@ -63,16 +180,25 @@ public class InventoryService {
 
     /**
      * 更新库存记录
+     * 启用仓库分片时不能把库存记录改到位于其他分片的仓库
      * @param inventory 库存实体对象（包含更新后的信息）
      * @return 更新成功返回true，失败返回false
      */
     public boolean updateInventory(Inventory inventory) {
-        try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
+        try (SqlSession sqlSession = MyBatisUtil.getShardSession(ShardRouter.shardOf(inventory.getWarehouseId()))) {
             InventoryDao inventoryDao = sqlSession.getMapper(InventoryDao.class);
             // 调用DAO方法更新库存记录
             int result = inventoryDao.updateInventory(inventory);
-            // 提交事务
-            sqlSession.commit();
+            // 提交事务并同步到低库存监控
+            LowStockMonitor.getInstance().commit(sqlSession::commit, () -> {
+                if (result > 0) {
+                    monitorPut(inventory);
+                }
+            });
+            if (result == 0 && ShardRouter.isEnabled()) {
+                logger.warn("库存记录 " + inventory.getInventoryId() + " 不在仓库 " + inventory.getWarehouseId()
+                        + " 所在的分片上，不能跨分片修改所属仓库");
+            }
             // 根据更新结果判断是否成功
             return result > 0;
         } catch (Exception e) {
@@ -83,30 +209,308 @@ public class InventoryService {
         }
     }
 
+    /**
+     * 按增量更新库存记录
+     * 数量按 "当前值 - 读取时的值" 的差额在数据库端累加，避免覆盖其他终端在此期间的修改
+     * @param inventory 库存实体对象（包含更新后的数量和最小库存）
+     * @param originalQuantity 读取库存记录时的数量
+     * @return 更新成功返回true，库存不足或失败返回false
+     */
+    public boolean updateInventoryByDelta(Inventory inventory, int originalQuantity) {
+        try (SqlSession sqlSession = MyBatisUtil.getShardSession(ShardRouter.shardOf(inventory.getWarehouseId()))) {
+            InventoryDao inventoryDao = sqlSession.getMapper(InventoryDao.class);
+            int delta = inventory.getQuantity() - originalQuantity;
+            int result = inventoryDao.updateInventoryByDelta(inventory.getInventoryId(), delta, inventory.getMinStock());
+            if (result > 0 && delta != 0) {
+                // 已直接作用于快照，以已合并状态记入库存流水
+                StockMovement movement = new StockMovement(inventory.getProductId(), inventory.getWarehouseId(),
+                        StockMovement.TYPE_ADJUSTMENT, delta);
+                movement.setApplied(true);
+                sqlSession.getMapper(StockMovementDao.class).insertMovementBatch(List.of(movement));
+            }
+            LowStockMonitor.getInstance().commit(sqlSession::commit, () -> {
+                if (result > 0) {
+                    LowStockMonitor.getInstance().applyDeltaById(inventory.getInventoryId(), inventory.getProductId(),
+                            inventory.getWarehouseId(), delta, inventory.getMinStock());
+                }
+            });
+            return result > 0;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * 调整库存数量（quantity = quantity + delta）
+     * 出库时库存不足则不调整；入库时库存记录不存在则自动新建
+     * @param productId 商品ID
+     * @param warehouseId 仓库ID
+     * @param delta 数量变化量，正数入库，负数出库
+     * @return 调整成功返回true，库存不足或失败返回false
+     */
+    public boolean adjustQuantity(Integer productId, Integer warehouseId, int delta) {
+        return adjustQuantities(List.of(new StockAdjustment(productId, warehouseId, delta)));
+    }
+
+    /**
+     * 在同一事务中批量调整库存数量，全部成功才提交，任一出库库存不足则全部回滚
+     * 同一商品仓库的多条调整先合并，再按(商品ID, 仓库ID)顺序执行，
+     * 使并发事务以相同顺序加行锁，避免死锁；每条调整以已合并状态记入库存流水。
+     * 启用库存写缓冲时只放入缓冲，由 InventoryWriteBuffer 批量写库
+     * @param adjustments 库存调整列表
+     * @return 全部调整成功返回true，否则返回false
+     */
+    public boolean adjustQuantities(List<StockAdjustment> adjustments) {
+        List<StockAdjustment> merged = mergeAdjustments(adjustments);
+        if (InventoryWriteBuffer.isEnabled()) {
+            return InventoryWriteBuffer.offer(merged);
+        }
+        List<StockMovement> movements = new ArrayList<>(merged.size());
+        for (StockAdjustment adjustment : merged) {
+            StockMovement movement = new StockMovement(adjustment.getProductId(), adjustment.getWarehouseId(),
+                    StockMovement.TYPE_ADJUSTMENT, adjustment.getDelta());
+            movement.setApplied(true);
+            movements.add(movement);
+        }
+        return applyAcrossShards(merged, movements);
+    }
+
+    /**
+     * 在仓库之间调拨库存：调出仓库扣减、调入仓库增加在同一事务中完成，调出仓库库存不足时不调拨
+     * @param productId 商品ID
+     * @param fromWarehouseId 调出仓库ID
+     * @param toWarehouseId 调入仓库ID
+     * @param quantity 调拨数量，必须为正数
+     * @return 调拨成功返回true，库存不足、参数无效或失败返回false
+     */
+    public boolean transferStock(Integer productId, Integer fromWarehouseId, Integer toWarehouseId, int quantity) {
+        return transferStocks(List.of(new StockTransfer(productId, fromWarehouseId, toWarehouseId, quantity)));
+    }
+
+    /**
+     * 在同一事务中批量调拨库存，全部成功才提交，任一调出仓库库存不足则全部回滚
+     * 所有调拨涉及的库存行按(商品ID, 仓库ID)顺序加锁，与调整库存的顺序一致，
+     * 方向相反的并发调拨（A→B 与 B→A）不会互相等待形成死锁；
+     * 每笔调拨记入一条调出流水和一条调入流水
+     * @param transfers 调拨列表
+     * @return 全部调拨成功返回true，否则返回false
+     */
+    public boolean transferStocks(List<StockTransfer> transfers) {
+        List<StockAdjustment> deltas = new ArrayList<>(transfers.size() * 2);
+        List<StockMovement> movements = new ArrayList<>(transfers.size() * 2);
+        for (StockTransfer transfer : transfers) {
+            if (transfer.getQuantity() <= 0 || Objects.equals(transfer.getFromWarehouseId(), transfer.getToWarehouseId())) {
+                logger.warn("无效的调拨：商品 " + transfer.getProductId() + " 从仓库 " + transfer.getFromWarehouseId()
+                        + " 到仓库 " + transfer.getToWarehouseId() + " 数量 " + transfer.getQuantity());
+                return false;
+            }
+            deltas.add(new StockAdjustment(transfer.getProductId(), transfer.getFromWarehouseId(), -transfer.getQuantity()));
+            deltas.add(new StockAdjustment(transfer.getProductId(), transfer.getToWarehouseId(), transfer.getQuantity()));
+            StockMovement out = new StockMovement(transfer.getProductId(), transfer.getFromWarehouseId(),
+                    StockMovement.TYPE_TRANSFER_OUT, -transfer.getQuantity());
+            out.setApplied(true);
+            movements.add(out);
+            StockMovement in = new StockMovement(transfer.getProductId(), transfer.getToWarehouseId(),
+                    StockMovement.TYPE_TRANSFER_IN, transfer.getQuantity());
+            in.setApplied(true);
+            movements.add(in);
+        }
+        return applyAcrossShards(mergeAdjustments(deltas), movements);
+    }
+
+    // 按分片拆分后执行：只涉及一个分片时就是一个事务；
+    // 涉及多个分片时逐个分片提交，含出库的分片先执行，某个分片失败时对已提交的分片做反向调整补偿（不是跨分片的原子事务）。
+    // 流水按各自仓库所在分片写入，合并后互相抵消的调整（A→B 与 B→A 同量）也在所属分片留下流水
+    private boolean applyAcrossShards(List<StockAdjustment> merged, List<StockMovement> movements) {
+        Map<Integer, List<StockAdjustment>> adjustmentsByShard = new TreeMap<>();
+        for (StockAdjustment adjustment : merged) {
+            adjustmentsByShard.computeIfAbsent(ShardRouter.shardOf(adjustment.getWarehouseId()), k -> new ArrayList<>()).add(adjustment);
+        }
+        Map<Integer, List<StockMovement>> movementsByShard = new TreeMap<>();
+        for (StockMovement movement : movements) {
+            movementsByShard.computeIfAbsent(ShardRouter.shardOf(movement.getWarehouseId()), k -> new ArrayList<>()).add(movement);
+        }
+        Set<Integer> shards = new TreeSet<>(adjustmentsByShard.keySet());
+        shards.addAll(movementsByShard.keySet());
+        if (shards.size() <= 1) {
+            int shard = shards.isEmpty() ? 0 : shards.iterator().next();
+            return applyWithRetry(shard, merged, movements);
+        }
+        // 只有出库可能因库存不足失败，先执行含出库的分片，尽量在提交入库之前发现失败
+        List<Integer> order = new ArrayList<>(shards);
+        order.sort(Comparator.comparing((Integer shard) ->
+                adjustmentsByShard.getOrDefault(shard, List.of()).stream().noneMatch(a -> a.getDelta() < 0)));
+        List<Integer> committed = new ArrayList<>();
+        for (int shard : order) {
+            if (!applyWithRetry(shard, adjustmentsByShard.getOrDefault(shard, List.of()), movementsByShard.getOrDefault(shard, List.of()))) {
+                for (int done : committed) {
+                    compensate(done, adjustmentsByShard.getOrDefault(done, List.of()));
+                }
+                return false;
+            }
+            committed.add(shard);
+        }
+        return true;
+    }
+
+    // 对已提交的分片执行反向调整，撤销其中的库存变化
+    private void compensate(int shard, List<StockAdjustment> applied) {
+        List<StockAdjustment> inverse = new ArrayList<>(applied.size());
+        List<StockMovement> movements = new ArrayList<>(applied.size());
+        for (StockAdjustment adjustment : applied) {
+            inverse.add(new StockAdjustment(adjustment.getProductId(), adjustment.getWarehouseId(), -adjustment.getDelta()));
+            StockMovement movement = new StockMovement(adjustment.getProductId(), adjustment.getWarehouseId(),
+                    StockMovement.TYPE_ADJUSTMENT, -adjustment.getDelta());
+            movement.setApplied(true);
+            movements.add(movement);
+        }
+        if (!applyWithRetry(shard, inverse, movements)) {
+            logger.error("分片 " + shard + " 的库存补偿失败，需要人工核对：" + inverse.size() + " 项调整未能撤销");
+        }
+    }
+
+    // 在一个分片的事务中按顺序执行已合并的调整并记入流水；遇到锁等待超时或死锁时整个事务回滚后退避重试。
+    // 出库与 StockLedgerService 相同，按 快照 + 未合并入库 校验，快照不够时先合并该位置的尾部
+    private boolean applyWithRetry(int shard, List<StockAdjustment> merged, List<StockMovement> movements) {
+        if (movements.isEmpty()) {
+            return true;
+        }
+        for (int attempt = 1; ; attempt++) {
+            try (SqlSession sqlSession = MyBatisUtil.getShardSession(shard)) {
+                InventoryDao inventoryDao = sqlSession.getMapper(InventoryDao.class);
+                StockMovementDao stockMovementDao = sqlSession.getMapper(StockMovementDao.class);
+                for (StockAdjustment adjustment : merged) {
+                    boolean applied = adjustment.getDelta() < 0
+                            ? StockLedgerService.deduct(inventoryDao, stockMovementDao, adjustment.getProductId(),
+                                    adjustment.getWarehouseId(), adjustment.getDelta())
+                            : applyAdjustment(inventoryDao, adjustment);
+                    if (!applied) {
+                        // 库存不足，回滚本批次已执行的调整
+                        sqlSession.rollback();
+                        return false;
+                    }
+                }
+                StockLedgerService.appendMovements(stockMovementDao, movements);
+                LowStockMonitor.getInstance().commit(sqlSession::commit, () -> {
+                    for (StockAdjustment adjustment : merged) {
+                        LowStockMonitor.getInstance().applyDelta(adjustment.getProductId(), adjustment.getWarehouseId(), adjustment.getDelta());
+                    }
+                });
+                return true;
+            } catch (Exception e) {
+                if (attempt >= MAX_LOCK_ATTEMPTS || !isLockConflict(e)) {
+                    e.printStackTrace();
+                    return false;
+                }
+                // 指数退避加随机抖动，避免冲突的事务同时重试再次冲突
+                long backoff = LOCK_RETRY_BASE_MILLIS << (attempt - 1);
+                logger.warn("库存更新遇到锁冲突，" + backoff + "ms 后第 " + attempt + " 次重试：" + e.getCause());
+                try {
+                    Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    // 是否为锁等待超时或死锁（事务已被数据库回滚或可以安全地整体重试）
+    static boolean isLockConflict(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransactionRollbackException || cause instanceof SQLTimeoutException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                int code = ((SQLException) cause).getErrorCode();
+                if (code == MYSQL_LOCK_WAIT_TIMEOUT || code == MYSQL_DEADLOCK) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // 执行单条调整：出库走带非负保护的UPDATE（只看快照，按当前库存扣减用 StockLedgerService.deduct），入库走UPSERT
+    static boolean applyAdjustment(InventoryDao inventoryDao, StockAdjustment adjustment) {
+        if (adjustment.getDelta() < 0) {
+            return inventoryDao.adjustQuantity(adjustment.getProductId(), adjustment.getWarehouseId(), adjustment.getDelta()) > 0;
+        }
+        inventoryDao.upsertQuantity(adjustment.getProductId(), adjustment.getWarehouseId(), adjustment.getDelta());
+        return true;
+    }
+
+    // 合并同一商品仓库的调整，去掉变化量为0的项，并按(商品ID, 仓库ID)排序
+    static List<StockAdjustment> mergeAdjustments(List<StockAdjustment> adjustments) {
+        Map<List<Integer>, StockAdjustment> merged = new LinkedHashMap<>();
+        for (StockAdjustment adjustment : adjustments) {
+            merged.merge(List.of(adjustment.getProductId(), adjustment.getWarehouseId()),
+                    new StockAdjustment(adjustment.getProductId(), adjustment.getWarehouseId(), adjustment.getDelta()),
+                    (a, b) -> new StockAdjustment(a.getProductId(), a.getWarehouseId(), a.getDelta() + b.getDelta()));
+        }
+        List<StockAdjustment> result = new ArrayList<>();
+        for (StockAdjustment adjustment : merged.values()) {
+            if (adjustment.getDelta() != 0) {
+                result.add(adjustment);
+            }
+        }
+        result.sort(Comparator.comparing(StockAdjustment::getProductId).thenComparing(StockAdjustment::getWarehouseId));
+        return result;
+    }
+
+    // 以提交后的绝对值同步到低库存监控
+    private static void monitorPut(Inventory inventory) {
+        LowStockMonitor.getInstance().put(inventory.getInventoryId(), inventory.getProductId(), inventory.getWarehouseId(),
+                inventory.getQuantity(), inventory.getMinStock());
+    }
+
     /**
      * 删除库存记录
      * @param inventoryId 库存ID
      * @return 删除成功返回true，失败返回false
      */
     public boolean deleteInventory(Integer inventoryId) {
+        if (ShardRouter.isEnabled()) {
+            if (InventoryShards.deleteInventory(inventoryId) > 0) {
+                LowStockMonitor.getInstance().remove(inventoryId);
+                return true;
+            }
+            return false;
+        }
         try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
             InventoryDao inventoryDao = sqlSession.getMapper(InventoryDao.class);
             // 调用DAO方法删除库存记录
             int result = inventoryDao.deleteInventory(inventoryId);
             // 提交事务
             sqlSession.commit();
+            if (result > 0) {
+                LowStockMonitor.getInstance().remove(inventoryId);
+            }
             // 根据删除结果判断是否成功
             return result > 0;
         }
     }
 
+    /**
+     * 在后台线程中删除库存记录，供界面线程调用
+     * @param inventoryId 库存ID
+     * @return 完成时得到是否删除成功
+     */
+    public CompletableFuture<Boolean> deleteInventoryAsync(Integer inventoryId) {
+        return AsyncExecutor.supply(() -> deleteInventory(inventoryId));
+    }
+
     /**
      * 根据产品ID获取库存记录
      * @param productId 产品ID
      * @return 库存实体对象列表
      */
     public List<Inventory> getInventoryByProductId(Integer productId) {
-        try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
+        if (ShardRouter.isEnabled()) {
+            return InventoryShards.getInventoryByProductId(productId);
+        }
+        try (SqlSession sqlSession = MyBatisUtil.getReadSqlSession()) {
             InventoryDao inventoryDao = sqlSession.getMapper(InventoryDao.class);
             return inventoryDao.getInventoryByProductId(productId);
         }
@@ -0,0 +1,357 @@
+package com.convenience.store.service;
+
+import com.convenience.store.dao.InventoryDao;
+import com.convenience.store.dao.ProductDao;
+import com.convenience.store.dao.StockMovementDao;
+import com.convenience.store.dao.SyncDao;
+import com.convenience.store.dao.WarehouseDao;
+import com.convenience.store.entity.Inventory;
+import com.convenience.store.entity.InventoryRow;
+import com.convenience.store.entity.Product;
+import com.convenience.store.entity.Tombstone;
+import com.convenience.store.entity.Warehouse;
+import com.convenience.store.util.MyBatisUtil;
+import com.convenience.store.util.shard.ShardRouter;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 分片库存的查询 - 启用仓库分片（ShardRouter）后库存服务、低库存监控、导出和增量同步的读路径
+ * 只涉及一个仓库的查询直接路由到该仓库所在的分片，其余查询在各分片上并行执行后按库存ID合并。
+ * 分片库没有商品、仓库表，查询结果中的商品、仓库信息从主库补全；
+ * 与联表查询一样，商品或仓库已不存在的库存行不返回
+ */
+final class InventoryShards {
+    // 每次从主库补全商品信息的最大商品数
+    private static final int LOOKUP_BATCH_SIZE = 1000;
+
+    private InventoryShards() {
+    }
+
+    // 仓库所在分片的会话
+    static SqlSession openSession(Integer warehouseId) {
+        return MyBatisUtil.getShardSession(ShardRouter.shardOf(warehouseId));
+    }
+
+    static Inventory getInventoryById(Integer inventoryId) {
+        List<Inventory> found = ShardRouter.scatter(shard -> {
+            try (SqlSession sqlSession = MyBatisUtil.getShardSession(shard)) {
+                Inventory inventory = sqlSession.getMapper(InventoryDao.class).getShardInventoryById(inventoryId);
+                return inventory == null ? List.of() : List.of(inventory);
+            }
+        });
+        attachGraph(found);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    static List<Inventory> getAllInventory() {
+        List<Inventory> inventories = ShardRouter.scatter(shard -> {
+            try (SqlSession sqlSession = MyBatisUtil.getShardSession(shard)) {
+                return sqlSession.getMapper(InventoryDao.class).getAllShardInventory();
+            }
+        });
+        inventories.sort(Comparator.comparing(Inventory::getInventoryId));
+        attachGraph(inventories);
+        return inventories;
+    }
+
+    static List<Inventory> getInventoryByProductId(Integer productId) {
+        List<Inventory> inventories = ShardRouter.scatter(shard -> {
+            try (SqlSession sqlSession = MyBatisUtil.getShardSession(shard)) {
+                return sqlSession.getMapper(InventoryDao.class).getShardInventoryByProductId(productId);
+            }
+        });
+        inventories.sort(Comparator.comparing(Inventory::getInventoryId));
+        attachGraph(inventories);
+        return inventories;
+    }
+
+    /**
+     * 搜索库存：指定了仓库时只查该仓库所在的分片，否则每个分片各取一页后按库存ID归并取前limit条
+     * 商品名称、类别条件先在主库转换为商品ID列表
+     */
+    static List<InventoryRow> searchInventoryRows(Integer afterId, int limit, Map<String, Object> params) {
+        Map<String, Object> criteria = params;
+        if (params != null && (hasText(params.get("category"))
+                || (params.get("productIds") == null && hasText(params.get("productName"))))) {
+            List<Integer> productIds = findProductIds(params);
+            if (productIds.isEmpty()) {
+                return new ArrayList<>();
+            }
+            criteria = new HashMap<>(params);
+            criteria.put("productIds", productIds);
+        }
+        Map<String, Object> shardCriteria = criteria;
+        Object warehouseId = criteria != null ? criteria.get("warehouseId") : null;
+        List<InventoryRow> rows;
+        if (warehouseId instanceof Integer id) {
+            try (SqlSession sqlSession = openSession(id)) {
+                rows = new ArrayList<>(sqlSession.getMapper(InventoryDao.class).searchShardInventoryRows(afterId, limit, shardCriteria));
+            }
+        } else {
+            rows = ShardRouter.scatter(shard -> {
+                try (SqlSession sqlSession = MyBatisUtil.getShardSession(shard)) {
+                    return sqlSession.getMapper(InventoryDao.class).searchShardInventoryRows(afterId, limit, shardCriteria);
+                }
+            });
+            rows.sort(Comparator.comparing(InventoryRow::getInventoryId));
+            if (rows.size() > limit) {
+                rows = new ArrayList<>(rows.subList(0, limit));
+            }
+        }
+        fillNames(rows);
+        return rows;
+    }
+
+    static long countInventory() {
+        long total = 0;
+        for (Long count : ShardRouter.scatter(shard -> {
+            try (SqlSession sqlSession = MyBatisUtil.getShardSession(shard)) {
+                return List.of(sqlSession.getMapper(InventoryDao.class).countShardInventory());
+            }
+        })) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * 各分片上指定时间之后修改过的库存行，按库存ID归并后取前limit条
+     */
+    static List<InventoryRow> getInventoryRowsChangedSince(LocalDateTime since, int limit) {
+        List<InventoryRow> rows = ShardRouter.scatter(shard -> {
+            try (SqlSession sqlSession = MyBatisUtil.getShardSession(shard)) {
+                return sqlSession.getMapper(InventoryDao.class).getShardInventoryRowsChangedSince(since, limit);
+            }
+        });
+        rows.sort(Comparator.comparing(InventoryRow::getInventoryId));
+        if (rows.size() > limit) {
+            rows = new ArrayList<>(rows.subList(0, limit));
+        }
+        fillNames(rows);
+        return rows;
+    }
+
+    /**
+     * 不在主库上的分片中指定时间之后的库存删除记录（主库上的删除记录由调用方直接查询）
+     * 各分片的删除记录ID互相独立，只用于判断删除了哪些库存行
+     */
+    static List<Tombstone> getInventoryTombstonesSince(LocalDateTime since, int limit) {
+        List<Tombstone> tombstones = ShardRouter.scatter(shard -> {
+            if (ShardRouter.isPrimary(shard)) {
+                return List.of();
+            }
+            try (SqlSession sqlSession = MyBatisUtil.getShardSession(shard)) {
+                return sqlSession.getMapper(SyncDao.class).getTombstonesSince(since, limit);
+            }
+        });
+        tombstones.removeIf(tombstone -> !Tombstone.TABLE_INVENTORY.equals(tombstone.getTableName()));
+        return tombstones;
+    }
+
+    /**
+     * 清理不在主库上的分片中过期的删除记录
+     * @return 清理的条数
+     */
+    static int purgeTombstones(LocalDateTime before) {
+        int purged = 0;
+        for (int shard = 0; shard < ShardRouter.getShardCount(); shard++) {
+            if (ShardRouter.isPrimary(shard)) {
+                continue;
+            }
+            try (SqlSession sqlSession = MyBatisUtil.getShardSession(shard)) {
+                purged += sqlSession.getMapper(SyncDao.class).purgeTombstones(before);
+                sqlSession.commit();
+            }
+        }
+        return purged;
+    }
+
+    /**
+     * 依次流式读取各分片的全部库存行，每攒够一批补全名称后交给处理器
+     * 同一分片内按库存ID升序，分片之间按分片顺序
+     */
+    static void forEachInventoryRow(RowHandler handler) throws IOException {
+        forEachRow(InventoryDao::streamShardInventoryRows, handler);
+    }
+
+    /**
+     * 依次流式读取各分片上低库存监控需要的库存位置（数量为快照 + 未合并的流水尾部），补全名称后交给处理器
+     */
+    static void forEachMonitorRow(RowHandler handler) throws IOException {
+        forEachRow(InventoryDao::streamShardMonitorRows, handler);
+    }
+
+    private static void forEachRow(Function<InventoryDao, Cursor<InventoryRow>> query, RowHandler handler) throws IOException {
+        List<InventoryRow> batch = new ArrayList<>(LOOKUP_BATCH_SIZE);
+        for (int shard = 0; shard < ShardRouter.getShardCount(); shard++) {
+            try (SqlSession sqlSession = MyBatisUtil.getShardSession(shard);
+                 Cursor<InventoryRow> cursor = query.apply(sqlSession.getMapper(InventoryDao.class))) {
+                for (InventoryRow row : cursor) {
+                    batch.add(row);
+                    if (batch.size() >= LOOKUP_BATCH_SIZE) {
+                        flush(batch, handler);
+                    }
+                }
+            }
+        }
+        flush(batch, handler);
+    }
+
+    /**
+     * 库存行处理器，可以抛出写文件等IO异常
+     */
+    interface RowHandler {
+        void handle(InventoryRow row) throws IOException;
+    }
+
+    private static void flush(List<InventoryRow> batch, RowHandler handler) throws IOException {
+        fillNames(batch);
+        for (InventoryRow row : batch) {
+            handler.handle(row);
+        }
+        batch.clear();
+    }
+
+    /**
+     * 按库存ID删除：库存ID全局唯一，依次在各分片上删除，删到即停止
+     * @return 删除的记录数
+     */
+    static int deleteInventory(Integer inventoryId) {
+        for (int shard = 0; shard < ShardRouter.getShardCount(); shard++) {
+            try (SqlSession sqlSession = MyBatisUtil.getShardSession(shard)) {
+                int result = sqlSession.getMapper(InventoryDao.class).deleteInventory(inventoryId);
+                sqlSession.commit();
+                if (result > 0) {
+                    return result;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 主库删除商品后，删除不在主库上的分片中该商品的库存记录和流水（主库上的由外键级联删除）
+     */
+    static void deleteProductInventory(Integer productId) {
+        for (int shard = 0; shard < ShardRouter.getShardCount(); shard++) {
+            if (ShardRouter.isPrimary(shard)) {
+                continue;
+            }
+            try (SqlSession sqlSession = MyBatisUtil.getShardSession(shard)) {
+                sqlSession.getMapper(InventoryDao.class).deleteShardInventoryByProduct(productId);
+                sqlSession.getMapper(StockMovementDao.class).deleteShardMovementsByProduct(productId);
+                sqlSession.commit();
+            }
+        }
+    }
+
+    // 在主库上把商品名称、类别条件转换为商品ID；已有商品ID列表（名称已由搜索索引解析）时取交集
+    private static List<Integer> findProductIds(Map<String, Object> params) {
+        Map<String, Object> productCriteria = new HashMap<>();
+        if (params.get("productIds") == null) {
+            productCriteria.put("productName", params.get("productName"));
+        }
+        productCriteria.put("category", params.get("category"));
+        Set<Integer> allowed = null;
+        if (params.get("productIds") instanceof List<?> ids) {
+            allowed = new HashSet<>();
+            for (Object id : ids) {
+                allowed.add((Integer) id);
+            }
+        }
+        List<Integer> productIds = new ArrayList<>();
+        try (SqlSession sqlSession = MyBatisUtil.getReadSqlSession()) {
+            for (Product product : sqlSession.getMapper(ProductDao.class).searchProducts(productCriteria)) {
+                if (allowed == null || allowed.contains(product.getProductId())) {
+                    productIds.add(product.getProductId());
+                }
+            }
+        }
+        return productIds;
+    }
+
+    private static boolean hasText(Object value) {
+        return value instanceof String text && !text.isEmpty();
+    }
+
+    // 补全库存记录的商品和仓库对象，去掉商品或仓库已不存在的记录
+    private static void attachGraph(List<Inventory> inventories) {
+        if (inventories.isEmpty()) {
+            return;
+        }
+        Set<Integer> productIds = new HashSet<>();
+        for (Inventory inventory : inventories) {
+            productIds.add(inventory.getProductId());
+        }
+        Map<Integer, Product> products = loadProducts(productIds);
+        Map<Integer, Warehouse> warehouses = loadWarehouses();
+        inventories.removeIf(inventory -> {
+            Product product = products.get(inventory.getProductId());
+            Warehouse warehouse = warehouses.get(inventory.getWarehouseId());
+            inventory.setProduct(product);
+            inventory.setWarehouse(warehouse);
+            return product == null || warehouse == null;
+        });
+    }
+
+    // 补全库存列表行的商品名称、类别和仓库名称，去掉商品或仓库已不存在的行
+    private static void fillNames(List<InventoryRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Set<Integer> productIds = new HashSet<>();
+        for (InventoryRow row : rows) {
+            productIds.add(row.getProductId());
+        }
+        Map<Integer, Product> products = loadProducts(productIds);
+        Map<Integer, Warehouse> warehouses = loadWarehouses();
+        rows.removeIf(row -> {
+            Product product = products.get(row.getProductId());
+            Warehouse warehouse = warehouses.get(row.getWarehouseId());
+            if (product == null || warehouse == null) {
+                return true;
+            }
+            row.setProductName(product.getProductName());
+            row.setCategory(product.getCategory());
+            row.setWarehouseName(warehouse.getWarehouseName());
+            return false;
+        });
+    }
+
+    private static Map<Integer, Product> loadProducts(Set<Integer> productIds) {
+        Map<Integer, Product> products = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(productIds);
+        try (SqlSession sqlSession = MyBatisUtil.getReadSqlSession()) {
+            ProductDao productDao = sqlSession.getMapper(ProductDao.class);
+            for (int from = 0; from < ids.size(); from += LOOKUP_BATCH_SIZE) {
+                for (Product product : productDao.getProductsByIds(ids.subList(from, Math.min(from + LOOKUP_BATCH_SIZE, ids.size())))) {
+                    products.put(product.getProductId(), product);
+                }
+            }
+        }
+        return products;
+    }
+
+    // 仓库数量很少，整表读取（走仓库的二级缓存）
+    private static Map<Integer, Warehouse> loadWarehouses() {
+        Map<Integer, Warehouse> warehouses = new HashMap<>();
+        try (SqlSession sqlSession = MyBatisUtil.getReadSqlSession()) {
+            for (Warehouse warehouse : sqlSession.getMapper(WarehouseDao.class).getAllWarehouses()) {
+                warehouses.put(warehouse.getWarehouseId(), warehouse);
+            }
+        }
+        return warehouses;
+    }
+}
@@ -0,0 +1,939 @@
+package com.convenience.store.service;
+
+import com.convenience.store.dao.InventoryDao;
+import com.convenience.store.dao.ProductDao;
+import com.convenience.store.dao.StockMovementDao;
+import com.convenience.store.dao.WarehouseDao;
+import com.convenience.store.entity.Product;
+import com.convenience.store.entity.StockAdjustment;
+import com.convenience.store.entity.StockMovement;
+import com.convenience.store.util.MyBatisUtil;
+import com.convenience.store.util.shard.ShardRouter;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 库存写缓冲（write-behind）- 可选模式，启用后 InventoryService 的库存调整（adjustQuantity、adjustQuantities）
+ * 不再每次一个事务，而是先在内存中按(商品, 仓库)累加，由后台线程定时或积累到一定条数时写入数据库，
+ * 每个库存位置一条 quantity = quantity + ? 语句，收银高峰时同一热门商品的数百次扣减合并为每个刷新周期一次。
+ * 缓冲按库存位置分段加锁（分段数固定），不同库存位置的调整互不阻塞；一批调整要么全部接受，要么全部拒绝。
+ *
+ * 持久性：调整在返回前先追加到本地日志文件并刷盘，并发调用的刷盘合并为一次；刷盘失败时撤销这批调整并返回false。
+ * 日志按刷新周期分段（没有调整的周期不切换），每段在每个分片上的一个事务中写入，同一事务以段名为主键插入
+ * write_behind_segments（保留7天），库存流水也以段名作为业务单号。启动时和写库失败后重放尚未删除的日志段，
+ * 主键已存在的分片跳过，因此进程崩溃既不丢失也不重复累加。
+ *
+ * 出库校验：库存位置在每个刷新周期第一次出库时从数据库读取当前库存（快照 + 未合并的入库流水）作为基准，
+ * 之后按 基准 + 缓冲中的变化量校验库存充足；每次写库成功后基准作废，下次出库重新读取。因此其他终端、调拨、按差额更新和库存流水
+ * （这些修改不经过缓冲）最多在一个刷新周期内没有反映在基准中。已确认的出库在写库时若库存不足，
+ * 扣减到0，不足的数量记为缺货流水（StockMovement.TYPE_SHORTFALL）并记录错误日志，不会丢弃。
+ * 数据库中的库存最多落后一个刷新周期
+ *
+ * 无效数据：接受调整前确认商品和仓库存在（确认过的ID记在内存中），不存在时整批拒绝，不写日志。
+ * 写库时仍违反约束或数据格式不对（SQLSTATE 22/23，如确认之后商品被删除）的库存位置不阻塞其他调整：
+ * 单条调整出错时跳过该位置，其他位置照常提交，跳过的调整写入日志目录下 dead-letter 目录中以段名命名的文件；
+ * 整个日志段出错时把该段移到 dead-letter 目录后继续写库下一段。两种情况都记录错误日志，需要人工核对
+ */
+public class InventoryWriteBuffer {
+    private static final Logger logger = Logger.getLogger(InventoryWriteBuffer.class);
+
+    // 缓冲的分段数
+    private static final int STRIPE_COUNT = 64;
+    // 日志段文件的前缀和后缀，段名（去掉后缀）即写库时库存流水的业务单号
+    private static final String SEGMENT_PREFIX = "wb-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    // 写库遇到锁冲突时最多执行的次数和退避的基准时间
+    private static final int MAX_LOCK_ATTEMPTS = 5;
+    private static final long LOCK_RETRY_BASE_MILLIS = 20;
+    // 出库需要读取基准时等待进行中的写库完成的最长时间（毫秒），超时按失败返回
+    private static final long SETTLE_TIMEOUT_MILLIS = 5000;
+    // 日志段写库记录的保留天数和清理间隔
+    private static final int MARKER_RETENTION_DAYS = 7;
+    private static final long MARKER_PURGE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    // 停止时等待进行中的刷新完成的最长时间（秒）
+    private static final long STOP_TIMEOUT_SECONDS = 30;
+    // 写库时无法写入的调整和日志段移到日志目录下的这个目录
+    private static final String DEAD_LETTER_DIRECTORY = "dead-letter";
+
+    private static volatile InventoryWriteBuffer instance;
+
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+    private final Journal journal;
+    private final Path deadLetterDirectory;
+    private final int maxPendingDeltas;
+    // 已确认存在的商品和仓库ID；写库时因数据错误被跳过的ID移除，下次接受时重新确认
+    private final Set<Integer> knownProducts = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> knownWarehouses = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher;
+    // 上次刷新以来接受的调整条数，达到 maxPendingDeltas 时提前刷新
+    private final AtomicInteger pendingDeltas = new AtomicInteger();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    // 写库完成时通知等待读取基准的调用
+    private final Object settledMonitor = new Object();
+    // 同一时刻只有一个线程写库日志段（后台刷新与停止时的最后一次刷新）
+    private final ReentrantLock applyLock = new ReentrantLock();
+    // 上次清理日志段写库记录的时间，只在持有 applyLock 时访问
+    private long lastPurgeMillis;
+
+    // 以下字段只在持有全部分段锁时修改
+    // 每次切换日志段和每次写库完成时加1；在锁外读取基准期间发生了变化时，读到的基准作废重读
+    private volatile long generation;
+    // 已关闭的日志段是否全部写库；为false时数据库库存缺少这些调整，不能作为基准（启动时的重放完成前也是如此）
+    private volatile boolean settled;
+    private boolean closed;
+
+    /**
+     * 一个分段：分段内的库存位置共用一把锁
+     */
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Long, Slot> slots = new HashMap<>();
+    }
+
+    /**
+     * 一个库存位置在缓冲中的状态
+     */
+    private static final class Slot {
+        // 出库校验的基准库存（已关闭的日志段全部写库后的数据库库存），为null表示尚未读取（只有入库时不需要）
+        private Integer baseline;
+        // 当前日志段中尚未写库的变化量之和
+        private int pending;
+    }
+
+    private InventoryWriteBuffer(Path directory, int maxPendingDeltas) throws IOException {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.journal = new Journal(directory);
+        this.deadLetterDirectory = directory.resolve(DEAD_LETTER_DIRECTORY);
+        this.maxPendingDeltas = maxPendingDeltas;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "inventory-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 启用库存写缓冲，重复调用不会启动多个
+     * 启动后先在后台重放日志目录中上次未写库的日志段，重放完成前需要读取基准的出库会等待
+     * @param journalDirectory 日志目录，不存在时创建；同一目录只能由一个进程使用
+     * @param flushIntervalMillis 刷新间隔（毫秒）
+     * @param maxPendingDeltas 一个刷新周期内接受的调整达到该条数时提前刷新
+     * @throws IOException 创建日志目录或日志文件失败时抛出
+     */
+    public static synchronized void start(Path journalDirectory, long flushIntervalMillis, int maxPendingDeltas) throws IOException {
+        if (instance != null) {
+            return;
+        }
+        InventoryWriteBuffer buffer = new InventoryWriteBuffer(journalDirectory, maxPendingDeltas);
+        buffer.flusher.execute(buffer::applySegments);
+        buffer.flusher.scheduleWithFixedDelay(buffer::flushSafely, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        instance = buffer;
+        logger.info("已启用库存写缓冲，日志目录 " + journalDirectory.toAbsolutePath() + "，刷新间隔 " + flushIntervalMillis + "ms");
+    }
+
+    /**
+     * 停止库存写缓冲：写入缓冲中的全部调整后关闭日志
+     * 写库失败的日志段保留在日志目录中，下次启动时重放
+     */
+    public static synchronized void stop() {
+        InventoryWriteBuffer buffer = instance;
+        if (buffer == null) {
+            return;
+        }
+        instance = null;
+        buffer.flusher.shutdown();
+        boolean terminated = false;
+        try {
+            terminated = buffer.flusher.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (terminated) {
+            buffer.flush(true);
+        } else {
+            // 后台刷新仍在写库，不再写库，只关闭日志，剩余日志段下次启动时重放
+            logger.warn("库存写缓冲的后台刷新未能在 " + STOP_TIMEOUT_SECONDS + " 秒内结束，未写库的日志段留待下次启动重放");
+            buffer.closeJournal();
+        }
+    }
+
+    /**
+     * 是否启用了库存写缓冲
+     * @return 启用返回true
+     */
+    public static boolean isEnabled() {
+        return instance != null;
+    }
+
+    /**
+     * 把一批已合并的库存调整放入缓冲，日志刷盘后返回
+     * @param adjustments 已按 InventoryService.mergeAdjustments 合并的调整
+     * @return 全部接受返回true；任一商品或仓库不存在、任一出库超过 基准 + 缓冲变化量、写缓冲未启用、
+     *         读取基准超时或写日志失败返回false
+     */
+    static boolean offer(List<StockAdjustment> adjustments) {
+        InventoryWriteBuffer buffer = instance;
+        if (buffer == null) {
+            return false;
+        }
+        try {
+            return buffer.accept(adjustments);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * 当前缓冲中尚未写库的调整条数
+     * @return 调整条数，未启用时为0
+     */
+    public static int getPendingDeltas() {
+        InventoryWriteBuffer buffer = instance;
+        return buffer == null ? 0 : buffer.pendingDeltas.get();
+    }
+
+    /**
+     * 数据库读取操作
+     */
+    interface SnapshotRead {
+        void run() throws Exception;
+    }
+
+    /**
+     * 在暂停写库的情况下读取数据库库存，读取完成后返回缓冲中尚未写库的变化量，与读到的库存相加即当前库存
+     * 读取期间日志段不写库，数据库中的库存不会因写缓冲而变化；调整照常接受，写库推迟到读取结束。
+     * 读取缓冲的同时（持有全部分段锁）以读到的变化量调用 captured：接受调整时在分段锁内通知低库存监控，
+     * captured 之前通知的调整都包含在变化量中，之后通知的都不包含。
+     * 某个日志段只在部分分片上写库成功时，已写库的部分会被重复计入，下次载入时纠正
+     * @param read 读取数据库库存的操作
+     * @param captured 读取缓冲的同时调用，参数同返回值
+     * @return (商品ID << 32 | 仓库ID) -> 未写库的变化量；写缓冲未启用时为空
+     * @throws Exception 读取操作或读取日志段失败时抛出
+     */
+    static Map<Long, Integer> readWithApplyPaused(SnapshotRead read, Consumer<Map<Long, Integer>> captured) throws Exception {
+        InventoryWriteBuffer buffer = instance;
+        if (buffer == null) {
+            read.run();
+            captured.accept(Map.of());
+            return Map.of();
+        }
+        buffer.applyLock.lock();
+        try {
+            read.run();
+            Map<Long, Integer> unapplied = new HashMap<>();
+            // 持有全部分段锁时，已关闭的日志段和各位置当前段的变化量是同一时刻的状态
+            buffer.lock(null);
+            try {
+                for (Path file : buffer.journal.closedSegments()) {
+                    for (StockAdjustment adjustment : Journal.read(file)) {
+                        unapplied.merge(key(adjustment), adjustment.getDelta(), Integer::sum);
+                    }
+                }
+                for (Stripe stripe : buffer.stripes) {
+                    for (Map.Entry<Long, Slot> entry : stripe.slots.entrySet()) {
+                        unapplied.merge(entry.getKey(), entry.getValue().pending, Integer::sum);
+                    }
+                }
+                captured.accept(unapplied);
+            } finally {
+                buffer.unlock(null);
+            }
+            return unapplied;
+        } finally {
+            buffer.applyLock.unlock();
+        }
+    }
+
+    private boolean accept(List<StockAdjustment> adjustments) throws IOException, InterruptedException {
+        if (adjustments.isEmpty()) {
+            return true;
+        }
+        // 入库不读取基准，写日志前确认商品和仓库存在，避免无效的调整在写库时反复失败
+        if (!checkKeysExist(adjustments)) {
+            return false;
+        }
+        // 涉及的分段按序号加锁，多批调整并发时不会互相等待
+        TreeSet<Integer> stripeIndexes = new TreeSet<>();
+        for (StockAdjustment adjustment : adjustments) {
+            stripeIndexes.add(stripeOf(key(adjustment)));
+        }
+        long deadline = System.currentTimeMillis() + SETTLE_TIMEOUT_MILLIS;
+        Map<Long, Integer> fetched = new HashMap<>();
+        long fetchedGeneration = -1;
+        while (true) {
+            List<StockAdjustment> missing = new ArrayList<>();
+            Journal.Ticket ticket = null;
+            long currentGeneration;
+            boolean currentSettled;
+            lock(stripeIndexes);
+            try {
+                if (closed) {
+                    logger.warn("库存写缓冲已停止，不再接受调整");
+                    return false;
+                }
+                currentGeneration = generation;
+                currentSettled = settled;
+                boolean fetchedValid = fetchedGeneration == generation;
+                for (StockAdjustment adjustment : adjustments) {
+                    Slot slot = stripes[stripeOf(key(adjustment))].slots.get(key(adjustment));
+                    if (adjustment.getDelta() < 0 && (slot == null || slot.baseline == null)
+                            && !(fetchedValid && fetched.containsKey(key(adjustment)))) {
+                        missing.add(adjustment);
+                    }
+                }
+                if (missing.isEmpty()) {
+                    for (StockAdjustment adjustment : adjustments) {
+                        if (adjustment.getDelta() >= 0) {
+                            continue;
+                        }
+                        Slot slot = stripes[stripeOf(key(adjustment))].slots.get(key(adjustment));
+                        int baseline = slot != null && slot.baseline != null ? slot.baseline : fetched.get(key(adjustment));
+                        int pending = slot != null ? slot.pending : 0;
+                        if (baseline + pending + adjustment.getDelta() < 0) {
+                            return false;
+                        }
+                    }
+                    // 先写日志，写失败时缓冲保持不变
+                    ticket = journal.append(adjustments);
+                    for (StockAdjustment adjustment : adjustments) {
+                        Slot slot = stripes[stripeOf(key(adjustment))].slots.computeIfAbsent(key(adjustment), k -> new Slot());
+                        if (slot.baseline == null && fetchedValid && fetched.containsKey(key(adjustment))) {
+                            slot.baseline = fetched.get(key(adjustment));
+                        }
+                        slot.pending += adjustment.getDelta();
+                    }
+                    // 在分段锁内通知低库存监控，与 readWithApplyPaused 读取缓冲的时刻先后确定；刷盘失败时撤销
+                    notifyMonitor(adjustments);
+                }
+            } finally {
+                unlock(stripeIndexes);
+            }
+            if (ticket != null) {
+                try {
+                    journal.awaitDurable(ticket);
+                } catch (IOException e) {
+                    logger.error("库存写缓冲日志刷盘失败，撤销本批调整", e);
+                    revert(adjustments, stripeIndexes);
+                    return false;
+                }
+                if (pendingDeltas.addAndGet(adjustments.size()) >= maxPendingDeltas && flushQueued.compareAndSet(false, true)) {
+                    try {
+                        flusher.execute(this::flushSafely);
+                    } catch (RejectedExecutionException e) {
+                        // 正在停止，停止时的最后一次刷新会写入这些调整
+                    }
+                }
+                return true;
+            }
+            if (!currentSettled) {
+                // 数据库库存缺少正在写库的调整，等写库完成后再读取基准
+                if (!awaitSettled(deadline)) {
+                    logger.warn("库存写缓冲等待写库超时，出库未执行");
+                    return false;
+                }
+                continue;
+            }
+            // 在锁外读取缺少基准的出库位置的快照数量，期间切换了日志段或完成了写库时重读
+            fetched = readBaselines(missing);
+            fetchedGeneration = currentGeneration;
+        }
+    }
+
+    // 撤销已放入缓冲但未能刷盘的一批调整：缓冲中减去这批变化量，日志中追加一行相反的调整，
+    // 原来那一行即使已经落盘，写库时也与之抵消
+    private void revert(List<StockAdjustment> adjustments, TreeSet<Integer> stripeIndexes) {
+        List<StockAdjustment> inverse = new ArrayList<>(adjustments.size());
+        for (StockAdjustment adjustment : adjustments) {
+            inverse.add(new StockAdjustment(adjustment.getProductId(), adjustment.getWarehouseId(), -adjustment.getDelta()));
+        }
+        Journal.Ticket ticket;
+        lock(stripeIndexes);
+        try {
+            ticket = journal.append(inverse);
+            for (StockAdjustment adjustment : inverse) {
+                stripes[stripeOf(key(adjustment))].slots.computeIfAbsent(key(adjustment), k -> new Slot()).pending += adjustment.getDelta();
+            }
+            notifyMonitor(inverse);
+        } catch (IOException e) {
+            logger.error("库存写缓冲无法撤销未刷盘的调整，这批调整仍可能写库：" + adjustments, e);
+            return;
+        } finally {
+            unlock(stripeIndexes);
+        }
+        try {
+            journal.awaitDurable(ticket);
+        } catch (IOException e) {
+            logger.error("库存写缓冲日志刷盘失败", e);
+        }
+    }
+
+    private static void notifyMonitor(List<StockAdjustment> adjustments) {
+        for (StockAdjustment adjustment : adjustments) {
+            LowStockMonitor.getInstance().applyBufferedDelta(adjustment.getProductId(), adjustment.getWarehouseId(), adjustment.getDelta());
+        }
+    }
+
+    private boolean awaitSettled(long deadline) throws InterruptedException {
+        synchronized (settledMonitor) {
+            while (!settled) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                settledMonitor.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    // 确认调整涉及的商品和仓库都存在，未确认过的ID到主库查询
+    private boolean checkKeysExist(List<StockAdjustment> adjustments) {
+        Set<Integer> productIds = new TreeSet<>();
+        Set<Integer> warehouseIds = new TreeSet<>();
+        for (StockAdjustment adjustment : adjustments) {
+            if (!knownProducts.contains(adjustment.getProductId())) {
+                productIds.add(adjustment.getProductId());
+            }
+            if (!knownWarehouses.contains(adjustment.getWarehouseId())) {
+                warehouseIds.add(adjustment.getWarehouseId());
+            }
+        }
+        if (productIds.isEmpty() && warehouseIds.isEmpty()) {
+            return true;
+        }
+        try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
+            if (!productIds.isEmpty()) {
+                for (Product product : sqlSession.getMapper(ProductDao.class).getProductsByIds(new ArrayList<>(productIds))) {
+                    productIds.remove(product.getProductId());
+                    knownProducts.add(product.getProductId());
+                }
+            }
+            WarehouseDao warehouseDao = sqlSession.getMapper(WarehouseDao.class);
+            for (Iterator<Integer> it = warehouseIds.iterator(); it.hasNext(); ) {
+                Integer warehouseId = it.next();
+                if (warehouseDao.getWarehouseById(warehouseId) != null) {
+                    it.remove();
+                    knownWarehouses.add(warehouseId);
+                }
+            }
+        }
+        if (!productIds.isEmpty() || !warehouseIds.isEmpty()) {
+            logger.warn("库存写缓冲拒绝调整：商品 " + productIds + " 或仓库 " + warehouseIds + " 不存在");
+            return false;
+        }
+        return true;
+    }
+
+    // 基准取当前库存（快照 + 未合并的入库流水），与 StockLedgerService.deduct 的口径一致：写库时快照不够扣会先合并尾部
+    private static Map<Long, Integer> readBaselines(List<StockAdjustment> adjustments) {
+        Map<Long, Integer> baselines = new HashMap<>();
+        Map<Integer, List<StockAdjustment>> byShard = new TreeMap<>();
+        for (StockAdjustment adjustment : adjustments) {
+            byShard.computeIfAbsent(ShardRouter.shardOf(adjustment.getWarehouseId()), k -> new ArrayList<>()).add(adjustment);
+        }
+        for (Map.Entry<Integer, List<StockAdjustment>> entry : byShard.entrySet()) {
+            try (SqlSession sqlSession = MyBatisUtil.getShardSession(entry.getKey())) {
+                StockMovementDao stockMovementDao = sqlSession.getMapper(StockMovementDao.class);
+                for (StockAdjustment adjustment : entry.getValue()) {
+                    baselines.put(key(adjustment), stockMovementDao.getCurrentQuantity(adjustment.getProductId(), adjustment.getWarehouseId()));
+                }
+            }
+        }
+        return baselines;
+    }
+
+    // 定时任务的入口，异常不能抛出调度器，否则后续周期不再执行
+    private void flushSafely() {
+        flushQueued.set(false);
+        try {
+            flush(false);
+        } catch (Exception e) {
+            logger.error("库存写缓冲刷新出错", e);
+        }
+    }
+
+    // 切换日志段并清空缓冲中的变化量，再把已关闭的日志段写库；last 为true时之后不再接受调整并关闭日志
+    // 当前日志段为空时不切换，只重试写库失败的日志段
+    private void flush(boolean last) {
+        Journal.Segment previous;
+        lock(null);
+        try {
+            if (closed) {
+                return;
+            }
+            // 当前段为空或新建日志段失败时不切换
+            previous = !last && journal.isEmpty() ? null : journal.rotate(!last);
+            if (previous != null) {
+                generation++;
+                settled = false;
+                closed = last;
+                for (Stripe stripe : stripes) {
+                    for (Slot slot : stripe.slots.values()) {
+                        // 基准按写库成功计入本段的变化量
+                        if (slot.baseline != null) {
+                            slot.baseline += slot.pending;
+                        }
+                        slot.pending = 0;
+                    }
+                }
+                pendingDeltas.set(0);
+            }
+        } finally {
+            unlock(null);
+        }
+        if (previous == null) {
+            // 没有新的日志段，只重试上次写库失败的日志段
+            if (!settled) {
+                applySegments();
+            }
+            return;
+        }
+        try {
+            journal.close(previous);
+        } catch (IOException e) {
+            logger.error("关闭库存写缓冲日志段失败", e);
+        }
+        applySegments();
+    }
+
+    // 不写库，只停止接受调整并关闭日志
+    private void closeJournal() {
+        Journal.Segment previous;
+        lock(null);
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            previous = journal.rotate(false);
+        } finally {
+            unlock(null);
+        }
+        try {
+            journal.close(previous);
+        } catch (IOException e) {
+            logger.error("关闭库存写缓冲日志段失败", e);
+        }
+    }
+
+    // 按文件名顺序写库所有已关闭的日志段，写库成功的段删除；某段因连接、锁等原因失败时停止，下次刷新时重试；
+    // 因数据错误失败的段重试也不会成功，移到 dead-letter 目录后继续下一段
+    private void applySegments() {
+        applyLock.lock();
+        try {
+            for (Path file : journal.closedSegments()) {
+                try {
+                    String reference = file.getFileName().toString();
+                    reference = reference.substring(0, reference.length() - SEGMENT_SUFFIX.length());
+                    applySegment(file, reference);
+                    Files.delete(file);
+                } catch (Exception e) {
+                    if (BulkImportService.isDataError(e) && moveToDeadLetter(file, e)) {
+                        continue;
+                    }
+                    // 保留基准，数据库库存缺少这些调整
+                    logger.warn("库存写缓冲日志段 " + file.getFileName() + " 写库失败，稍后重试：" + e);
+                    return;
+                }
+            }
+            purgeAppliedSegments();
+        } finally {
+            applyLock.unlock();
+        }
+        // 全部写库后基准作废，下次出库重新读取，使不经过缓冲的修改也反映在基准中
+        lock(null);
+        try {
+            generation++;
+            settled = true;
+            for (Stripe stripe : stripes) {
+                Iterator<Slot> it = stripe.slots.values().iterator();
+                while (it.hasNext()) {
+                    Slot slot = it.next();
+                    if (slot.pending == 0) {
+                        it.remove();
+                    } else {
+                        slot.baseline = null;
+                    }
+                }
+            }
+        } finally {
+            unlock(null);
+        }
+        synchronized (settledMonitor) {
+            settledMonitor.notifyAll();
+        }
+    }
+
+    // 把无法写库的日志段移到 dead-letter 目录；已在部分分片写入的段再次写库时，这些分片被 write_behind_segments 挡住
+    private boolean moveToDeadLetter(Path file, Exception cause) {
+        try {
+            Files.createDirectories(deadLetterDirectory);
+            Files.move(file, deadLetterDirectory.resolve(file.getFileName()), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("移动库存写缓冲日志段 " + file.getFileName() + " 到 " + DEAD_LETTER_DIRECTORY + " 失败", e);
+            return false;
+        }
+        logger.error("库存写缓冲日志段 " + file.getFileName() + " 因数据错误无法写库，已移到 " + deadLetterDirectory
+                + "，其中的调整没有写入数据库，需要人工核对", cause);
+        // 低库存监控包含这些调整，重新载入使其与数据库一致
+        LowStockMonitor.getInstance().reloadAsync();
+        return true;
+    }
+
+    // 把写库时跳过的调整写入 dead-letter 目录，格式与日志段相同；同一段同一分片重试时覆盖
+    private void writeDeadLetter(String reference, int shard, List<StockAdjustment> rejected) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (StockAdjustment adjustment : rejected) {
+            content.append(adjustment.getProductId()).append(',').append(adjustment.getWarehouseId()).append(',')
+                    .append(adjustment.getDelta()).append('\n');
+        }
+        Files.createDirectories(deadLetterDirectory);
+        Path file = deadLetterDirectory.resolve(reference + "-shard" + shard + SEGMENT_SUFFIX);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, content, StandardCharsets.US_ASCII);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // 把一个日志段的调整按库存位置汇总后写库，每个分片一个事务
+    private void applySegment(Path file, String reference) throws IOException {
+        Map<Integer, List<StockAdjustment>> byShard = new TreeMap<>();
+        for (StockAdjustment total : InventoryService.mergeAdjustments(Journal.read(file))) {
+            byShard.computeIfAbsent(ShardRouter.shardOf(total.getWarehouseId()), k -> new ArrayList<>()).add(total);
+        }
+        for (Map.Entry<Integer, List<StockAdjustment>> entry : byShard.entrySet()) {
+            applyWithRetry(entry.getKey(), reference, entry.getValue());
+        }
+    }
+
+    // 每隔一段时间删除各分片上超过保留期的日志段写库记录，保留期内从备份恢复的日志段仍不会重复写库
+    private void purgeAppliedSegments() {
+        long now = System.currentTimeMillis();
+        if (now - lastPurgeMillis < MARKER_PURGE_INTERVAL_MILLIS) {
+            return;
+        }
+        lastPurgeMillis = now;
+        Timestamp cutoff = new Timestamp(now - TimeUnit.DAYS.toMillis(MARKER_RETENTION_DAYS));
+        for (int shard = 0; shard < ShardRouter.getShardCount(); shard++) {
+            try (SqlSession sqlSession = MyBatisUtil.getShardSession(shard)) {
+                sqlSession.getMapper(StockMovementDao.class).purgeAppliedSegments(cutoff);
+                sqlSession.commit();
+            } catch (Exception e) {
+                logger.warn("清理库存写缓冲日志段写库记录失败：" + e);
+            }
+        }
+    }
+
+    private void applyWithRetry(int shard, String reference, List<StockAdjustment> totals) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try (SqlSession sqlSession = MyBatisUtil.getShardSession(shard)) {
+                StockMovementDao stockMovementDao = sqlSession.getMapper(StockMovementDao.class);
+                try {
+                    stockMovementDao.insertAppliedSegment(reference);
+                } catch (RuntimeException e) {
+                    if (!isDuplicateKey(e)) {
+                        throw e;
+                    }
+                    // 上次已写入，删除日志段之前进程退出
+                    sqlSession.rollback();
+                    return;
+                }
+                InventoryDao inventoryDao = sqlSession.getMapper(InventoryDao.class);
+                List<StockMovement> movements = new ArrayList<>(totals.size());
+                List<StockAdjustment> shortfalls = new ArrayList<>();
+                List<StockAdjustment> rejected = new ArrayList<>();
+                for (StockAdjustment total : totals) {
+                    boolean applied;
+                    try {
+                        applied = total.getDelta() < 0
+                                ? StockLedgerService.deduct(inventoryDao, stockMovementDao, total.getProductId(), total.getWarehouseId(), total.getDelta())
+                                : InventoryService.applyAdjustment(inventoryDao, total);
+                    } catch (RuntimeException e) {
+                        if (!BulkImportService.isDataError(e)) {
+                            throw e;
+                        }
+                        // 出错的语句由数据库单独回滚，事务中其他位置的调整不受影响；跳过该位置，重试也不会成功
+                        rejected.add(total);
+                        knownProducts.remove(total.getProductId());
+                        knownWarehouses.remove(total.getWarehouseId());
+                        logger.error("库存写缓冲跳过无法写库的调整：商品 " + total.getProductId() + " 仓库 " + total.getWarehouseId()
+                                + " 变化量 " + total.getDelta() + "（日志段 " + reference + "），已写入 " + DEAD_LETTER_DIRECTORY + "：" + e.getCause());
+                        continue;
+                    }
+                    if (applied) {
+                        movements.add(movement(total, StockMovement.TYPE_ADJUSTMENT, total.getDelta(), reference));
+                        continue;
+                    }
+                    // 已确认的出库超过库存（不经过缓冲的修改使基准偏高）：扣减到0，不足的数量记为缺货；
+                    // deduct 失败前已把未合并的尾部并入快照，快照即当前库存
+                    Integer quantity = inventoryDao.lockSnapshotQuantity(total.getProductId(), total.getWarehouseId());
+                    int available = quantity == null ? 0 : Math.max(0, quantity);
+                    if (available > 0) {
+                        inventoryDao.adjustQuantity(total.getProductId(), total.getWarehouseId(), -available);
+                        movements.add(movement(total, StockMovement.TYPE_ADJUSTMENT, -available, reference));
+                    }
+                    int shortfall = total.getDelta() + available;
+                    movements.add(movement(total, StockMovement.TYPE_SHORTFALL, shortfall, reference));
+                    shortfalls.add(new StockAdjustment(total.getProductId(), total.getWarehouseId(), -shortfall));
+                    logger.error("库存写缓冲写库时库存不足：商品 " + total.getProductId() + " 仓库 " + total.getWarehouseId()
+                            + " 变化量 " + total.getDelta() + "，只扣减了 " + available + "，缺货 " + (-shortfall) + "（日志段 " + reference + "）");
+                }
+                StockLedgerService.appendMovements(stockMovementDao, movements);
+                if (!rejected.isEmpty()) {
+                    // 先落盘再提交：提交后崩溃时不会丢失跳过的调整的记录
+                    writeDeadLetter(reference, shard, rejected);
+                    for (StockAdjustment adjustment : rejected) {
+                        shortfalls.add(new StockAdjustment(adjustment.getProductId(), adjustment.getWarehouseId(), -adjustment.getDelta()));
+                    }
+                }
+                // 低库存监控在接受调整时已按全部变化量更新，补回未能扣减和被跳过的数量
+                LowStockMonitor.getInstance().commit(sqlSession::commit, () -> {
+                    for (StockAdjustment correction : shortfalls) {
+                        LowStockMonitor.getInstance().applyDelta(correction.getProductId(), correction.getWarehouseId(), correction.getDelta());
+                    }
+                });
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_LOCK_ATTEMPTS || !InventoryService.isLockConflict(e)) {
+                    throw e;
+                }
+                long backoff = LOCK_RETRY_BASE_MILLIS << (attempt - 1);
+                try {
+                    Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static StockMovement movement(StockAdjustment total, String type, int delta, String reference) {
+        StockMovement movement = new StockMovement(total.getProductId(), total.getWarehouseId(), type, delta);
+        movement.setReference(reference);
+        movement.setApplied(true);
+        return movement;
+    }
+
+    private static boolean isDuplicateKey(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLIntegrityConstraintViolationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 按分段序号加锁，indexes 为null时锁定全部分段
+    private void lock(TreeSet<Integer> indexes) {
+        if (indexes == null) {
+            for (Stripe stripe : stripes) {
+                stripe.lock.lock();
+            }
+            return;
+        }
+        for (int index : indexes) {
+            stripes[index].lock.lock();
+        }
+    }
+
+    private void unlock(TreeSet<Integer> indexes) {
+        if (indexes == null) {
+            for (Stripe stripe : stripes) {
+                stripe.lock.unlock();
+            }
+            return;
+        }
+        for (int index : indexes) {
+            stripes[index].lock.unlock();
+        }
+    }
+
+    private static long key(StockAdjustment adjustment) {
+        return ((long) adjustment.getProductId() << 32) | (adjustment.getWarehouseId() & 0xFFFFFFFFL);
+    }
+
+    private static int stripeOf(long key) {
+        return Math.floorMod(Long.hashCode(key) * 0x9E3779B9, STRIPE_COUNT);
+    }
+
+    /**
+     * 分段日志：每行一批调整（商品ID,仓库ID,变化量 以分号分隔），以换行结束；
+     * 进程崩溃时最后一行可能不完整，重放时丢弃——不完整的一批尚未刷盘，调用方也就没有得到成功的返回
+     */
+    private static final class Journal {
+        private final Path directory;
+        // 本次启动的标识，使不同进程、不同次启动的段名（业务单号）不会重复
+        private final String instanceId;
+        private long sequence;
+        private Segment current;
+
+        private static final class Segment {
+            private final Path path;
+            private final FileChannel channel;
+            // 已写入和已刷盘的字节数
+            private volatile long written;
+            private long synced;
+
+            private Segment(Path path) throws IOException {
+                this.path = path;
+                this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            }
+        }
+
+        /**
+         * 追加位置，刷盘到该位置后对应的调整才算持久
+         */
+        private record Ticket(Segment segment, long end) {
+        }
+
+        private Journal(Path directory) throws IOException {
+            this.directory = directory;
+            Files.createDirectories(directory);
+            this.instanceId = Long.toString(System.currentTimeMillis(), 36)
+                    + Integer.toHexString(ThreadLocalRandom.current().nextInt(0x10000, 0x100000));
+            this.current = newSegment();
+        }
+
+        private Segment newSegment() throws IOException {
+            return new Segment(directory.resolve(String.format("%s%s-%08d%s", SEGMENT_PREFIX, instanceId, ++sequence, SEGMENT_SUFFIX)));
+        }
+
+        private synchronized Ticket append(List<StockAdjustment> adjustments) throws IOException {
+            StringBuilder line = new StringBuilder();
+            for (StockAdjustment adjustment : adjustments) {
+                if (line.length() > 0) {
+                    line.append(';');
+                }
+                line.append(adjustment.getProductId()).append(',').append(adjustment.getWarehouseId()).append(',').append(adjustment.getDelta());
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(line.append('\n').toString().getBytes(StandardCharsets.US_ASCII));
+            while (bytes.hasRemaining()) {
+                current.channel.write(bytes);
+            }
+            current.written += bytes.capacity();
+            return new Ticket(current, current.written);
+        }
+
+        // 刷盘到指定位置；多个线程同时等待时，拿到锁的线程一次刷盘覆盖其他线程已写入的内容
+        private void awaitDurable(Ticket ticket) throws IOException {
+            Segment segment = ticket.segment();
+            synchronized (segment) {
+                if (segment.synced >= ticket.end()) {
+                    return;
+                }
+                long target = segment.written;
+                segment.channel.force(false);
+                segment.synced = target;
+            }
+        }
+
+        private synchronized boolean isEmpty() {
+            return current.written == 0;
+        }
+
+        // 切换到新的日志段（reopen 为false时不再新建），返回被替换的段
+        private synchronized Segment rotate(boolean reopen) {
+            Segment previous = current;
+            if (reopen) {
+                try {
+                    current = newSegment();
+                } catch (IOException e) {
+                    // 新建失败时继续使用原日志段，本次刷新不写库
+                    logger.error("新建库存写缓冲日志段失败", e);
+                    return null;
+                }
+            }
+            return previous;
+        }
+
+        // 刷盘并关闭已替换的段；没有内容的段直接删除
+        private void close(Segment segment) throws IOException {
+            if (segment == null) {
+                return;
+            }
+            synchronized (segment) {
+                segment.channel.force(false);
+                segment.synced = segment.written;
+                segment.channel.close();
+            }
+            if (segment.written == 0) {
+                Files.deleteIfExists(segment.path);
+            }
+        }
+
+        // 目录中除当前段以外的日志段，按文件名排序
+        private synchronized List<Path> closedSegments() {
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (Path file : stream) {
+                    if (current == null || !current.channel.isOpen() || !file.equals(current.path)) {
+                        files.add(file);
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("读取库存写缓冲日志目录失败", e);
+            }
+            files.sort(null);
+            return files;
+        }
+
+        private static List<StockAdjustment> read(Path file) throws IOException {
+            List<StockAdjustment> adjustments = new ArrayList<>();
+            String content = Files.readString(file, StandardCharsets.US_ASCII);
+            int end = content.lastIndexOf('\n');
+            if (end < content.length() - 1) {
+                logger.warn("库存写缓冲日志段 " + file.getFileName() + " 最后一行不完整，已丢弃");
+            }
+            if (end < 0) {
+                return adjustments;
+            }
+            for (String line : content.substring(0, end).split("\n")) {
+                List<StockAdjustment> batch = new ArrayList<>();
+                try {
+                    for (String record : line.split(";")) {
+                        String[] fields = record.split(",");
+                        batch.add(new StockAdjustment(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Integer.parseInt(fields[2])));
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("库存写缓冲日志段 " + file.getFileName() + " 有无法解析的行，已丢弃：" + line);
+                    continue;
+                }
+                adjustments.addAll(batch);
+            }
+            return adjustments;
+        }
+    }
+}
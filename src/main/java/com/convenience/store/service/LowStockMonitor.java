@@ -0,0 +1,763 @@
+package com.convenience.store.service;
+
+import com.convenience.store.dao.InventoryDao;
+import com.convenience.store.entity.InventoryRow;
+import com.convenience.store.util.AsyncExecutor;
+import com.convenience.store.util.MyBatisUtil;
+import com.convenience.store.util.shard.ShardRouter;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * 低库存监控器 - 在内存中实时维护低于最小库存的库存位置
+ * 启动时通过一次流式扫描载入全部库存位置的当前库存（快照 + 未合并的流水 + 写缓冲中未写库的变化量），
+ * 之后由 InventoryService、StockLedgerService、InventoryWriteBuffer 的写操作增量更新，
+ * 不再依赖数据库触发器和轮询 stock_alerts 表。
+ * 低库存位置保存在按缺货比例（数量 / 最小库存，越小越紧缺）排序的索引堆中，
+ * 每次变化的更新代价为 O(log n)，取最紧缺的前N项为 O(N log N)。
+ * 同一库存位置在合并窗口内的多次变化只产生一次预警事件，事件批量回调给监听器。
+ * 其他终端的修改不会实时反映，由增量同步按库存位置更新（refresh），也可调用 reloadAsync() 重新扫描。
+ * 修改库存的事务通过 commit() 提交并通知监控，按数据库重新读取数量时不会读到已提交但尚未通知的修改。
+ */
+public class LowStockMonitor {
+    private static final Logger logger = Logger.getLogger(LowStockMonitor.class);
+
+    // 预警事件的合并窗口（毫秒）
+    private static final long COALESCE_WINDOW_MILLIS = 500;
+    // 新建库存记录时的默认最小库存，与 upsertQuantity 一致
+    private static final int DEFAULT_MIN_STOCK = 10;
+    // 载入后重新读取库存位置时每条语句的位置数
+    private static final int REREAD_BATCH_SIZE = 500;
+
+    private static final LowStockMonitor INSTANCE = new LowStockMonitor();
+
+    /**
+     * 低库存预警事件
+     */
+    public static final class Alert {
+        private final Integer inventoryId;
+        private final int productId;
+        private final int warehouseId;
+        private final String productName;
+        private final String warehouseName;
+        private final int quantity;
+        private final int minStock;
+        private final boolean recovered;
+
+        private Alert(Position position, boolean recovered) {
+            this.inventoryId = position.inventoryId;
+            this.productId = position.productId;
+            this.warehouseId = position.warehouseId;
+            this.productName = position.productName;
+            this.warehouseName = position.warehouseName;
+            this.quantity = position.quantity;
+            this.minStock = position.minStock;
+            this.recovered = recovered;
+        }
+
+        public Integer getInventoryId() {
+            return inventoryId;
+        }
+
+        public int getProductId() {
+            return productId;
+        }
+
+        public int getWarehouseId() {
+            return warehouseId;
+        }
+
+        public String getProductName() {
+            return productName;
+        }
+
+        public String getWarehouseName() {
+            return warehouseName;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public int getMinStock() {
+            return minStock;
+        }
+
+        /**
+         * @return true表示该位置已恢复到最小库存以上，false表示处于低库存状态
+         */
+        public boolean isRecovered() {
+            return recovered;
+        }
+    }
+
+    /**
+     * 预警监听器，在后台线程中回调
+     */
+    @FunctionalInterface
+    public interface AlertListener {
+        void onAlerts(List<Alert> alerts);
+    }
+
+    // 一个库存位置（商品 + 仓库）
+    private static final class Position {
+        private final int productId;
+        private final int warehouseId;
+        private Integer inventoryId;
+        private String productName;
+        private String warehouseName;
+        private int quantity;
+        private int minStock;
+        // 在堆数组中的下标，不在堆中时为-1
+        private int heapIndex = -1;
+
+        private Position(int productId, int warehouseId) {
+            this.productId = productId;
+            this.warehouseId = warehouseId;
+        }
+
+        private boolean isLow() {
+            return quantity < minStock;
+        }
+
+        private double ratio() {
+            return minStock <= 0 ? Double.MAX_VALUE : (double) quantity / minStock;
+        }
+    }
+
+    // (商品ID, 仓库ID) -> 库存位置
+    private final Map<Long, Position> positions = new HashMap<>();
+    // 库存ID -> 库存位置，用于按库存ID更新和删除
+    private final Map<Integer, Position> positionsById = new HashMap<>();
+    // 只包含低库存位置的最小堆，堆顶最紧缺
+    private Position[] heap = new Position[64];
+    private int heapSize;
+    private volatile boolean ready;
+    // 正在载入时记录扫描结果中可能缺少的修改，不在载入时为null
+    private ReloadLog reloadLog;
+    // 同一时间只进行一次载入
+    private final Object reloadLock = new Object();
+    // 修改库存的事务从提交到通知监控期间持有读锁；按数据库重新读取数量时持有写锁
+    private final ReentrantReadWriteLock commitGate = new ReentrantReadWriteLock();
+
+    private final List<AlertListener> listeners = new CopyOnWriteArrayList<>();
+    // 合并窗口内待发送的事件，同一位置只保留最新状态
+    private final Map<Long, Alert> pendingAlerts = new LinkedHashMap<>();
+    private ScheduledExecutorService dispatcher;
+
+    // 一次载入期间的修改。扫描结果是各分片查询开始时的快照加上读取写缓冲时缓冲中的变化量：
+    // 读取写缓冲之后接受的调整和删除库存记录按发生顺序记录，替换状态后重放；
+    // 已提交到数据库的修改可能在查询开始前提交、开始后才通知，无法判断是否在快照中，只记下库存位置，替换状态后重新读取
+    private static final class ReloadLog {
+        // 已读取写缓冲，之后接受的调整需要重放
+        private boolean bufferCaptured;
+        // 替换状态后为null，之后的修改直接作用于新状态
+        private List<Runnable> changes = new ArrayList<>();
+        // 有已提交修改的库存位置 (商品ID << 32 | 仓库ID)
+        private final Set<Long> committed = new HashSet<>();
+    }
+
+    private LowStockMonitor() {
+    }
+
+    /**
+     * 获取应用内唯一的监控器实例
+     * @return 监控器
+     */
+    public static LowStockMonitor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 是否已完成启动扫描
+     * @return 已完成返回true
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 通过一次流式扫描载入全部库存位置，替换当前状态
+     * 数量为当前库存：快照 + 未合并的流水尾部（同一条语句读取，读到的是语句开始时的状态），再加上写缓冲中尚未写库的变化量，
+     * 之后的入库流水合并、写缓冲写库都不改变当前库存，无需通知监控；启用仓库分片时依次扫描每个分片。
+     * 扫描期间照常接受增量更新：读取写缓冲后接受的调整记录下来在替换状态后按顺序重放；
+     * 扫描期间提交到数据库的修改不一定在扫描结果中，替换状态后在提交闸门下重新读取这些库存位置，不会漏算也不会重复计入
+     * @return 载入成功返回true，失败返回false
+     */
+    public boolean reload() {
+        synchronized (reloadLock) {
+            synchronized (this) {
+                reloadLog = new ReloadLog();
+            }
+            Map<Long, Position> loaded = new HashMap<>();
+            Map<Long, Integer> buffered;
+            try {
+                buffered = InventoryWriteBuffer.readWithApplyPaused(() -> {
+                    if (ShardRouter.isEnabled()) {
+                        InventoryShards.forEachMonitorRow(row -> load(loaded, row));
+                    } else {
+                        try (SqlSession sqlSession = MyBatisUtil.getSqlSession();
+                             Cursor<InventoryRow> cursor = sqlSession.getMapper(InventoryDao.class).streamMonitorRows()) {
+                            for (InventoryRow row : cursor) {
+                                load(loaded, row);
+                            }
+                        }
+                    }
+                }, unapplied -> bufferCaptured());
+            } catch (Exception e) {
+                e.printStackTrace();
+                synchronized (this) {
+                    reloadLog = null;
+                }
+                return false;
+            }
+            for (Map.Entry<Long, Integer> entry : buffered.entrySet()) {
+                Position position = loaded.get(entry.getKey());
+                if (position == null) {
+                    // 只在缓冲中入库、还没有库存记录的位置
+                    position = new Position((int) (entry.getKey() >> 32), (int) (long) entry.getKey());
+                    position.minStock = DEFAULT_MIN_STOCK;
+                    loaded.put(entry.getKey(), position);
+                }
+                position.quantity += entry.getValue();
+            }
+            int replayed;
+            synchronized (this) {
+                List<Runnable> changes = reloadLog.changes;
+                reloadLog.changes = null;
+                positions.clear();
+                positionsById.clear();
+                heap = new Position[Math.max(64, loaded.size() / 8)];
+                heapSize = 0;
+                for (Position position : loaded.values()) {
+                    positions.put(key(position.productId, position.warehouseId), position);
+                    if (position.inventoryId != null) {
+                        positionsById.put(position.inventoryId, position);
+                    }
+                    if (position.isLow()) {
+                        heapInsert(position);
+                        // 载入时的全部低库存位置作为一批事件发出，监听器据此刷新
+                        enqueueAlert(position, false);
+                    }
+                }
+                for (Runnable change : changes) {
+                    change.run();
+                }
+                replayed = changes.size();
+                ready = true;
+            }
+            int reread = rereadCommitted();
+            logger.info("低库存监控已载入 " + loaded.size() + " 个库存位置，其中低库存 " + heapSize
+                    + " 个，重放载入期间的调整 " + replayed + " 次，重新读取有修改的库存位置 " + reread + " 个");
+            return true;
+        }
+    }
+
+    // 写缓冲中的变化量已读取，由 readWithApplyPaused 在持有写缓冲全部分段锁时调用
+    private synchronized void bufferCaptured() {
+        if (reloadLog != null) {
+            reloadLog.bufferCaptured = true;
+        }
+    }
+
+    // 载入期间记下有已提交修改的库存位置
+    private void markCommitted(int productId, int warehouseId) {
+        if (reloadLog != null) {
+            reloadLog.committed.add(key(productId, warehouseId));
+        }
+    }
+
+    // 按数据库重新读取载入期间有已提交修改的库存位置，然后结束载入；返回重新读取的位置数。
+    // 直到关闭提交闸门前记下的位置都会读取，之后不会再有提交早于读取、通知晚于读取的修改
+    private int rereadCommitted() {
+        int[] reread = new int[1];
+        try {
+            readCurrent((inventoryDao, shard) -> {
+                List<InventoryRow> keys = new ArrayList<>();
+                synchronized (this) {
+                    for (long key : reloadLog.committed) {
+                        int warehouseId = (int) key;
+                        if (ShardRouter.shardOf(warehouseId) == shard) {
+                            InventoryRow row = new InventoryRow();
+                            row.setProductId((int) (key >> 32));
+                            row.setWarehouseId(warehouseId);
+                            keys.add(row);
+                        }
+                    }
+                }
+                List<InventoryRow> current = new ArrayList<>(keys.size());
+                for (int from = 0; from < keys.size(); from += REREAD_BATCH_SIZE) {
+                    current.addAll(inventoryDao.getMonitorQuantitiesByPositions(
+                            keys.subList(from, Math.min(keys.size(), from + REREAD_BATCH_SIZE))));
+                }
+                return current;
+            }, (current, unapplied) -> {
+                Set<Long> committed = reloadLog.committed;
+                reread[0] = committed.size();
+                for (InventoryRow row : current) {
+                    long key = key(row.getProductId(), row.getWarehouseId());
+                    committed.remove(key);
+                    doPut(row.getInventoryId(), row.getProductId(), row.getWarehouseId(),
+                            row.getQuantity() + unapplied.getOrDefault(key, 0), row.getMinStock());
+                }
+                // 数据库中已没有的位置：库存记录已删除，也没有未合并的流水
+                for (long key : committed) {
+                    Position position = positions.get(key);
+                    if (position == null) {
+                        continue;
+                    }
+                    Integer pending = unapplied.get(key);
+                    if (pending == null) {
+                        removePosition(position);
+                    } else {
+                        doPut(null, position.productId, position.warehouseId, pending, position.minStock);
+                    }
+                }
+                reloadLog = null;
+            });
+        } catch (Exception e) {
+            logger.error("低库存监控重新读取载入期间修改过的库存位置失败，这些位置的数量可能有偏差，等待增量同步或下次载入纠正", e);
+            synchronized (this) {
+                reloadLog = null;
+            }
+        }
+        return reread[0];
+    }
+
+    // 一个分片上的当前库存查询（快照 + 未合并的流水尾部）
+    @FunctionalInterface
+    private interface CurrentRead {
+        List<InventoryRow> read(InventoryDao inventoryDao, int shard);
+    }
+
+    // 依次在各分片上读取当前库存，读取写缓冲的同时（持有写缓冲全部分段锁和监控的锁）以读到的行和缓冲中的变化量调用 apply。
+    // 读取时持有提交闸门的写锁，没有已提交但尚未通知监控的修改；apply 时已接受的调整都已通知监控并包含在变化量中，
+    // 读到的数量与监控收到的修改一致。先取得各分片的连接再关闸门，等待闸门的事务占着连接时不会因连接池耗尽互相等待
+    private void readCurrent(CurrentRead read, BiConsumer<List<InventoryRow>, Map<Long, Integer>> apply) throws Exception {
+        int shards = ShardRouter.isEnabled() ? ShardRouter.getShardCount() : 1;
+        List<SqlSession> sessions = new ArrayList<>(shards);
+        try {
+            for (int shard = 0; shard < shards; shard++) {
+                SqlSession sqlSession = MyBatisUtil.getShardSession(shard);
+                sessions.add(sqlSession);
+                sqlSession.getConnection();
+            }
+            List<InventoryRow> current = new ArrayList<>();
+            InventoryWriteBuffer.readWithApplyPaused(() -> {
+                // 在暂停写库之后加锁，与写库线程的加锁顺序（写库锁 → 提交闸门）一致
+                commitGate.writeLock().lock();
+                for (int shard = 0; shard < shards; shard++) {
+                    current.addAll(read.read(sessions.get(shard).getMapper(InventoryDao.class), shard));
+                }
+            }, unapplied -> {
+                synchronized (this) {
+                    apply.accept(current, unapplied);
+                }
+            });
+        } finally {
+            if (commitGate.isWriteLockedByCurrentThread()) {
+                commitGate.writeLock().unlock();
+            }
+            for (SqlSession sqlSession : sessions) {
+                sqlSession.close();
+            }
+        }
+    }
+
+    /**
+     * 提交修改库存的事务并通知监控
+     * 从提交到通知结束之间不会按数据库重新读取数量（载入后的重新读取、增量同步），读到的数量总与已通知的修改一致
+     * @param commit 提交事务，抛出异常时不通知
+     * @param notification 提交后通知监控，在其中调用 put、applyDelta 等方法
+     */
+    public void commit(Runnable commit, Runnable notification) {
+        commitGate.readLock().lock();
+        try {
+            commit.run();
+            notification.run();
+        } finally {
+            commitGate.readLock().unlock();
+        }
+    }
+
+    private static void load(Map<Long, Position> loaded, InventoryRow row) {
+        Position position = new Position(row.getProductId(), row.getWarehouseId());
+        position.inventoryId = row.getInventoryId();
+        position.productName = row.getProductName();
+        position.warehouseName = row.getWarehouseName();
+        position.quantity = row.getQuantity();
+        position.minStock = row.getMinStock();
+        loaded.put(key(position.productId, position.warehouseId), position);
+    }
+
+    /**
+     * 按数据库中的当前库存更新一批库存位置（增量同步拉到其他终端的修改后调用）
+     * 增量同步读到的是库存快照，这里按 reload() 的口径重新读取数量：快照 + 未合并的流水尾部 + 写缓冲中未写库的变化量
+     * @param rows 有修改的库存行，只用到库存ID和仓库ID
+     */
+    public void refresh(List<InventoryRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            readCurrent((inventoryDao, shard) -> {
+                List<Integer> inventoryIds = new ArrayList<>();
+                for (InventoryRow row : rows) {
+                    if (ShardRouter.shardOf(row.getWarehouseId()) == shard) {
+                        inventoryIds.add(row.getInventoryId());
+                    }
+                }
+                return inventoryIds.isEmpty() ? List.of() : inventoryDao.getMonitorQuantities(inventoryIds);
+            }, (current, unapplied) -> {
+                for (InventoryRow row : current) {
+                    int quantity = row.getQuantity() + unapplied.getOrDefault(key(row.getProductId(), row.getWarehouseId()), 0);
+                    put(row.getInventoryId(), row.getProductId(), row.getWarehouseId(), quantity, row.getMinStock());
+                }
+            });
+        } catch (Exception e) {
+            logger.error("低库存监控读取当前库存失败，本次增量同步的修改未反映在监控中", e);
+        }
+    }
+
+    /**
+     * 在后台线程中重新扫描
+     * @return 载入结果的Future
+     */
+    public CompletableFuture<Boolean> reloadAsync() {
+        return AsyncExecutor.supply(this::reload);
+    }
+
+    /**
+     * 以绝对值更新一个库存位置（新增或修改库存记录后调用）
+     * @param inventoryId 库存ID，可为null
+     * @param productId 商品ID
+     * @param warehouseId 仓库ID
+     * @param quantity 数量
+     * @param minStock 最小库存
+     */
+    public synchronized void put(Integer inventoryId, int productId, int warehouseId, int quantity, int minStock) {
+        markCommitted(productId, warehouseId);
+        doPut(inventoryId, productId, warehouseId, quantity, minStock);
+    }
+
+    private void doPut(Integer inventoryId, int productId, int warehouseId, int quantity, int minStock) {
+        Position position = inventoryId != null ? positionsById.get(inventoryId) : null;
+        if (position != null && (position.productId != productId || position.warehouseId != warehouseId)) {
+            // 库存记录换了商品或仓库，旧位置作废
+            removePosition(position);
+            position = null;
+        }
+        if (position == null) {
+            position = positions.computeIfAbsent(key(productId, warehouseId), k -> new Position(productId, warehouseId));
+        }
+        if (inventoryId != null) {
+            position.inventoryId = inventoryId;
+            positionsById.put(inventoryId, position);
+        }
+        boolean wasLow = position.isLow() && position.heapIndex >= 0;
+        position.quantity = quantity;
+        position.minStock = minStock;
+        reposition(position, wasLow);
+    }
+
+    /**
+     * 按增量更新一个库存位置（原子增减库存、记录流水等修改提交到数据库后调用）
+     * 未知位置视为新建的库存记录，最小库存取默认值
+     * @param productId 商品ID
+     * @param warehouseId 仓库ID
+     * @param delta 数量变化量
+     */
+    public synchronized void applyDelta(int productId, int warehouseId, int delta) {
+        markCommitted(productId, warehouseId);
+        doApplyDelta(productId, warehouseId, delta);
+    }
+
+    /**
+     * 按增量更新一个库存位置（写缓冲接受调整时在分段锁内调用，此时尚未写库）
+     * @param productId 商品ID
+     * @param warehouseId 仓库ID
+     * @param delta 数量变化量
+     */
+    synchronized void applyBufferedDelta(int productId, int warehouseId, int delta) {
+        if (reloadLog != null && reloadLog.changes != null && reloadLog.bufferCaptured) {
+            reloadLog.changes.add(() -> doApplyDelta(productId, warehouseId, delta));
+        }
+        doApplyDelta(productId, warehouseId, delta);
+    }
+
+    private void doApplyDelta(int productId, int warehouseId, int delta) {
+        Position position = positions.get(key(productId, warehouseId));
+        if (position == null) {
+            position = new Position(productId, warehouseId);
+            position.minStock = DEFAULT_MIN_STOCK;
+            positions.put(key(productId, warehouseId), position);
+        }
+        boolean wasLow = position.heapIndex >= 0;
+        position.quantity += delta;
+        reposition(position, wasLow);
+    }
+
+    /**
+     * 按库存ID更新数量增量和最小库存（对话框按差额保存后调用）
+     * @param inventoryId 库存ID
+     * @param productId 商品ID
+     * @param warehouseId 仓库ID
+     * @param delta 数量变化量
+     * @param minStock 新的最小库存
+     */
+    public synchronized void applyDeltaById(Integer inventoryId, int productId, int warehouseId, int delta, int minStock) {
+        markCommitted(productId, warehouseId);
+        Position position = positionsById.get(inventoryId);
+        if (position == null) {
+            return;
+        }
+        boolean wasLow = position.heapIndex >= 0;
+        position.quantity += delta;
+        position.minStock = minStock;
+        reposition(position, wasLow);
+    }
+
+    /**
+     * 删除一个库存位置（删除库存记录后调用）
+     * @param inventoryId 库存ID
+     */
+    public synchronized void remove(Integer inventoryId) {
+        if (reloadLog != null && reloadLog.changes != null) {
+            // 删除不会撤销，总是重放：扫描结果中没有该记录时不起作用
+            reloadLog.changes.add(() -> doRemove(inventoryId));
+        }
+        doRemove(inventoryId);
+    }
+
+    private void doRemove(Integer inventoryId) {
+        Position position = positionsById.get(inventoryId);
+        if (position != null) {
+            removePosition(position);
+        }
+    }
+
+    /**
+     * 获取监控中一个库存位置的当前数量
+     * @param productId 商品ID
+     * @param warehouseId 仓库ID
+     * @return 当前数量，未知的库存位置返回null
+     */
+    public synchronized Integer getQuantity(int productId, int warehouseId) {
+        Position position = positions.get(key(productId, warehouseId));
+        return position == null ? null : position.quantity;
+    }
+
+    /**
+     * 获取当前低库存位置数
+     * @return 低库存位置数
+     */
+    public synchronized int getLowStockCount() {
+        return heapSize;
+    }
+
+    /**
+     * 获取最紧缺的前N个低库存位置，按缺货比例从高到低排列
+     * 从堆顶开始按层展开，只访问O(N)个堆节点
+     * @param n 最多返回的条数
+     * @return 低库存位置列表
+     */
+    public synchronized List<Alert> getMostCritical(int n) {
+        List<Alert> result = new ArrayList<>(Math.min(n, heapSize));
+        if (heapSize == 0 || n <= 0) {
+            return result;
+        }
+        PriorityQueue<Integer> frontier = new PriorityQueue<>((a, b) -> compare(heap[a], heap[b]));
+        frontier.add(0);
+        while (!frontier.isEmpty() && result.size() < n) {
+            int index = frontier.poll();
+            result.add(new Alert(heap[index], false));
+            int left = 2 * index + 1;
+            if (left < heapSize) {
+                frontier.add(left);
+            }
+            if (left + 1 < heapSize) {
+                frontier.add(left + 1);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 注册预警监听器，第一个监听器注册时启动事件分发线程
+     * @param listener 监听器
+     */
+    public synchronized void addListener(AlertListener listener) {
+        listeners.add(listener);
+        if (dispatcher == null) {
+            dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "low-stock-alerts");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * 移除预警监听器
+     * @param listener 监听器
+     */
+    public void removeListener(AlertListener listener) {
+        listeners.remove(listener);
+    }
+
+    // 数量或最小库存变化后调整位置在堆中的状态，并在状态变化时登记预警
+    private void reposition(Position position, boolean wasLow) {
+        boolean isLow = position.isLow();
+        if (isLow && wasLow) {
+            heapFix(position.heapIndex);
+        } else if (isLow) {
+            heapInsert(position);
+        } else if (wasLow) {
+            heapRemove(position.heapIndex);
+        }
+        if (isLow || wasLow) {
+            enqueueAlert(position, !isLow);
+        }
+    }
+
+    private void removePosition(Position position) {
+        positions.remove(key(position.productId, position.warehouseId));
+        if (position.inventoryId != null) {
+            positionsById.remove(position.inventoryId);
+        }
+        if (position.heapIndex >= 0) {
+            heapRemove(position.heapIndex);
+        }
+    }
+
+    // 合并窗口内首个事件到达时安排一次分发
+    private void enqueueAlert(Position position, boolean recovered) {
+        if (dispatcher == null) {
+            return;
+        }
+        boolean first;
+        synchronized (pendingAlerts) {
+            first = pendingAlerts.isEmpty();
+            pendingAlerts.put(key(position.productId, position.warehouseId), new Alert(position, recovered));
+        }
+        if (first) {
+            dispatcher.schedule(this::dispatchAlerts, COALESCE_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void dispatchAlerts() {
+        List<Alert> alerts;
+        synchronized (pendingAlerts) {
+            alerts = new ArrayList<>(pendingAlerts.values());
+            pendingAlerts.clear();
+        }
+        for (AlertListener listener : listeners) {
+            try {
+                listener.onAlerts(alerts);
+            } catch (Exception e) {
+                logger.error("低库存预警监听器出错", e);
+            }
+        }
+    }
+
+    // ===============================
+    // 索引堆：Position.heapIndex 记录下标，支持O(log n)的任意位置调整和删除
+    // ===============================
+    private void heapInsert(Position position) {
+        if (heapSize == heap.length) {
+            Position[] larger = new Position[heap.length * 2];
+            System.arraycopy(heap, 0, larger, 0, heapSize);
+            heap = larger;
+        }
+        heap[heapSize] = position;
+        position.heapIndex = heapSize;
+        heapSize++;
+        siftUp(position.heapIndex);
+    }
+
+    private void heapRemove(int index) {
+        Position removed = heap[index];
+        heapSize--;
+        if (index != heapSize) {
+            heap[index] = heap[heapSize];
+            heap[index].heapIndex = index;
+            heap[heapSize] = null;
+            heapFix(index);
+        } else {
+            heap[heapSize] = null;
+        }
+        removed.heapIndex = -1;
+    }
+
+    private void heapFix(int index) {
+        if (!siftUp(index)) {
+            siftDown(index);
+        }
+    }
+
+    private boolean siftUp(int index) {
+        int start = index;
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (compare(heap[index], heap[parent]) >= 0) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+        return index != start;
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= heapSize) {
+                return;
+            }
+            int child = left + 1 < heapSize && compare(heap[left + 1], heap[left]) < 0 ? left + 1 : left;
+            if (compare(heap[child], heap[index]) >= 0) {
+                return;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        Position a = heap[i];
+        heap[i] = heap[j];
+        heap[j] = a;
+        heap[i].heapIndex = i;
+        heap[j].heapIndex = j;
+    }
+
+    // 缺货比例越小越紧缺；比例相同时缺口越大越紧缺
+    private static int compare(Position a, Position b) {
+        int byRatio = Double.compare(a.ratio(), b.ratio());
+        if (byRatio != 0) {
+            return byRatio;
+        }
+        return Integer.compare(b.minStock - b.quantity, a.minStock - a.quantity);
+    }
+
+    private static long key(int productId, int warehouseId) {
+        return ((long) productId << 32) | (warehouseId & 0xFFFFFFFFL);
+    }
+}
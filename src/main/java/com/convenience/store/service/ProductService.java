@@ -2,18 +2,27 @@ package com.convenience.store.service;
 
 import com.convenience.store.dao.ProductDao;
 import com.convenience.store.entity.Product;
+import com.convenience.store.util.AsyncExecutor;
 import com.convenience.store.util.MyBatisUtil;
+import com.convenience.store.util.search.ProductSearchIndex;
+import com.convenience.store.util.shard.ShardRouter;
 import javafx.collections.FXCollections;
 import org.apache.ibatis.session.SqlSession;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 商品服务类 - 处理商品相关的业务逻辑
  * 作为控制器层和数据访问层之间的桥梁，实现商品业务逻辑的封装
  */
 public class ProductService {
+    // 商品名称和类别的内存搜索索引，所有服务实例共享；增删改商品后同步更新
+    private static final ProductSearchIndex searchIndex = new ProductSearchIndex();
+
     /**
      * 根据商品ID获取商品信息
      * 
@@ -36,7 +45,7 @@ public class ProductService {
      * @return List<Product> - 商品列表
      */
     public List<Product> getAllProducts() {
-        try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
+        try (SqlSession sqlSession = MyBatisUtil.getReadSqlSession()) {
             ProductDao productDao = sqlSession.getMapper(ProductDao.class);
             return productDao.getAllProducts();
         } catch (Exception e) {
@@ -45,6 +54,36 @@ public class ProductService {
         }
     }
 
+    /**
+     * 键集分页获取商品信息
+     * 
+     * @param afterId 上一页最后一条记录的商品ID，为null时获取第一页
+     * @param limit 每页记录数
+     * @param params 可选过滤条件，可为null
+     * @return List<Product> - 商品列表
+     */
+    public List<Product> getProductPage(Integer afterId, int limit, Map<String, Object> params) {
+        try (SqlSession sqlSession = MyBatisUtil.getReadSqlSession()) {
+            ProductDao productDao = sqlSession.getMapper(ProductDao.class);
+            return productDao.getProductPage(afterId, limit, params);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return FXCollections.observableArrayList();
+        }
+    }
+
+    /**
+     * 异步键集分页获取商品信息，在后台线程中查询，不阻塞界面线程
+     * 
+     * @param afterId 上一页最后一条记录的商品ID，为null时获取第一页
+     * @param limit 每页记录数
+     * @param params 可选过滤条件，可为null
+     * @return CompletableFuture<List<Product>> - 商品列表的Future
+     */
+    public CompletableFuture<List<Product>> getProductPageAsync(Integer afterId, int limit, Map<String, Object> params) {
+        return AsyncExecutor.supply(() -> getProductPage(afterId, limit, params));
+    }
+
     /**
      * 添加新商品
      * 
@@ -56,6 +95,9 @@ public class ProductService {
             ProductDao productDao = sqlSession.getMapper(ProductDao.class);
             int result = productDao.insertProduct(product);
             sqlSession.commit();
+            if (result > 0) {
+                searchIndex.put(product);
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -74,6 +116,9 @@ public class ProductService {
             ProductDao productDao = sqlSession.getMapper(ProductDao.class);
             int result = productDao.updateProduct(product);
             sqlSession.commit();
+            if (result > 0) {
+                searchIndex.put(product);
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -92,6 +137,13 @@ public class ProductService {
             ProductDao productDao = sqlSession.getMapper(ProductDao.class);
             int result = productDao.deleteProduct(productId);
             sqlSession.commit();
+            if (result > 0) {
+                searchIndex.remove(productId);
+                if (ShardRouter.isEnabled()) {
+                    // 分片库没有外键，商品的库存记录和流水不会级联删除
+                    InventoryShards.deleteProductInventory(productId);
+                }
+            }
             return result > 0;
         } catch (Exception e) {
             e.printStackTrace();
@@ -99,6 +151,15 @@ public class ProductService {
         }
     }
 
+    /**
+     * 在后台线程中删除商品，供界面线程调用
+     * @param productId 商品ID
+     * @return 完成时得到是否删除成功
+     */
+    public CompletableFuture<Boolean> deleteProductAsync(Integer productId) {
+        return AsyncExecutor.supply(() -> deleteProduct(productId));
+    }
+
     /**
      * 根据条件搜索商品
      * 
@@ -106,7 +167,7 @@ public class ProductService {
      * @return List<Product> - 符合条件的商品列表
      */
     public List<Product> searchProducts(Map<String, Object> params) {
-        try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
+        try (SqlSession sqlSession = MyBatisUtil.getReadSqlSession()) {
             ProductDao productDao = sqlSession.getMapper(ProductDao.class);
             return productDao.searchProducts(params);
         } catch (Exception e) {
@@ -114,4 +175,115 @@ public class ProductService {
             return FXCollections.observableArrayList();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 按名称或类别搜索商品，结果按相关度排序，名称和类别都忽略大小写和空白
+     * 搜索索引已构建时在内存中完成子串和模糊匹配；索引尚未构建时回退到数据库，
+     * 子串匹配和排序与索引相同，但没有模糊匹配（不含查询词、只命中部分字符的商品不会返回）
+     * 
+     * @param keyword 搜索关键词
+     * @param limit 最多返回的条数
+     * @return List<Product> - 符合条件的商品列表
+     */
+    public List<Product> searchProductsRanked(String keyword, int limit) {
+        if (searchIndex.isReady()) {
+            return searchIndex.search(keyword, limit);
+        }
+        String normalized = ProductSearchIndex.normalize(keyword);
+        if (normalized.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        try (SqlSession sqlSession = MyBatisUtil.getReadSqlSession()) {
+            ProductDao productDao = sqlSession.getMapper(ProductDao.class);
+            return productDao.searchProductsByKeyword(normalized, limit);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 异步搜索商品，结果按相关度排序
+     * 
+     * @param keyword 搜索关键词
+     * @param limit 最多返回的条数
+     * @return CompletableFuture<List<Product>> - 符合条件的商品列表的Future
+     */
+    public CompletableFuture<List<Product>> searchProductsRankedAsync(String keyword, int limit) {
+        return AsyncExecutor.supply(() -> searchProductsRanked(keyword, limit));
+    }
+
+    /**
+     * 通过搜索索引查找名称包含关键词的商品ID
+     * 
+     * @param productName 商品名称关键词
+     * @param limit 最多返回的ID数
+     * @return List<Integer> - 商品ID列表；索引尚未构建或匹配数超过limit时返回null，调用方应改用数据库模糊查询
+     */
+    public List<Integer> findProductIdsByName(String productName, int limit) {
+        if (!searchIndex.isReady()) {
+            return null;
+        }
+        return searchIndex.findIdsByName(productName, limit);
+    }
+
+    /**
+     * 查找某类别的商品ID
+     * 
+     * @param category 商品类别
+     * @param limit 最多返回的ID数
+     * @return List<Integer> - 按ID升序的商品ID列表，最多limit个
+     */
+    public List<Integer> findProductIdsByCategory(String category, int limit) {
+        try (SqlSession sqlSession = MyBatisUtil.getReadSqlSession()) {
+            ProductDao productDao = sqlSession.getMapper(ProductDao.class);
+            return productDao.findProductIdsByCategory(category, limit);
+        }
+    }
+
+    /**
+     * 搜索索引是否已构建完成
+     * 
+     * @return boolean - 已构建返回true
+     */
+    public boolean isSearchIndexReady() {
+        return searchIndex.isReady();
+    }
+
+    /**
+     * 从数据库加载全部商品重建搜索索引
+     * 启动时调用一次；批量导入商品等绕过本服务的写操作完成后也需要调用。
+     * 重建期间本服务和增量同步对商品的修改会在新索引生效前重放，不会丢失
+     * 
+     * @return boolean - 重建成功返回true，失败返回false（索引保持原状态）
+     */
+    public boolean rebuildSearchIndex() {
+        try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
+            ProductDao productDao = sqlSession.getMapper(ProductDao.class);
+            searchIndex.rebuild(productDao::getAllProducts);
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // 把增量同步得到的其他终端的商品修改和删除应用到搜索索引
+    static void applyRemoteChanges(List<Product> changed, Collection<Integer> deletedIds) {
+        for (Product product : changed) {
+            searchIndex.put(product);
+        }
+        for (Integer productId : deletedIds) {
+            searchIndex.remove(productId);
+        }
+    }
+
+    /**
+     * 在后台线程中重建搜索索引，不阻塞调用线程
+     * 
+     * @return CompletableFuture<Boolean> - 重建结果的Future
+     */
+    public static CompletableFuture<Boolean> rebuildSearchIndexAsync() {
+        return AsyncExecutor.supply(() -> new ProductService().rebuildSearchIndex());
+    }
+}
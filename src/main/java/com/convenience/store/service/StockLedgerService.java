@@ -0,0 +1,309 @@
+package com.convenience.store.service;
+
+import com.convenience.store.dao.InventoryDao;
+import com.convenience.store.dao.StockMovementDao;
+import com.convenience.store.entity.StockAdjustment;
+import com.convenience.store.entity.StockMovement;
+import com.convenience.store.util.MyBatisUtil;
+import com.convenience.store.util.shard.ShardRouter;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 库存流水服务类
+ * 入库类流水（采购入库、调拨入库、盘点增加）只追加到stock_movements，不改写inventory热点行，
+ * 由后台合并任务定期汇总进inventory快照；
+ * 出库类流水需要校验库存充足，在同一事务中立即扣减快照并以"已合并"状态记账；
+ * 快照不够扣时先把该库存位置未合并的尾部合并进快照再校验，刚入库还没合并的数量也可以卖出。
+ * 当前库存 = inventory快照 + 未合并的流水尾部
+ * 库存表格、列表和导出读取的是快照，入库流水最多在一个合并周期后才显示；需要实时数量时用 {@link #getCurrentQuantity}
+ * 启用仓库分片时流水与库存快照在同一分片，按仓库路由；后台合并依次处理每个分片
+ */
+public class StockLedgerService {
+    private static final Logger logger = Logger.getLogger(StockLedgerService.class);
+
+    // 单条INSERT（或按ID标记已合并的UPDATE）语句最多包含的流水行数
+    private static final int APPEND_BATCH_SIZE = 500;
+    // 每次合并最多处理的流水条数，避免单个事务过大
+    private static final int COMPACT_BATCH_SIZE = 10000;
+    // 记账遇到锁等待超时或死锁时最多执行的次数和退避的基准时间
+    private static final int MAX_LOCK_ATTEMPTS = 5;
+    private static final long LOCK_RETRY_BASE_MILLIS = 20;
+
+    // 后台合并任务的调度器，整个应用只有一个
+    private static ScheduledExecutorService compactor;
+
+    /**
+     * 记录一笔采购入库
+     * @param productId 商品ID
+     * @param warehouseId 仓库ID
+     * @param quantity 入库数量
+     * @param operatorId 操作人ID，可为null
+     * @param reference 业务单号，可为null
+     * @return 记录成功返回true，否则返回false
+     */
+    public boolean recordReceipt(Integer productId, Integer warehouseId, int quantity, Integer operatorId, String reference) {
+        StockMovement movement = new StockMovement(productId, warehouseId, StockMovement.TYPE_RECEIPT, Math.abs(quantity));
+        movement.setOperatorId(operatorId);
+        movement.setReference(reference);
+        return recordMovements(List.of(movement));
+    }
+
+    /**
+     * 记录一笔销售出库，库存不足时不记录
+     * @param productId 商品ID
+     * @param warehouseId 仓库ID
+     * @param quantity 销售数量
+     * @param operatorId 操作人ID，可为null
+     * @param reference 业务单号，可为null
+     * @return 记录成功返回true，库存不足或失败返回false
+     */
+    public boolean recordSale(Integer productId, Integer warehouseId, int quantity, Integer operatorId, String reference) {
+        StockMovement movement = new StockMovement(productId, warehouseId, StockMovement.TYPE_SALE, -Math.abs(quantity));
+        movement.setOperatorId(operatorId);
+        movement.setReference(reference);
+        return recordMovements(List.of(movement));
+    }
+
+    /**
+     * 在同一事务中记录一组流水，全部成功才提交
+     * 出库流水（变化量为负）按(商品ID, 仓库ID)顺序立即扣减快照，快照不够时先合并该库存位置的未合并尾部，
+     * 合并后仍不足则整体回滚；遇到锁等待超时或死锁时整个事务回滚后退避重试；
+     * 入库流水只追加，等待后台合并。启用仓库分片时一组流水涉及的仓库必须位于同一分片
+     * @param movements 流水列表
+     * @return 全部记录成功返回true，否则返回false
+     */
+    public boolean recordMovements(List<StockMovement> movements) {
+        if (movements.isEmpty()) {
+            return true;
+        }
+        int shard = ShardRouter.shardOf(movements.get(0).getWarehouseId());
+        for (StockMovement movement : movements) {
+            if (ShardRouter.shardOf(movement.getWarehouseId()) != shard) {
+                logger.warn("一组流水涉及的仓库位于不同分片，不能在同一事务中记录：仓库 "
+                        + movements.get(0).getWarehouseId() + " 与仓库 " + movement.getWarehouseId());
+                return false;
+            }
+        }
+        List<StockMovement> outbound = new ArrayList<>();
+        for (StockMovement movement : movements) {
+            movement.setApplied(movement.getDelta() < 0);
+            if (movement.getDelta() < 0) {
+                outbound.add(movement);
+            }
+        }
+        outbound.sort(Comparator.comparing(StockMovement::getProductId).thenComparing(StockMovement::getWarehouseId));
+
+        for (int attempt = 1; ; attempt++) {
+            try (SqlSession sqlSession = MyBatisUtil.getShardSession(shard)) {
+                InventoryDao inventoryDao = sqlSession.getMapper(InventoryDao.class);
+                StockMovementDao stockMovementDao = sqlSession.getMapper(StockMovementDao.class);
+                for (StockMovement movement : outbound) {
+                    if (!deduct(inventoryDao, stockMovementDao, movement.getProductId(), movement.getWarehouseId(), movement.getDelta())) {
+                        sqlSession.rollback();
+                        return false;
+                    }
+                }
+                appendMovements(stockMovementDao, movements);
+                // 低库存监控跟踪的是当前库存（快照 + 未合并流水），入库在记账时即生效，合并时无需再通知
+                LowStockMonitor.getInstance().commit(sqlSession::commit, () -> {
+                    for (StockMovement movement : movements) {
+                        LowStockMonitor.getInstance().applyDelta(movement.getProductId(), movement.getWarehouseId(), movement.getDelta());
+                    }
+                });
+                return true;
+            } catch (Exception e) {
+                // 追加入库流水时仍可能与后台合并的间隙锁冲突，整个事务已回滚，退避后重试，不当作库存不足
+                if (attempt >= MAX_LOCK_ATTEMPTS || !InventoryService.isLockConflict(e)) {
+                    e.printStackTrace();
+                    return false;
+                }
+                long backoff = LOCK_RETRY_BASE_MILLIS << (attempt - 1);
+                logger.warn("库存流水记账遇到锁冲突，" + backoff + "ms 后第 " + attempt + " 次重试：" + e.getCause());
+                try {
+                    Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * 在调用方的事务中按当前库存（快照 + 未合并尾部）扣减一个库存位置，所有出库都经过这里，对可用库存只有一种口径
+     * 先锁该库存位置的未合并尾部再改快照，与后台合并的加锁顺序（流水 → 快照）一致；
+     * 即使扣减的UPDATE没有匹配到行，REPEATABLE READ下也会锁住快照行。
+     * 快照不够扣时先把尾部合并进快照再扣一次
+     * @param delta 变化量，必须为负数
+     * @return 扣减成功返回true，合并后仍不足返回false（调用方应回滚事务）
+     */
+    static boolean deduct(InventoryDao inventoryDao, StockMovementDao stockMovementDao,
+                          Integer productId, Integer warehouseId, int delta) {
+        List<StockMovement> tail = stockMovementDao.lockPendingMovementsByKey(productId, warehouseId);
+        if (inventoryDao.adjustQuantity(productId, warehouseId, delta) > 0) {
+            return true;
+        }
+        return compactTail(inventoryDao, stockMovementDao, productId, warehouseId, tail) > 0
+                && inventoryDao.adjustQuantity(productId, warehouseId, delta) > 0;
+    }
+
+    // 在调用方的事务中把一个库存位置已锁定的未合并流水合并进快照，返回合并的条数
+    // 未合并的流水都是入库，合并后快照只增不减
+    private static int compactTail(InventoryDao inventoryDao, StockMovementDao stockMovementDao,
+                                   Integer productId, Integer warehouseId, List<StockMovement> tail) {
+        if (tail.isEmpty()) {
+            return 0;
+        }
+        int total = 0;
+        List<Long> ids = new ArrayList<>(tail.size());
+        for (StockMovement movement : tail) {
+            total += movement.getDelta();
+            ids.add(movement.getMovementId());
+        }
+        if (!InventoryService.applyAdjustment(inventoryDao, new StockAdjustment(productId, warehouseId, total))) {
+            return 0;
+        }
+        for (int from = 0; from < ids.size(); from += APPEND_BATCH_SIZE) {
+            stockMovementDao.markApplied(ids.subList(from, Math.min(from + APPEND_BATCH_SIZE, ids.size())));
+        }
+        return tail.size();
+    }
+
+    /**
+     * 查询当前库存数量（快照 + 未合并流水）
+     * @param productId 商品ID
+     * @param warehouseId 仓库ID
+     * @return 当前库存数量，查询失败返回0
+     */
+    public int getCurrentQuantity(Integer productId, Integer warehouseId) {
+        try (SqlSession sqlSession = MyBatisUtil.getShardSession(ShardRouter.shardOf(warehouseId))) {
+            StockMovementDao stockMovementDao = sqlSession.getMapper(StockMovementDao.class);
+            return stockMovementDao.getCurrentQuantity(productId, warehouseId);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * 查询某商品在某仓库最近的流水
+     * @param productId 商品ID
+     * @param warehouseId 仓库ID
+     * @param limit 最多返回的条数
+     * @return 按时间倒序的流水列表
+     */
+    public List<StockMovement> getMovements(Integer productId, Integer warehouseId, int limit) {
+        try (SqlSession sqlSession = MyBatisUtil.getShardSession(ShardRouter.shardOf(warehouseId))) {
+            StockMovementDao stockMovementDao = sqlSession.getMapper(StockMovementDao.class);
+            return stockMovementDao.getMovements(productId, warehouseId, limit);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 执行一次合并：把最早的一批未合并流水按商品仓库汇总后累加到inventory快照，并标记为已合并
+     * 被合并的流水行在事务内加锁，多个客户端同时合并时不会重复累加
+     * @return 本次合并的流水条数，启用仓库分片时为合并最多的那个分片的条数
+     */
+    public int compactOnce() {
+        int applied = 0;
+        for (int shard = 0; shard < ShardRouter.getShardCount(); shard++) {
+            applied = Math.max(applied, compactOnce(shard));
+        }
+        return applied;
+    }
+
+    // 合并一个分片上最早的一批未合并流水，返回合并的条数
+    private int compactOnce(int shard) {
+        try (SqlSession sqlSession = MyBatisUtil.getShardSession(shard)) {
+            StockMovementDao stockMovementDao = sqlSession.getMapper(StockMovementDao.class);
+            List<StockMovement> pending = stockMovementDao.lockPendingMovements(COMPACT_BATCH_SIZE);
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            // 只合并并标记本次锁定的流水，锁定之后才提交的流水留待下次
+            List<StockAdjustment> movements = new ArrayList<>(pending.size());
+            List<Long> ids = new ArrayList<>(pending.size());
+            for (StockMovement movement : pending) {
+                movements.add(new StockAdjustment(movement.getProductId(), movement.getWarehouseId(), movement.getDelta()));
+                ids.add(movement.getMovementId());
+            }
+
+            List<StockAdjustment> totals = InventoryService.mergeAdjustments(movements);
+            InventoryDao inventoryDao = sqlSession.getMapper(InventoryDao.class);
+            for (StockAdjustment total : totals) {
+                if (!InventoryService.applyAdjustment(inventoryDao, total)) {
+                    // 未合并的流水都是入库，不应出现扣减失败；保险起见整批回滚留待下次
+                    sqlSession.rollback();
+                    logger.warn("库存流水合并失败，商品 " + total.getProductId() + " 仓库 " + total.getWarehouseId()
+                            + " 汇总变化量 " + total.getDelta() + " 会使库存为负");
+                    return 0;
+                }
+            }
+            int applied = 0;
+            for (int from = 0; from < ids.size(); from += APPEND_BATCH_SIZE) {
+                applied += stockMovementDao.markApplied(ids.subList(from, Math.min(from + APPEND_BATCH_SIZE, ids.size())));
+            }
+            sqlSession.commit();
+            return applied;
+        }
+    }
+
+    /**
+     * 启动后台合并任务，重复调用不会启动多个
+     * @param intervalSeconds 合并间隔（秒）
+     */
+    public static synchronized void startCompactor(long intervalSeconds) {
+        if (compactor != null) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stock-ledger-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        StockLedgerService service = new StockLedgerService();
+        compactor.scheduleWithFixedDelay(() -> {
+            try {
+                // 积压较多时连续合并，直到本轮不足一整批
+                while (service.compactOnce() >= COMPACT_BATCH_SIZE) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                }
+            } catch (Exception e) {
+                // 异常不能抛出调度器，否则后续周期不再执行
+                logger.error("库存流水合并出错", e);
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 停止后台合并任务，未合并的流水保留在表中，下次启动后继续合并
+     */
+    public static synchronized void stopCompactor() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+            compactor = null;
+        }
+    }
+
+    // 分批追加流水，每批一条多行INSERT
+    static void appendMovements(StockMovementDao stockMovementDao, List<StockMovement> movements) {
+        for (int from = 0; from < movements.size(); from += APPEND_BATCH_SIZE) {
+            stockMovementDao.insertMovementBatch(movements.subList(from, Math.min(from + APPEND_BATCH_SIZE, movements.size())));
+        }
+    }
+}
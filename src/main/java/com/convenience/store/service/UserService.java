@@ -2,12 +2,15 @@ package com.convenience.store.service;
 
 import com.convenience.store.dao.UserDao;
 import com.convenience.store.entity.User;
+import com.convenience.store.util.AsyncExecutor;
 import com.convenience.store.util.MyBatisUtil;
 import javafx.collections.FXCollections;
 import org.apache.ibatis.session.SqlSession;
+import org.apache.log4j.Logger;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 用户服务类 - 处理用户相关的业务逻辑
@@ -15,6 +18,8 @@ import java.util.Map;
  * 主要提供用户的CRUD操作、登录验证等核心功能
  */
 public class UserService {
+    private static final Logger logger = Logger.getLogger(UserService.class);
+
     /**
      * 根据用户ID获取用户信息
      * 
@@ -43,17 +48,11 @@ public class UserService {
      * @return 用户对象，如果不存在则返回null
      */
     public User getUserByUsername(String username) {
-        System.out.println("[DEBUG] Getting user by username: " + username);
         // 使用try-with-resources自动管理SqlSession资源
         try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
-            System.out.println("[DEBUG] SqlSession created");
             UserDao userDao = sqlSession.getMapper(UserDao.class);
-            System.out.println("[DEBUG] UserDao obtained");
-            User user = userDao.getUserByUsername(username);
-            System.out.println("[DEBUG] getUserByUsername returned: " + user);
-            return user;
+            return userDao.getUserByUsername(username);
         } catch (Exception e) {
-            System.out.println("[DEBUG] Exception in getUserByUsername: " + e.getMessage());
             e.printStackTrace();
             return null;
         }
@@ -66,7 +65,7 @@ public class UserService {
      */
     public List<User> getAllUsers() {
         // 使用try-with-resources自动管理SqlSession资源
-        try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
+        try (SqlSession sqlSession = MyBatisUtil.getReadSqlSession()) {
             UserDao userDao = sqlSession.getMapper(UserDao.class);
             // 调用数据访问层方法获取所有用户信息
             return userDao.getAllUsers();
@@ -77,6 +76,36 @@ public class UserService {
         }
     }
 
+    /**
+     * 键集分页获取用户信息
+     * 
+     * @param afterId 上一页最后一条记录的用户ID，为null时获取第一页
+     * @param limit 每页记录数
+     * @param params 可选过滤条件，可为null
+     * @return 用户列表，如果发生异常则返回空列表
+     */
+    public List<User> getUserPage(Integer afterId, int limit, Map<String, Object> params) {
+        try (SqlSession sqlSession = MyBatisUtil.getReadSqlSession()) {
+            UserDao userDao = sqlSession.getMapper(UserDao.class);
+            return userDao.getUserPage(afterId, limit, params);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return FXCollections.observableArrayList();
+        }
+    }
+
+    /**
+     * 异步键集分页获取用户信息，在后台线程中查询，不阻塞界面线程
+     * 
+     * @param afterId 上一页最后一条记录的用户ID，为null时获取第一页
+     * @param limit 每页记录数
+     * @param params 可选过滤条件，可为null
+     * @return 用户列表的Future
+     */
+    public CompletableFuture<List<User>> getUserPageAsync(Integer afterId, int limit, Map<String, Object> params) {
+        return AsyncExecutor.supply(() -> getUserPage(afterId, limit, params));
+    }
+
     /**
      * 添加新用户
      * 
@@ -144,6 +173,15 @@ public class UserService {
         }
     }
 
+    /**
+     * 在后台线程中删除用户，供界面线程调用
+     * @param userId 用户ID
+     * @return 完成时得到是否删除成功
+     */
+    public CompletableFuture<Boolean> deleteUserAsync(Integer userId) {
+        return AsyncExecutor.supply(() -> deleteUser(userId));
+    }
+
     /**
      * 批量删除用户
      * 
@@ -166,6 +204,15 @@ public class UserService {
         }
     }
 
+    /**
+     * 在后台线程中批量删除用户，供界面线程调用
+     * @param userIds 用户ID列表
+     * @return 完成时得到是否删除成功
+     */
+    public CompletableFuture<Boolean> batchDeleteUsersAsync(List<Integer> userIds) {
+        return AsyncExecutor.supply(() -> batchDeleteUsers(userIds));
+    }
+
     /**
      * 根据条件搜索用户
      * 
@@ -174,7 +221,7 @@ public class UserService {
      */
     public List<User> searchUsers(Map<String, Object> params) {
         // 使用try-with-resources自动管理SqlSession资源
-        try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
+        try (SqlSession sqlSession = MyBatisUtil.getReadSqlSession()) {
             UserDao userDao = sqlSession.getMapper(UserDao.class);
             // 调用数据访问层方法根据条件搜索用户
             return userDao.searchUsers(params);
@@ -191,26 +238,13 @@ public class UserService {
      * @return true if database connection is successful, false otherwise
      */
     public boolean testDatabaseConnection() {
-        System.out.println("[DEBUG] Testing database connection...");
-        
         try (SqlSession sqlSession = MyBatisUtil.getSqlSession()) {
-            System.out.println("[DEBUG] SqlSession obtained successfully");
-            
-            // Test
             UserDao userDao = sqlSession.getMapper(UserDao.class);
             List<User> allUsers = userDao.getAllUsers();
-            
-            System.out.println("[DEBUG] All users count: " + (allUsers != null ? allUsers.size() : "null"));
-            if (allUsers != null) {
-                for (User user : allUsers) {
-                    System.out.println("[DEBUG] User: " + user.getUsername() + ", Password: " + user.getPassword() + ", Status: " + user.getStatus());
-                }
-            }
-            
+            logger.debug("数据库连接正常，用户数 " + allUsers.size());
             return true;
         } catch (Exception e) {
-            System.out.println("[DEBUG] Database connection test failed: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("数据库连接测试失败", e);
             return false;
         }
     }
@@ -223,26 +257,21 @@ public class UserService {
      * @return 登录成功返回true，否则返回false
      */
     public boolean login(String username, String password) {
-        System.out.println("[DEBUG] Login attempt for username: " + username);
-        
         // 根据用户名获取用户信息
         User user = getUserByUsername(username);
         
-        System.out.println("[DEBUG] User found: " + user);
-        
         if (user == null) {
-            System.out.println("[DEBUG] User not found");
+            logger.debug("登录失败，用户不存在：" + username);
             return false;
         }
         
-        System.out.println("[DEBUG] User password: " + user.getPassword());
-        System.out.println("[DEBUG] User status: " + user.getStatus());
-        
         boolean passwordMatch = user.getPassword().equals(password);
         boolean statusActive = "active".equals(user.getStatus());
         
-        System.out.println("[DEBUG] Password match: " + passwordMatch);
-        System.out.println("[DEBUG] Status active: " + statusActive);
+        // 不记录密码本身
+        if (logger.isDebugEnabled()) {
+            logger.debug("登录校验 " + username + "：密码" + (passwordMatch ? "正确" : "错误") + "，状态 " + user.getStatus());
+        }
         
         // 执行完整的登录验证逻辑：
         // 1. 验证用户是否存在（user != null）
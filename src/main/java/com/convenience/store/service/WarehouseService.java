@@ -0,0 +1,39 @@
+package com.convenience.store.service;
+
+import com.convenience.store.dao.WarehouseDao;
+import com.convenience.store.entity.Warehouse;
+import com.convenience.store.util.AsyncExecutor;
+import com.convenience.store.util.MyBatisUtil;
+import org.apache.ibatis.session.SqlSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 仓库服务类
+ * 处理仓库相关的业务逻辑，连接DAO层和控制器层
+ */
+public class WarehouseService {
+    /**
+     * 获取所有仓库信息
+     * @return 仓库实体对象列表，查询失败时返回空列表
+     */
+    public List<Warehouse> getAllWarehouses() {
+        try (SqlSession sqlSession = MyBatisUtil.getReadSqlSession()) {
+            WarehouseDao warehouseDao = sqlSession.getMapper(WarehouseDao.class);
+            return warehouseDao.getAllWarehouses();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 异步获取所有仓库信息
+     * @return 仓库实体对象列表的Future
+     */
+    public CompletableFuture<List<Warehouse>> getAllWarehousesAsync() {
+        return AsyncExecutor.supply(this::getAllWarehouses);
+    }
+}
@@ -0,0 +1,89 @@
+package com.convenience.store.util;
+
+import org.apache.log4j.Logger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 异步执行工具类 - 服务层异步方法的统一执行器
+ * 运行在 JDK 21 及以上时使用虚拟线程（每个任务一个虚拟线程，阻塞在JDBC调用上不占用平台线程），
+ * 项目按 JDK 17 编译，因此通过反射获取虚拟线程执行器；更低版本回退到守护线程池。
+ * 并发访问数据库的任务数仍受连接池最大连接数限制。
+ */
+public class AsyncExecutor {
+    private static final Logger logger = Logger.getLogger(AsyncExecutor.class);
+
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    private AsyncExecutor() {
+    }
+
+    /**
+     * 在后台线程中执行一个有返回值的任务
+     * @param task 任务，通常是一次阻塞的服务层调用
+     * @param <T> 返回值类型
+     * @return 任务结果的Future；任务抛出的异常通过Future的异常完成传递
+     */
+    public static <T> CompletableFuture<T> supply(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, EXECUTOR);
+    }
+
+    /**
+     * 在后台线程中执行一个无返回值的任务
+     * @param task 任务
+     * @return 任务完成的Future
+     */
+    public static CompletableFuture<Void> run(Runnable task) {
+        return CompletableFuture.runAsync(task, EXECUTOR);
+    }
+
+    /**
+     * 创建每个任务一个线程的执行器：JDK 21 及以上使用虚拟线程，否则回退到固定大小的守护线程池
+     * 用于请求处理等需要限制平台线程数的场景
+     * @param threadName 回退线程池的线程名前缀
+     * @param fallbackThreads 回退线程池的线程数
+     * @return 执行器
+     */
+    public static ExecutorService newPerTaskExecutor(String threadName, int fallbackThreads) {
+        ExecutorService executor = newVirtualThreadExecutor();
+        if (executor != null) {
+            return executor;
+        }
+        return Executors.newFixedThreadPool(fallbackThreads, daemonThreadFactory(threadName));
+    }
+
+    private static ExecutorService createExecutor() {
+        ExecutorService executor = newVirtualThreadExecutor();
+        if (executor != null) {
+            logger.info("异步服务使用虚拟线程执行器");
+            return executor;
+        }
+        // JDK 21 以下没有虚拟线程，使用按需创建、空闲回收的守护线程池
+        return Executors.newCachedThreadPool(daemonThreadFactory("async-service"));
+    }
+
+    // 通过反射获取虚拟线程执行器，JDK 21 以下返回null
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory(String threadName) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, threadName + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,143 @@
+package com.convenience.store.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁延迟直方图 - 以微秒为单位记录耗时分布
+ * 采用"2的幂分段 + 段内线性细分"的桶布局，记录操作只有几次原子自增，不产生对象分配，
+ * 相对误差约为 1/SUB_BUCKETS，足够用于 p50/p99 这类运行期指标
+ */
+public class LatencyHistogram {
+    // 每个2的幂分段内的线性子桶数量（必须是2的幂）
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // 分段数量，最大可表示约 2^40 微秒，超出的值归入最后一个桶
+    private static final int SEGMENTS = 40;
+    private static final int BUCKET_COUNT = SEGMENTS * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时（纳秒）
+     */
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1_000);
+        buckets.incrementAndGet(bucketIndex(micros));
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+        long currentMax;
+        while (micros > (currentMax = max.get())) {
+            if (max.compareAndSet(currentMax, micros)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 获取记录次数
+     *
+     * @return 记录次数
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * 获取最大耗时（微秒）
+     *
+     * @return 最大耗时
+     */
+    public long getMaxMicros() {
+        return max.get();
+    }
+
+    /**
+     * 获取累计耗时（微秒）
+     *
+     * @return 累计耗时
+     */
+    public long getTotalMicros() {
+        return sum.get();
+    }
+
+    /**
+     * 获取平均耗时（微秒）
+     *
+     * @return 平均耗时，没有记录时返回0
+     */
+    public double getMeanMicros() {
+        long c = count.get();
+        return c == 0 ? 0 : (double) sum.get() / c;
+    }
+
+    /**
+     * 获取指定百分位的耗时（微秒），返回所在桶的上界
+     *
+     * @param percentile 百分位，取值 0~100
+     * @return 对应百分位的耗时
+     */
+    public long getPercentileMicros(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= Math.max(target, 1)) {
+                return Math.min(bucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.1fus, p50=%dus, p99=%dus, max=%dus",
+                getCount(), getMeanMicros(), getPercentileMicros(50), getPercentileMicros(99), getMaxMicros());
+    }
+
+    // 计算数值所在的桶下标：小于SUB_BUCKETS的值直接落在第0段，其余按最高位所在段再线性细分
+    private static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(micros);
+        int segment = highestBit - SUB_BUCKET_BITS + 1;
+        if (segment >= SEGMENTS) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (micros >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return segment * SUB_BUCKETS + subBucket;
+    }
+
+    // 计算桶的上界（微秒）
+    private static long bucketUpperBound(int index) {
+        int segment = index / SUB_BUCKETS;
+        int subBucket = index % SUB_BUCKETS;
+        if (segment == 0) {
+            return subBucket;
+        }
+        int shift = segment - 1;
+        return (((long) (SUB_BUCKETS + subBucket + 1)) << shift) - 1;
+    }
+}
@@ -1,24 +1,79 @@
 package com.convenience.store.util;
 
+import com.convenience.store.util.pool.PoolMetrics;
+import com.convenience.store.util.pool.StoreDataSourceFactory;
+import com.convenience.store.util.pool.StorePooledDataSource;
+import com.convenience.store.util.replica.ReplicaRouter;
+import com.convenience.store.util.shard.ShardRouter;
 import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
 
+import javax.sql.DataSource;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * MyBatis工具类 - 负责管理SqlSessionFactory和SqlSession的创建与关闭
  * 提供了数据库连接的核心功能，采用单例模式确保SqlSessionFactory的唯一性
+ * SqlSessionFactory 的构建（解析全部映射文件）较慢，可在启动时调用 initializeAsync() 提前在后台构建；
+ * 未提前构建时在第一次使用时构建，构建完成前的调用会等待
+ * 配置了 replica.url 时另外创建只读副本的连接池，getReadSqlSession() 按副本延迟和读己之写决定读副本还是主库；
+ * 存在 shards.properties 且配置了 shard.count 时按仓库分片库存相关的表，getShardSession() 打开指定分片的会话
  */
 public class MyBatisUtil {
     // SqlSessionFactory实例，用于创建SqlSession对象
-    // 采用静态成员变量确保在应用程序生命周期内只创建一次
-    private static SqlSessionFactory sqlSessionFactory;
+    // 在应用程序生命周期内只创建一次，构建完成后才赋值
+    private static volatile SqlSessionFactory sqlSessionFactory;
 
-    // 静态初始化块 - 在类加载时执行，用于初始化SqlSessionFactory
-    static {
+    // 正在进行或已完成的构建任务
+    private static CompletableFuture<SqlSessionFactory> initialization;
+
+    // 副本连接获取的默认等待时间（毫秒），副本繁忙时应尽快回退主库而不是长时间等待
+    private static final String DEFAULT_REPLICA_CONNECTION_TIMEOUT = "1000";
+    // 默认允许的最大复制延迟（毫秒）
+    private static final long DEFAULT_REPLICA_MAX_LAG_MILLIS = 2000;
+    // 默认的副本心跳间隔（毫秒）
+    private static final long DEFAULT_REPLICA_HEARTBEAT_MILLIS = 500;
+
+    // 分片映射配置文件，与 database.properties 放在一起
+    private static final String SHARD_RESOURCE = "shards.properties";
+
+    /**
+     * 在后台线程中构建SqlSessionFactory，重复调用返回同一个任务
+     *
+     * @return 构建任务，构建失败时异常完成
+     */
+    public static synchronized CompletableFuture<SqlSessionFactory> initializeAsync() {
+        if (initialization == null) {
+            initialization = StartupTimeline.track("MyBatis配置解析", AsyncExecutor.supply(MyBatisUtil::buildSqlSessionFactory));
+        }
+        return initialization;
+    }
+
+    // 获取SqlSessionFactory，尚未构建完成时等待
+    private static SqlSessionFactory factory() {
+        SqlSessionFactory factory = sqlSessionFactory;
+        if (factory != null) {
+            return factory;
+        }
+        try {
+            return initializeAsync().join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("MyBatis初始化失败", e.getCause());
+        }
+    }
+
+    private static SqlSessionFactory buildSqlSessionFactory() {
         try {
             // MyBatis配置文件的路径
             String resource = "mybatis-config.xml";
@@ -26,8 +81,15 @@ public class MyBatisUtil {
             // 通过Resources类加载配置文件，获取输入流
             InputStream inputStream = Resources.getResourceAsStream(resource);
             
+            // 数据库环境，默认使用配置文件中的default环境，可通过 -Dmybatis.environment 切换
+            String environment = System.getProperty("mybatis.environment");
+            
             // 使用SqlSessionFactoryBuilder创建SqlSessionFactory实例
-            sqlSessionFactory = new SqlSessionFactoryBuilder().build(inputStream);
+            SqlSessionFactory factory = new SqlSessionFactoryBuilder().build(inputStream, environment, overrideProperties());
+            startReplica(factory);
+            startShards(factory);
+            sqlSessionFactory = factory;
+            return factory;
         } catch (IOException e) {
             // 打印异常信息
             e.printStackTrace();
@@ -36,6 +98,14 @@ public class MyBatisUtil {
         }
     }
 
+    /**
+     * 等待SqlSessionFactory构建完成（含只读副本和库存分片的配置），尚未开始构建时立即构建
+     * 在打开会话之前就需要读取分片配置的地方调用
+     */
+    public static void ensureInitialized() {
+        factory();
+    }
+
     /**
      * 获取SqlSession对象
      * SqlSession是MyBatis与数据库交互的主要接口
@@ -45,7 +115,80 @@ public class MyBatisUtil {
     public static SqlSession getSqlSession() {
         // 调用SqlSessionFactory的openSession方法创建SqlSession
         // 默认情况下，SqlSession不会自动提交事务
-        return sqlSessionFactory.openSession();
+        return factory().openSession();
+    }
+
+    /**
+     * 获取只读操作使用的SqlSession对象
+     * 配置了只读副本且副本可用、复制延迟不超过 replica.maxLagMillis、已包含本进程最近一次写入时连接副本，
+     * 否则与 getSqlSession() 相同连接主库。只用于不修改数据、能接受副本短暂落后的查询，
+     * 修改前读取待修改数据、同步水位线等必须读到最新数据的查询仍使用 getSqlSession()
+     *
+     * @return SqlSession对象
+     */
+    public static SqlSession getReadSqlSession() {
+        SqlSessionFactory factory = factory();
+        SqlSession session = ReplicaRouter.openReadSession(factory);
+        return session != null ? session : factory.openSession();
+    }
+
+    /**
+     * 获取指定执行器类型的SqlSession对象
+     * ExecutorType.BATCH 会把同一语句的多次执行合并为JDBC批处理，适合批量导入
+     * 
+     * @param executorType 执行器类型
+     * @return SqlSession对象
+     */
+    public static SqlSession getSqlSession(ExecutorType executorType) {
+        return factory().openSession(executorType);
+    }
+
+    /**
+     * 获取库存分片的SqlSession对象
+     * 未启用分片时与 getSqlSession() 相同；分片序号由 ShardRouter.shardOf(仓库ID) 得到
+     *
+     * @param shard 分片序号
+     * @return SqlSession对象
+     */
+    public static SqlSession getShardSession(int shard) {
+        return getShardSession(shard, ExecutorType.SIMPLE);
+    }
+
+    /**
+     * 获取库存分片指定执行器类型的SqlSession对象
+     *
+     * @param shard 分片序号
+     * @param executorType 执行器类型
+     * @return SqlSession对象
+     */
+    public static SqlSession getShardSession(int shard, ExecutorType executorType) {
+        SqlSessionFactory factory = factory();
+        if (!ShardRouter.isEnabled()) {
+            return factory.openSession(executorType);
+        }
+        return ShardRouter.openSession(shard, executorType);
+    }
+
+    /**
+     * 获取当前环境使用的数据源
+     *
+     * @return 数据源对象
+     */
+    public static DataSource getDataSource() {
+        return factory().getConfiguration().getEnvironment().getDataSource();
+    }
+
+    /**
+     * 获取连接池的实时指标
+     *
+     * @return 连接池指标快照，当前环境未使用自定义连接池时返回null
+     */
+    public static PoolMetrics getPoolMetrics() {
+        DataSource dataSource = getDataSource();
+        if (dataSource instanceof StorePooledDataSource) {
+            return ((StorePooledDataSource) dataSource).getMetrics();
+        }
+        return null;
     }
 
     /**
@@ -61,4 +204,98 @@ public class MyBatisUtil {
             sqlSession.close();
         }
     }
+
+    // 配置了 replica.url 时创建副本连接池并启动副本心跳
+    // 副本连接池的参数默认与主库相同，replica. 开头的同名配置（如 replica.username、replica.maxPoolSize）单独覆盖
+    private static void startReplica(SqlSessionFactory factory) {
+        Properties variables = factory.getConfiguration().getVariables();
+        String url = variables.getProperty("replica.url");
+        if (url == null || url.isBlank()) {
+            return;
+        }
+        Properties overrides = new Properties();
+        overrides.setProperty("connectionTimeout", DEFAULT_REPLICA_CONNECTION_TIMEOUT);
+        for (String name : variables.stringPropertyNames()) {
+            if (name.startsWith("replica.") && !name.equals("replica.maxLagMillis") && !name.equals("replica.heartbeatInterval")) {
+                overrides.setProperty(name.substring("replica.".length()), variables.getProperty(name));
+            }
+        }
+        ReplicaRouter.start(createDataSource(variables, overrides), factory,
+                Long.parseLong(variables.getProperty("replica.maxLagMillis", String.valueOf(DEFAULT_REPLICA_MAX_LAG_MILLIS))),
+                Long.parseLong(variables.getProperty("replica.heartbeatInterval", String.valueOf(DEFAULT_REPLICA_HEARTBEAT_MILLIS))));
+    }
+
+    // 读取 shards.properties（以 shard. 开头的系统属性覆盖其中的同名配置），配置了 shard.count 时创建各分片的连接池
+    // shard.N.url 为空的分片就是主库；shard.N. 开头的其余配置单独覆盖该分片的连接池参数，默认与主库相同；
+    // shard.warehouse.仓库ID=N 单独指定仓库所在的分片
+    private static void startShards(SqlSessionFactory factory) {
+        Properties config = new Properties();
+        try {
+            config.putAll(Resources.getResourceAsProperties(SHARD_RESOURCE));
+        } catch (IOException e) {
+            // 没有分片配置文件，仍可通过系统属性配置
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("shard.")) {
+                config.setProperty(name, System.getProperty(name));
+            }
+        }
+        String count = config.getProperty("shard.count");
+        if (count == null || count.isBlank()) {
+            return;
+        }
+        Properties variables = factory.getConfiguration().getVariables();
+        List<DataSource> dataSources = new ArrayList<>();
+        for (int shard = 0; shard < Integer.parseInt(count.trim()); shard++) {
+            String prefix = "shard." + shard + ".";
+            String url = config.getProperty(prefix + "url");
+            if (url == null || url.isBlank()) {
+                dataSources.add(null);
+                continue;
+            }
+            Properties overrides = new Properties();
+            for (String name : config.stringPropertyNames()) {
+                if (name.startsWith(prefix)) {
+                    overrides.setProperty(name.substring(prefix.length()), config.getProperty(name));
+                }
+            }
+            dataSources.add(createDataSource(variables, overrides));
+        }
+        Map<Integer, Integer> placements = new HashMap<>();
+        for (String name : config.stringPropertyNames()) {
+            if (name.startsWith("shard.warehouse.")) {
+                placements.put(Integer.parseInt(name.substring("shard.warehouse.".length())),
+                        Integer.parseInt(config.getProperty(name).trim()));
+            }
+        }
+        ShardRouter.start(factory, dataSources, placements);
+    }
+
+    // 创建一个连接池：参数默认与主库（jdbc.*、pool.*）相同，overrides 中的同名参数覆盖
+    private static DataSource createDataSource(Properties variables, Properties overrides) {
+        Properties props = new Properties();
+        for (String name : variables.stringPropertyNames()) {
+            if (name.startsWith("pool.")) {
+                props.setProperty(name.substring("pool.".length()), variables.getProperty(name));
+            }
+        }
+        props.setProperty("driver", variables.getProperty("jdbc.driver"));
+        props.setProperty("username", variables.getProperty("jdbc.username"));
+        props.setProperty("password", variables.getProperty("jdbc.password"));
+        props.putAll(overrides);
+        StoreDataSourceFactory dataSourceFactory = new StoreDataSourceFactory();
+        dataSourceFactory.setProperties(props);
+        return dataSourceFactory.getDataSource();
+    }
+
+    // 收集以 jdbc.、pool. 或 replica. 开头的系统属性，覆盖 database.properties 中的同名配置
+    private static Properties overrideProperties() {
+        Properties overrides = new Properties();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("jdbc.") || name.startsWith("pool.") || name.startsWith("replica.")) {
+                overrides.setProperty(name, System.getProperty(name));
+            }
+        }
+        return overrides;
+    }
 }
\ No newline at end of file
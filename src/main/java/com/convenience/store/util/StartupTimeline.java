@@ -0,0 +1,120 @@
+package com.convenience.store.util;
+
+import org.apache.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 启动时间线 - 记录应用启动各阶段的开始时间和耗时，启动完成后输出到日志
+ * 各阶段可以并行执行，时间均相对于JVM启动时刻（毫秒），便于跟踪启动耗时的回归
+ * 用法：
+ * <pre>
+ * StartupTimeline.Phase phase = StartupTimeline.begin("MyBatis配置解析");
+ * ...
+ * phase.end();
+ * </pre>
+ */
+public class StartupTimeline {
+    private static final Logger logger = Logger.getLogger(StartupTimeline.class);
+
+    // JVM启动时刻（毫秒时间戳）
+    private static final long ORIGIN = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    private static final List<Phase> phases = new ArrayList<>();
+    private static boolean reported;
+
+    private StartupTimeline() {
+    }
+
+    /**
+     * 启动阶段
+     */
+    public static final class Phase {
+        private final String name;
+        private final String thread;
+        private final long startMillis;
+        private long endMillis = -1;
+
+        private Phase(String name) {
+            this.name = name;
+            this.thread = Thread.currentThread().getName();
+            this.startMillis = System.currentTimeMillis();
+        }
+
+        /**
+         * 结束该阶段，重复调用以第一次为准
+         */
+        public void end() {
+            synchronized (phases) {
+                if (endMillis < 0) {
+                    endMillis = System.currentTimeMillis();
+                }
+            }
+        }
+    }
+
+    /**
+     * 开始一个启动阶段；时间线已输出后返回的阶段不再记录
+     * @param name 阶段名称
+     * @return 阶段对象，完成时调用 end()
+     */
+    public static Phase begin(String name) {
+        Phase phase = new Phase(name);
+        synchronized (phases) {
+            if (!reported) {
+                phases.add(phase);
+            }
+        }
+        return phase;
+    }
+
+    /**
+     * 把一个异步任务记录为启动阶段：从现在开始，到任务完成（无论成败）结束
+     * @param name 阶段名称
+     * @param future 异步任务
+     * @param <T> 任务结果类型
+     * @return 传入的任务本身，便于链式调用
+     */
+    public static <T> CompletableFuture<T> track(String name, CompletableFuture<T> future) {
+        Phase phase = begin(name);
+        future.whenComplete((result, error) -> phase.end());
+        return future;
+    }
+
+    /**
+     * 在全部给定任务完成后输出时间线，只输出一次
+     * @param futures 需要等待的启动任务
+     */
+    public static void reportWhenComplete(CompletableFuture<?>... futures) {
+        CompletableFuture.allOf(futures).whenComplete((result, error) -> report());
+    }
+
+    /**
+     * 立即输出时间线，只输出一次；尚未结束的阶段标记为"未完成"
+     */
+    public static void report() {
+        List<Phase> snapshot;
+        synchronized (phases) {
+            if (reported) {
+                return;
+            }
+            reported = true;
+            snapshot = new ArrayList<>(phases);
+        }
+        snapshot.sort(Comparator.comparingLong(p -> p.startMillis));
+        long total = 0;
+        StringBuilder sb = new StringBuilder("启动时间线（相对JVM启动，单位ms）:");
+        sb.append(String.format("%n  %8s %8s  %-24s %s", "开始", "耗时", "阶段", "线程"));
+        for (Phase phase : snapshot) {
+            String duration = phase.endMillis < 0 ? "未完成" : String.valueOf(phase.endMillis - phase.startMillis);
+            sb.append(String.format("%n  %8d %8s  %-24s %s", phase.startMillis - ORIGIN, duration, phase.name, phase.thread));
+            total = Math.max(total, phase.endMillis - ORIGIN);
+        }
+        sb.append(String.format("%n  启动完成于 %dms", total));
+        logger.info(sb.toString());
+    }
+}
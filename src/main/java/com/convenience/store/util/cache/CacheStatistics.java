@@ -0,0 +1,104 @@
+package com.convenience.store.util.cache;
+
+/**
+ * 二级缓存统计信息快照
+ */
+public class CacheStatistics {
+    // 缓存所属的命名空间
+    private final String namespace;
+    // 当前条目数
+    private final int size;
+    // 最大条目数
+    private final int capacity;
+    // 当前条目的序列化字节数合计
+    private final long bytes;
+    // 序列化字节数上限
+    private final long maxBytes;
+    // 命中次数
+    private final long hits;
+    // 未命中次数
+    private final long misses;
+    // 因容量不足被淘汰的条目数
+    private final long evictions;
+    // 因过期被移除的条目数
+    private final long expirations;
+    // 因写操作（含级联）被清空的次数
+    private final long invalidations;
+    // 结果过大而没有缓存的次数
+    private final long oversized;
+
+    CacheStatistics(String namespace, int size, int capacity, long bytes, long maxBytes, long hits, long misses,
+                    long evictions, long expirations, long invalidations, long oversized) {
+        this.namespace = namespace;
+        this.size = size;
+        this.capacity = capacity;
+        this.bytes = bytes;
+        this.maxBytes = maxBytes;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.invalidations = invalidations;
+        this.oversized = oversized;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getExpirations() {
+        return expirations;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public long getOversized() {
+        return oversized;
+    }
+
+    /**
+     * 获取命中率
+     *
+     * @return 命中率，取值 0~1，没有访问时返回0
+     */
+    public double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{size=%d/%d, bytes=%d/%d, hits=%d, misses=%d, hitRatio=%.2f, evictions=%d, expirations=%d, invalidations=%d, oversized=%d}",
+                namespace, size, capacity, bytes, maxBytes, hits, misses, getHitRatio(), evictions, expirations, invalidations, oversized);
+    }
+}
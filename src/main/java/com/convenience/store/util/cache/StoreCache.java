@@ -0,0 +1,344 @@
+package com.convenience.store.util.cache;
+
+import com.convenience.store.util.replica.ReplicaRouter;
+import org.apache.ibatis.builder.InitializingObject;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.io.SerialFilterChecker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * MyBatis二级缓存实现 - 每个Mapper命名空间一个实例
+ * 特性：
+ * 1. 容量有界：条目数不超过 size，缓存值的序列化字节数合计不超过 maxBytes，超出时按LRU淘汰最久未访问的条目；
+ *    一条结果就超过 maxBytes 的 1/4（如全表查询）时不缓存，避免一条大结果挤掉其他所有条目；
+ *    序列化写满 1/4 时立即中止，大结果不会被完整序列化一遍再丢弃。
+ *    只读模式下缓存原对象，不计字节数，只按条目数限制
+ * 2. 每个条目带有TTL，过期后视为未命中，限制其他终端修改数据后的脏读时间
+ * 3. 通过 dependsOn 声明依赖的命名空间，被依赖的命名空间发生写操作时级联清空本缓存
+ *    例如 InventoryDao 的联表查询内嵌了 Product，ProductDao 更新后库存缓存同样失效
+ * 4. 统计命中、未命中、淘汰、过期和失效次数
+ * 5. 只读副本会话的查询结果不回填缓存，副本落后时不会把旧数据带进缓存
+ * 用法：在Mapper XML中声明 &lt;cache type="com.convenience.store.util.cache.StoreCache"&gt;
+ */
+public class StoreCache implements Cache, InitializingObject {
+    // 所有已初始化的缓存实例，键为命名空间，用于级联失效和统计汇总
+    private static final Map<String, StoreCache> REGISTRY = new ConcurrentHashMap<>();
+
+    private final String id;
+
+    // 可通过 <property> 配置的参数
+    private int size = 1024;
+    private long maxBytes = 16L * 1024 * 1024;
+    private long ttlSeconds = 300;
+    private boolean readOnly = false;
+    private Set<String> dependsOn = Collections.emptySet();
+
+    // accessOrder=true 的LinkedHashMap按访问顺序排列，表头即最久未访问的条目
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    // 当前条目的序列化字节数合计，在lock内读写
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder oversized = new LongAdder();
+
+    public StoreCache(String id) {
+        this.id = id;
+    }
+
+    @Override
+    public void initialize() {
+        if (size <= 0) {
+            throw new CacheException("缓存 " + id + " 的 size 必须大于0");
+        }
+        if (maxBytes <= 0) {
+            throw new CacheException("缓存 " + id + " 的 maxBytes 必须大于0");
+        }
+        REGISTRY.put(id, this);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        // MyBatis会把未命中的键以null值回填，这里不占用缓存容量
+        if (value == null || ReplicaRouter.inReplicaSession()) {
+            return;
+        }
+        Object stored = readOnly ? value : serialize(value, maxBytes / 4);
+        if (stored == null) {
+            oversized.increment();
+            return;
+        }
+        int length = readOnly ? 0 : ((byte[]) stored).length;
+        Entry entry = new Entry(stored, length, System.nanoTime() + ttlSeconds * 1_000_000_000L);
+        lock.lock();
+        try {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                bytes -= previous.bytes;
+            }
+            bytes += length;
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (entries.size() > size || bytes > maxBytes) {
+                bytes -= eldest.next().bytes;
+                eldest.remove();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        Entry entry;
+        lock.lock();
+        try {
+            entry = entries.get(key);
+            if (entry != null && ttlSeconds > 0 && System.nanoTime() - entry.expiresAt > 0) {
+                entries.remove(key);
+                bytes -= entry.bytes;
+                expirations.increment();
+                entry = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        // 非只读缓存返回反序列化出的副本，调用方修改返回对象不会污染缓存
+        return readOnly ? entry.value : deserialize((byte[]) entry.value);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        lock.lock();
+        try {
+            Entry entry = entries.remove(key);
+            if (entry == null) {
+                return null;
+            }
+            bytes -= entry.bytes;
+            return entry.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 清空本缓存，并级联清空所有依赖本命名空间的缓存
+     * MyBatis在执行 insert/update/delete 的事务提交时调用此方法
+     */
+    @Override
+    public void clear() {
+        clear(new HashSet<>());
+    }
+
+    private void clear(Set<String> visited) {
+        if (!visited.add(id)) {
+            return;
+        }
+        lock.lock();
+        try {
+            entries.clear();
+            bytes = 0;
+        } finally {
+            lock.unlock();
+        }
+        invalidations.increment();
+        for (StoreCache dependent : REGISTRY.values()) {
+            if (dependent.dependsOn.contains(id)) {
+                dependent.clear(visited);
+            }
+        }
+    }
+
+    @Override
+    public int getSize() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取本缓存的统计信息
+     *
+     * @return 统计信息快照
+     */
+    public CacheStatistics getStatistics() {
+        int entryCount;
+        long entryBytes;
+        lock.lock();
+        try {
+            entryCount = entries.size();
+            entryBytes = bytes;
+        } finally {
+            lock.unlock();
+        }
+        return new CacheStatistics(id, entryCount, size, entryBytes, maxBytes, hits.sum(), misses.sum(),
+                evictions.sum(), expirations.sum(), invalidations.sum(), oversized.sum());
+    }
+
+    /**
+     * 获取所有命名空间缓存的统计信息，按命名空间排序
+     *
+     * @return 统计信息列表
+     */
+    public static List<CacheStatistics> getAllStatistics() {
+        List<CacheStatistics> statistics = new ArrayList<>();
+        for (StoreCache cache : new TreeMap<>(REGISTRY).values()) {
+            statistics.add(cache.getStatistics());
+        }
+        return statistics;
+    }
+
+    /**
+     * 按命名空间清空缓存（含级联），用于感知到其他终端的修改时主动失效
+     *
+     * @param namespace Mapper命名空间，例如 com.convenience.store.dao.ProductDao
+     */
+    public static void invalidate(String namespace) {
+        StoreCache cache = REGISTRY.get(namespace);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    // ===============================
+    // 配置参数的 Setter 方法，由 MyBatis 根据 <property> 调用
+    // ===============================
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * 设置依赖的命名空间，多个命名空间以逗号分隔
+     *
+     * @param dependsOn 依赖的命名空间列表
+     */
+    public void setDependsOn(String dependsOn) {
+        Set<String> namespaces = new HashSet<>();
+        for (String namespace : dependsOn.split(",")) {
+            if (!namespace.isBlank()) {
+                namespaces.add(namespace.trim());
+            }
+        }
+        this.dependsOn = namespaces;
+    }
+
+    // 与MyBatis的SerializedCache一致，通过序列化实现读写隔离；序列化字节数超过 limit 时中止并返回null
+    private byte[] serialize(Object value, long limit) {
+        BoundedOutputStream bos = new BoundedOutputStream(limit);
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(value);
+            oos.flush();
+        } catch (IOException e) {
+            if (bos.exceeded) {
+                return null;
+            }
+            throw new CacheException("缓存 " + id + " 序列化失败，缓存对象必须实现Serializable: " + value.getClass(), e);
+        }
+        return bos.toByteArray();
+    }
+
+    private Object deserialize(byte[] value) {
+        SerialFilterChecker.check();
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(value))) {
+            return ois.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new CacheException("缓存 " + id + " 反序列化失败", e);
+        }
+    }
+
+    // 写入超过上限时抛出IOException的字节流，ObjectOutputStream随之中止序列化
+    private static final class BoundedOutputStream extends OutputStream {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final long limit;
+        private boolean exceeded;
+
+        private BoundedOutputStream(long limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(1);
+            buffer.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureCapacity(len);
+            buffer.write(b, off, len);
+        }
+
+        private void ensureCapacity(int len) throws IOException {
+            if (exceeded || buffer.size() + (long) len > limit) {
+                exceeded = true;
+                throw new IOException("序列化结果超过 " + limit + " 字节");
+            }
+        }
+
+        private byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+    }
+
+    // 缓存条目：缓存值（只读模式下为原对象，否则为序列化字节）、序列化字节数和过期时间点
+    private static final class Entry {
+        private final Object value;
+        private final int bytes;
+        private final long expiresAt;
+
+        private Entry(Object value, int bytes, long expiresAt) {
+            this.value = value;
+            this.bytes = bytes;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
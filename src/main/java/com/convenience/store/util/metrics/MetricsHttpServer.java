@@ -0,0 +1,217 @@
+package com.convenience.store.util.metrics;
+
+import com.convenience.store.service.InventoryWriteBuffer;
+import com.convenience.store.util.LatencyHistogram;
+import com.convenience.store.util.MyBatisUtil;
+import com.convenience.store.util.cache.CacheStatistics;
+import com.convenience.store.util.cache.StoreCache;
+import com.convenience.store.util.pool.PoolMetrics;
+import com.convenience.store.util.replica.ReplicaRouter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * 本地指标端点 - 在 127.0.0.1 上以纯文本（Prometheus 文本格式）输出运行指标
+ * GET /metrics 返回各映射语句的耗时分位数、行数、出错次数，以及连接池、只读副本、二级缓存和界面线程响应延迟的指标。
+ * 只绑定回环地址，不对外暴露；同样的语句指标也可以通过JMX查看
+ */
+public class MetricsHttpServer {
+    private static final Logger logger = Logger.getLogger(MetricsHttpServer.class);
+
+    private static HttpServer server;
+
+    private MetricsHttpServer() {
+    }
+
+    /**
+     * 启动指标端点，重复调用不会启动多个；端口被占用时只记录警告
+     * @param port 监听端口，0或负数表示不启动
+     */
+    public static synchronized void start(int port) {
+        if (server != null || port <= 0) {
+            return;
+        }
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", MetricsHttpServer::handle);
+            server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "metrics-http");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            server.start();
+            logger.info("指标端点已启动：http://127.0.0.1:" + port + "/metrics");
+        } catch (IOException e) {
+            server = null;
+            logger.warn("指标端点启动失败，端口 " + port, e);
+        }
+    }
+
+    /**
+     * 停止指标端点
+     */
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * 生成指标文本
+     * @return Prometheus 文本格式的指标
+     */
+    public static String render() {
+        StringBuilder sb = new StringBuilder(4096);
+
+        sb.append("# HELP store_statement_latency_microseconds 映射语句耗时\n");
+        sb.append("# TYPE store_statement_latency_microseconds summary\n");
+        for (StatementMetrics.StatementStats stats : StatementMetrics.getAll()) {
+            appendSummary(sb, "store_statement_latency_microseconds", "statement", stats.getStatement(), stats.getLatency());
+        }
+        sb.append("# HELP store_statement_latency_max_microseconds 映射语句最大耗时\n");
+        sb.append("# TYPE store_statement_latency_max_microseconds gauge\n");
+        for (StatementMetrics.StatementStats stats : StatementMetrics.getAll()) {
+            appendSample(sb, "store_statement_latency_max_microseconds", "statement", stats.getStatement(), stats.getMaxMicros());
+        }
+        sb.append("# HELP store_statement_rows_total 查询返回或更新影响的行数\n");
+        sb.append("# TYPE store_statement_rows_total counter\n");
+        for (StatementMetrics.StatementStats stats : StatementMetrics.getAll()) {
+            appendSample(sb, "store_statement_rows_total", "statement", stats.getStatement(), stats.getRows());
+        }
+        sb.append("# HELP store_statement_errors_total 执行出错次数\n");
+        sb.append("# TYPE store_statement_errors_total counter\n");
+        for (StatementMetrics.StatementStats stats : StatementMetrics.getAll()) {
+            appendSample(sb, "store_statement_errors_total", "statement", stats.getStatement(), stats.getErrors());
+        }
+
+        appendPool(sb);
+        appendReplica(sb);
+        appendWriteBehind(sb);
+        appendUiStall(sb);
+
+        sb.append("# HELP store_cache_requests_total 二级缓存查询次数\n");
+        sb.append("# TYPE store_cache_requests_total counter\n");
+        for (CacheStatistics cache : StoreCache.getAllStatistics()) {
+            sb.append("store_cache_requests_total{namespace=\"").append(cache.getNamespace())
+              .append("\",result=\"hit\"} ").append(cache.getHits()).append('\n');
+            sb.append("store_cache_requests_total{namespace=\"").append(cache.getNamespace())
+              .append("\",result=\"miss\"} ").append(cache.getMisses()).append('\n');
+        }
+        sb.append("# HELP store_cache_entries 二级缓存当前条目数\n");
+        sb.append("# TYPE store_cache_entries gauge\n");
+        for (CacheStatistics cache : StoreCache.getAllStatistics()) {
+            appendSample(sb, "store_cache_entries", "namespace", cache.getNamespace(), cache.getSize());
+        }
+        sb.append("# HELP store_cache_bytes 二级缓存当前条目的序列化字节数\n");
+        sb.append("# TYPE store_cache_bytes gauge\n");
+        for (CacheStatistics cache : StoreCache.getAllStatistics()) {
+            appendSample(sb, "store_cache_bytes", "namespace", cache.getNamespace(), cache.getBytes());
+        }
+        sb.append("# HELP store_cache_oversized_total 结果超过缓存字节上限1/4而没有缓存的次数\n");
+        sb.append("# TYPE store_cache_oversized_total counter\n");
+        for (CacheStatistics cache : StoreCache.getAllStatistics()) {
+            appendSample(sb, "store_cache_oversized_total", "namespace", cache.getNamespace(), cache.getOversized());
+        }
+        return sb.toString();
+    }
+
+    private static void appendPool(StringBuilder sb) {
+        PoolMetrics pool;
+        try {
+            pool = MyBatisUtil.getPoolMetrics();
+        } catch (RuntimeException e) {
+            // 数据库尚未初始化或初始化失败
+            return;
+        }
+        if (pool == null) {
+            return;
+        }
+        sb.append("# HELP store_pool_connections 连接池连接数\n");
+        sb.append("# TYPE store_pool_connections gauge\n");
+        appendSample(sb, "store_pool_connections", "state", "active", pool.getActiveConnections());
+        appendSample(sb, "store_pool_connections", "state", "idle", pool.getIdleConnections());
+        sb.append("store_pool_pending_threads ").append(pool.getPendingThreads()).append('\n');
+        sb.append("store_pool_timeouts_total ").append(pool.getTimeouts()).append('\n');
+        sb.append("store_pool_leaks_total ").append(pool.getLeaks()).append('\n');
+        sb.append("# TYPE store_pool_wait_microseconds summary\n");
+        appendSummary(sb, "store_pool_wait_microseconds", null, null, pool.getWaitTime());
+        sb.append("# TYPE store_pool_usage_microseconds summary\n");
+        appendSummary(sb, "store_pool_usage_microseconds", null, null, pool.getUsageTime());
+    }
+
+    private static void appendReplica(StringBuilder sb) {
+        if (!ReplicaRouter.isEnabled()) {
+            return;
+        }
+        sb.append("# HELP store_replica_lag_milliseconds 只读副本复制延迟\n");
+        sb.append("# TYPE store_replica_lag_milliseconds gauge\n");
+        sb.append("store_replica_lag_milliseconds ").append(ReplicaRouter.getLagMillis()).append('\n');
+        sb.append("# HELP store_replica_reads_total 只读会话实际连接的数据库\n");
+        sb.append("# TYPE store_replica_reads_total counter\n");
+        appendSample(sb, "store_replica_reads_total", "target", "replica", ReplicaRouter.getReplicaReads());
+        appendSample(sb, "store_replica_reads_total", "target", "primary", ReplicaRouter.getPrimaryReads());
+    }
+
+    private static void appendWriteBehind(StringBuilder sb) {
+        if (!InventoryWriteBuffer.isEnabled()) {
+            return;
+        }
+        sb.append("# HELP store_write_behind_pending_deltas 库存写缓冲中尚未写库的调整条数\n");
+        sb.append("# TYPE store_write_behind_pending_deltas gauge\n");
+        sb.append("store_write_behind_pending_deltas ").append(InventoryWriteBuffer.getPendingDeltas()).append('\n');
+    }
+
+    private static void appendUiStall(StringBuilder sb) {
+        if (!UiStallMonitor.isEnabled()) {
+            return;
+        }
+        LatencyHistogram delays = UiStallMonitor.getDelays();
+        sb.append("# HELP store_ui_event_delay_microseconds 界面线程响应延迟（投递任务到开始执行）\n");
+        sb.append("# TYPE store_ui_event_delay_microseconds summary\n");
+        appendSummary(sb, "store_ui_event_delay_microseconds", null, null, delays);
+        sb.append("store_ui_event_delay_max_microseconds ").append(delays.getMaxMicros()).append('\n');
+        sb.append("# HELP store_dialog_open_microseconds 对话框从点击到窗口显示的耗时\n");
+        sb.append("# TYPE store_dialog_open_microseconds summary\n");
+        appendSummary(sb, "store_dialog_open_microseconds", "instance", "new", UiStallMonitor.getDialogOpenLatency(false));
+        appendSummary(sb, "store_dialog_open_microseconds", "instance", "reused", UiStallMonitor.getDialogOpenLatency(true));
+    }
+
+    private static void appendSummary(StringBuilder sb, String name, String label, String value, LatencyHistogram histogram) {
+        String prefix = label == null ? "{" : "{" + label + "=\"" + value + "\",";
+        sb.append(name).append(prefix).append("quantile=\"0.5\"} ").append(histogram.getPercentileMicros(50)).append('\n');
+        sb.append(name).append(prefix).append("quantile=\"0.99\"} ").append(histogram.getPercentileMicros(99)).append('\n');
+        String labels = label == null ? "" : "{" + label + "=\"" + value + "\"}";
+        sb.append(name).append("_sum").append(labels).append(' ').append(histogram.getTotalMicros()).append('\n');
+        sb.append(name).append("_count").append(labels).append(' ').append(histogram.getCount()).append('\n');
+    }
+
+    private static void appendSample(StringBuilder sb, String name, String label, String value, long sample) {
+        sb.append(name).append('{').append(label).append("=\"").append(value).append("\"} ").append(sample).append('\n');
+    }
+}
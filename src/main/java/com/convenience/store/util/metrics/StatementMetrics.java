@@ -0,0 +1,183 @@
+package com.convenience.store.util.metrics;
+
+import com.convenience.store.util.LatencyHistogram;
+import org.apache.log4j.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 映射语句指标注册表 - 按语句ID记录耗时分布、返回/影响行数和出错次数
+ * 由 StatementMetricsInterceptor 写入；每条语句首次执行时创建统计对象并注册到JMX，
+ * 之后的记录只是一次 ConcurrentHashMap 查找加几次原子自增，不产生对象分配
+ */
+public class StatementMetrics {
+    private static final Logger logger = Logger.getLogger(StatementMetrics.class);
+
+    private static final String JMX_DOMAIN = "com.convenience.store";
+
+    // 完整语句ID（Mapper命名空间.方法名） -> 统计
+    private static final ConcurrentMap<String, StatementStats> STATEMENTS = new ConcurrentHashMap<>();
+
+    private StatementMetrics() {
+    }
+
+    /**
+     * 单条映射语句的统计
+     */
+    public static final class StatementStats implements StatementStatsMXBean {
+        private final String statement;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        private StatementStats(String statement) {
+            this.statement = statement;
+        }
+
+        /**
+         * 记录一次成功执行
+         * @param nanos 耗时（纳秒）
+         * @param rowCount 查询返回的行数或更新影响的行数
+         */
+        public void record(long nanos, long rowCount) {
+            latency.recordNanos(nanos);
+            if (rowCount > 0) {
+                rows.add(rowCount);
+            }
+        }
+
+        /**
+         * 记录一次执行失败，耗时同样计入分布
+         * @param nanos 耗时（纳秒）
+         */
+        public void recordError(long nanos) {
+            latency.recordNanos(nanos);
+            errors.increment();
+        }
+
+        /**
+         * @return 去掉包名的语句ID，例如 InventoryDao.getAllInventory
+         */
+        @Override
+        public String getStatement() {
+            return statement;
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        @Override
+        public long getCount() {
+            return latency.getCount();
+        }
+
+        @Override
+        public long getRows() {
+            return rows.sum();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return latency.getMeanMicros();
+        }
+
+        @Override
+        public long getP50Micros() {
+            return latency.getPercentileMicros(50);
+        }
+
+        @Override
+        public long getP99Micros() {
+            return latency.getPercentileMicros(99);
+        }
+
+        @Override
+        public long getMaxMicros() {
+            return latency.getMaxMicros();
+        }
+
+        @Override
+        public void reset() {
+            latency.reset();
+            rows.reset();
+            errors.reset();
+        }
+
+        @Override
+        public String toString() {
+            return statement + " " + latency + ", rows=" + getRows() + ", errors=" + getErrors();
+        }
+    }
+
+    /**
+     * 获取语句的统计对象，首次获取时创建并注册到JMX
+     * @param statementId MappedStatement的ID，例如 com.convenience.store.dao.InventoryDao.getAllInventory
+     * @return 统计对象
+     */
+    public static StatementStats forStatement(String statementId) {
+        StatementStats stats = STATEMENTS.get(statementId);
+        if (stats != null) {
+            return stats;
+        }
+        StatementStats created = new StatementStats(shortName(statementId));
+        stats = STATEMENTS.putIfAbsent(statementId, created);
+        if (stats != null) {
+            return stats;
+        }
+        registerMBean(created);
+        return created;
+    }
+
+    /**
+     * 获取所有语句的统计，按累计耗时从高到低排列
+     * @return 统计列表
+     */
+    public static List<StatementStats> getAll() {
+        List<StatementStats> all = new ArrayList<>(STATEMENTS.values());
+        all.sort(Comparator.comparingLong((StatementStats s) -> s.getLatency().getTotalMicros()).reversed());
+        return all;
+    }
+
+    /**
+     * 清空所有语句的统计
+     */
+    public static void resetAll() {
+        for (StatementStats stats : STATEMENTS.values()) {
+            stats.reset();
+        }
+    }
+
+    // 去掉Mapper接口的包名：com.convenience.store.dao.InventoryDao.getAllInventory -> InventoryDao.getAllInventory
+    private static String shortName(String statementId) {
+        int method = statementId.lastIndexOf('.');
+        int type = method > 0 ? statementId.lastIndexOf('.', method - 1) : -1;
+        return type >= 0 ? statementId.substring(type + 1) : statementId;
+    }
+
+    private static void registerMBean(StatementStats stats) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":type=StatementMetrics,name=" + ObjectName.quote(stats.getStatement()));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(stats, name);
+            }
+        } catch (Exception e) {
+            // JMX不可用不影响统计本身
+            logger.warn("注册语句指标MBean失败：" + stats.getStatement(), e);
+        }
+    }
+}
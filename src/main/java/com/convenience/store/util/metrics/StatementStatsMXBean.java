@@ -0,0 +1,28 @@
+package com.convenience.store.util.metrics;
+
+/**
+ * 单条映射语句的JMX指标接口，注册名为 com.convenience.store:type=StatementMetrics,name=语句ID
+ * 耗时单位均为微秒
+ */
+public interface StatementStatsMXBean {
+    String getStatement();
+
+    long getCount();
+
+    long getRows();
+
+    long getErrors();
+
+    double getMeanMicros();
+
+    long getP50Micros();
+
+    long getP99Micros();
+
+    long getMaxMicros();
+
+    /**
+     * 清空该语句的统计
+     */
+    void reset();
+}
@@ -0,0 +1,122 @@
+package com.convenience.store.util.metrics;
+
+import com.convenience.store.util.LatencyHistogram;
+import javafx.application.Platform;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 界面线程卡顿监测 - 后台线程定期向JavaFX界面线程投递一个空任务，记录从投递到执行的延迟
+ * 界面线程被同步数据库查询等操作阻塞时，延迟就是用户感受到的卡顿时间；
+ * 同一时刻只有一个探测任务在途，一次长时间阻塞只记一个样本。
+ * 在途超过阈值时记录一次警告，附带界面线程当时的调用栈，用于定位阻塞界面线程的代码。
+ * 延迟分布通过 /metrics 的 store_ui_event_delay_microseconds 输出；
+ * 同时汇总对话框从点击到窗口显示的耗时（store_dialog_open_microseconds），按新建和复用实例分别统计
+ */
+public class UiStallMonitor {
+    private static final Logger logger = Logger.getLogger(UiStallMonitor.class);
+
+    // 探测间隔（毫秒）
+    private static final long PROBE_INTERVAL_MILLIS = 100;
+    // 界面线程超过该时间（毫秒）没有响应时记录警告
+    private static final long STALL_WARN_MILLIS = 250;
+
+    private static final LatencyHistogram delays = new LatencyHistogram();
+    private static final LatencyHistogram dialogsCreated = new LatencyHistogram();
+    private static final LatencyHistogram dialogsReused = new LatencyHistogram();
+    private static ScheduledExecutorService prober;
+
+    // 在途探测的投递时间，0表示没有在途探测；只由探测线程和界面线程读写
+    private static volatile long postedAt;
+    private static volatile boolean stallReported;
+    private static volatile Thread fxThread;
+
+    private UiStallMonitor() {
+    }
+
+    /**
+     * 启动监测，需在JavaFX工具包启动后调用，重复调用不会启动多个
+     */
+    public static synchronized void start() {
+        if (prober != null) {
+            return;
+        }
+        prober = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ui-stall-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        prober.scheduleWithFixedDelay(UiStallMonitor::probe, PROBE_INTERVAL_MILLIS, PROBE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止监测
+     */
+    public static synchronized void stop() {
+        if (prober != null) {
+            prober.shutdownNow();
+            prober = null;
+        }
+    }
+
+    /**
+     * 是否正在监测，服务器模式下不启动
+     * @return 已启动返回true
+     */
+    public static synchronized boolean isEnabled() {
+        return prober != null;
+    }
+
+    /**
+     * 获取界面线程响应延迟的分布
+     * @return 延迟分布
+     */
+    public static LatencyHistogram getDelays() {
+        return delays;
+    }
+
+    /**
+     * 记录一次对话框从点击到窗口显示的耗时
+     * @param reused 是否复用了已创建的对话框
+     * @param nanos 耗时（纳秒）
+     */
+    public static void recordDialogOpen(boolean reused, long nanos) {
+        (reused ? dialogsReused : dialogsCreated).recordNanos(nanos);
+    }
+
+    /**
+     * 获取对话框打开耗时的分布
+     * @param reused true为复用已创建对话框的打开，false为新建对话框的打开
+     * @return 耗时分布
+     */
+    public static LatencyHistogram getDialogOpenLatency(boolean reused) {
+        return reused ? dialogsReused : dialogsCreated;
+    }
+
+    private static void probe() {
+        long posted = postedAt;
+        if (posted != 0) {
+            // 上一次探测还没执行，界面线程仍被占用
+            long stalledMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - posted);
+            Thread thread = fxThread;
+            if (stalledMillis > STALL_WARN_MILLIS && !stallReported && thread != null) {
+                stallReported = true;
+                Exception stack = new Exception("界面线程当前位置");
+                stack.setStackTrace(thread.getStackTrace());
+                logger.warn("界面线程已 " + stalledMillis + "ms 没有响应", stack);
+            }
+            return;
+        }
+        long now = System.nanoTime();
+        postedAt = now;
+        Platform.runLater(() -> {
+            delays.recordNanos(System.nanoTime() - now);
+            fxThread = Thread.currentThread();
+            stallReported = false;
+            postedAt = 0;
+        });
+    }
+}
@@ -0,0 +1,92 @@
+package com.convenience.store.util.plugin;
+
+import com.convenience.store.entity.Inventory;
+import com.convenience.store.entity.Product;
+import com.convenience.store.entity.ProductSupplier;
+import com.convenience.store.entity.Supplier;
+import com.convenience.store.entity.User;
+import com.convenience.store.entity.Warehouse;
+import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 标识映射插件 - 联表查询结果中相同主键的关联对象只保留一个实例
+ * MyBatis映射嵌套关联时，每一行都会新建一个 Product / Warehouse / User 对象，
+ * 10万行库存引用同一商品时会得到10万个内容相同的商品对象。
+ * 本插件在结果集映射完成后，按主键把同一查询结果中的关联对象替换为第一次出现的实例。
+ * 作用范围是单次查询的结果：实体类是可修改的，跨查询共享实例会让一个界面的编辑意外出现在另一个界面。
+ * 二级缓存按序列化复制结果，Java序列化会保留同一对象图中的共享引用，缓存命中的结果同样是去重后的。
+ * 用法：在 mybatis-config.xml 的 &lt;plugins&gt; 中注册
+ */
+@Intercepts({
+        @Signature(type = ResultSetHandler.class, method = "handleResultSets", args = {Statement.class})
+})
+public class IdentityMapInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        if (result instanceof List<?> rows && rows.size() > 1) {
+            new IdentityMap().internAll(rows);
+        }
+        return result;
+    }
+
+    /**
+     * 单次查询的标识映射，每种实体一张"主键 -> 共享实例"表
+     */
+    private static final class IdentityMap {
+        private final Map<Integer, Product> products = new HashMap<>();
+        private final Map<Integer, Warehouse> warehouses = new HashMap<>();
+        private final Map<Integer, User> users = new HashMap<>();
+        private final Map<Integer, Supplier> suppliers = new HashMap<>();
+
+        private void internAll(List<?> rows) {
+            for (Object row : rows) {
+                if (row instanceof Inventory inventory) {
+                    inventory.setProduct(intern(products, inventory.getProduct(), Product::getProductId));
+                    inventory.setWarehouse(internWarehouse(inventory.getWarehouse()));
+                } else if (row instanceof Warehouse warehouse) {
+                    internManager(warehouse);
+                } else if (row instanceof ProductSupplier productSupplier) {
+                    productSupplier.setProduct(intern(products, productSupplier.getProduct(), Product::getProductId));
+                    productSupplier.setSupplier(intern(suppliers, productSupplier.getSupplier(), Supplier::getSupplierId));
+                }
+            }
+        }
+
+        private Warehouse internWarehouse(Warehouse warehouse) {
+            Warehouse shared = intern(warehouses, warehouse, Warehouse::getWarehouseId);
+            // 第一次出现的仓库实例才需要处理其负责人，之后的行直接复用
+            if (shared == warehouse && warehouse != null) {
+                internManager(warehouse);
+            }
+            return shared;
+        }
+
+        private void internManager(Warehouse warehouse) {
+            warehouse.setManager(intern(users, warehouse.getManager(), User::getUserId));
+        }
+
+        private static <T> T intern(Map<Integer, T> identities, T entity, Function<T, Integer> idOf) {
+            if (entity == null) {
+                return null;
+            }
+            Integer id = idOf.apply(entity);
+            if (id == null) {
+                return entity;
+            }
+            T shared = identities.putIfAbsent(id, entity);
+            return shared != null ? shared : entity;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.convenience.store.util.plugin;
+
+import com.convenience.store.util.metrics.StatementMetrics;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 语句指标插件 - 按映射语句记录耗时、行数和出错次数，写入 StatementMetrics
+ * 拦截 Executor，耗时是调用方看到的耗时，二级缓存命中的查询同样计入（通常只有几微秒）。
+ * 游标查询（queryCursor）的耗时是执行语句到返回游标的时间，行数是关闭游标时调用方已读取的行数，
+ * 没有关闭的游标不记录；每次游标查询额外分配一个包装游标。
+ * 批处理会话（ExecutorType.BATCH）中的 update 只是加入批次，真正执行发生在刷新批次时：
+ * 本插件在 flushStatements 和 commit 时记录每个批次的耗时和影响行数
+ * （commit 前先显式刷新批次，commit 内部的刷新就不再有待执行的语句）。
+ * BatchExecutor 在查询前也会先执行待执行的批次，本插件在查询前同样先显式刷新并记录，批次的耗时不算到查询上。
+ * 除上述包装游标外，记录过程除 MyBatis 本身创建的 Invocation 外不产生对象分配。
+ * 用法：在 mybatis-config.xml 的 &lt;plugins&gt; 中注册
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "queryCursor", args = {MappedStatement.class, Object.class, RowBounds.class}),
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "flushStatements", args = {}),
+        @Signature(type = Executor.class, method = "commit", args = {boolean.class}),
+        @Signature(type = Executor.class, method = "rollback", args = {boolean.class}),
+        @Signature(type = Executor.class, method = "close", args = {boolean.class})
+})
+public class StatementMetricsInterceptor implements Interceptor {
+    // 当前线程上有待执行批次的执行器（SqlSession 不跨线程使用），没有时为null
+    private static final ThreadLocal<Executor> PENDING_BATCH = new ThreadLocal<>();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        switch (invocation.getMethod().getName()) {
+            case "flushStatements":
+                return flush(invocation);
+            case "commit":
+                return commit(invocation);
+            case "rollback":
+            case "close":
+                // 回滚和关闭会丢弃待执行的批次
+                clearPendingBatch(invocation);
+                return invocation.proceed();
+            case "queryCursor":
+                return queryCursor(invocation);
+            case "query":
+                flushPendingBatch(invocation);
+                return execute(invocation);
+            default:
+                return execute(invocation);
+        }
+    }
+
+    // 查询和更新：记录单次执行
+    private static Object execute(Invocation invocation) throws Throwable {
+        MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+        StatementMetrics.StatementStats stats = StatementMetrics.forStatement(ms.getId());
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = invocation.proceed();
+        } catch (Throwable e) {
+            stats.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (result instanceof List<?> rows) {
+            stats.record(elapsed, rows.size());
+        } else if (result instanceof Integer count) {
+            if (count != BatchExecutor.BATCH_UPDATE_RETURN_VALUE) {
+                stats.record(elapsed, count);
+            } else if (PENDING_BATCH.get() != invocation.getTarget()) {
+                // 批处理中的update只是加入批次，在刷新批次时记录
+                PENDING_BATCH.set((Executor) invocation.getTarget());
+            }
+        }
+        return result;
+    }
+
+    // 游标查询：返回包装游标，关闭时记录执行耗时和已读取的行数
+    private static Object queryCursor(Invocation invocation) throws Throwable {
+        flushPendingBatch(invocation);
+        MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+        StatementMetrics.StatementStats stats = StatementMetrics.forStatement(ms.getId());
+        long start = System.nanoTime();
+        Cursor<?> cursor;
+        try {
+            cursor = (Cursor<?>) invocation.proceed();
+        } catch (Throwable e) {
+            stats.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        return new MeteredCursor<>(cursor, stats, System.nanoTime() - start);
+    }
+
+    private static Object flush(Invocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        Object result = invocation.proceed();
+        clearPendingBatch(invocation);
+        if (result instanceof List<?> results) {
+            recordBatches(results, System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    // 提交前先刷新批次，提交本身不再执行批处理语句
+    private static Object commit(Invocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        List<BatchResult> results = ((Executor) invocation.getTarget()).flushStatements();
+        clearPendingBatch(invocation);
+        recordBatches(results, System.nanoTime() - start);
+        return invocation.proceed();
+    }
+
+    // 执行器有待执行的批次时先显式刷新并记录，否则 BatchExecutor 在查询内部刷新，批次的耗时会算到查询上
+    private static void flushPendingBatch(Invocation invocation) throws Throwable {
+        if (PENDING_BATCH.get() != invocation.getTarget()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<BatchResult> results = ((Executor) invocation.getTarget()).flushStatements();
+        PENDING_BATCH.remove();
+        recordBatches(results, System.nanoTime() - start);
+    }
+
+    private static void clearPendingBatch(Invocation invocation) {
+        if (PENDING_BATCH.get() == invocation.getTarget()) {
+            PENDING_BATCH.remove();
+        }
+    }
+
+    // 一次刷新可能包含多条语句的批次，耗时按批次数平均分摊
+    private static void recordBatches(List<?> results, long elapsedNanos) {
+        if (results.isEmpty()) {
+            return;
+        }
+        long share = elapsedNanos / results.size();
+        for (Object item : results) {
+            BatchResult batch = (BatchResult) item;
+            long rows = 0;
+            for (int count : batch.getUpdateCounts()) {
+                if (count > 0) {
+                    rows += count;
+                }
+            }
+            StatementMetrics.forStatement(batch.getMappedStatement().getId()).record(share, rows);
+        }
+    }
+
+    /**
+     * 记录指标的游标：第一次关闭时按执行耗时和已读取的行数记录一次
+     * （DefaultCursor 读完后会自行关闭，但调用方和 SqlSession 关闭的是这个包装游标）
+     */
+    private static final class MeteredCursor<T> implements Cursor<T> {
+        private final Cursor<T> delegate;
+        private final StatementMetrics.StatementStats stats;
+        private final long executeNanos;
+        private boolean recorded;
+
+        private MeteredCursor(Cursor<T> delegate, StatementMetrics.StatementStats stats, long executeNanos) {
+            this.delegate = delegate;
+            this.stats = stats;
+            this.executeNanos = executeNanos;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return delegate.isOpen();
+        }
+
+        @Override
+        public boolean isConsumed() {
+            return delegate.isConsumed();
+        }
+
+        @Override
+        public int getCurrentIndex() {
+            return delegate.getCurrentIndex();
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return delegate.iterator();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!recorded) {
+                recorded = true;
+                stats.record(executeNanos, delegate.getCurrentIndex() + 1);
+            }
+            delegate.close();
+        }
+    }
+}
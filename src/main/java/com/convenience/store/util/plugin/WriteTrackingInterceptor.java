@@ -0,0 +1,30 @@
+package com.convenience.store.util.plugin;
+
+import com.convenience.store.util.replica.ReplicaRouter;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+/**
+ * 写入跟踪插件 - 写事务提交后通知 ReplicaRouter，实现读己之写：
+ * 提交之后的读操作在只读副本追上这次提交之前都走主库。
+ * 只拦截 Executor.commit，参数 required 为true表示会话中执行过更新语句、真正提交了JDBC事务，
+ * 只有查询的会话提交时不计入。未配置副本时只多一次判断。
+ * 用法：在 mybatis-config.xml 的 &lt;plugins&gt; 中注册
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "commit", args = {boolean.class})
+})
+public class WriteTrackingInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        if ((Boolean) invocation.getArgs()[0]) {
+            ReplicaRouter.markWrite();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,99 @@
+package com.convenience.store.util.pool;
+
+import com.convenience.store.util.LatencyHistogram;
+
+/**
+ * 连接池指标快照 - 描述某一时刻连接池的运行状态
+ * 连接数为读取时的瞬时值，直方图为连接池启动以来的累计分布
+ */
+public class PoolMetrics {
+    // 正在被借出使用的连接数
+    private final int activeConnections;
+    // 池中空闲的连接数
+    private final int idleConnections;
+    // 当前物理连接总数
+    private final int totalConnections;
+    // 正在等待获取连接的线程数
+    private final int pendingThreads;
+    // 累计创建的物理连接数
+    private final long createdConnections;
+    // 累计关闭的物理连接数（校验失败、空闲回收等）
+    private final long closedConnections;
+    // 获取连接超时的次数
+    private final long timeouts;
+    // 疑似泄漏的连接次数
+    private final long leaks;
+    // 获取连接的等待时间分布
+    private final LatencyHistogram waitTime;
+    // 连接被借出后的使用时间分布
+    private final LatencyHistogram usageTime;
+
+    PoolMetrics(int activeConnections, int idleConnections, int pendingThreads,
+                long createdConnections, long closedConnections, long timeouts, long leaks,
+                LatencyHistogram waitTime, LatencyHistogram usageTime) {
+        this.activeConnections = activeConnections;
+        this.idleConnections = idleConnections;
+        this.totalConnections = activeConnections + idleConnections;
+        this.pendingThreads = pendingThreads;
+        this.createdConnections = createdConnections;
+        this.closedConnections = closedConnections;
+        this.timeouts = timeouts;
+        this.leaks = leaks;
+        this.waitTime = waitTime;
+        this.usageTime = usageTime;
+    }
+
+    public int getActiveConnections() {
+        return activeConnections;
+    }
+
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    public int getTotalConnections() {
+        return totalConnections;
+    }
+
+    public int getPendingThreads() {
+        return pendingThreads;
+    }
+
+    public long getCreatedConnections() {
+        return createdConnections;
+    }
+
+    public long getClosedConnections() {
+        return closedConnections;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public long getLeaks() {
+        return leaks;
+    }
+
+    public LatencyHistogram getWaitTime() {
+        return waitTime;
+    }
+
+    public LatencyHistogram getUsageTime() {
+        return usageTime;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolMetrics{active=" + activeConnections
+                + ", idle=" + idleConnections
+                + ", total=" + totalConnections
+                + ", pending=" + pendingThreads
+                + ", created=" + createdConnections
+                + ", closed=" + closedConnections
+                + ", timeouts=" + timeouts
+                + ", leaks=" + leaks
+                + ", wait=[" + waitTime + "]"
+                + ", usage=[" + usageTime + "]}";
+    }
+}
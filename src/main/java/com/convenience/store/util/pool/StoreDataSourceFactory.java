@@ -0,0 +1,63 @@
+package com.convenience.store.util.pool;
+
+import org.apache.ibatis.datasource.DataSourceException;
+import org.apache.ibatis.datasource.DataSourceFactory;
+
+import javax.sql.DataSource;
+import java.util.Properties;
+
+/**
+ * 连接池数据源工厂 - 供 mybatis-config.xml 中的 dataSource 节点使用
+ * 用法：&lt;dataSource type="com.convenience.store.util.pool.StoreDataSourceFactory"&gt;
+ * 以 "driver." 开头的属性会原样传递给JDBC驱动
+ */
+public class StoreDataSourceFactory implements DataSourceFactory {
+    private static final String DRIVER_PROPERTY_PREFIX = "driver.";
+
+    private final StorePooledDataSource dataSource = new StorePooledDataSource();
+
+    @Override
+    public void setProperties(Properties props) {
+        for (String name : props.stringPropertyNames()) {
+            String value = props.getProperty(name);
+            if (name.startsWith(DRIVER_PROPERTY_PREFIX)) {
+                dataSource.setDriverProperty(name.substring(DRIVER_PROPERTY_PREFIX.length()), value);
+                continue;
+            }
+            switch (name) {
+                case "driver" -> dataSource.setDriver(value);
+                case "url" -> dataSource.setUrl(value);
+                case "username" -> dataSource.setUsername(value);
+                case "password" -> dataSource.setPassword(value);
+                case "minIdle" -> dataSource.setMinIdle(parseInt(name, value));
+                case "maxPoolSize" -> dataSource.setMaxPoolSize(parseInt(name, value));
+                case "connectionTimeout" -> dataSource.setConnectionTimeoutMs(parseLong(name, value));
+                case "validationTimeout" -> dataSource.setValidationTimeoutSeconds(parseInt(name, value));
+                case "validationInterval" -> dataSource.setValidationIntervalMs(parseLong(name, value));
+                case "idleTimeout" -> dataSource.setIdleTimeoutMs(parseLong(name, value));
+                case "leakDetectionThreshold" -> dataSource.setLeakDetectionThresholdMs(parseLong(name, value));
+                case "leakDetectionStackTrace" -> dataSource.setLeakDetectionStackTrace(Boolean.parseBoolean(value));
+                default -> throw new DataSourceException("未知的连接池属性: " + name);
+            }
+        }
+        // 属性设置完毕即在后台启动连接池，预热与 SqlSessionFactory 解析映射文件并行进行
+        dataSource.startAsync();
+    }
+
+    @Override
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    private static int parseInt(String name, String value) {
+        return (int) parseLong(name, value);
+    }
+
+    private static long parseLong(String name, String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new DataSourceException("连接池属性 " + name + " 必须是整数: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package com.convenience.store.util.pool;
+
+import com.convenience.store.util.LatencyHistogram;
+import com.convenience.store.util.StartupTimeline;
+import org.apache.log4j.Logger;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带监控的数据库连接池 - 替代MyBatis自带的POOLED数据源
+ * 特性：
+ * 1. 可配置最小空闲数和最大连接数，启动时预热最小空闲连接
+ * 2. 借出连接时仅对空闲超过校验间隔的连接执行 isValid 快速校验
+ * 3. 超过阈值未归还的连接会被记录为疑似泄漏；借出时的调用栈开销较大，只在开启 leakDetectionStackTrace 时记录
+ * 4. 归还时回滚未提交的事务，并恢复借出期间修改过的自动提交、只读和事务隔离级别
+ * 5. 实时统计活动/空闲连接数以及等待时间、使用时间分布
+ * 通过 {@link StoreDataSourceFactory} 接入 mybatis-config.xml
+ */
+public class StorePooledDataSource implements DataSource, AutoCloseable {
+    private static final Logger logger = Logger.getLogger(StorePooledDataSource.class);
+
+    // 数据库连接参数
+    private String driver;
+    private String url;
+    private String username;
+    private String password;
+    private final Properties driverProperties = new Properties();
+
+    // 连接池参数
+    private int minIdle = 2;
+    private int maxPoolSize = 10;
+    private long connectionTimeoutMs = 30_000;
+    private int validationTimeoutSeconds = 3;
+    private long validationIntervalMs = 500;
+    private long idleTimeoutMs = 600_000;
+    private long leakDetectionThresholdMs = 0;
+    private boolean leakDetectionStackTrace = false;
+
+    // 空闲连接采用后进先出，优先复用最近归还的"热"连接，让多余连接自然空闲后被回收
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowedConnections = ConcurrentHashMap.newKeySet();
+    // 每个许可对应一个可借出的连接，用于限制最大连接数；非公平模式下刚归还连接的线程可以直接再次借出，
+    // 公平排队每次都要唤醒等待线程，高并发短查询时吞吐量下降一个数量级
+    private Semaphore permits;
+    // 物理连接数（空闲、借出以及正在建立的），建连前先在 maxPoolSize 内预留名额，关闭或建连失败时归还
+    private final AtomicInteger totalConnections = new AtomicInteger();
+
+    // 运行指标
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong closedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+    private final LatencyHistogram usageTime = new LatencyHistogram();
+
+    private ScheduledExecutorService housekeeper;
+    private volatile boolean started;
+    private volatile boolean shutdown;
+
+    /**
+     * 启动连接池：加载驱动、预热最小空闲连接并启动后台维护任务
+     * 重复调用无副作用
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        if (minIdle > maxPoolSize) {
+            throw new IllegalStateException("minIdle(" + minIdle + ") 不能大于 maxPoolSize(" + maxPoolSize + ")");
+        }
+        try {
+            if (driver != null) {
+                Class.forName(driver);
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("无法加载数据库驱动: " + driver, e);
+        }
+        permits = new Semaphore(maxPoolSize);
+
+        // 预热：启动时就建立最小空闲连接，避免首批请求承担建连开销
+        StartupTimeline.Phase warmUpPhase = StartupTimeline.begin("连接池预热");
+        long warmUpStart = System.nanoTime();
+        for (int i = 0; i < minIdle && reserveSlot(); i++) {
+            try {
+                idleConnections.offerLast(openReserved());
+            } catch (SQLException e) {
+                // 预热失败不阻止启动，后续借用时会按需重试建连
+                logger.warn("连接池预热失败，已建立 " + i + " 个连接: " + e.getMessage());
+                break;
+            }
+        }
+        logger.info("连接池预热完成，空闲连接 " + idleConnections.size() + " 个，耗时 "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - warmUpStart) + "ms");
+        warmUpPhase.end();
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "store-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = leakDetectionThresholdMs > 0
+                ? Math.max(1_000, Math.min(30_000, leakDetectionThresholdMs / 2))
+                : 30_000;
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+        started = true;
+    }
+
+    /**
+     * 在后台线程中启动连接池，预热与调用方的其他初始化工作（如解析映射文件）并行进行
+     * 启动完成前调用 getConnection() 会等待启动结束；后台启动失败时由 getConnection() 重新启动并抛出异常
+     */
+    public void startAsync() {
+        Thread thread = new Thread(() -> {
+            try {
+                start();
+            } catch (RuntimeException e) {
+                logger.error("连接池启动失败", e);
+            }
+        }, "store-pool-starter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!started) {
+            start();
+        }
+        if (shutdown) {
+            throw new SQLException("连接池已关闭");
+        }
+
+        long waitStart = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(connectionTimeoutMs, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTransientConnectionException("获取数据库连接超时(" + connectionTimeoutMs + "ms)，"
+                        + "活动连接 " + borrowedConnections.size() + "/" + maxPoolSize
+                        + "，等待线程 " + permits.getQueueLength());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("等待数据库连接时被中断", e);
+        }
+
+        try {
+            PooledConnection pooled = acquireConnection(waitStart);
+            pooled.borrowedAt = System.nanoTime();
+            pooled.borrowThread = Thread.currentThread().getName();
+            pooled.borrowStack = leakDetectionStackTrace ? new Exception("连接借出位置") : null;
+            pooled.leakReported = false;
+            borrowedConnections.add(pooled);
+            waitTime.recordNanos(pooled.borrowedAt - waitStart);
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (Objects.equals(this.username, username) && Objects.equals(this.password, password)) {
+            return getConnection();
+        }
+        throw new SQLFeatureNotSupportedException("连接池不支持使用其他账号获取连接");
+    }
+
+    /**
+     * 获取当前的连接池指标快照
+     *
+     * @return 指标快照
+     */
+    public PoolMetrics getMetrics() {
+        return new PoolMetrics(borrowedConnections.size(), idleConnections.size(),
+                permits == null ? 0 : permits.getQueueLength(),
+                createdCount.get(), closedCount.get(), timeoutCount.get(), leakCount.get(),
+                waitTime, usageTime);
+    }
+
+    /**
+     * 关闭连接池，关闭全部空闲连接；借出中的连接在归还时关闭
+     */
+    @Override
+    public synchronized void close() {
+        shutdown = true;
+        if (housekeeper != null) {
+            housekeeper.shutdownNow();
+        }
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            closeQuietly(pooled);
+        }
+    }
+
+    // 已取得许可后获取一个物理连接：优先复用空闲连接，有名额时新建；
+    // 名额都被占用时（维护任务正在补充空闲连接，或其他连接正在归还、关闭）等待空闲连接或名额出现
+    private PooledConnection acquireConnection(long waitStart) throws SQLException {
+        long deadline = waitStart + TimeUnit.MILLISECONDS.toNanos(connectionTimeoutMs);
+        while (true) {
+            PooledConnection pooled = takeIdleConnection();
+            if (pooled != null) {
+                return pooled;
+            }
+            if (reserveSlot()) {
+                return openReserved();
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTransientConnectionException("获取数据库连接超时(" + connectionTimeoutMs + "ms)，"
+                        + "物理连接 " + totalConnections.get() + "/" + maxPoolSize + " 均已占用");
+            }
+            try {
+                pooled = idleConnections.pollFirst(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(10)), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("等待数据库连接时被中断", e);
+            }
+            if (pooled != null) {
+                // 放回队首，由 takeIdleConnection 统一做空闲校验
+                idleConnections.offerFirst(pooled);
+            }
+        }
+    }
+
+    // 在 maxPoolSize 内预留一个物理连接名额
+    private boolean reserveSlot() {
+        while (true) {
+            int total = totalConnections.get();
+            if (total >= maxPoolSize) {
+                return false;
+            }
+            if (totalConnections.compareAndSet(total, total + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // 使用已预留的名额建立物理连接，失败时归还名额
+    private PooledConnection openReserved() throws SQLException {
+        try {
+            return createConnection();
+        } catch (SQLException | RuntimeException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+    }
+
+    // 从空闲队列中取出一个可用连接，空闲过久的连接先做快速校验
+    private PooledConnection takeIdleConnection() {
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pooled.lastReturnedAt);
+            if (idleMillis <= validationIntervalMs || isAlive(pooled)) {
+                return pooled;
+            }
+            logger.debug("丢弃校验失败的连接，空闲 " + idleMillis + "ms");
+            closeQuietly(pooled);
+        }
+        return null;
+    }
+
+    private boolean isAlive(PooledConnection pooled) {
+        try {
+            return pooled.raw.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        Properties props = new Properties();
+        props.putAll(driverProperties);
+        if (username != null) {
+            props.setProperty("user", username);
+        }
+        if (password != null) {
+            props.setProperty("password", password);
+        }
+        Connection raw = DriverManager.getConnection(url, props);
+        createdCount.incrementAndGet();
+        return new PooledConnection(raw);
+    }
+
+    // 连接归还：回滚未提交的事务，恢复自动提交以及借出期间修改过的只读和隔离级别，再放回空闲队列头部
+    private void release(PooledConnection pooled) {
+        borrowedConnections.remove(pooled);
+        usageTime.recordNanos(System.nanoTime() - pooled.borrowedAt);
+        pooled.borrowStack = null;
+        try {
+            if (shutdown || pooled.raw.isClosed()) {
+                closeQuietly(pooled);
+                return;
+            }
+            if (!pooled.raw.getAutoCommit()) {
+                pooled.raw.rollback();
+                pooled.raw.setAutoCommit(true);
+            }
+            if (pooled.readOnlyChanged) {
+                pooled.raw.setReadOnly(false);
+                pooled.readOnlyChanged = false;
+            }
+            if (pooled.isolationChanged) {
+                pooled.raw.setTransactionIsolation(pooled.defaultIsolation);
+                pooled.isolationChanged = false;
+            }
+            pooled.lastReturnedAt = System.nanoTime();
+            idleConnections.offerFirst(pooled);
+        } catch (SQLException e) {
+            logger.warn("归还连接时重置状态失败，连接将被关闭: " + e.getMessage());
+            closeQuietly(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void closeQuietly(PooledConnection pooled) {
+        try {
+            pooled.raw.close();
+        } catch (SQLException e) {
+            logger.debug("关闭物理连接失败: " + e.getMessage());
+        }
+        closedCount.incrementAndGet();
+        totalConnections.decrementAndGet();
+    }
+
+    // 后台维护：检测泄漏、回收超时空闲连接并补足最小空闲连接
+    private void housekeep() {
+        try {
+            long now = System.nanoTime();
+            if (leakDetectionThresholdMs > 0) {
+                for (PooledConnection pooled : borrowedConnections) {
+                    long heldMillis = TimeUnit.NANOSECONDS.toMillis(now - pooled.borrowedAt);
+                    if (heldMillis > leakDetectionThresholdMs && !pooled.leakReported) {
+                        pooled.leakReported = true;
+                        leakCount.incrementAndGet();
+                        Exception stack = pooled.borrowStack;
+                        if (stack != null) {
+                            logger.warn("疑似连接泄漏：连接已被线程 " + pooled.borrowThread + " 占用 " + heldMillis + "ms 未归还", stack);
+                        } else {
+                            logger.warn("疑似连接泄漏：连接已被线程 " + pooled.borrowThread + " 占用 " + heldMillis
+                                    + "ms 未归还，设置 pool.leakDetectionStackTrace=true 可记录借出位置");
+                        }
+                    }
+                }
+            }
+
+            int idleCount = idleConnections.size();
+            Iterator<PooledConnection> iterator = idleConnections.descendingIterator();
+            while (iterator.hasNext() && idleCount > minIdle) {
+                PooledConnection pooled = iterator.next();
+                if (TimeUnit.NANOSECONDS.toMillis(now - pooled.lastReturnedAt) > idleTimeoutMs
+                        && idleConnections.remove(pooled)) {
+                    closeQuietly(pooled);
+                    idleCount--;
+                }
+            }
+
+            // 先原子地预留名额再建连，与借用时的按需建连并发时物理连接数也不会超过 maxPoolSize
+            while (!shutdown && idleConnections.size() < minIdle && reserveSlot()) {
+                idleConnections.offerLast(openReserved());
+            }
+        } catch (Exception e) {
+            logger.warn("连接池维护任务执行失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 池化的物理连接，每次借出都会生成一个新的代理句柄，
+     * 句柄关闭后即失效，防止调用方在归还后继续误用同一连接
+     */
+    private final class PooledConnection {
+        private final Connection raw;
+        private volatile long borrowedAt;
+        private volatile long lastReturnedAt = System.nanoTime();
+        private final int defaultIsolation;
+        private volatile String borrowThread;
+        private volatile Exception borrowStack;
+        private volatile boolean leakReported;
+        // 借出期间调用过 setReadOnly/setTransactionIsolation，归还时需要恢复
+        private boolean readOnlyChanged;
+        private boolean isolationChanged;
+
+        private PooledConnection(Connection raw) throws SQLException {
+            this.raw = raw;
+            this.defaultIsolation = raw.getTransactionIsolation();
+        }
+
+        private Connection newHandle() {
+            InvocationHandler handler = new InvocationHandler() {
+                private boolean closed;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    String name = method.getName();
+                    if ("close".equals(name)) {
+                        if (!closed) {
+                            closed = true;
+                            release(PooledConnection.this);
+                        }
+                        return null;
+                    }
+                    if ("isClosed".equals(name)) {
+                        return closed || raw.isClosed();
+                    }
+                    if ("equals".equals(name)) {
+                        return proxy == args[0];
+                    }
+                    if ("hashCode".equals(name)) {
+                        return System.identityHashCode(proxy);
+                    }
+                    if (closed) {
+                        throw new SQLException("连接已归还连接池，不能继续使用");
+                    }
+                    if ("setReadOnly".equals(name)) {
+                        readOnlyChanged = true;
+                    } else if ("setTransactionIsolation".equals(name)) {
+                        isolationChanged = true;
+                    }
+                    try {
+                        return method.invoke(raw, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            };
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, handler);
+        }
+    }
+
+    // ===============================
+    // 配置参数的 Setter 方法，由 StoreDataSourceFactory 调用
+    // ===============================
+    public void setDriver(String driver) {
+        this.driver = driver;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public void setDriverProperty(String name, String value) {
+        driverProperties.setProperty(name, value);
+    }
+
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public void setConnectionTimeoutMs(long connectionTimeoutMs) {
+        this.connectionTimeoutMs = connectionTimeoutMs;
+    }
+
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    public void setValidationIntervalMs(long validationIntervalMs) {
+        this.validationIntervalMs = validationIntervalMs;
+    }
+
+    public void setIdleTimeoutMs(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    public void setLeakDetectionThresholdMs(long leakDetectionThresholdMs) {
+        this.leakDetectionThresholdMs = leakDetectionThresholdMs;
+    }
+
+    public void setLeakDetectionStackTrace(boolean leakDetectionStackTrace) {
+        this.leakDetectionStackTrace = leakDetectionStackTrace;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    // ===============================
+    // DataSource 接口的其余方法
+    // ===============================
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("无法转换为 " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -0,0 +1,249 @@
+package com.convenience.store.util.replica;
+
+import com.convenience.store.dao.SyncDao;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.log4j.Logger;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 只读副本路由 - 决定标记为可读副本的读操作走副本还是主库
+ * 副本延迟通过心跳行测量：后台任务定期在主库更新 replica_heartbeat 的时间（主库时钟），
+ * 再从副本读取同一行，二者之差即复制延迟，不依赖具体的复制方式，两个普通的本地数据库实例也能测试。
+ * 满足以下全部条件时读操作走副本，否则回退主库：
+ * 1. 最近一次心跳检查成功且不太旧（副本可用）
+ * 2. 复制延迟不超过阈值
+ * 3. 读己之写：本进程最近一次写事务提交之后写入的心跳已经出现在副本上，
+ *    即副本已经包含这次写入；写入后到副本追上之前的读都走主库
+ * 副本会话读到的结果不放入二级缓存，避免落后的数据在主库写入清空缓存后又被填回缓存
+ */
+public class ReplicaRouter {
+    private static final Logger logger = Logger.getLogger(ReplicaRouter.class);
+
+    // 保留的最近心跳数，用于判断副本追上了哪一次心跳
+    private static final int MAX_PENDING_BEATS = 64;
+    // 心跳检查超过多少个间隔没有成功视为副本不可用
+    private static final int STALE_CHECK_INTERVALS = 3;
+
+    private static volatile DataSource replica;
+    private static volatile long maxLagMillis;
+    private static volatile long intervalNanos;
+    private static ScheduledExecutorService heartbeat;
+    private static volatile Thread heartbeatThread;
+
+    // 最近一次写事务提交的时间（System.nanoTime），启动时视为刚写入过，副本追上启动之后的心跳才开始读副本
+    private static final AtomicLong lastWriteNanos = new AtomicLong();
+    // 已出现在副本上的最近一次心跳的写入时间（System.nanoTime），只由心跳线程更新
+    private static volatile long caughtUpNanos;
+    // 最近一次心跳检查成功的时间和测得的延迟
+    private static volatile long lastCheckNanos;
+    private static volatile long lagMillis = -1;
+    private static volatile boolean healthy;
+
+    // 心跳线程写入、尚未确认出现在副本上的心跳：写入前的本地时间和写入的主库时间
+    private static final Deque<long[]> pendingBeats = new ArrayDeque<>();
+    // 当前线程是否在副本会话中，用于禁止回填二级缓存
+    private static final ThreadLocal<Boolean> replicaSession = new ThreadLocal<>();
+
+    private static final LongAdder replicaReads = new LongAdder();
+    private static final LongAdder primaryReads = new LongAdder();
+
+    private ReplicaRouter() {
+    }
+
+    /**
+     * 启用副本路由并启动心跳任务，重复调用不会启动多个
+     * @param replicaDataSource 副本数据源
+     * @param primary 主库的SqlSessionFactory，心跳写入主库、从副本读取均使用其中的映射
+     * @param maxLag 允许的最大复制延迟（毫秒）
+     * @param intervalMillis 心跳间隔（毫秒）
+     */
+    public static synchronized void start(DataSource replicaDataSource, SqlSessionFactory primary, long maxLag, long intervalMillis) {
+        if (heartbeat != null) {
+            return;
+        }
+        replica = replicaDataSource;
+        maxLagMillis = maxLag;
+        intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        caughtUpNanos = System.nanoTime();
+        lastWriteNanos.set(caughtUpNanos);
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replica-heartbeat");
+            thread.setDaemon(true);
+            heartbeatThread = thread;
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(() -> beat(primary), 0, intervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("已启用只读副本，最大延迟 " + maxLag + "ms，心跳间隔 " + intervalMillis + "ms");
+    }
+
+    /**
+     * 停止心跳任务，之后所有读操作走主库
+     */
+    public static synchronized void stop() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+            heartbeat = null;
+            healthy = false;
+        }
+    }
+
+    /**
+     * 打开一个读副本的会话
+     * @param factory SqlSessionFactory
+     * @return 副本会话；未配置副本、副本不可用、延迟超过阈值或尚未包含本进程最近的写入时返回null，调用方改用主库
+     */
+    public static SqlSession openReadSession(SqlSessionFactory factory) {
+        DataSource dataSource = replica;
+        if (dataSource == null) {
+            return null;
+        }
+        if (!isReadable()) {
+            primaryReads.increment();
+            return null;
+        }
+        Connection connection;
+        try {
+            connection = dataSource.getConnection();
+        } catch (SQLException e) {
+            healthy = false;
+            logger.warn("获取副本连接失败，改读主库", e);
+            primaryReads.increment();
+            return null;
+        }
+        replicaReads.increment();
+        SqlSession session = factory.openSession(connection);
+        replicaSession.set(Boolean.TRUE);
+        // 会话关闭（二级缓存在此时回填）之后才清除标记
+        return (SqlSession) Proxy.newProxyInstance(SqlSession.class.getClassLoader(), new Class<?>[]{SqlSession.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(session, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if ("close".equals(method.getName())) {
+                            replicaSession.remove();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * 当前线程是否正在使用副本会话
+     * @return 是返回true
+     */
+    public static boolean inReplicaSession() {
+        return replicaSession.get() != null;
+    }
+
+    /**
+     * 记录一次写事务提交，之后的读在副本追上之前都走主库
+     * 心跳线程自身的写入不计入
+     */
+    public static void markWrite() {
+        if (replica == null || Thread.currentThread() == heartbeatThread) {
+            return;
+        }
+        lastWriteNanos.accumulateAndGet(System.nanoTime(), Math::max);
+    }
+
+    // 副本当前是否可读
+    private static boolean isReadable() {
+        return healthy
+                && System.nanoTime() - lastCheckNanos <= STALE_CHECK_INTERVALS * intervalNanos
+                && lagMillis <= maxLagMillis
+                && caughtUpNanos - lastWriteNanos.get() > 0;
+    }
+
+    // 一次心跳：主库写入心跳并读回其时间，再读取副本上的心跳，推算延迟和副本追上的位置
+    private static void beat(SqlSessionFactory primary) {
+        try {
+            long beatNanos = System.nanoTime();
+            LocalDateTime written;
+            try (SqlSession session = primary.openSession()) {
+                SyncDao syncDao = session.getMapper(SyncDao.class);
+                syncDao.updateReplicaHeartbeat();
+                written = syncDao.getReplicaHeartbeat();
+                session.commit();
+            }
+            synchronized (pendingBeats) {
+                pendingBeats.addLast(new long[]{beatNanos, toMillis(written)});
+                if (pendingBeats.size() > MAX_PENDING_BEATS) {
+                    pendingBeats.removeFirst();
+                }
+            }
+
+            LocalDateTime replicated;
+            try (SqlSession session = primary.openSession(replica.getConnection())) {
+                replicated = session.getMapper(SyncDao.class).getReplicaHeartbeat();
+            }
+            long replicatedMillis = replicated == null ? Long.MIN_VALUE : toMillis(replicated);
+            synchronized (pendingBeats) {
+                // 副本上的心跳不早于某次写入的心跳，说明该心跳之前提交的写入都已复制到副本
+                while (!pendingBeats.isEmpty() && pendingBeats.peekFirst()[1] <= replicatedMillis) {
+                    caughtUpNanos = pendingBeats.removeFirst()[0];
+                }
+            }
+            lagMillis = replicated == null ? Long.MAX_VALUE : Math.max(0, toMillis(written) - replicatedMillis);
+            lastCheckNanos = System.nanoTime();
+            if (!healthy) {
+                logger.info("副本可用，当前延迟 " + lagMillis + "ms");
+            }
+            healthy = true;
+        } catch (Exception e) {
+            if (healthy) {
+                logger.warn("副本心跳检查失败，读操作改走主库", e);
+            }
+            healthy = false;
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return Duration.between(LocalDateTime.of(2000, 1, 1, 0, 0), time).toMillis();
+    }
+
+    /**
+     * 是否已配置副本
+     * @return 已配置返回true
+     */
+    public static boolean isEnabled() {
+        return replica != null;
+    }
+
+    /**
+     * 最近一次测得的复制延迟
+     * @return 延迟（毫秒），尚未测得时返回-1
+     */
+    public static long getLagMillis() {
+        return lagMillis;
+    }
+
+    /**
+     * 走副本的读会话数
+     */
+    public static long getReplicaReads() {
+        return replicaReads.sum();
+    }
+
+    /**
+     * 因副本不可用、延迟过大或读己之写而改走主库的读会话数
+     */
+    public static long getPrimaryReads() {
+        return primaryReads.sum();
+    }
+}
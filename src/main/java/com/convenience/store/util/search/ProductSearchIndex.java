@@ -0,0 +1,395 @@
+package com.convenience.store.util.search;
+
+import com.convenience.store.entity.Product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * 商品搜索索引 - 基于n-gram倒排索引的内存搜索
+ * 商品名称和类别按1~3个字符切分为n-gram建立倒排表，查询时按查询词长度选择n（最长为3，即trigram），
+ * 取各n-gram倒排表的并集作为候选，再计算命中比例排序：
+ * 1. 名称完全相同 &gt; 名称以查询词开头 &gt; 名称包含查询词 &gt; 类别包含查询词
+ * 2. 都不包含查询词时按命中的n-gram比例做模糊匹配，比例低于阈值的丢弃
+ * 中文商品名通常只有两三个字，因此同时索引单字和双字，短查询也能命中。
+ * 索引在全量构建完成前处于"冷"状态（isReady()返回false），调用方应回退到数据库查询。
+ * 重建期间的增删改同时记录下来，新索引替换旧索引前按顺序重放，读取全部商品之后的修改不会丢失。
+ * 线程安全：读写锁保护，搜索可并发执行；同一时间只有一次重建
+ */
+public class ProductSearchIndex {
+    // 索引的最大n-gram长度
+    private static final int MAX_GRAM = 3;
+    // 模糊匹配时至少命中的n-gram比例
+    private static final double MIN_FUZZY_SIMILARITY = 0.5;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // n-gram -> 包含该n-gram的商品ID
+    private Map<String, Set<Integer>> postings = new HashMap<>();
+    // 商品ID -> 商品快照及其规范化后的名称、类别
+    private Map<Integer, Doc> documents = new HashMap<>();
+    // 重建期间的增删改，按发生顺序；不在重建时为null
+    private List<Change> pendingChanges;
+    private volatile boolean ready;
+
+    /**
+     * 索引是否已完成全量构建
+     * @return 已构建返回true
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 用全部商品重建索引，构建期间旧索引仍可查询
+     * 从开始读取商品到替换索引之间的 put/remove 先作用于旧索引，替换前再按顺序重放到新索引上，
+     * 因此读取结果中缺少的新增、读到的旧值和已删除的商品都会被修正
+     * @param loader 读取全部商品，在重建开始后调用；抛出异常时索引保持原状态
+     */
+    public synchronized void rebuild(Supplier<? extends Collection<Product>> loader) {
+        lock.writeLock().lock();
+        try {
+            pendingChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            Collection<Product> products = loader.get();
+            Map<String, Set<Integer>> newPostings = new HashMap<>();
+            Map<Integer, Doc> newDocuments = new HashMap<>(products.size() * 2);
+            for (Product product : products) {
+                if (product.getProductId() == null) {
+                    continue;
+                }
+                Doc doc = new Doc(copyOf(product));
+                newDocuments.put(product.getProductId(), doc);
+                addPostings(newPostings, doc);
+            }
+            lock.writeLock().lock();
+            try {
+                for (Change change : pendingChanges) {
+                    Doc old = change.doc == null ? newDocuments.remove(change.productId)
+                            : newDocuments.put(change.productId, change.doc);
+                    if (old != null) {
+                        removePostings(newPostings, old);
+                    }
+                    if (change.doc != null) {
+                        addPostings(newPostings, change.doc);
+                    }
+                }
+                postings = newPostings;
+                documents = newDocuments;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                pendingChanges = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * 新增或更新一个商品
+     * @param product 商品对象，必须带商品ID
+     */
+    public void put(Product product) {
+        if (product == null || product.getProductId() == null) {
+            return;
+        }
+        Doc doc = new Doc(copyOf(product));
+        lock.writeLock().lock();
+        try {
+            Doc old = documents.put(product.getProductId(), doc);
+            if (old != null) {
+                removePostings(postings, old);
+            }
+            addPostings(postings, doc);
+            if (pendingChanges != null) {
+                pendingChanges.add(new Change(product.getProductId(), doc));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 从索引中删除一个商品
+     * @param productId 商品ID
+     */
+    public void remove(Integer productId) {
+        lock.writeLock().lock();
+        try {
+            Doc old = documents.remove(productId);
+            if (old != null) {
+                removePostings(postings, old);
+            }
+            if (pendingChanges != null) {
+                pendingChanges.add(new Change(productId, null));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 获取索引中的商品数量
+     * @return 商品数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按名称或类别搜索商品，支持子串匹配和模糊匹配
+     * @param query 查询词，忽略大小写和空白
+     * @param limit 最多返回的条数
+     * @return 按相关度降序排列的商品（副本，可自由修改）
+     */
+    public List<Product> search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        // 查询词不少于4个字符时用trigram；3个字符时用双字，保留模糊匹配的余地；1~2个字符只做子串匹配
+        int n = normalized.length() > MAX_GRAM ? MAX_GRAM : normalized.length() == MAX_GRAM ? 2 : normalized.length();
+        Set<String> queryGrams = grams(normalized, n);
+        // 至少命中这么多个查询n-gram才可能进入结果（子串匹配必然命中全部n-gram）
+        int required = Math.max(1, (int) Math.ceil(queryGrams.size() * MIN_FUZZY_SIMILARITY));
+
+        List<Hit> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<Set<Integer>> lists = new ArrayList<>(queryGrams.size());
+            for (String gram : queryGrams) {
+                Set<Integer> ids = postings.get(gram);
+                if (ids != null) {
+                    lists.add(ids);
+                }
+            }
+            if (lists.size() < required) {
+                return new ArrayList<>();
+            }
+            // 命中至少required个列表的商品，必然出现在最短的 (列表数 - required + 1) 个列表之一，
+            // 只从这些列表取候选，其余列表只做包含判断
+            lists.sort(Comparator.comparingInt(Set::size));
+            int seedLists = lists.size() - required + 1;
+            Set<Integer> candidates = new HashSet<>();
+            for (int i = 0; i < seedLists; i++) {
+                candidates.addAll(lists.get(i));
+            }
+            for (Integer id : candidates) {
+                int matched = 0;
+                for (Set<Integer> ids : lists) {
+                    if (ids.contains(id)) {
+                        matched++;
+                    }
+                }
+                if (matched < required) {
+                    continue;
+                }
+                Doc doc = documents.get(id);
+                double score = score(doc, normalized, (double) matched / queryGrams.size());
+                if (score > 0) {
+                    hits.add(new Hit(doc.product, score));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        hits.sort(Comparator.comparingDouble((Hit h) -> -h.score)
+                .thenComparingInt(h -> length(h.product.getProductName()))
+                .thenComparing(h -> h.product.getProductId()));
+        List<Product> result = new ArrayList<>(Math.min(limit, hits.size()));
+        for (int i = 0; i < hits.size() && i < limit; i++) {
+            result.add(copyOf(hits.get(i).product));
+        }
+        return result;
+    }
+
+    /**
+     * 查找名称包含查询词的商品ID（精确子串匹配，不做模糊匹配），用于把名称条件转换为商品ID条件
+     * @param query 查询词，忽略大小写和空白
+     * @param limit 最多返回的ID数
+     * @return 商品ID列表；匹配数超过limit时返回null，调用方应改用数据库查询
+     */
+    public List<Integer> findIdsByName(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        Set<String> queryGrams = grams(normalized, Math.min(MAX_GRAM, normalized.length()));
+        lock.readLock().lock();
+        try {
+            // 子串匹配必须命中全部n-gram：从最短的倒排表出发，逐个检查其余倒排表
+            List<Set<Integer>> lists = new ArrayList<>(queryGrams.size());
+            for (String gram : queryGrams) {
+                Set<Integer> ids = postings.get(gram);
+                if (ids == null) {
+                    return new ArrayList<>();
+                }
+                lists.add(ids);
+            }
+            lists.sort(Comparator.comparingInt(Set::size));
+            List<Integer> result = new ArrayList<>();
+            for (Integer id : lists.get(0)) {
+                boolean inAll = true;
+                for (int i = 1; i < lists.size() && inAll; i++) {
+                    inAll = lists.get(i).contains(id);
+                }
+                if (inAll && documents.get(id).name.contains(normalized)) {
+                    if (result.size() == limit) {
+                        return null;
+                    }
+                    result.add(id);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 计算相关度：子串匹配的得分总是高于模糊匹配（模糊匹配得分小于1）
+    private static double score(Doc doc, String query, double similarity) {
+        if (doc.name.equals(query)) {
+            return 5;
+        }
+        if (doc.name.startsWith(query)) {
+            return 4;
+        }
+        if (doc.name.contains(query)) {
+            return 3;
+        }
+        if (doc.category.contains(query)) {
+            return 2;
+        }
+        return similarity >= MIN_FUZZY_SIMILARITY ? similarity : 0;
+    }
+
+    private static void addPostings(Map<String, Set<Integer>> target, Doc doc) {
+        for (String gram : documentGrams(doc)) {
+            target.computeIfAbsent(gram, k -> new HashSet<>()).add(doc.product.getProductId());
+        }
+    }
+
+    private static void removePostings(Map<String, Set<Integer>> target, Doc doc) {
+        for (String gram : documentGrams(doc)) {
+            Set<Integer> ids = target.get(gram);
+            if (ids != null) {
+                ids.remove(doc.product.getProductId());
+                if (ids.isEmpty()) {
+                    target.remove(gram);
+                }
+            }
+        }
+    }
+
+    // 商品名称和类别的全部1~3字符n-gram
+    private static Set<String> documentGrams(Doc doc) {
+        Set<String> result = new HashSet<>();
+        for (String field : new String[]{doc.name, doc.category}) {
+            for (int n = 1; n <= MAX_GRAM; n++) {
+                result.addAll(grams(field, n));
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> grams(String text, int n) {
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i + n <= text.length(); i++) {
+            result.add(text.substring(i, i + n));
+        }
+        return result;
+    }
+
+    /**
+     * 统一为小写并去掉空白，使 "Coca Cola" 与 "cocacola" 等价
+     * @param text 商品名称、类别或查询词
+     * @return 规范化后的文本，null时为空串
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static int length(String text) {
+        return text == null ? 0 : text.length();
+    }
+
+    private static Product copyOf(Product product) {
+        Product copy = new Product();
+        copy.setProductId(product.getProductId());
+        copy.setProductName(product.getProductName());
+        copy.setCategory(product.getCategory());
+        copy.setUnit(product.getUnit());
+        copy.setPrice(product.getPrice());
+        copy.setDescription(product.getDescription());
+        copy.setCreatedAt(product.getCreatedAt());
+        copy.setUpdatedAt(product.getUpdatedAt());
+        return copy;
+    }
+
+    // 索引中的商品：快照及预先规范化的名称和类别
+    private static final class Doc {
+        private final Product product;
+        private final String name;
+        private final String category;
+
+        private Doc(Product product) {
+            this.product = product;
+            this.name = normalize(product.getProductName());
+            this.category = normalize(product.getCategory());
+        }
+    }
+
+    // 重建期间的一次修改：doc为null表示删除
+    private static final class Change {
+        private final Integer productId;
+        private final Doc doc;
+
+        private Change(Integer productId, Doc doc) {
+            this.productId = productId;
+            this.doc = doc;
+        }
+    }
+
+    private static final class Hit {
+        private final Product product;
+        private final double score;
+
+        private Hit(Product product, double score) {
+            this.product = product;
+            this.score = score;
+        }
+    }
+}
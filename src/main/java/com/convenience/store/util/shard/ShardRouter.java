@@ -0,0 +1,156 @@
+package com.convenience.store.util.shard;
+
+import com.convenience.store.util.AsyncExecutor;
+import com.convenience.store.util.MyBatisUtil;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.log4j.Logger;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.IntFunction;
+
+/**
+ * 仓库分片路由 - 库存相关的表（inventory、stock_alerts、stock_movements）按仓库ID分布在多个数据库上，
+ * 商品、仓库、用户等其余表仍只在主库。分片映射在 shards.properties 中配置（与 database.properties 放在一起），
+ * 由 MyBatisUtil 在构建SqlSessionFactory后启动；未配置时不分片，shardOf 总是返回0，分片0即主库。
+ * 仓库默认按 仓库ID % 分片数 分布，可逐个仓库指定所在分片；
+ * 只涉及一个仓库的操作直接路由到该仓库所在的分片，其余查询用 scatter 在各分片上并行执行后合并。
+ * 各分片的库存ID必须全局唯一（自增步长等于分片数、起始值错开），按库存ID的查询和修改才能定位到唯一的行
+ */
+public class ShardRouter {
+    private static final Logger logger = Logger.getLogger(ShardRouter.class);
+
+    private static volatile SqlSessionFactory factory;
+    // 各分片的数据源，为null的分片就是主库
+    private static volatile DataSource[] shards;
+    // 单独指定了所在分片的仓库
+    private static volatile Map<Integer, Integer> placements = new HashMap<>();
+
+    private ShardRouter() {
+    }
+
+    /**
+     * 启用分片
+     * @param sqlSessionFactory 主库的SqlSessionFactory，分片会话共用其中的映射和插件
+     * @param dataSources 各分片的数据源，为null的项表示该分片就是主库
+     * @param warehousePlacements 单独指定了所在分片的仓库，仓库ID到分片序号
+     */
+    public static synchronized void start(SqlSessionFactory sqlSessionFactory, List<DataSource> dataSources,
+                                          Map<Integer, Integer> warehousePlacements) {
+        for (Map.Entry<Integer, Integer> placement : warehousePlacements.entrySet()) {
+            if (placement.getValue() < 0 || placement.getValue() >= dataSources.size()) {
+                throw new IllegalArgumentException("仓库 " + placement.getKey() + " 指定的分片 " + placement.getValue() + " 不存在");
+            }
+        }
+        factory = sqlSessionFactory;
+        placements = new HashMap<>(warehousePlacements);
+        shards = dataSources.toArray(new DataSource[0]);
+        logger.info("已启用库存分片，共 " + shards.length + " 个分片，单独指定分片的仓库 " + placements.size() + " 个");
+    }
+
+    /**
+     * 是否启用了分片
+     * @return 启用返回true
+     */
+    public static boolean isEnabled() {
+        return current() != null;
+    }
+
+    /**
+     * 分片数，未启用分片时为1
+     * @return 分片数
+     */
+    public static int getShardCount() {
+        DataSource[] current = current();
+        return current == null ? 1 : current.length;
+    }
+
+    /**
+     * 分片是否就是主库
+     * @param shard 分片序号
+     * @return 未启用分片或该分片未单独配置数据库时返回true
+     */
+    public static boolean isPrimary(int shard) {
+        DataSource[] current = current();
+        return current == null || current[shard] == null;
+    }
+
+    /**
+     * 仓库所在的分片
+     * @param warehouseId 仓库ID
+     * @return 分片序号，未启用分片时为0
+     */
+    public static int shardOf(Integer warehouseId) {
+        DataSource[] current = current();
+        if (current == null) {
+            return 0;
+        }
+        Integer placed = placements.get(warehouseId);
+        return placed != null ? placed : Math.floorMod(warehouseId, current.length);
+    }
+
+    // 分片配置在构建SqlSessionFactory时读取，读取分片状态前先等待构建完成
+    private static DataSource[] current() {
+        MyBatisUtil.ensureInitialized();
+        return shards;
+    }
+
+    /**
+     * 在指定分片上打开会话，与主库会话一样默认不自动提交
+     * @param shard 分片序号
+     * @param executorType 执行器类型
+     * @return SqlSession对象
+     */
+    public static SqlSession openSession(int shard, ExecutorType executorType) {
+        DataSource dataSource = shards[shard];
+        if (dataSource == null) {
+            return factory.openSession(executorType);
+        }
+        try {
+            Connection connection = dataSource.getConnection();
+            connection.setAutoCommit(false);
+            return factory.openSession(executorType, connection);
+        } catch (SQLException e) {
+            throw new PersistenceException("获取分片 " + shard + " 的连接失败", e);
+        }
+    }
+
+    /**
+     * 在每个分片上并行执行同一个查询，按分片顺序合并结果
+     * 只有一个分片时在当前线程执行
+     * @param query 分片序号到该分片查询结果的函数，函数内自行打开和关闭该分片的会话
+     * @param <T> 结果元素类型
+     * @return 各分片结果依次拼接的列表
+     * @throws PersistenceException 任一分片查询失败时抛出
+     */
+    public static <T> List<T> scatter(IntFunction<List<T>> query) {
+        int count = getShardCount();
+        if (count == 1) {
+            return new ArrayList<>(query.apply(0));
+        }
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            int target = shard;
+            futures.add(AsyncExecutor.supply(() -> query.apply(target)));
+        }
+        List<T> merged = new ArrayList<>();
+        for (int shard = 0; shard < count; shard++) {
+            try {
+                merged.addAll(futures.get(shard).join());
+            } catch (CompletionException e) {
+                throw new PersistenceException("分片 " + shard + " 查询失败", e.getCause());
+            }
+        }
+        return merged;
+    }
+}
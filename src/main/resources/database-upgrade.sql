@@ -0,0 +1,133 @@
+-- 已有数据库的升级脚本：database.sql 只用 CREATE TABLE IF NOT EXISTS 建表，已存在的表不会得到新增的列、索引和触发器
+-- 把按上一发布版本 database.sql 建的库升级到当前 database.sql 的结构
+-- 在主库上执行，可以重复执行：已有的列和索引跳过，触发器先删除再重建
+-- 为 inventory 增加存储生成列会重建整张表，库存很多时请在停业时间执行
+USE convenience_store;
+
+-- 升级用的辅助过程，脚本末尾删除
+DELIMITER //
+DROP PROCEDURE IF EXISTS upgrade_add_column //
+CREATE PROCEDURE upgrade_add_column(IN p_table VARCHAR(64), IN p_column VARCHAR(64), IN p_definition TEXT)
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.COLUMNS
+                   WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = p_table AND COLUMN_NAME = p_column) THEN
+        SET @upgrade_ddl = CONCAT('ALTER TABLE ', p_table, ' ADD COLUMN ', p_column, ' ', p_definition);
+        PREPARE upgrade_stmt FROM @upgrade_ddl;
+        EXECUTE upgrade_stmt;
+        DEALLOCATE PREPARE upgrade_stmt;
+    END IF;
+END //
+DROP PROCEDURE IF EXISTS upgrade_add_key //
+CREATE PROCEDURE upgrade_add_key(IN p_table VARCHAR(64), IN p_key VARCHAR(64), IN p_definition TEXT)
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.STATISTICS
+                   WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = p_table AND INDEX_NAME = p_key) THEN
+        SET @upgrade_ddl = CONCAT('ALTER TABLE ', p_table, ' ADD ', p_definition);
+        PREPARE upgrade_stmt FROM @upgrade_ddl;
+        EXECUTE upgrade_stmt;
+        DEALLOCATE PREPARE upgrade_stmt;
+    END IF;
+END //
+DELIMITER ;
+
+-- 1. 库存搜索：低库存生成列和各过滤条件的索引
+CALL upgrade_add_column('inventory', 'is_low_stock', 'TINYINT(1) GENERATED ALWAYS AS (quantity < min_stock) STORED');
+CALL upgrade_add_key('inventory', 'idx_inventory_warehouse', 'KEY idx_inventory_warehouse (warehouse_id)');
+CALL upgrade_add_key('inventory', 'idx_inventory_low_stock', 'KEY idx_inventory_low_stock (is_low_stock, warehouse_id)');
+CALL upgrade_add_key('inventory', 'idx_inventory_quantity', 'KEY idx_inventory_quantity (quantity)');
+CALL upgrade_add_key('products', 'idx_products_category', 'KEY idx_products_category (category)');
+CALL upgrade_add_key('products', 'idx_products_name', 'KEY idx_products_name (product_name)');
+
+-- 2. 库存流水、库存写缓冲、只读副本和批量导入用到的表
+CREATE TABLE IF NOT EXISTS stock_movements (
+    movement_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    product_id INT NOT NULL,
+    warehouse_id INT NOT NULL,
+    movement_type ENUM('receipt', 'sale', 'transfer_out', 'transfer_in', 'adjustment', 'shortfall') NOT NULL,
+    delta INT NOT NULL,
+    reference VARCHAR(64),
+    operator_id INT,
+    applied TINYINT(1) NOT NULL DEFAULT 0,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_movement_product FOREIGN KEY (product_id) REFERENCES products(product_id) ON DELETE CASCADE,
+    CONSTRAINT fk_movement_warehouse FOREIGN KEY (warehouse_id) REFERENCES warehouses(warehouse_id) ON DELETE CASCADE,
+    CONSTRAINT fk_movement_operator FOREIGN KEY (operator_id) REFERENCES users(user_id) ON DELETE SET NULL,
+    KEY idx_movement_pending (applied, movement_id),
+    KEY idx_movement_key (product_id, warehouse_id, applied),
+    KEY idx_movement_created (created_at)
+);
+
+CREATE TABLE IF NOT EXISTS write_behind_segments (
+    reference VARCHAR(64) PRIMARY KEY,
+    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS replica_heartbeat (
+    heartbeat_id TINYINT PRIMARY KEY,
+    beat_at TIMESTAMP(3) NOT NULL
+);
+INSERT IGNORE INTO replica_heartbeat (heartbeat_id, beat_at) VALUES (1, CURRENT_TIMESTAMP(3));
+
+CREATE TABLE IF NOT EXISTS import_progress (
+    import_key VARCHAR(255) PRIMARY KEY,
+    last_line BIGINT NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+-- 3. 新增库存记录时的库存水平检查
+DROP TRIGGER IF EXISTS trg_check_stock_level_insert;
+DELIMITER //
+CREATE TRIGGER trg_check_stock_level_insert AFTER INSERT ON inventory
+FOR EACH ROW
+BEGIN
+    IF NEW.quantity < NEW.min_stock THEN
+        INSERT INTO stock_alerts (product_id, warehouse_id, current_quantity, min_stock, alert_time)
+        VALUES (NEW.product_id, NEW.warehouse_id, NEW.quantity, NEW.min_stock, NOW())
+        ON DUPLICATE KEY UPDATE current_quantity = NEW.quantity, alert_time = NOW();
+    END IF;
+END //
+DELIMITER ;
+
+-- 4. 增量同步：按修改时间查询变更行的索引，删除记录表和各表的删除触发器
+CALL upgrade_add_key('users', 'idx_users_updated_at', 'KEY idx_users_updated_at (updated_at)');
+CALL upgrade_add_key('products', 'idx_products_updated_at', 'KEY idx_products_updated_at (updated_at)');
+CALL upgrade_add_key('warehouses', 'idx_warehouses_updated_at', 'KEY idx_warehouses_updated_at (updated_at)');
+CALL upgrade_add_key('inventory', 'idx_inventory_last_updated', 'KEY idx_inventory_last_updated (last_updated)');
+
+CREATE TABLE IF NOT EXISTS deleted_rows (
+    tombstone_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    table_name VARCHAR(32) NOT NULL,
+    row_id INT NOT NULL,
+    deleted_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    KEY idx_deleted_rows_time (deleted_at)
+);
+
+DROP TRIGGER IF EXISTS trg_users_tombstone;
+DROP TRIGGER IF EXISTS trg_products_tombstone;
+DROP TRIGGER IF EXISTS trg_warehouses_tombstone;
+DROP TRIGGER IF EXISTS trg_inventory_tombstone;
+DELIMITER //
+CREATE TRIGGER trg_users_tombstone AFTER DELETE ON users
+FOR EACH ROW
+BEGIN
+    INSERT INTO deleted_rows (table_name, row_id) VALUES ('users', OLD.user_id);
+END //
+CREATE TRIGGER trg_products_tombstone AFTER DELETE ON products
+FOR EACH ROW
+BEGIN
+    INSERT INTO deleted_rows (table_name, row_id) VALUES ('products', OLD.product_id);
+END //
+CREATE TRIGGER trg_warehouses_tombstone AFTER DELETE ON warehouses
+FOR EACH ROW
+BEGIN
+    INSERT INTO deleted_rows (table_name, row_id) VALUES ('warehouses', OLD.warehouse_id);
+END //
+CREATE TRIGGER trg_inventory_tombstone AFTER DELETE ON inventory
+FOR EACH ROW
+BEGIN
+    INSERT INTO deleted_rows (table_name, row_id) VALUES ('inventory', OLD.inventory_id);
+END //
+DELIMITER ;
+
+DROP PROCEDURE IF EXISTS upgrade_add_column;
+DROP PROCEDURE IF EXISTS upgrade_add_key;
@@ -15,7 +15,9 @@ CREATE TABLE IF NOT EXISTS users (
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     CONSTRAINT chk_role CHECK (role IN ('admin', 'staff')),
-    CONSTRAINT chk_status CHECK (status IN ('active', 'inactive'))
+    CONSTRAINT chk_status CHECK (status IN ('active', 'inactive')),
+    -- 增量同步按修改时间查询变更行
+    KEY idx_users_updated_at (updated_at)
 );
 
 -- 2. 商品表
@@ -28,7 +30,12 @@ CREATE TABLE IF NOT EXISTS products (
     description TEXT,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
-    CONSTRAINT chk_price CHECK (price > 0)
+    CONSTRAINT chk_price CHECK (price > 0),
+    -- 库存搜索按类别过滤时先定位商品，再经uk_product_warehouse联到库存
+    KEY idx_products_category (category),
+    KEY idx_products_name (product_name),
+    -- 增量同步按修改时间查询变更行
+    KEY idx_products_updated_at (updated_at)
 );
 
 -- 3. 供应商表
@@ -53,7 +60,9 @@ CREATE TABLE IF NOT EXISTS warehouses (
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     CONSTRAINT fk_manager FOREIGN KEY (manager_id) REFERENCES users(user_id) ON DELETE SET NULL,
-    CONSTRAINT chk_capacity CHECK (capacity > 0)
+    CONSTRAINT chk_capacity CHECK (capacity > 0),
+    -- 增量同步按修改时间查询变更行
+    KEY idx_warehouses_updated_at (updated_at)
 );
 
 -- 5. 库存表
@@ -64,11 +73,19 @@ CREATE TABLE IF NOT EXISTS inventory (
     quantity INT NOT NULL,
     min_stock INT NOT NULL DEFAULT 10,
     last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    -- 是否低于最小库存：两列比较无法走索引，用存储生成列把它变成可索引的等值条件
+    is_low_stock TINYINT(1) GENERATED ALWAYS AS (quantity < min_stock) STORED,
     CONSTRAINT fk_inventory_product FOREIGN KEY (product_id) REFERENCES products(product_id) ON DELETE CASCADE,
     CONSTRAINT fk_inventory_warehouse FOREIGN KEY (warehouse_id) REFERENCES warehouses(warehouse_id) ON DELETE CASCADE,
     CONSTRAINT chk_quantity CHECK (quantity >= 0),
     CONSTRAINT chk_min_stock CHECK (min_stock >= 0),
-    UNIQUE KEY uk_product_warehouse (product_id, warehouse_id)
+    UNIQUE KEY uk_product_warehouse (product_id, warehouse_id),
+    -- 以下索引服务于库存搜索；InnoDB二级索引隐含主键列，按仓库过滤时仍可按inventory_id顺序分页
+    KEY idx_inventory_warehouse (warehouse_id),
+    KEY idx_inventory_low_stock (is_low_stock, warehouse_id),
+    KEY idx_inventory_quantity (quantity),
+    -- 增量同步按修改时间查询变更行
+    KEY idx_inventory_last_updated (last_updated)
 );
 
 -- 6. 商品供应商关系表（多对多）
@@ -96,6 +113,19 @@ BEGIN
 END //
 DELIMITER ;
 
+-- 触发器1b：新增库存记录时同样检查库存水平（上面的触发器只在UPDATE时触发）
+DELIMITER //
+CREATE TRIGGER trg_check_stock_level_insert AFTER INSERT ON inventory
+FOR EACH ROW
+BEGIN
+    IF NEW.quantity < NEW.min_stock THEN
+        INSERT INTO stock_alerts (product_id, warehouse_id, current_quantity, min_stock, alert_time)
+        VALUES (NEW.product_id, NEW.warehouse_id, NEW.quantity, NEW.min_stock, NOW())
+        ON DUPLICATE KEY UPDATE current_quantity = NEW.quantity, alert_time = NOW();
+    END IF;
+END //
+DELIMITER ;
+
 -- 触发器2：自动更新商品的最后供应日期
 DELIMITER //
 CREATE TRIGGER trg_update_supply_date BEFORE INSERT ON product_supplier
@@ -146,6 +176,84 @@ CREATE TABLE IF NOT EXISTS stock_alerts (
     UNIQUE KEY uk_alert_product_warehouse (product_id, warehouse_id)
 );
 
+-- 库存流水表：只追加，记录每一次入库、销售、调拨和盘点调整
+-- applied = 0 的流水尚未合并到inventory快照，由后台合并任务定期汇总
+CREATE TABLE IF NOT EXISTS stock_movements (
+    movement_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    product_id INT NOT NULL,
+    warehouse_id INT NOT NULL,
+    movement_type ENUM('receipt', 'sale', 'transfer_out', 'transfer_in', 'adjustment', 'shortfall') NOT NULL,
+    delta INT NOT NULL,
+    reference VARCHAR(64),
+    operator_id INT,
+    applied TINYINT(1) NOT NULL DEFAULT 0,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_movement_product FOREIGN KEY (product_id) REFERENCES products(product_id) ON DELETE CASCADE,
+    CONSTRAINT fk_movement_warehouse FOREIGN KEY (warehouse_id) REFERENCES warehouses(warehouse_id) ON DELETE CASCADE,
+    CONSTRAINT fk_movement_operator FOREIGN KEY (operator_id) REFERENCES users(user_id) ON DELETE SET NULL,
+    KEY idx_movement_pending (applied, movement_id),
+    KEY idx_movement_key (product_id, warehouse_id, applied),
+    -- 增量同步按记录时间查找有新流水的库存位置（入库流水不修改库存行）
+    KEY idx_movement_created (created_at)
+);
+
+-- 库存写缓冲已写库的日志段：与该段的库存调整在同一事务中插入，主键保证同一段只写入一次；
+-- 保留7天后由写缓冲定期删除
+CREATE TABLE IF NOT EXISTS write_behind_segments (
+    reference VARCHAR(64) PRIMARY KEY,
+    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 批量导入进度：每个导入文件一行，与该文件的一批数据在同一事务中更新；
+-- 导入在提交后、写检查点文件前中断时，再次导入从这里记录的行号之后继续，已写入的商品不会重复插入
+CREATE TABLE IF NOT EXISTS import_progress (
+    import_key VARCHAR(255) PRIMARY KEY,
+    last_line BIGINT NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+-- 删除记录表（墓碑）：增量同步无法从原表得知哪些行被删除，由各表的AFTER DELETE触发器记录
+-- 注意：外键级联删除不触发触发器，客户端收到商品、仓库的删除记录时自行移除关联的库存行
+-- 客户端定期清理超过保留期的记录，离线超过保留期的客户端改为全量刷新
+CREATE TABLE IF NOT EXISTS deleted_rows (
+    tombstone_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    table_name VARCHAR(32) NOT NULL,
+    row_id INT NOT NULL,
+    deleted_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    KEY idx_deleted_rows_time (deleted_at)
+);
+
+-- 副本心跳表：只有一行，由主库定期更新时间，从只读副本读取同一行即可得知复制延迟
+CREATE TABLE IF NOT EXISTS replica_heartbeat (
+    heartbeat_id TINYINT PRIMARY KEY,
+    beat_at TIMESTAMP(3) NOT NULL
+);
+INSERT IGNORE INTO replica_heartbeat (heartbeat_id, beat_at) VALUES (1, CURRENT_TIMESTAMP(3));
+
+-- 触发器3：记录用户、商品、仓库、库存的删除
+DELIMITER //
+CREATE TRIGGER trg_users_tombstone AFTER DELETE ON users
+FOR EACH ROW
+BEGIN
+    INSERT INTO deleted_rows (table_name, row_id) VALUES ('users', OLD.user_id);
+END //
+CREATE TRIGGER trg_products_tombstone AFTER DELETE ON products
+FOR EACH ROW
+BEGIN
+    INSERT INTO deleted_rows (table_name, row_id) VALUES ('products', OLD.product_id);
+END //
+CREATE TRIGGER trg_warehouses_tombstone AFTER DELETE ON warehouses
+FOR EACH ROW
+BEGIN
+    INSERT INTO deleted_rows (table_name, row_id) VALUES ('warehouses', OLD.warehouse_id);
+END //
+CREATE TRIGGER trg_inventory_tombstone AFTER DELETE ON inventory
+FOR EACH ROW
+BEGIN
+    INSERT INTO deleted_rows (table_name, row_id) VALUES ('inventory', OLD.inventory_id);
+END //
+DELIMITER ;
+
 -- 插入测试数据
 -- 1. 用户数据
 INSERT INTO users (username, password, full_name, email, phone, role, status) VALUES
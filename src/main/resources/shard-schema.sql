@@ -0,0 +1,96 @@
+-- 库存分片库的表结构：在 shards.properties 中配置了 shard.N.url 的每个分片库上执行
+-- 分片库只保存库存相关的表，商品、仓库、用户仍在主库，因此这里没有外键；
+-- 删除商品时由程序删除各分片上的库存记录和流水
+-- 各分片的库存ID必须全局唯一：在每个分片（含作为分片0的主库）的MySQL配置中设置
+--   auto_increment_increment = 分片数
+--   auto_increment_offset    = 分片序号 + 1
+-- 修改分片数或仓库所在分片前需要先迁移对应仓库的库存、预警和流水
+CREATE DATABASE IF NOT EXISTS convenience_store_shard;
+USE convenience_store_shard;
+
+-- 库存表（与主库inventory相同，去掉外键）
+CREATE TABLE IF NOT EXISTS inventory (
+    inventory_id INT PRIMARY KEY AUTO_INCREMENT,
+    product_id INT NOT NULL,
+    warehouse_id INT NOT NULL,
+    quantity INT NOT NULL,
+    min_stock INT NOT NULL DEFAULT 10,
+    last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    is_low_stock TINYINT(1) GENERATED ALWAYS AS (quantity < min_stock) STORED,
+    CONSTRAINT chk_quantity CHECK (quantity >= 0),
+    CONSTRAINT chk_min_stock CHECK (min_stock >= 0),
+    UNIQUE KEY uk_product_warehouse (product_id, warehouse_id),
+    KEY idx_inventory_warehouse (warehouse_id),
+    KEY idx_inventory_low_stock (is_low_stock, warehouse_id),
+    KEY idx_inventory_quantity (quantity),
+    KEY idx_inventory_last_updated (last_updated)
+);
+
+-- 库存预警表
+CREATE TABLE IF NOT EXISTS stock_alerts (
+    alert_id INT PRIMARY KEY AUTO_INCREMENT,
+    product_id INT NOT NULL,
+    warehouse_id INT NOT NULL,
+    current_quantity INT NOT NULL,
+    min_stock INT NOT NULL,
+    alert_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_alert_product_warehouse (product_id, warehouse_id)
+);
+
+-- 库存流水表
+CREATE TABLE IF NOT EXISTS stock_movements (
+    movement_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    product_id INT NOT NULL,
+    warehouse_id INT NOT NULL,
+    movement_type ENUM('receipt', 'sale', 'transfer_out', 'transfer_in', 'adjustment', 'shortfall') NOT NULL,
+    delta INT NOT NULL,
+    reference VARCHAR(64),
+    operator_id INT,
+    applied TINYINT(1) NOT NULL DEFAULT 0,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    KEY idx_movement_pending (applied, movement_id),
+    KEY idx_movement_key (product_id, warehouse_id, applied),
+    KEY idx_movement_created (created_at)
+);
+
+-- 库存写缓冲已写库的日志段，与主库相同
+CREATE TABLE IF NOT EXISTS write_behind_segments (
+    reference VARCHAR(64) PRIMARY KEY,
+    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 删除记录表，只记录本分片的库存删除
+CREATE TABLE IF NOT EXISTS deleted_rows (
+    tombstone_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    table_name VARCHAR(32) NOT NULL,
+    row_id INT NOT NULL,
+    deleted_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    KEY idx_deleted_rows_time (deleted_at)
+);
+
+-- 触发器：与主库相同的库存预警和库存删除记录
+DELIMITER //
+CREATE TRIGGER trg_check_stock_level AFTER UPDATE ON inventory
+FOR EACH ROW
+BEGIN
+    IF NEW.quantity < NEW.min_stock THEN
+        INSERT INTO stock_alerts (product_id, warehouse_id, current_quantity, min_stock, alert_time)
+        VALUES (NEW.product_id, NEW.warehouse_id, NEW.quantity, NEW.min_stock, NOW())
+        ON DUPLICATE KEY UPDATE current_quantity = NEW.quantity, alert_time = NOW();
+    END IF;
+END //
+CREATE TRIGGER trg_check_stock_level_insert AFTER INSERT ON inventory
+FOR EACH ROW
+BEGIN
+    IF NEW.quantity < NEW.min_stock THEN
+        INSERT INTO stock_alerts (product_id, warehouse_id, current_quantity, min_stock, alert_time)
+        VALUES (NEW.product_id, NEW.warehouse_id, NEW.quantity, NEW.min_stock, NOW())
+        ON DUPLICATE KEY UPDATE current_quantity = NEW.quantity, alert_time = NOW();
+    END IF;
+END //
+CREATE TRIGGER trg_inventory_tombstone AFTER DELETE ON inventory
+FOR EACH ROW
+BEGIN
+    INSERT INTO deleted_rows (table_name, row_id) VALUES ('inventory', OLD.inventory_id);
+END //
+DELIMITER ;